@@ -0,0 +1,244 @@
+package com.flashsale.abuse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process heavy-hitter detection for purchase traffic
+ *
+ * Every purchase attempt is counted by user, client IP and IP subnet in a sliding-window
+ * count-min sketch, with a small top-K candidate set per dimension for reporting. Memory is
+ * fixed by the sketch dimensions, however many keys are seen, and nothing leaves the process.
+ *
+ * A key whose windowed count exceeds its dimension's threshold is flagged. What happens next is
+ * flashsale.abuse.action:
+ * BLOCK        : the attempt is rejected before rate limiting or inventory
+ * DEPRIORITIZE : the attempt may only use one of deprioritized-concurrency slow-lane permits,
+ *                and is rejected when they are all taken
+ * OBSERVE      : the attempt proceeds; only metrics and the top-offender report reflect it
+ *
+ * Subnets catch bots rotating user IDs behind one network. Client IPs come from the servlet
+ * remote address, so put server.forward-headers-strategy in place behind a proxy.
+ *
+ * Metrics: flashsale.abuse.flagged{dimension}
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AbuseDetector {
+
+    public enum Dimension { USER, IP, SUBNET }
+
+    public enum Action { OBSERVE, DEPRIORITIZE, BLOCK }
+
+    public enum Verdict { ALLOW, DEPRIORITIZE, BLOCK }
+
+    /**
+     * One entry of the top-offender report
+     */
+    public record Offender(String key, long count, boolean flagged) {
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.abuse.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.abuse.action:BLOCK}")
+    private Action action = Action.BLOCK;
+
+    @Value("${flashsale.abuse.window:60s}")
+    private Duration window = Duration.ofSeconds(60);
+
+    @Value("${flashsale.abuse.slots:6}")
+    private int slotCount = 6;
+
+    @Value("${flashsale.abuse.sketch-depth:4}")
+    private int sketchDepth = 4;
+
+    @Value("${flashsale.abuse.sketch-width:8192}")
+    private int sketchWidth = 8192;
+
+    @Value("${flashsale.abuse.top-k:50}")
+    private int topK = 50;
+
+    @Value("${flashsale.abuse.user-threshold:300}")
+    private long userThreshold = 300;
+
+    @Value("${flashsale.abuse.ip-threshold:1000}")
+    private long ipThreshold = 1000;
+
+    @Value("${flashsale.abuse.subnet-threshold:5000}")
+    private long subnetThreshold = 5000;
+
+    @Value("${flashsale.abuse.ipv4-subnet-prefix:24}")
+    private int ipv4SubnetPrefix = 24;
+
+    @Value("${flashsale.abuse.ipv6-subnet-prefix:48}")
+    private int ipv6SubnetPrefix = 48;
+
+    @Value("${flashsale.abuse.deprioritized-concurrency:4}")
+    private int deprioritizedConcurrency = 4;
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<Dimension, Tracker> trackers = new EnumMap<>(Dimension.class);
+    private Semaphore slowLane;
+
+    /**
+     * Sketch, candidates and threshold for one dimension
+     */
+    private final class Tracker {
+        final SlidingCountMinSketch sketch;
+        final HeavyHitters heavyHitters;
+        final long threshold;
+        final Counter flagged;
+
+        Tracker(Dimension dimension, long threshold) {
+            this.sketch = new SlidingCountMinSketch(sketchDepth, sketchWidth, slotCount,
+                    Math.max(window.toMillis() / slotCount, 1), ThreadLocalRandom.current().nextLong());
+            this.heavyHitters = new HeavyHitters(topK);
+            this.threshold = threshold;
+            this.flagged = Counter.builder("flashsale.abuse.flagged")
+                    .description("Purchase attempts from keys over their abuse threshold")
+                    .tag("dimension", dimension.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+
+        boolean record(String key, long now) {
+            if (sketch.advance(now)) {
+                heavyHitters.refresh(k -> sketch.estimate(k, now));
+            }
+            long count = sketch.add(key, now);
+            heavyHitters.offer(key, count);
+            if (count > threshold) {
+                flagged.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        trackers.put(Dimension.USER, new Tracker(Dimension.USER, userThreshold));
+        trackers.put(Dimension.IP, new Tracker(Dimension.IP, ipThreshold));
+        trackers.put(Dimension.SUBNET, new Tracker(Dimension.SUBNET, subnetThreshold));
+        slowLane = new Semaphore(deprioritizedConcurrency);
+        if (enabled) {
+            log.info("Abuse detection enabled (action: {}, window: {}, thresholds user/ip/subnet: {}/{}/{})",
+                    action, window, userThreshold, ipThreshold, subnetThreshold);
+        }
+    }
+
+    /**
+     * Count a purchase attempt and decide how to treat it
+     *
+     * @param userId User ID from the request
+     * @param clientIp Client address, or null when unknown (e.g. internal callers)
+     * @return ALLOW unless a key is over its threshold and the configured action is not OBSERVE
+     */
+    public Verdict inspect(String userId, String clientIp) {
+        if (!enabled) {
+            return Verdict.ALLOW;
+        }
+        long now = clock.getAsLong();
+        boolean flagged = userId != null && trackers.get(Dimension.USER).record(userId, now);
+        if (clientIp != null) {
+            flagged |= trackers.get(Dimension.IP).record(clientIp, now);
+            String subnet = subnetOf(clientIp);
+            if (subnet != null) {
+                flagged |= trackers.get(Dimension.SUBNET).record(subnet, now);
+            }
+        }
+        if (!flagged) {
+            return Verdict.ALLOW;
+        }
+        return switch (action) {
+            case BLOCK -> Verdict.BLOCK;
+            case DEPRIORITIZE -> Verdict.DEPRIORITIZE;
+            case OBSERVE -> Verdict.ALLOW;
+        };
+    }
+
+    /**
+     * Take a slow-lane permit for a deprioritized attempt; never waits
+     * Callers that get true must call {@link #exitSlowLane()} when done
+     */
+    public boolean tryEnterSlowLane() {
+        return slowLane.tryAcquire();
+    }
+
+    public void exitSlowLane() {
+        slowLane.release();
+    }
+
+    /**
+     * Heaviest keys per dimension in the current window
+     *
+     * @param limit Maximum entries per dimension
+     */
+    public Map<Dimension, List<Offender>> getTopOffenders(int limit) {
+        long now = clock.getAsLong();
+        Map<Dimension, List<Offender>> report = new EnumMap<>(Dimension.class);
+        trackers.forEach((dimension, tracker) -> report.put(dimension,
+                tracker.heavyHitters.top(key -> tracker.sketch.estimate(key, now), limit).stream()
+                        .map(entry -> new Offender(entry.getKey(), entry.getValue(), entry.getValue() > tracker.threshold))
+                        .toList()));
+        return report;
+    }
+
+    /**
+     * Network prefix of a literal IPv4 or IPv6 address, e.g. 203.0.113.0/24
+     *
+     * @return null if clientIp is not an IP literal
+     */
+    String subnetOf(String clientIp) {
+        if (!isIpLiteral(clientIp)) {
+            return null;
+        }
+        try {
+            byte[] address = InetAddress.getByName(clientIp).getAddress();
+            int prefix = Math.min(address.length == 4 ? ipv4SubnetPrefix : ipv6SubnetPrefix, address.length * 8);
+            for (int bit = prefix; bit < address.length * 8; bit++) {
+                address[bit / 8] &= (byte) ~(0x80 >>> (bit % 8));
+            }
+            return InetAddress.getByAddress(address).getHostAddress() + "/" + prefix;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Guards InetAddress.getByName against ever being handed a host name (no DNS on the hot path)
+     */
+    private static boolean isIpLiteral(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        boolean colon = value.indexOf(':') >= 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean allowed = c == '.' || c == ':' || Character.digit(c, colon ? 16 : 10) >= 0;
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package com.flashsale.abuse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded top-K candidate set fed by sketch estimates
+ *
+ * Keys already tracked are updated without locking. A new key only takes the lock when its
+ * estimate beats the smallest tracked estimate (the floor), so ordinary traffic never contends
+ * here. Tracked estimates go stale as the window slides; {@link #refresh} re-reads them from
+ * the sketch and is called once per slot.
+ */
+final class HeavyHitters {
+
+    private final int capacity;
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    private volatile long floor;
+
+    HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void offer(String key, long estimate) {
+        if (candidates.computeIfPresent(key, (k, previous) -> estimate) != null || estimate <= floor) {
+            return;
+        }
+        synchronized (this) {
+            candidates.put(key, estimate);
+            if (candidates.size() > capacity) {
+                candidates.entrySet().stream()
+                        .min(Map.Entry.comparingByValue())
+                        .ifPresent(smallest -> candidates.remove(smallest.getKey()));
+            }
+            updateFloor();
+        }
+    }
+
+    /**
+     * Re-estimate every candidate and drop those no longer seen in the window
+     */
+    synchronized void refresh(ToLongFunction<String> estimator) {
+        candidates.replaceAll((key, previous) -> estimator.applyAsLong(key));
+        candidates.values().removeIf(count -> count == 0);
+        updateFloor();
+    }
+
+    /**
+     * @return Up to limit candidates with fresh estimates, largest first
+     */
+    List<Map.Entry<String, Long>> top(ToLongFunction<String> estimator, int limit) {
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            long count = estimator.applyAsLong(key);
+            if (count > 0) {
+                result.add(Map.entry(key, count));
+            }
+        }
+        result.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    private void updateFloor() {
+        floor = candidates.size() < capacity
+                ? 0
+                : candidates.values().stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+}
@@ -0,0 +1,151 @@
+package com.flashsale.abuse;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-min sketch over a sliding time window
+ *
+ * The window is split into slots, each its own depth x width counter matrix. Increments go to the
+ * current slot with conservative update (only counters below the new minimum are raised), and an
+ * estimate sums the slots still inside the window. Memory is slots x depth x width ints no matter
+ * how many distinct keys are seen. Estimates never undercount; they overcount by a small fraction
+ * of the window's total traffic.
+ *
+ * Slot rotation is not atomic with concurrent increments, so a handful of counts can land in a
+ * slot just as it is cleared. That is acceptable for abuse detection, not for accounting.
+ */
+final class SlidingCountMinSketch {
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int depth;
+    private final int mask;
+    private final long slotMillis;
+    private final long seed;
+    private final Slot[] slots;
+
+    private static final class Slot {
+        final AtomicIntegerArray counters;
+        volatile long index = Long.MIN_VALUE;
+
+        Slot(int size) {
+            counters = new AtomicIntegerArray(size);
+        }
+    }
+
+    /**
+     * @param depth Hash rows per slot
+     * @param width Counters per row, rounded up to a power of two
+     * @param slotCount Slots per window
+     * @param slotMillis Length of one slot
+     * @param seed Hash seed; random per instance so colliding keys cannot be precomputed
+     */
+    SlidingCountMinSketch(int depth, int width, int slotCount, long slotMillis, long seed) {
+        int rowWidth = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = rowWidth - 1;
+        this.slotMillis = slotMillis;
+        this.seed = seed;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot(depth * rowWidth);
+        }
+    }
+
+    /**
+     * Move to the slot covering nowMillis, clearing it if it still holds an expired period
+     *
+     * @return true if this call started a new slot
+     */
+    boolean advance(long nowMillis) {
+        long current = nowMillis / slotMillis;
+        Slot slot = slots[(int) (current % slots.length)];
+        if (slot.index >= current) {
+            return false;
+        }
+        synchronized (slot) {
+            if (slot.index >= current) {
+                return false;
+            }
+            for (int i = 0; i < slot.counters.length(); i++) {
+                slot.counters.set(i, 0);
+            }
+            slot.index = current;
+            return true;
+        }
+    }
+
+    /**
+     * Count one occurrence of key
+     *
+     * @return Estimated occurrences of key in the window, including this one
+     */
+    long add(String key, long nowMillis) {
+        long current = nowMillis / slotMillis;
+        Slot slot = slots[(int) (current % slots.length)];
+        long hash = hash(key);
+
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, slot.counters.get(index(hash, row)));
+        }
+        int target = min == Integer.MAX_VALUE ? min : min + 1;
+        for (int row = 0; row < depth; row++) {
+            int i = index(hash, row);
+            int value;
+            while ((value = slot.counters.get(i)) < target && !slot.counters.compareAndSet(i, value, target)) {
+                // lost a race with another increment; re-read
+            }
+        }
+        return target + estimate(hash, current, slot);
+    }
+
+    /**
+     * @return Estimated occurrences of key in the window
+     */
+    long estimate(String key, long nowMillis) {
+        return estimate(hash(key), nowMillis / slotMillis, null);
+    }
+
+    private long estimate(long hash, long current, Slot skip) {
+        long total = 0;
+        for (Slot slot : slots) {
+            long index = slot.index;
+            if (slot == skip || index > current || index <= current - slots.length) {
+                continue;
+            }
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, slot.counters.get(index(hash, row)));
+            }
+            total += min;
+        }
+        return total;
+    }
+
+    /**
+     * Row index by double hashing: one 64-bit hash yields every row's position
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    /**
+     * Seeded FNV-1a followed by a 64-bit finalizer
+     */
+    private long hash(String key) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
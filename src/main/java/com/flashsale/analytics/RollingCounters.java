@@ -0,0 +1,107 @@
+package com.flashsale.analytics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed set of counters over a ring of time buckets
+ *
+ * Each bucket holds one striped LongAdder per counter, so concurrent increments of the same
+ * product never contend on a single cache line. A bucket is reused once the ring wraps around;
+ * the first writer into a stale bucket clears it. Clearing is not atomic with concurrent
+ * increments, so a handful of counts can be lost right at a bucket boundary. That is fine for
+ * dashboards; the database stays the source of truth for accounting.
+ */
+final class RollingCounters {
+
+    private final int counterCount;
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+
+    private static final class Bucket {
+        final LongAdder[] counters;
+        volatile long index = Long.MIN_VALUE;
+
+        Bucket(int counterCount) {
+            counters = new LongAdder[counterCount];
+            for (int i = 0; i < counterCount; i++) {
+                counters[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * @param counterCount Counters per bucket
+     * @param bucketMillis Length of one bucket
+     * @param bucketCount Buckets in the ring, i.e. the longest window that can be read
+     */
+    RollingCounters(int counterCount, long bucketMillis, int bucketCount) {
+        this.counterCount = counterCount;
+        this.bucketMillis = bucketMillis;
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(counterCount);
+        }
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    int bucketCount() {
+        return buckets.length;
+    }
+
+    void add(int counter, long amount, long nowMillis) {
+        long current = nowMillis / bucketMillis;
+        Bucket bucket = buckets[(int) (current % buckets.length)];
+        if (bucket.index != current && !advance(bucket, current)) {
+            // Caller's clock is behind a bucket another thread already moved past
+            return;
+        }
+        bucket.counters[counter].add(amount);
+    }
+
+    /**
+     * Sum of every counter over the last bucketsBack buckets, the current one included
+     */
+    long[] sum(int bucketsBack, long nowMillis) {
+        long current = nowMillis / bucketMillis;
+        long[] totals = new long[counterCount];
+        for (int back = 0; back < Math.min(bucketsBack, buckets.length); back++) {
+            long[] values = get(current - back);
+            for (int i = 0; i < counterCount; i++) {
+                totals[i] += values[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Counters of the bucket with the given index, or zeros if it has left the ring
+     */
+    long[] get(long index) {
+        long[] values = new long[counterCount];
+        if (index < 0) {
+            return values;
+        }
+        Bucket bucket = buckets[(int) (index % buckets.length)];
+        if (bucket.index == index) {
+            for (int i = 0; i < counterCount; i++) {
+                values[i] = bucket.counters[i].sum();
+            }
+        }
+        return values;
+    }
+
+    private static boolean advance(Bucket bucket, long current) {
+        synchronized (bucket) {
+            if (bucket.index < current) {
+                for (LongAdder counter : bucket.counters) {
+                    counter.reset();
+                }
+                bucket.index = current;
+            }
+            return bucket.index == current;
+        }
+    }
+}
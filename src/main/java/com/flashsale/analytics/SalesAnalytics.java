@@ -0,0 +1,224 @@
+package com.flashsale.analytics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.flashsale.dto.PurchaseOutcome;
+import com.flashsale.service.InventoryChangeListener;
+import com.flashsale.service.InventoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live per-product sell-through, kept in memory from the purchase path
+ *
+ * Every purchase attempt adds to its product's outcome counters (successes, sold-out, rate
+ * limited, ...) and units sold, in two rings: the last minute by second and the last hour by
+ * minute. Recording is a few LongAdder increments and never touches Redis or the database, so
+ * dashboards can poll as often as they like during a drop.
+ *
+ * A product is tracked from its first stock change or stock-checked attempt, so attempts on
+ * made-up product IDs cannot fill the table, and its remaining stock follows every stock change
+ * (purchases, cancellations, restocks). Counts are per instance; behind a load balancer, sum the
+ * instances. Products beyond max-products are not tracked (flashsale.analytics.untracked counts
+ * their attempts).
+ *
+ * Metrics: flashsale.analytics.products, flashsale.analytics.untracked
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesAnalytics implements InventoryChangeListener {
+
+    public enum Resolution { SECOND, MINUTE }
+
+    /**
+     * Window totals for one product, optionally with the per-bucket series
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ProductSales(Long productId, long windowSeconds, long attempts,
+                               Map<PurchaseOutcome, Long> outcomes, long unitsSold, double unitsPerSecond,
+                               Long remainingStock, long totalUnitsSold, List<Bucket> series) {
+    }
+
+    /**
+     * One second or minute of a product's series
+     */
+    public record Bucket(long startMillis, long attempts, Map<PurchaseOutcome, Long> outcomes, long unitsSold) {
+    }
+
+    private static final PurchaseOutcome[] OUTCOMES = PurchaseOutcome.values();
+    private static final int UNITS = OUTCOMES.length;
+    private static final int COUNTERS = OUTCOMES.length + 1;
+    private static final int SECONDS = 60;
+    private static final int MINUTES = 60;
+
+    private final InventoryService inventoryService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.analytics.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.analytics.max-products:10000}")
+    private int maxProducts = 10_000;
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<Long, ProductStats> products = new ConcurrentHashMap<>();
+    private Counter untrackedCounter;
+
+    /**
+     * Rings and lifetime totals for one product
+     */
+    private static final class ProductStats {
+        final RollingCounters bySecond = new RollingCounters(COUNTERS, 1000, SECONDS);
+        final RollingCounters byMinute = new RollingCounters(COUNTERS, 60_000, MINUTES);
+        final LongAdder totalUnits = new LongAdder();
+        volatile long remainingStock = -1;
+    }
+
+    @PostConstruct
+    void init() {
+        inventoryService.addListener(this);
+        Gauge.builder("flashsale.analytics.products", products, Map::size)
+                .description("Products with live sales analytics")
+                .register(meterRegistry);
+        untrackedCounter = Counter.builder("flashsale.analytics.untracked")
+                .description("Purchase attempts not counted because max-products was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count one purchase attempt
+     * Never blocks and never throws
+     *
+     * @param outcome Purchase outcome
+     * @param productId Product ID
+     * @param units Units sold (successful purchases only)
+     */
+    public void record(PurchaseOutcome outcome, Long productId, int units) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        // Only outcomes that reached a real product's stock may start tracking it
+        boolean stockChecked = outcome == PurchaseOutcome.SUCCESS || outcome == PurchaseOutcome.OUT_OF_STOCK;
+        ProductStats stats = stockChecked ? track(productId) : products.get(productId);
+        if (stats == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        stats.bySecond.add(outcome.ordinal(), 1, now);
+        stats.byMinute.add(outcome.ordinal(), 1, now);
+        if (outcome == PurchaseOutcome.SUCCESS) {
+            stats.bySecond.add(UNITS, units, now);
+            stats.byMinute.add(UNITS, units, now);
+            stats.totalUnits.add(units);
+        }
+    }
+
+    @Override
+    public void onInventoryChanged(Long productId, long stock) {
+        if (!enabled) {
+            return;
+        }
+        ProductStats stats = track(productId);
+        if (stats != null) {
+            stats.remainingStock = stock;
+        }
+    }
+
+    /**
+     * Totals for every tracked product, best sellers first
+     *
+     * @param window Trailing window; up to a minute is counted by second, longer by minute (max one hour)
+     */
+    public List<ProductSales> getAll(Duration window) {
+        long now = clock.getAsLong();
+        List<ProductSales> result = new ArrayList<>();
+        products.forEach((productId, stats) -> result.add(summarize(productId, stats, window, now, null)));
+        result.sort(Comparator.comparingLong(ProductSales::unitsSold).reversed()
+                .thenComparing(ProductSales::productId));
+        return result;
+    }
+
+    /**
+     * Totals and per-bucket series for one product
+     *
+     * @param resolution SECOND for the last minute, MINUTE for the last hour
+     */
+    public Optional<ProductSales> getProduct(Long productId, Resolution resolution) {
+        ProductStats stats = products.get(productId);
+        if (stats == null) {
+            return Optional.empty();
+        }
+        long now = clock.getAsLong();
+        RollingCounters counters = resolution == Resolution.SECOND ? stats.bySecond : stats.byMinute;
+        long current = now / counters.bucketMillis();
+        List<Bucket> series = new ArrayList<>(counters.bucketCount());
+        for (long index = current - counters.bucketCount() + 1; index <= current; index++) {
+            long[] values = counters.get(index);
+            series.add(new Bucket(index * counters.bucketMillis(), attempts(values), outcomes(values), values[UNITS]));
+        }
+        Duration window = Duration.ofMillis(counters.bucketMillis() * counters.bucketCount());
+        return Optional.of(summarize(productId, stats, window, now, series));
+    }
+
+    private ProductStats track(Long productId) {
+        ProductStats stats = products.get(productId);
+        if (stats == null) {
+            if (products.size() >= maxProducts) {
+                untrackedCounter.increment();
+                return null;
+            }
+            stats = products.computeIfAbsent(productId, id -> new ProductStats());
+        }
+        return stats;
+    }
+
+    private ProductSales summarize(Long productId, ProductStats stats, Duration window, long now, List<Bucket> series) {
+        long[] values;
+        long windowSeconds;
+        if (window.compareTo(Duration.ofSeconds(SECONDS)) <= 0) {
+            int buckets = (int) Math.max(1, window.toSeconds());
+            values = stats.bySecond.sum(buckets, now);
+            windowSeconds = buckets;
+        } else {
+            int buckets = (int) Math.min(MINUTES, (window.toSeconds() + 59) / 60);
+            values = stats.byMinute.sum(buckets, now);
+            windowSeconds = buckets * 60L;
+        }
+        long remaining = stats.remainingStock;
+        return new ProductSales(productId, windowSeconds, attempts(values), outcomes(values), values[UNITS],
+                (double) values[UNITS] / windowSeconds, remaining >= 0 ? remaining : null,
+                stats.totalUnits.sum(), series);
+    }
+
+    private static long attempts(long[] values) {
+        long attempts = 0;
+        for (int i = 0; i < OUTCOMES.length; i++) {
+            attempts += values[i];
+        }
+        return attempts;
+    }
+
+    private static Map<PurchaseOutcome, Long> outcomes(long[] values) {
+        Map<PurchaseOutcome, Long> outcomes = new EnumMap<>(PurchaseOutcome.class);
+        for (PurchaseOutcome outcome : OUTCOMES) {
+            outcomes.put(outcome, values[outcome.ordinal()]);
+        }
+        return outcomes;
+    }
+}
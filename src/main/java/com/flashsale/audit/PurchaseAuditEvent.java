@@ -0,0 +1,72 @@
+package com.flashsale.audit;
+
+import com.flashsale.dto.PurchaseOutcome;
+
+/**
+ * Fixed-schema purchase audit record
+ * Serialized as one JSON object per line so the audit file can be tailed, grepped and bulk-loaded
+ */
+final class PurchaseAuditEvent {
+
+    final long timestampMillis;
+    final PurchaseOutcome outcome;
+    final Long productId;
+    final String userId;
+    final String orderId;
+    final long remainingStock;
+    final long latencyMicros;
+
+    PurchaseAuditEvent(long timestampMillis, PurchaseOutcome outcome, Long productId, String userId,
+                       String orderId, long remainingStock, long latencyMicros) {
+        this.timestampMillis = timestampMillis;
+        this.outcome = outcome;
+        this.productId = productId;
+        this.userId = userId;
+        this.orderId = orderId;
+        this.remainingStock = remainingStock;
+        this.latencyMicros = latencyMicros;
+    }
+
+    /**
+     * Append this event as a single JSON line
+     * Field order is fixed: ts, outcome, productId, userId, orderId, remaining, latencyUs
+     */
+    void appendTo(StringBuilder sb) {
+        sb.append("{\"ts\":").append(timestampMillis)
+                .append(",\"outcome\":\"").append(outcome.name()).append('"')
+                .append(",\"productId\":").append(productId)
+                .append(",\"userId\":");
+        appendString(sb, userId);
+        sb.append(",\"orderId\":");
+        appendString(sb, orderId);
+        sb.append(",\"remaining\":").append(remainingStock)
+                .append(",\"latencyUs\":").append(latencyMicros)
+                .append("}\n");
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,203 @@
+package com.flashsale.audit;
+
+import com.flashsale.dto.PurchaseOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured purchase audit channel
+ *
+ * Request threads only enqueue a small event onto a lock-free queue; a single background
+ * thread serializes events and appends them to a rolling local file. When the queue is full
+ * events are dropped (never blocking a purchase) and counted in flashsale.audit.dropped.
+ *
+ * Successful purchases are always recorded; rejections (rate limited, out of stock, ...)
+ * are sampled with flashsale.audit.rejection-sample-rate.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseAuditLogger {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${flashsale.audit.file:logs/purchase-audit.log}")
+    private String auditFile;
+
+    @Value("${flashsale.audit.max-file-size-mb:100}")
+    private long maxFileSizeMb;
+
+    @Value("${flashsale.audit.max-history:10}")
+    private int maxHistory;
+
+    @Value("${flashsale.audit.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${flashsale.audit.rejection-sample-rate:0.01}")
+    private double rejectionSampleRate;
+
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ConcurrentLinkedQueue<PurchaseAuditEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private Counter droppedCounter;
+    private Counter writtenCounter;
+    private RollingAuditFile file;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        droppedCounter = Counter.builder("flashsale.audit.dropped")
+                .description("Purchase audit events dropped because the audit queue was full or unwritable")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("flashsale.audit.written")
+                .description("Purchase audit events written to the audit file")
+                .register(meterRegistry);
+        Gauge.builder("flashsale.audit.queue.depth", queued, AtomicInteger::get)
+                .description("Purchase audit events waiting to be written")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            log.info("Purchase audit logging disabled");
+            return;
+        }
+
+        try {
+            file = new RollingAuditFile(Path.of(auditFile), maxFileSizeMb * 1024 * 1024, maxHistory);
+        } catch (IOException e) {
+            log.error("Unable to open purchase audit file {}, audit logging disabled", auditFile, e);
+            enabled = false;
+            return;
+        }
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "purchase-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Purchase audit logging to {} (rejection sample rate: {})", auditFile, rejectionSampleRate);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Record the outcome of a purchase attempt
+     * Never blocks and never throws
+     *
+     * @param outcome Purchase outcome
+     * @param productId Product ID
+     * @param userId User ID
+     * @param orderId Order ID (successful purchases only)
+     * @param remainingStock Remaining stock after the attempt, or -1 if unknown
+     * @param startNanos System.nanoTime() taken when the request started
+     */
+    public void record(PurchaseOutcome outcome, Long productId, String userId, String orderId,
+                       long remainingStock, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        if (outcome != PurchaseOutcome.SUCCESS
+                && ThreadLocalRandom.current().nextDouble() >= rejectionSampleRate) {
+            return;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            droppedCounter.increment();
+            return;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        queue.offer(new PurchaseAuditEvent(System.currentTimeMillis(), outcome, productId, userId,
+                orderId, remainingStock, latencyMicros));
+    }
+
+    /**
+     * Drain the queue in batches; park briefly when idle instead of waking on every event
+     */
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(MAX_BATCH_CHARS + 512);
+        boolean dirty = false;
+        while (true) {
+            PurchaseAuditEvent event = queue.poll();
+            if (event != null) {
+                queued.decrementAndGet();
+                event.appendTo(batch);
+                int count = 1;
+                while (batch.length() < MAX_BATCH_CHARS && (event = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    event.appendTo(batch);
+                    count++;
+                }
+                dirty |= writeBatch(batch, count);
+                continue;
+            }
+
+            if (dirty) {
+                flush();
+                dirty = false;
+            }
+            if (!running) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warn("Failed to close purchase audit file: {}", e.getMessage());
+        }
+    }
+
+    private boolean writeBatch(StringBuilder batch, int count) {
+        try {
+            file.write(batch);
+            writtenCounter.increment(count);
+            return true;
+        } catch (IOException e) {
+            droppedCounter.increment(count);
+            log.warn("Failed to write {} purchase audit events: {}", count, e.getMessage());
+            return false;
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    private void flush() {
+        try {
+            file.flush();
+        } catch (IOException e) {
+            log.warn("Failed to flush purchase audit file: {}", e.getMessage());
+        }
+    }
+}
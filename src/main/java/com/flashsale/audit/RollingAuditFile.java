@@ -0,0 +1,81 @@
+package com.flashsale.audit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Size-based rolling file used by the audit writer thread
+ * Not thread-safe: only the single writer thread touches it
+ *
+ * purchase-audit.log is the active file, purchase-audit.log.1 the most recent rolled file,
+ * up to purchase-audit.log.{maxHistory}
+ */
+class RollingAuditFile implements AutoCloseable {
+
+    private final Path file;
+    private final long maxFileSizeBytes;
+    private final int maxHistory;
+
+    private OutputStream out;
+    private long currentSize;
+
+    RollingAuditFile(Path file, long maxFileSizeBytes, int maxHistory) throws IOException {
+        this.file = file;
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        this.maxHistory = maxHistory;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    void write(CharSequence chunk) throws IOException {
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        if (currentSize > 0 && currentSize + bytes.length > maxFileSizeBytes) {
+            roll();
+        }
+        out.write(bytes);
+        currentSize += bytes.length;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        currentSize = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Files.deleteIfExists(rolled(maxHistory));
+        for (int i = maxHistory - 1; i >= 1; i--) {
+            Path source = rolled(i);
+            if (Files.exists(source)) {
+                Files.move(source, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxHistory > 0) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,461 @@
+package com.flashsale.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-rolled JSON for POST /api/buy/{productId}
+ *
+ * Requests: the body is read into a per-thread buffer and parsed in place when it has the usual
+ * shape, an object with userId (a plain ASCII string or null) and quantity (an int or null) in any
+ * order. Anything else (escapes, non-ASCII, unknown fields, numbers Jackson would coerce) goes to
+ * the ObjectMapper, so accepted input and its meaning are exactly what databinding gives. The
+ * PurchaseRequest constraints are checked inline, with the messages and error body Bean
+ * Validation would produce.
+ *
+ * Responses: the fixed outcomes (success, out of stock, rate limited, blocked, product not found)
+ * are pre-encoded up to the orderId field by the ObjectMapper itself; only orderId, productId,
+ * userId and quotaLevel are spliced in. Other messages get the same layout written field by field.
+ * Responses with a raffle close time or non-ASCII text are left to the ObjectMapper. The output is
+ * byte-for-byte what Jackson writes (see PurchaseCodecTest).
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseCodec {
+
+    /**
+     * The body could not be read as a purchase request
+     */
+    public static class MalformedRequestException extends RuntimeException {
+        public MalformedRequestException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private record Template(boolean success, byte[] prefix) {
+    }
+
+    private static final int INPUT_BUFFER = 1024;
+    private static final ThreadLocal<byte[]> INPUT = ThreadLocal.withInitial(() -> new byte[INPUT_BUFFER]);
+    private static final ThreadLocal<ByteSink> OUTPUT = ThreadLocal.withInitial(ByteSink::new);
+
+    private static final byte[] USER_ID = ascii("userId");
+    private static final byte[] QUANTITY = ascii("quantity");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] SUCCESS_TRUE = ascii("{\"success\":true,\"message\":");
+    private static final byte[] SUCCESS_FALSE = ascii("{\"success\":false,\"message\":");
+    private static final byte[] ORDER_ID = ascii(",\"orderId\":");
+    private static final byte[] PRODUCT_ID = ascii(",\"productId\":");
+    private static final byte[] USER_ID_FIELD = ascii(",\"userId\":");
+    private static final byte[] QUOTA_LEVEL = ascii(",\"quotaLevel\":");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private final ObjectMapper objectMapper;
+
+    private Map<String, Template> templates;
+    private byte[] userIdError;
+    private byte[] quantityError;
+    private byte[] bothErrors;
+
+    @PostConstruct
+    void init() {
+        String userIdRequired;
+        String quantityTooLow;
+        try {
+            userIdRequired = PurchaseRequest.class.getDeclaredField("userId").getAnnotation(NotBlank.class).message();
+            quantityTooLow = PurchaseRequest.class.getDeclaredField("quantity").getAnnotation(Min.class).message();
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("PurchaseRequest fields changed; update PurchaseCodec", e);
+        }
+        userIdError = validationBody("userId", userIdRequired);
+        quantityError = validationBody("quantity", quantityTooLow);
+        bothErrors = validationBody("userId", userIdRequired, "quantity", quantityTooLow);
+
+        Map<String, Template> fixed = new HashMap<>();
+        for (PurchaseResponse response : List.of(
+                PurchaseResponse.success(null, null, null),
+                PurchaseResponse.outOfStock(null),
+                PurchaseResponse.rateLimited(null),
+                PurchaseResponse.rateLimited(null, "user"),
+                PurchaseResponse.rateLimited(null, "product"),
+                PurchaseResponse.rateLimited(null, "global"),
+                PurchaseResponse.blocked(null),
+                PurchaseResponse.error("Product not found"))) {
+            byte[] json = jackson(response);
+            int orderId = indexOf(json, ORDER_ID);
+            if (orderId < 0) {
+                throw new IllegalStateException("Unexpected PurchaseResponse layout: " + new String(json, StandardCharsets.UTF_8));
+            }
+            fixed.put(response.getMessage(),
+                    new Template(response.isSuccess(), Arrays.copyOf(json, orderId + ORDER_ID.length)));
+        }
+        templates = Map.copyOf(fixed);
+    }
+
+    /**
+     * Read and parse a request body
+     *
+     * @throws MalformedRequestException if it is not a purchase request
+     */
+    public PurchaseRequest decode(InputStream body) throws IOException {
+        byte[] buffer = INPUT.get();
+        int length = 0;
+        int read;
+        while ((read = body.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+            if (length == buffer.length) {
+                // Far larger than a purchase; leave the thread's buffer alone
+                byte[] rest = body.readAllBytes();
+                byte[] whole = Arrays.copyOf(buffer, length + rest.length);
+                System.arraycopy(rest, 0, whole, length, rest.length);
+                return decode(whole, 0, whole.length);
+            }
+        }
+        return decode(buffer, 0, length);
+    }
+
+    /**
+     * @throws MalformedRequestException if the bytes are not a purchase request
+     */
+    public PurchaseRequest decode(byte[] body, int offset, int length) {
+        PurchaseRequest request = parseFixedShape(body, offset, offset + length);
+        if (request != null) {
+            return request;
+        }
+        try {
+            request = objectMapper.readValue(body, offset, length, PurchaseRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new MalformedRequestException("Malformed purchase request: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (request == null) {
+            throw new MalformedRequestException("Malformed purchase request: body is null", null);
+        }
+        return request;
+    }
+
+    /**
+     * The @NotBlank userId and @Min(1) quantity constraints of PurchaseRequest
+     *
+     * @return null if the request is valid, otherwise the 400 body ({"field": "message"})
+     */
+    public byte[] validate(PurchaseRequest request) {
+        // Same test as Hibernate Validator's NotBlankValidator
+        boolean userIdMissing = request.getUserId() == null || request.getUserId().trim().isEmpty();
+        boolean quantityTooLow = request.getQuantity() != null && request.getQuantity() < 1;
+        if (userIdMissing) {
+            return quantityTooLow ? bothErrors : userIdError;
+        }
+        return quantityTooLow ? quantityError : null;
+    }
+
+    /**
+     * Serialize a purchase response as the ObjectMapper would
+     */
+    public byte[] encode(PurchaseResponse response) {
+        if (response.getRaffleClosesAt() != null) {
+            return jackson(response);
+        }
+        ByteSink out = OUTPUT.get().reset();
+        Template template = response.getMessage() != null ? templates.get(response.getMessage()) : null;
+        if (template != null && template.success() == response.isSuccess()) {
+            out.write(template.prefix());
+        } else {
+            out.write(response.isSuccess() ? SUCCESS_TRUE : SUCCESS_FALSE);
+            if (!out.writeString(response.getMessage())) {
+                return jackson(response);
+            }
+            out.write(ORDER_ID);
+        }
+        if (!out.writeString(response.getOrderId())) {
+            return jackson(response);
+        }
+        out.write(PRODUCT_ID);
+        if (response.getProductId() != null) {
+            out.writeLong(response.getProductId());
+        } else {
+            out.write(NULL);
+        }
+        out.write(USER_ID_FIELD);
+        if (!out.writeString(response.getUserId())) {
+            return jackson(response);
+        }
+        if (response.getQuotaLevel() != null) {
+            out.write(QUOTA_LEVEL);
+            if (!out.writeString(response.getQuotaLevel())) {
+                return jackson(response);
+            }
+        }
+        out.write((byte) '}');
+        return out.toByteArray();
+    }
+
+    /**
+     * {"userId": "...", "quantity": n} with plain ASCII strings, or null if the body needs the
+     * ObjectMapper (or is not JSON at all, which the ObjectMapper then reports)
+     */
+    private static PurchaseRequest parseFixedShape(byte[] body, int from, int to) {
+        String userId = null;
+        Integer quantity = 1;
+        int i = skipWhitespace(body, from, to);
+        if (i >= to || body[i] != '{') {
+            return null;
+        }
+        i = skipWhitespace(body, i + 1, to);
+        if (i < to && body[i] == '}') {
+            i++;
+        } else {
+            while (true) {
+                if (i >= to || body[i] != '"') {
+                    return null;
+                }
+                int keyStart = i + 1;
+                int keyEnd = endOfPlainString(body, keyStart, to);
+                if (keyEnd < 0) {
+                    return null;
+                }
+                i = skipWhitespace(body, keyEnd + 1, to);
+                if (i >= to || body[i] != ':') {
+                    return null;
+                }
+                i = skipWhitespace(body, i + 1, to);
+                boolean isNull = startsWith(body, i, to, NULL);
+                if (equals(body, keyStart, keyEnd, USER_ID)) {
+                    if (isNull) {
+                        userId = null;
+                        i += NULL.length;
+                    } else {
+                        if (i >= to || body[i] != '"') {
+                            return null;
+                        }
+                        int end = endOfPlainString(body, i + 1, to);
+                        if (end < 0) {
+                            return null;
+                        }
+                        // ASCII only, so Latin-1 is an exact and copy-only decode
+                        userId = new String(body, i + 1, end - i - 1, StandardCharsets.ISO_8859_1);
+                        i = end + 1;
+                    }
+                } else if (equals(body, keyStart, keyEnd, QUANTITY)) {
+                    if (isNull) {
+                        quantity = null;
+                        i += NULL.length;
+                    } else {
+                        boolean negative = i < to && body[i] == '-';
+                        if (negative) {
+                            i++;
+                        }
+                        int digits = i;
+                        int value = 0;
+                        while (i < to && body[i] >= '0' && body[i] <= '9' && i - digits < 9) {
+                            value = value * 10 + (body[i++] - '0');
+                        }
+                        // No digits, leading zeros, 10+ digits, fractions and exponents: let Jackson decide
+                        if (i == digits || (body[digits] == '0' && i - digits > 1)
+                                || (i < to && (body[i] == '.' || body[i] == 'e' || body[i] == 'E'
+                                || (body[i] >= '0' && body[i] <= '9')))) {
+                            return null;
+                        }
+                        quantity = negative ? -value : value;
+                    }
+                } else {
+                    return null;
+                }
+                i = skipWhitespace(body, i, to);
+                if (i < to && body[i] == ',') {
+                    i = skipWhitespace(body, i + 1, to);
+                } else if (i < to && body[i] == '}') {
+                    i++;
+                    break;
+                } else {
+                    return null;
+                }
+            }
+        }
+        if (skipWhitespace(body, i, to) != to) {
+            return null;
+        }
+        return new PurchaseRequest(userId, quantity);
+    }
+
+    /**
+     * @return Index of the closing quote, or -1 for escapes, control characters and non-ASCII bytes
+     */
+    private static int endOfPlainString(byte[] body, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = body[i];
+            if (b == '"') {
+                return i;
+            }
+            if (b == '\\' || b < 0x20) {
+                // Negative bytes are non-ASCII
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] body, int from, int to) {
+        int i = from;
+        while (i < to && (body[i] == ' ' || body[i] == '\n' || body[i] == '\r' || body[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean equals(byte[] body, int from, int to, byte[] expected) {
+        return Arrays.equals(body, from, to, expected, 0, expected.length);
+    }
+
+    private static boolean startsWith(byte[] body, int from, int to, byte[] expected) {
+        return to - from >= expected.length && Arrays.equals(body, from, from + expected.length, expected, 0, expected.length);
+    }
+
+    private static int indexOf(byte[] json, byte[] part) {
+        for (int i = 0; i + part.length <= json.length; i++) {
+            if (Arrays.equals(json, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Field and message pairs, in PurchaseRequest field order
+     */
+    private byte[] validationBody(String... errors) {
+        // A HashMap, as the MethodArgumentNotValidException handler builds it
+        Map<String, String> body = new HashMap<>();
+        for (int i = 0; i < errors.length; i += 2) {
+            body.put(errors[i], errors[i + 1]);
+        }
+        return jackson(body);
+    }
+
+    private byte[] jackson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable per-thread output buffer; only the final body is allocated per response
+     */
+    private static final class ByteSink {
+        private byte[] buffer = new byte[512];
+        private int size;
+
+        ByteSink reset() {
+            size = 0;
+            return this;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void write(byte b) {
+            ensure(1);
+            buffer[size++] = b;
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                write(ascii(Long.toString(value)));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                buffer[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                buffer[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte swap = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = swap;
+            }
+        }
+
+        /**
+         * A JSON string with Jackson's escapes, or null
+         *
+         * @return false for non-ASCII text, which is left to the ObjectMapper
+         */
+        boolean writeString(String value) {
+            if (value == null) {
+                write(NULL);
+                return true;
+            }
+            ensure(value.length() * 6 + 2);
+            buffer[size++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    return false;
+                }
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[size++] = (byte) c;
+                    continue;
+                }
+                buffer[size++] = '\\';
+                switch (c) {
+                    case '"', '\\' -> buffer[size++] = (byte) c;
+                    case '\b' -> buffer[size++] = 'b';
+                    case '\t' -> buffer[size++] = 't';
+                    case '\n' -> buffer[size++] = 'n';
+                    case '\f' -> buffer[size++] = 'f';
+                    case '\r' -> buffer[size++] = 'r';
+                    default -> {
+                        buffer[size++] = 'u';
+                        buffer[size++] = '0';
+                        buffer[size++] = '0';
+                        buffer[size++] = HEX[c >> 4];
+                        buffer[size++] = HEX[c & 0xF];
+                    }
+                }
+            }
+            buffer[size++] = '"';
+            return true;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
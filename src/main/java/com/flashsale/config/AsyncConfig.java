@@ -1,16 +1,24 @@
 package com.flashsale.config;
 
+import com.flashsale.diagnostics.StageEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
+    /**
+     * Order persistence runs after stock is taken, so a task must never be rejected: when the
+     * queue is full the submitting request thread saves the order itself (backpressure the
+     * concurrency limiter sees as latency). Shutdown drains queued orders. Time spent queued is
+     * recorded as the "order.executor-wait" JFR stage.
+     */
     @Bean(name = "orderProcessingExecutor")
     public Executor orderProcessingExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -18,6 +26,17 @@ public class AsyncConfig {
         executor.setMaxPoolSize(20);
         executor.setQueueCapacity(500);
         executor.setThreadNamePrefix("order-async-");
+        executor.setTaskDecorator(task -> {
+            StageEvent queued = new StageEvent();
+            queued.begin();
+            return () -> {
+                queued.commit("order.executor-wait", null, null);
+                task.run();
+            };
+        });
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
         executor.initialize();
         return executor;
     }
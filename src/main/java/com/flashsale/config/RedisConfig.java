@@ -33,6 +33,13 @@ public class RedisConfig {
     @Value("${spring.data.redis.ssl.enabled:true}")
     private boolean sslEnabled;
 
+    /**
+     * Upper bound on a single Redis command; RedisCircuitBreaker trips well before this
+     * on sustained slowness, so it only caps the calls made while the breaker is still closed
+     */
+    @Value("${spring.data.redis.timeout:1s}")
+    private Duration commandTimeout;
+
     @Bean
     public LettuceConnectionFactory redisConnectionFactory() {
         log.info("Configuring Redis connection to {}:{} (SSL: {})", redisHost, redisPort, sslEnabled);
@@ -55,7 +62,7 @@ public class RedisConfig {
 
         LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfig =
                 LettuceClientConfiguration.builder()
-                        .commandTimeout(Duration.ofSeconds(5))
+                        .commandTimeout(commandTimeout)
                         .clientOptions(clientOptions);
 
         if (sslEnabled) {
@@ -0,0 +1,30 @@
+package com.flashsale.controller;
+
+import com.flashsale.abuse.AbuseDetector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abuse Detection Controller (admin endpoints)
+ */
+@RestController
+@RequestMapping("/api/admin/abuse")
+@RequiredArgsConstructor
+public class AbuseController {
+
+    private final AbuseDetector abuseDetector;
+
+    /**
+     * Heaviest users, IPs and subnets in the current detection window
+     * Counts are sketch estimates: never low, possibly slightly high
+     */
+    @GetMapping("/top")
+    public ResponseEntity<Map<AbuseDetector.Dimension, List<AbuseDetector.Offender>>> getTopOffenders(
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(abuseDetector.getTopOffenders(Math.max(1, Math.min(limit, 1000))));
+    }
+}
@@ -0,0 +1,42 @@
+package com.flashsale.controller;
+
+import com.flashsale.analytics.SalesAnalytics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Live Sales Analytics Controller
+ * Served from in-memory counters; safe to poll during a sale
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final SalesAnalytics salesAnalytics;
+
+    /**
+     * Attempts by outcome and units sold per product over the trailing window (up to one hour)
+     */
+    @GetMapping("/products")
+    public ResponseEntity<List<SalesAnalytics.ProductSales>> getSales(
+            @RequestParam(defaultValue = "60") int windowSeconds) {
+        return ResponseEntity.ok(salesAnalytics.getAll(Duration.ofSeconds(Math.max(1, Math.min(windowSeconds, 3600)))));
+    }
+
+    /**
+     * One product with a per-second (last minute) or per-minute (last hour) series
+     */
+    @GetMapping("/products/{productId}")
+    public ResponseEntity<SalesAnalytics.ProductSales> getProductSales(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "SECOND") SalesAnalytics.Resolution resolution) {
+        return salesAnalytics.getProduct(productId, resolution)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
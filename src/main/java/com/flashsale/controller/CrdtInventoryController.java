@@ -0,0 +1,41 @@
+package com.flashsale.controller;
+
+import com.flashsale.service.inventory.CrdtInventoryBackend;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Peer-to-peer endpoints of the crdt inventory backend
+ * Internal: only peers listed in flashsale.inventory.crdt.peers call these; keep them off the public ingress
+ */
+@RestController
+@RequestMapping("/internal/inventory/crdt")
+@RequiredArgsConstructor
+public class CrdtInventoryController {
+
+    private final CrdtInventoryBackend crdtInventoryBackend;
+
+    /**
+     * Merge the caller's counters and reply with ours
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<CrdtInventoryBackend.SyncMessage> sync(@RequestBody CrdtInventoryBackend.SyncMessage message) {
+        if (!crdtInventoryBackend.isActive()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(crdtInventoryBackend.onSync(message));
+    }
+
+    /**
+     * Hand the caller part of this instance's selling rights for a product
+     */
+    @PostMapping("/transfer")
+    public ResponseEntity<CrdtInventoryBackend.TransferResponse> transfer(
+            @RequestBody CrdtInventoryBackend.TransferRequest request) {
+        if (!crdtInventoryBackend.isActive()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(crdtInventoryBackend.onTransfer(request));
+    }
+}
@@ -1,15 +1,24 @@
 package com.flashsale.controller;
 
+import com.flashsale.codec.PurchaseCodec;
+import com.flashsale.dto.BatchPurchaseRequest;
 import com.flashsale.dto.PurchaseRequest;
 import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.exception.GlobalExceptionHandler.ErrorResponse;
 import com.flashsale.service.FlashSaleService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Flash Sale Controller
  * Main endpoint for purchasing products
@@ -21,25 +30,46 @@ import org.springframework.web.bind.annotation.*;
 public class FlashSaleController {
 
     private final FlashSaleService flashSaleService;
+    private final PurchaseCodec purchaseCodec;
 
     /**
      * Purchase a product
      * 
-     * This is THE CRITICAL ENDPOINT that handles high-concurrency purchases
+     * This is THE CRITICAL ENDPOINT that handles high-concurrency purchases. The body is parsed,
+     * validated and the response written by {@link PurchaseCodec} instead of Jackson databinding
+     * and Bean Validation; requests and responses are the same JSON either way.
      * 
      * @param productId Product ID to purchase
-     * @param request Purchase request containing user ID
+     * @param servletRequest Body with the user ID and quantity, and the client address used for abuse detection
      * @return Purchase response with order details or error
      */
-    @PostMapping("/buy/{productId}")
-    public ResponseEntity<PurchaseResponse> purchase(
+    @PostMapping(value = "/buy/{productId}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> purchase(
             @PathVariable Long productId,
-            @Valid @RequestBody PurchaseRequest request) {
-        
-        PurchaseResponse response = flashSaleService.purchase(productId, request);
+            HttpServletRequest servletRequest) throws IOException {
+
+        PurchaseRequest request = purchaseCodec.decode(servletRequest.getInputStream());
+        byte[] invalid = purchaseCodec.validate(request);
+        if (invalid != null) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(invalid);
+        }
+
+        PurchaseResponse response = flashSaleService.purchase(productId, request, servletRequest.getRemoteAddr());
         
         HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
-        return ResponseEntity.status(status).body(response);
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(purchaseCodec.encode(response));
+    }
+
+    /**
+     * Purchase many products for many users in one call (gateway aggregation)
+     * Always 200 once accepted; success or failure is reported per item, in request order
+     *
+     * @param request Up to 1000 items, each with product ID, user ID, quantity and optional client IP
+     * @return One purchase response per item
+     */
+    @PostMapping("/buy/batch")
+    public ResponseEntity<List<PurchaseResponse>> purchaseBatch(@Valid @RequestBody BatchPurchaseRequest request) {
+        return ResponseEntity.ok(flashSaleService.purchaseBatch(request.getItems()));
     }
 
     /**
@@ -49,4 +79,10 @@ public class FlashSaleController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Flash Sale Engine is running!");
     }
+
+    @ExceptionHandler(PurchaseCodec.MalformedRequestException.class)
+    public ResponseEntity<ErrorResponse> handleMalformedPurchase(PurchaseCodec.MalformedRequestException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage(), LocalDateTime.now()));
+    }
 }
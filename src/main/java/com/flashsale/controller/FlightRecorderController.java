@@ -0,0 +1,70 @@
+package com.flashsale.controller;
+
+import com.flashsale.diagnostics.FlightRecorderService;
+import com.flashsale.exception.GlobalExceptionHandler.ErrorResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Flight Recorder Controller (admin endpoints)
+ * Bounded JFR recordings of the purchase pipeline, summarized by slowest stage
+ */
+@RestController
+@RequestMapping("/api/admin/jfr")
+@RequiredArgsConstructor
+public class FlightRecorderController {
+
+    private final FlightRecorderService flightRecorderService;
+
+    /**
+     * Start a recording that stops by itself after durationSeconds (capped by flashsale.jfr.max-duration)
+     * jdk=true adds the JDK profile events (allocation, locks, GC, method sampling) for Mission Control
+     */
+    @PostMapping("/start")
+    public ResponseEntity<FlightRecorderService.RecordingSummary> start(
+            @RequestParam(defaultValue = "60") int durationSeconds,
+            @RequestParam(defaultValue = "false") boolean jdk) {
+        return ResponseEntity.ok(flightRecorderService.start(Duration.ofSeconds(Math.max(1, durationSeconds)), jdk));
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<FlightRecorderService.RecordingSummary> stop(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(flightRecorderService.stop(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    /**
+     * Slowest stages so far, by total time; works while the recording runs
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<FlightRecorderService.RecordingSummary> summary(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(flightRecorderService.summary(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    /**
+     * Download the last finished recording (.jfr) for JDK Mission Control or the jfr tool
+     */
+    @GetMapping("/recording")
+    public ResponseEntity<Resource> download() {
+        return flightRecorderService.lastRecordingFile()
+                .map(file -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                        .<Resource>body(new FileSystemResource(file)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(IllegalStateException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(HttpStatus.CONFLICT.value(), ex.getMessage(), LocalDateTime.now()));
+    }
+}
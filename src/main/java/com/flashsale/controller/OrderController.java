@@ -1,12 +1,16 @@
 package com.flashsale.controller;
 
+import com.flashsale.dto.CancelOrdersRequest;
 import com.flashsale.entity.Order;
+import com.flashsale.service.OrderCancellationService;
 import com.flashsale.service.OrderService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Order Management Controller
@@ -17,6 +21,7 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderCancellationService orderCancellationService;
 
     /**
      * Get orders for a specific user
@@ -44,4 +49,21 @@ public class OrderController {
         Order order = orderService.getOrder(orderId);
         return ResponseEntity.ok(order);
     }
+
+    /**
+     * Cancel an order and return its units to stock
+     */
+    @PostMapping("/{orderId}/cancel")
+    public ResponseEntity<Map<String, OrderCancellationService.Result>> cancelOrder(@PathVariable String orderId) {
+        return ResponseEntity.ok(orderCancellationService.cancel(List.of(orderId)));
+    }
+
+    /**
+     * Cancel many orders at once (admin endpoint)
+     */
+    @PostMapping("/cancel")
+    public ResponseEntity<Map<String, OrderCancellationService.Result>> cancelOrders(
+            @Valid @RequestBody CancelOrdersRequest request) {
+        return ResponseEntity.ok(orderCancellationService.cancel(request.getOrderIds()));
+    }
 }
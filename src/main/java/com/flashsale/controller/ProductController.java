@@ -2,13 +2,19 @@ package com.flashsale.controller;
 
 import com.flashsale.dto.CreateProductRequest;
 import com.flashsale.entity.Product;
+import com.flashsale.service.CatalogResponseCache;
 import com.flashsale.service.InventoryService;
 import com.flashsale.service.ProductService;
+import com.flashsale.service.StockBroadcaster;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +30,8 @@ public class ProductController {
 
     private final ProductService productService;
     private final InventoryService inventoryService;
+    private final StockBroadcaster stockBroadcaster;
+    private final CatalogResponseCache catalogCache;
 
     /**
      * Create a new product
@@ -36,27 +44,23 @@ public class ProductController {
 
     /**
      * Get a product by ID
+     * Served pre-serialized from the catalog cache; stock in the body is at most
+     * flashsale.catalog.max-stock-staleness old
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getProduct(@PathVariable Long id) {
-        Product product = productService.getProduct(id);
-        Long redisStock = inventoryService.getInventory(id);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("product", product);
-        response.put("redisStock", redisStock);
-        response.put("dbStock", product.getStockCount());
-        
-        return ResponseEntity.ok(response);
+    public ResponseEntity<byte[]> getProduct(@PathVariable Long id,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return catalogResponse(catalogCache.getProduct(id), ifNoneMatch, acceptEncoding);
     }
 
     /**
      * Get all products
      */
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<byte[]> getAllProducts(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return catalogResponse(catalogCache.getProductList(), ifNoneMatch, acceptEncoding);
     }
 
     /**
@@ -90,4 +94,81 @@ public class ProductController {
         
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Live stock updates for several products over one Server-Sent Events stream
+     * Pages listing many products use this so they hold one connection, not one per product
+     */
+    @GetMapping(value = "/stock-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInventories(@RequestParam List<Long> ids) {
+        return stockBroadcaster.subscribe(ids);
+    }
+
+    /**
+     * Live stock updates as Server-Sent Events ("stock" / "sold-out")
+     * Use this instead of polling /inventory
+     */
+    @GetMapping(value = "/{id}/stock-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInventory(@PathVariable Long id) {
+        return stockBroadcaster.subscribe(id);
+    }
+
+    /**
+     * 304 when the client already holds this version, otherwise the cached bytes
+     * (gzip'd when the client accepts it and a compressed copy exists)
+     */
+    private ResponseEntity<byte[]> catalogResponse(CatalogResponseCache.CachedResponse cached,
+                                                   String ifNoneMatch, String acceptEncoding) {
+        boolean notModified = cached.matches(ifNoneMatch);
+        ResponseEntity.BodyBuilder builder = ResponseEntity
+                .status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (notModified) {
+            return builder.build();
+        }
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (cached.gzip() != null && acceptsGzip(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cached.gzip());
+        }
+        return builder.body(cached.json());
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip: listed, or covered by "*", with a non-zero quality
+     * ("gzip;q=0" refuses it)
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = quality(parts) > 0;
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
 }
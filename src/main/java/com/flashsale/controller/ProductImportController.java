@@ -0,0 +1,61 @@
+package com.flashsale.controller;
+
+import com.flashsale.exception.GlobalExceptionHandler.ErrorResponse;
+import com.flashsale.importer.ProductImportService;
+import com.flashsale.importer.ProductImportService.Format;
+import com.flashsale.importer.ProductImportService.ImportView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bulk Product Import Controller
+ * Streams a CSV (text/csv) or NDJSON (application/x-ndjson) upload straight into the catalog;
+ * the request returns once every row is processed, and GET /api/products/imports shows progress
+ * meanwhile
+ */
+@RestController
+@RequestMapping("/api/products/imports")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ProductImportService importService;
+
+    /**
+     * Import products from the request body
+     */
+    @PostMapping(consumes = {"text/csv", NDJSON})
+    public ResponseEntity<ImportView> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                     InputStream body) {
+        Format format = contentType.isCompatibleWith(MediaType.valueOf(NDJSON)) ? Format.NDJSON : Format.CSV;
+        return ResponseEntity.ok(importService.importProducts(format, body));
+    }
+
+    /**
+     * Running and recent imports, newest first
+     */
+    @GetMapping
+    public ResponseEntity<List<ImportView>> getImports() {
+        return ResponseEntity.ok(importService.getImports());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportView> getImport(@PathVariable String id) {
+        return ResponseEntity.of(importService.getImport(id));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleBadUpload(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage(), LocalDateTime.now()));
+    }
+}
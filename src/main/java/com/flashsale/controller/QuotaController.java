@@ -0,0 +1,57 @@
+package com.flashsale.controller;
+
+import com.flashsale.dto.ProductQuotaRequest;
+import com.flashsale.service.RateLimitService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quota Management Controller (admin endpoints)
+ * Per-product limits take effect on the next request on every instance
+ */
+@RestController
+@RequestMapping("/api/admin/quotas")
+@RequiredArgsConstructor
+public class QuotaController {
+
+    private final RateLimitService rateLimitService;
+
+    /**
+     * Get the effective per-product limit
+     */
+    @GetMapping("/products/{productId}")
+    public ResponseEntity<Map<String, Object>> getProductQuota(@PathVariable Long productId) {
+        return ResponseEntity.ok(productQuota(productId));
+    }
+
+    /**
+     * Override the per-product limit; 0 disables the product level for this product
+     */
+    @PutMapping("/products/{productId}")
+    public ResponseEntity<Map<String, Object>> setProductQuota(@PathVariable Long productId,
+                                                               @Valid @RequestBody ProductQuotaRequest request) {
+        rateLimitService.setProductLimit(productId, request.getMaxRequests());
+        return ResponseEntity.ok(productQuota(productId));
+    }
+
+    /**
+     * Remove the override and fall back to the configured default
+     */
+    @DeleteMapping("/products/{productId}")
+    public ResponseEntity<Map<String, Object>> clearProductQuota(@PathVariable Long productId) {
+        rateLimitService.clearProductLimit(productId);
+        return ResponseEntity.ok(productQuota(productId));
+    }
+
+    private Map<String, Object> productQuota(Long productId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("maxRequests", rateLimitService.getProductLimit(productId));
+        return response;
+    }
+}
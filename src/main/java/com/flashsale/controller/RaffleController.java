@@ -0,0 +1,69 @@
+package com.flashsale.controller;
+
+import com.flashsale.dto.OpenRaffleRequest;
+import com.flashsale.exception.GlobalExceptionHandler.ErrorResponse;
+import com.flashsale.raffle.RaffleDraw;
+import com.flashsale.raffle.RaffleService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Raffle Controller
+ * Entries are made through POST /api/buy/{productId}; these endpoints open, draw and report
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class RaffleController {
+
+    private final RaffleService raffleService;
+    private final RaffleDraw raffleDraw;
+
+    /**
+     * Put a product up for raffle, entries open now (admin endpoint)
+     */
+    @PostMapping("/admin/raffles/{productId}")
+    public ResponseEntity<RaffleService.RaffleView> openRaffle(@PathVariable Long productId,
+                                                               @Valid @RequestBody OpenRaffleRequest request) {
+        return ResponseEntity.ok(raffleService.open(productId, Duration.ofSeconds(request.getEntryWindowSeconds())));
+    }
+
+    /**
+     * Close entries now and draw (admin endpoint)
+     */
+    @PostMapping("/admin/raffles/{productId}/draw")
+    public ResponseEntity<RaffleService.RaffleView> draw(@PathVariable Long productId) {
+        if (raffleDraw.draw(productId, true).isEmpty()) {
+            throw new IllegalStateException("Raffle for product " + productId + " is not open");
+        }
+        return ResponseEntity.of(raffleService.getRaffle(productId));
+    }
+
+    /**
+     * Raffle status and seed hash; the seed is revealed once drawn
+     */
+    @GetMapping("/raffles/{productId}")
+    public ResponseEntity<RaffleService.RaffleView> getRaffle(@PathVariable Long productId) {
+        return ResponseEntity.of(raffleService.getRaffle(productId));
+    }
+
+    /**
+     * One entrant's result: PENDING until the draw, then WON with an order ID, or LOST
+     */
+    @GetMapping("/raffles/{productId}/entries/{userId}")
+    public ResponseEntity<RaffleService.EntryView> getEntry(@PathVariable Long productId, @PathVariable String userId) {
+        return ResponseEntity.of(raffleService.getEntry(productId, userId));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(IllegalStateException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(HttpStatus.CONFLICT.value(), ex.getMessage(), LocalDateTime.now()));
+    }
+}
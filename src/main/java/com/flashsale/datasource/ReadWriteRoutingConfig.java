@@ -0,0 +1,105 @@
+package com.flashsale.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Separate connection pools for writes and reads (flashsale.datasource.read.enabled)
+ *
+ * The primary pool keeps spring.datasource.* and spring.datasource.hikari.*; the read pool is
+ * flashsale.datasource.read.url with its own flashsale.datasource.read.hikari.* sizing. Heavy
+ * order history and admin reads then queue for read connections only, and can never take a
+ * connection a stock decrement or order insert is waiting for.
+ *
+ * The beans are always registered and the property is checked when they are created, not with a
+ * bean condition: the fast-start image fixes bean conditions at AOT build time, and must still be
+ * able to turn the read pool on at deploy time. While disabled, "readDataSource" and "dataSource"
+ * are the primary pool itself (no router, no second pool) and the lag monitor is idle.
+ *
+ * Pools: "primary" and "read" in the hikaricp.* metrics.
+ */
+@Configuration
+@Slf4j
+public class ReadWriteRoutingConfig {
+
+    @Value("${flashsale.datasource.read.enabled:false}")
+    private boolean readEnabled;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public DataSource readDataSource(@Qualifier("primaryDataSource") DataSource primary, Environment environment,
+                                     @Value("${flashsale.datasource.read.url:}") String url,
+                                     @Value("${flashsale.datasource.read.username:${spring.datasource.username:}}") String username,
+                                     @Value("${flashsale.datasource.read.password:${spring.datasource.password:}}") String password) {
+        if (!readEnabled) {
+            return primary;
+        }
+        if (url.isBlank()) {
+            throw new IllegalStateException("flashsale.datasource.read.enabled is set but flashsale.datasource.read.url is empty");
+        }
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        // Bound here rather than with @ConfigurationProperties, which would also bind onto the primary when disabled
+        Binder.get(environment).bind("flashsale.datasource.read.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName("read");
+        dataSource.setReadOnly(true);
+        log.info("Read-only transactions are routed to the read pool at {}", url);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("readDataSource") DataSource read,
+                                               @Value("${flashsale.datasource.read.max-lag:5s}") Duration maxLag,
+                                               MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(primary, read, maxLag, readEnabled, meterRegistry);
+    }
+
+    /**
+     * The DataSource JPA, JdbcTemplate and the transaction manager use
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("readDataSource") DataSource read,
+                                 ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        if (!readEnabled) {
+            return primary;
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(lagMonitor, meterRegistry);
+        routing.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Target.PRIMARY, primary,
+                ReadWriteRoutingDataSource.Target.REPLICA, read));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,58 @@
+package com.flashsale.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the read pool, everything else to the primary
+ *
+ * A connection is routed when it is first used inside a transaction that the application declared
+ * read-only (@Transactional(readOnly = true) or a read-only TransactionTemplate), so the whole
+ * transaction reads from one side. Spring Data's implicit read-only transactions around single
+ * repository calls are not routed: incidental lookups on write paths, like the purchase path's
+ * product check, must never wait on the read pool. Reads fall back to the primary while
+ * {@link ReplicaLagMonitor} finds the replica too far behind.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy: transaction managers open the connection
+ * before the read-only flag is visible, and the proxy defers the choice until first use.
+ *
+ * Metrics: flashsale.datasource.reads{target=replica|primary}
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private static final String REPOSITORY_TRANSACTION_PREFIX = SimpleJpaRepository.class.getName() + ".";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        replicaReads = Counter.builder("flashsale.datasource.reads").tag("target", "replica")
+                .description("Read-only transactions by the pool that served them").register(meterRegistry);
+        primaryReads = Counter.builder("flashsale.datasource.reads").tag("target", "primary")
+                .description("Read-only transactions by the pool that served them").register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (name != null && name.startsWith(REPOSITORY_TRANSACTION_PREFIX)) {
+            return Target.PRIMARY;
+        }
+        if (lagMonitor.isReplicaUsable()) {
+            replicaReads.increment();
+            return Target.REPLICA;
+        }
+        primaryReads.increment();
+        return Target.PRIMARY;
+    }
+}
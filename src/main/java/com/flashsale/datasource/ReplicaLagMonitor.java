@@ -0,0 +1,117 @@
+package com.flashsale.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Decides whether the read replica is fresh enough to serve reads
+ *
+ * Every flashsale.datasource.read.heartbeat-interval the primary's replication_heartbeat row is
+ * set to the database clock, after the replica's copy of the row has been read back. The copy's
+ * age on the replica's clock is the lag, give or take one interval, and works the same on a
+ * PostgreSQL streaming replica and on two local stand-ins. While the lag exceeds
+ * flashsale.datasource.read.max-lag, or the replica cannot be queried, reads go to the primary.
+ * Until the first heartbeat has made it across, the replica is not used. Without a read pool
+ * (flashsale.datasource.read.enabled off) the monitor is idle and the replica is never usable.
+ *
+ * Metrics: flashsale.datasource.replica.lag (seconds, NaN when unknown)
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String READ_HEARTBEAT = "SELECT beat_at, LOCALTIMESTAMP FROM replication_heartbeat WHERE id = 1";
+    private static final String UPDATE_HEARTBEAT = "UPDATE replication_heartbeat SET beat_at = LOCALTIMESTAMP WHERE id = 1";
+    private static final String INSERT_HEARTBEAT = "INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, LOCALTIMESTAMP)";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+    private final boolean enabled;
+
+    private volatile Duration lag;
+    private volatile boolean replicaUsable;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag, boolean enabled,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+        this.enabled = enabled;
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("flashsale.datasource.replica.lag", this,
+                        monitor -> monitor.lag != null ? monitor.lag.toMillis() / 1000.0 : Double.NaN)
+                .description("Replication lag of the read replica, as seen by the heartbeat")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true while reads may be served by the replica
+     */
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * @return Last measured lag, or null if the replica could not be checked
+     */
+    public Duration getLag() {
+        return lag;
+    }
+
+    @Scheduled(fixedDelayString = "${flashsale.datasource.read.heartbeat-interval:PT1S}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        checkReplica();
+        try {
+            if (primary.update(UPDATE_HEARTBEAT) == 0) {
+                primary.update(INSERT_HEARTBEAT);
+            }
+        } catch (DuplicateKeyException e) {
+            // Another instance wrote the first heartbeat
+        } catch (DataAccessException e) {
+            log.warn("Could not write replication heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private void checkReplica() {
+        Duration measured;
+        try {
+            List<Duration> rows = replica.query(READ_HEARTBEAT, (rs, rowNum) -> {
+                Timestamp beatAt = rs.getTimestamp(1);
+                Timestamp now = rs.getTimestamp(2);
+                return Duration.ofMillis(Math.max(now.getTime() - beatAt.getTime(), 0));
+            });
+            measured = rows.isEmpty() ? null : rows.get(0);
+        } catch (DataAccessException e) {
+            log.debug("Replica heartbeat check failed: {}", e.getMessage());
+            measured = null;
+        }
+
+        boolean usable = measured != null && measured.compareTo(maxLag) <= 0;
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Read replica is {} ms behind, routing read-only transactions to it", measured.toMillis());
+            } else {
+                log.warn("Read replica is {}, routing reads to the primary",
+                        measured != null ? measured.toMillis() + " ms behind" : "not reachable or has no heartbeat");
+            }
+        }
+        lag = measured;
+        replicaUsable = usable;
+    }
+}
@@ -0,0 +1,54 @@
+package com.flashsale.diagnostics;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Times every connection checkout from the pool as a "jdbc.connection" {@link StageEvent}
+ *
+ * A slow stock change or order save is then split into waiting for a Hikari connection and
+ * everything after it. Boot's pool metrics and health checks see through the wrapper. Only pools
+ * are wrapped: a proxy over other DataSources (the read/write router's lazy proxy, or a wrapper
+ * already applied) is left alone, so each checkout is timed once, at the pool it waited on.
+ */
+@Component
+public class ConnectionTimingPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)) {
+            return new TimedDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    static final class TimedDataSource extends DelegatingDataSource {
+
+        TimedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            StageEvent event = new StageEvent();
+            event.begin();
+            Connection connection = super.getConnection();
+            event.commit("jdbc.connection", null, null);
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            StageEvent event = new StageEvent();
+            event.begin();
+            Connection connection = super.getConnection(username, password);
+            event.commit("jdbc.connection", null, null);
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.flashsale.diagnostics;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * On-demand, bounded JDK Flight Recorder sessions for the purchase pipeline
+ *
+ * A recording enables the {@link PurchaseEvent} and {@link StageEvent} events, optionally with the
+ * JDK "profile" settings on top. It stops on its own after the requested duration, is capped at
+ * max-duration and max-size, and is written to flashsale.jfr.directory. Only the latest file is kept.
+ *
+ * Summaries group events by stage and detail, e.g. inventory.decrement[sql], or by outcome for
+ * purchases, e.g. purchase[SUCCESS], and list the groups by total time. Percentiles come from a
+ * fixed-size sample per group, so memory stays bounded however large the recording is. The file
+ * itself can be downloaded for JDK Mission Control.
+ */
+@Service
+@Slf4j
+public class FlightRecorderService {
+
+    /**
+     * Time spent in one stage group, largest total first
+     */
+    public record StageStats(String stage, long count, double totalMillis, double meanMicros,
+                             double p50Micros, double p99Micros, double maxMicros) {
+    }
+
+    public record RecordingSummary(String state, Instant startTime, Duration duration, String file,
+                                   List<StageStats> stages) {
+    }
+
+    private static final String STAGE_EVENT = "com.flashsale.Stage";
+    private static final String PURCHASE_EVENT = "com.flashsale.Purchase";
+    private static final int SAMPLE_SIZE = 10_000;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneOffset.UTC);
+
+    @Value("${flashsale.jfr.directory:logs/jfr}")
+    private String directory = "logs/jfr";
+
+    @Value("${flashsale.jfr.max-duration:10m}")
+    private Duration maxDuration = Duration.ofMinutes(10);
+
+    @Value("${flashsale.jfr.max-size-mb:256}")
+    private long maxSizeMb = 256;
+
+    private Recording recording;
+    private Path lastFile;
+
+    /**
+     * Start a recording; at most one runs at a time
+     *
+     * @param duration Stops by itself after this long (capped at max-duration)
+     * @param jdkEvents Also enable the JDK "profile" event settings (allocation, locks, GC, sampling)
+     * @throws IllegalStateException if a recording is already running or JFR is unavailable
+     */
+    public synchronized RecordingSummary start(Duration duration, boolean jdkEvents) {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("Flight Recorder is not available in this JVM");
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        discard();
+
+        Duration bounded = duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        Recording next = jdkEvents ? new Recording(profileConfiguration()) : new Recording();
+        next.setName("flashsale");
+        next.enable(PurchaseEvent.class);
+        next.enable(StageEvent.class).withThreshold(Duration.ZERO);
+        next.setToDisk(true);
+        next.setMaxSize(maxSizeMb * 1024 * 1024);
+        next.setDuration(bounded);
+        try {
+            Path dir = Files.createDirectories(Path.of(directory));
+            lastFile = dir.resolve("flashsale-" + FILE_TIME.format(Instant.now()) + ".jfr").toAbsolutePath();
+            next.setDestination(lastFile);
+        } catch (IOException e) {
+            next.close();
+            throw new UncheckedIOException("Cannot write recordings to " + directory, e);
+        }
+        next.start();
+        recording = next;
+        log.info("Flight recording started for {} (JDK events: {}), writing to {}", bounded, jdkEvents, lastFile);
+        return describe(List.of());
+    }
+
+    /**
+     * Stop the running recording, if any, and summarize it
+     * A stopped recording is written to its file and closed (state CLOSED)
+     */
+    public synchronized RecordingSummary stop(int limit) {
+        if (recording == null) {
+            throw new IllegalStateException("No recording has been started");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Flight recording stopped, written to {}", lastFile);
+        }
+        return summary(limit);
+    }
+
+    /**
+     * Summarize the running recording so far, or the last finished one
+     */
+    public synchronized RecordingSummary summary(int limit) {
+        if (recording == null) {
+            throw new IllegalStateException("No recording has been started");
+        }
+        if (recording.getState() != RecordingState.RUNNING) {
+            return describe(summarize(lastFile, limit));
+        }
+        try (Recording snapshot = recording.copy(true)) {
+            Path file = Files.createTempFile("flashsale-snapshot", ".jfr");
+            try {
+                snapshot.dump(file);
+                return describe(summarize(file, limit));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot snapshot the running recording", e);
+        }
+    }
+
+    /**
+     * @return The file of the last finished recording, if it was written
+     */
+    public synchronized Optional<Path> lastRecordingFile() {
+        if (recording == null || recording.getState() == RecordingState.RUNNING || !Files.exists(lastFile)) {
+            return Optional.empty();
+        }
+        return Optional.of(lastFile);
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    private void discard() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        if (lastFile != null) {
+            try {
+                Files.deleteIfExists(lastFile);
+            } catch (IOException e) {
+                log.warn("Could not delete previous recording {}: {}", lastFile, e.getMessage());
+            }
+        }
+    }
+
+    private RecordingSummary describe(List<StageStats> stages) {
+        return new RecordingSummary(recording.getState().name(), recording.getStartTime(), recording.getDuration(),
+                lastFile.toString(), stages);
+    }
+
+    private static Configuration profileConfiguration() {
+        try {
+            return Configuration.getConfiguration("profile");
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Cannot load the JDK profile settings", e);
+        }
+    }
+
+    static List<StageStats> summarize(Path file, int limit) {
+        Map<String, Accumulator> groups = new HashMap<>();
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String type = event.getEventType().getName();
+                if (STAGE_EVENT.equals(type)) {
+                    String detail = event.getString("detail");
+                    String key = detail != null ? event.getString("stage") + "[" + detail + "]" : event.getString("stage");
+                    groups.computeIfAbsent(key, k -> new Accumulator()).add(event.getDuration().toNanos());
+                } else if (PURCHASE_EVENT.equals(type)) {
+                    groups.computeIfAbsent("purchase[" + event.getString("outcome") + "]", k -> new Accumulator())
+                            .add(event.getLong("latency"));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read recording " + file, e);
+        }
+        List<StageStats> stats = new ArrayList<>();
+        groups.forEach((key, accumulator) -> stats.add(accumulator.toStats(key)));
+        stats.sort(Comparator.comparingDouble(StageStats::totalMillis).reversed());
+        return stats.size() > limit ? stats.subList(0, limit) : stats;
+    }
+
+    /**
+     * Count, total and max are exact; percentiles come from a reservoir sample
+     */
+    private static final class Accumulator {
+        private final long[] sample = new long[SAMPLE_SIZE];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            if (count < SAMPLE_SIZE) {
+                sample[(int) count] = nanos;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(count + 1);
+                if (slot < SAMPLE_SIZE) {
+                    sample[(int) slot] = nanos;
+                }
+            }
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        StageStats toStats(String stage) {
+            int size = (int) Math.min(count, SAMPLE_SIZE);
+            long[] sorted = Arrays.copyOf(sample, size);
+            Arrays.sort(sorted);
+            return new StageStats(stage, count, totalNanos / 1e6, totalNanos / 1e3 / count,
+                    sorted[(int) ((size - 1) * 0.5)] / 1e3, sorted[(int) ((size - 1) * 0.99)] / 1e3, maxNanos / 1e3);
+        }
+    }
+}
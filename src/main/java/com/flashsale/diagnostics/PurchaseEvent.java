@@ -0,0 +1,52 @@
+package com.flashsale.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for the outcome of one purchase attempt
+ *
+ * Emitted where the outcome is decided, so it is an instant event carrying the end-to-end latency
+ * as a field. The {@link StageEvent}s the attempt went through precede it on the same thread.
+ */
+@Name("com.flashsale.Purchase")
+@Label("Flash Sale Purchase")
+@Category("Flash Sale")
+@Description("Outcome and latency of one purchase attempt")
+@StackTrace(false)
+public class PurchaseEvent extends Event {
+
+    @Label("Product ID")
+    long productId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Quantity")
+    int quantity;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    /**
+     * Record the attempt if a recording wants it
+     *
+     * @param startNanos System.nanoTime() taken when the request started
+     */
+    public static void emit(String outcome, Long productId, int quantity, long startNanos) {
+        PurchaseEvent event = new PurchaseEvent();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.productId = productId != null ? productId : 0;
+            event.quantity = quantity;
+            event.latency = System.nanoTime() - startNanos;
+            event.commit();
+        }
+    }
+}
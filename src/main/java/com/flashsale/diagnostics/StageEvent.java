@@ -0,0 +1,49 @@
+package com.flashsale.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event timing one stage of purchase processing (quota check, stock change, order save, ...)
+ *
+ * Usage: new StageEvent(), begin(), do the work, then commit(stage, productId, detail).
+ * While no recording enables the event, begin and commit are no-ops the JIT removes along with
+ * the allocation, so instrumented code pays nothing measurable.
+ */
+@Name("com.flashsale.Stage")
+@Label("Flash Sale Stage")
+@Category("Flash Sale")
+@Description("Duration of one stage of purchase processing")
+@StackTrace(false)
+public class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Product ID")
+    long productId;
+
+    @Label("Detail")
+    @Description("Backend, path or batch size, depending on the stage")
+    String detail;
+
+    /**
+     * End the stage and record it if a recording wants it
+     *
+     * @param productId Product ID, or null when the stage spans several products
+     * @param detail Optional qualifier, e.g. the inventory backend
+     */
+    public void commit(String stage, Long productId, String detail) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.productId = productId != null ? productId : 0;
+            this.detail = detail;
+            commit();
+        }
+    }
+}
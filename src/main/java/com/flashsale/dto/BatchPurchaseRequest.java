@@ -0,0 +1,50 @@
+package com.flashsale.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Purchases aggregated by a gateway into one call; items may mix users and products
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchPurchaseRequest {
+
+    @NotEmpty(message = "At least one item is required")
+    @Size(max = 1000, message = "At most 1000 items per batch")
+    private List<@Valid Item> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        @NotNull(message = "Product ID is required")
+        private Long productId;
+
+        @NotBlank(message = "User ID is required")
+        private String userId;
+
+        @Builder.Default
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity = 1;
+
+        /**
+         * End-client address as seen by the gateway, for abuse detection
+         */
+        private String clientIp;
+    }
+}
@@ -0,0 +1,21 @@
+package com.flashsale.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CancelOrdersRequest {
+
+    @NotEmpty(message = "At least one order ID is required")
+    @Size(max = 10000, message = "At most 10000 orders per request")
+    private List<String> orderIds;
+}
@@ -29,4 +29,10 @@ public class CreateProductRequest {
     @NotNull(message = "Stock count is required")
     @Min(value = 0, message = "Stock count must be non-negative")
     private Integer stockCount;
+
+    /**
+     * Units one user may buy in total; no cap when absent
+     */
+    @Min(value = 1, message = "Per-user cap must be at least 1")
+    private Integer maxPerUser;
 }
@@ -0,0 +1,21 @@
+package com.flashsale.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenRaffleRequest {
+
+    @NotNull(message = "Entry window is required")
+    @Min(value = 1, message = "Entry window must be at least 1 second")
+    @Max(value = 604800, message = "Entry window cannot exceed 7 days")
+    private Integer entryWindowSeconds;
+}
@@ -0,0 +1,19 @@
+package com.flashsale.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductQuotaRequest {
+
+    @NotNull(message = "Max requests is required")
+    @Min(value = 0, message = "Max requests cannot be negative")
+    private Integer maxRequests;
+}
@@ -0,0 +1,16 @@
+package com.flashsale.dto;
+
+/**
+ * Result classification of a single purchase attempt
+ */
+public enum PurchaseOutcome {
+    SUCCESS,
+    RATE_LIMITED,
+    ABUSE_BLOCKED,
+    OVERLOADED,
+    OUT_OF_STOCK,
+    LIMIT_REACHED,
+    PRODUCT_NOT_FOUND,
+    RAFFLE_ENTERED,
+    RAFFLE_CLOSED
+}
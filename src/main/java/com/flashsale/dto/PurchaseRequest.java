@@ -1,5 +1,6 @@
 package com.flashsale.dto;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,5 +17,6 @@ public class PurchaseRequest {
     private String userId;
 
     @Builder.Default
+    @Min(value = 1, message = "Quantity must be at least 1")
     private Integer quantity = 1;
 }
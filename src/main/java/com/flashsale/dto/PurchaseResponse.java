@@ -1,10 +1,13 @@
 package com.flashsale.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,6 +20,18 @@ public class PurchaseResponse {
     private Long productId;
     private String userId;
 
+    /**
+     * Quota level that rejected the request (user, product or global); rate-limited responses only
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String quotaLevel;
+
+    /**
+     * When raffle entries close; raffle responses only
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime raffleClosesAt;
+
     public static PurchaseResponse success(String orderId, Long productId, String userId) {
         return PurchaseResponse.builder()
                 .success(true)
@@ -35,6 +50,15 @@ public class PurchaseResponse {
                 .build();
     }
 
+    public static PurchaseResponse limitReached(Long productId, String userId, int maxPerUser) {
+        return PurchaseResponse.builder()
+                .success(false)
+                .message("Purchase limit reached: at most " + maxPerUser + " per customer for this product.")
+                .productId(productId)
+                .userId(userId)
+                .build();
+    }
+
     public static PurchaseResponse rateLimited(String userId) {
         return PurchaseResponse.builder()
                 .success(false)
@@ -43,6 +67,42 @@ public class PurchaseResponse {
                 .build();
     }
 
+    public static PurchaseResponse rateLimited(String userId, String quotaLevel) {
+        return PurchaseResponse.builder()
+                .success(false)
+                .message("Rate limit exceeded (" + quotaLevel + " quota). Please try again later.")
+                .userId(userId)
+                .quotaLevel(quotaLevel)
+                .build();
+    }
+
+    public static PurchaseResponse blocked(String userId) {
+        return PurchaseResponse.builder()
+                .success(false)
+                .message("Too many requests from your account or network. Please try again later.")
+                .userId(userId)
+                .build();
+    }
+
+    public static PurchaseResponse raffleEntered(Long productId, String userId, LocalDateTime closesAt) {
+        return PurchaseResponse.builder()
+                .success(true)
+                .message("You're entered in the raffle. Winners are drawn when entries close.")
+                .productId(productId)
+                .userId(userId)
+                .raffleClosesAt(closesAt)
+                .build();
+    }
+
+    public static PurchaseResponse raffleClosed(Long productId, LocalDateTime closesAt) {
+        return PurchaseResponse.builder()
+                .success(false)
+                .message("Raffle entries are closed. Winners are being drawn.")
+                .productId(productId)
+                .raffleClosesAt(closesAt)
+                .build();
+    }
+
     public static PurchaseResponse error(String message) {
         return PurchaseResponse.builder()
                 .success(false)
@@ -17,7 +17,7 @@ import java.time.LocalDateTime;
     @Index(name = "idx_orders_created_at", columnList = "created_at")
 })
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
@@ -50,7 +50,10 @@ public class Order {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Purchases stamp the order when stock is taken; the async insert keeps that time
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
     }
 
     public enum OrderStatus {
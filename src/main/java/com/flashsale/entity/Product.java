@@ -35,6 +35,12 @@ public class Product {
     @Column(name = "stock_count", nullable = false)
     private Integer stockCount;
 
+    /**
+     * Units one user may buy in total, or null for no cap
+     */
+    @Column(name = "max_per_user")
+    private Integer maxPerUser;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -0,0 +1,42 @@
+package com.flashsale.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Units one user has bought of a capped product
+ * One narrow row per buyer; rows are purged once the product's sale is over
+ */
+@Entity
+@Table(name = "purchase_caps")
+@IdClass(PurchaseCap.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseCap {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(nullable = false)
+    private Integer units;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private String userId;
+    }
+}
@@ -0,0 +1,62 @@
+package com.flashsale.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Raffle allocation of one product's stock
+ * The seed stays secret until the draw; its SHA-256 is published while entries are open
+ */
+@Entity
+@Table(name = "raffles")
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class Raffle {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RaffleStatus status;
+
+    @Column(name = "closes_at", nullable = false)
+    private LocalDateTime closesAt;
+
+    @Column(nullable = false)
+    private Long seed;
+
+    @Column(name = "seed_hash", nullable = false, length = 64)
+    private String seedHash;
+
+    @Column(name = "entry_count")
+    private Long entryCount;
+
+    @Column(name = "winner_count")
+    private Integer winnerCount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "drawn_at")
+    private LocalDateTime drawnAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public enum RaffleStatus {
+        OPEN,
+        DRAWING,
+        DRAWN
+    }
+}
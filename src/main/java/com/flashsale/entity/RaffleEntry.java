@@ -0,0 +1,49 @@
+package com.flashsale.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One user's entry in a product raffle
+ * Rows are only appended while entries are open; the draw fills in result and order ID
+ */
+@Entity
+@Table(name = "raffle_entries", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_raffle_entries_product_user", columnNames = {"product_id", "user_id"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RaffleEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Result result;
+
+    @Column(name = "order_id", length = 36)
+    private String orderId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum Result {
+        WON,
+        LOST
+    }
+}
@@ -0,0 +1,19 @@
+package com.flashsale.exception;
+
+/**
+ * Thrown when a dependency needed to serve the request is temporarily unavailable
+ * Mapped to 503 with a Retry-After header
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
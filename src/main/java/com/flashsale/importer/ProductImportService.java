@@ -0,0 +1,351 @@
+package com.flashsale.importer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.service.CatalogResponseCache;
+import com.flashsale.service.InventoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming bulk import of products (CSV or NDJSON)
+ *
+ * The upload is read one row at a time by {@link ProductRowReader} and validated like
+ * POST /api/products. Valid rows are collected into batches of flashsale.product-import.batch-size;
+ * each batch is one JDBC batch insert in one transaction, followed by one bulk write of the
+ * batch's stock counters to the inventory backend (a single pipeline on the redis backend, a
+ * single batch update on sql), and one catalog cache invalidation. Memory is bounded by one batch,
+ * whatever the size of the upload.
+ *
+ * A row that fails validation is reported and skipped. A batch the database rejects (e.g. a name
+ * longer than the column) is retried row by row, so only the offending rows are lost. Reports
+ * keep the first flashsale.product-import.max-errors row errors; the counts are always complete.
+ * The last flashsale.product-import.history imports, running or finished, are kept for
+ * GET /api/products/imports.
+ *
+ * Metrics: flashsale.product-import.rows{outcome=imported|rejected}
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    private static final String INSERT = "INSERT INTO products (name, description, price, stock_count, "
+            + "max_per_user, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    public enum Format { CSV, NDJSON }
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    /**
+     * @param row Data row number in the upload, starting at 1
+     */
+    public record RowError(long row, String message) {
+    }
+
+    /**
+     * Progress of one import
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ImportView(String id, Format format, Status status, long rowsRead, long imported, long rejected,
+                             List<RowError> errors, LocalDateTime startedAt, LocalDateTime finishedAt,
+                             String message) {
+    }
+
+    private record Pending(long row, CreateProductRequest request) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryService inventoryService;
+    private final CatalogResponseCache catalogCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.product-import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${flashsale.product-import.max-errors:1000}")
+    private int maxErrors = 1000;
+
+    @Value("${flashsale.product-import.max-row-chars:65536}")
+    private int maxRowChars = 65_536;
+
+    @Value("${flashsale.product-import.history:20}")
+    private int history = 20;
+
+    /**
+     * Import ID -> import, oldest first
+     */
+    private final Map<String, ImportJob> imports = new LinkedHashMap<>();
+
+    private Counter importedRows;
+    private Counter rejectedRows;
+
+    @PostConstruct
+    void registerMetrics() {
+        importedRows = Counter.builder("flashsale.product-import.rows").tag("outcome", "imported")
+                .description("Product rows imported in bulk").register(meterRegistry);
+        rejectedRows = Counter.builder("flashsale.product-import.rows").tag("outcome", "rejected")
+                .description("Product rows rejected by bulk import").register(meterRegistry);
+    }
+
+    /**
+     * Import every row of the upload, on the calling thread
+     *
+     * @return Final report; rejected rows do not fail the import
+     * @throws IllegalArgumentException if the upload cannot be read at all (e.g. no CSV header)
+     */
+    public ImportView importProducts(Format format, InputStream body) {
+        ImportJob job = register(format);
+        log.info("Product import {} ({}) started", job.id, format);
+        try (ProductRowReader reader = ProductRowReader.open(format,
+                new InputStreamReader(body, StandardCharsets.UTF_8), objectMapper, maxRowChars)) {
+            List<Pending> batch = new ArrayList<>(batchSize);
+            ProductRowReader.Row row;
+            while ((row = reader.next()) != null) {
+                job.rowsRead++;
+                String error = row.error() != null ? row.error() : validate(row.request());
+                if (error != null) {
+                    job.reject(row.number(), error);
+                    rejectedRows.increment();
+                    continue;
+                }
+                batch.add(new Pending(row.number(), row.request()));
+                if (batch.size() >= batchSize) {
+                    flush(batch, job);
+                    batch.clear();
+                }
+            }
+            flush(batch, job);
+            job.finish(Status.COMPLETED, null);
+            log.info("Product import {} completed: {} rows, {} imported, {} rejected",
+                    job.id, job.rowsRead, job.imported, job.rejected);
+        } catch (IOException e) {
+            job.finish(Status.FAILED, "Upload could not be read: " + e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            job.finish(Status.FAILED, e.getMessage());
+            log.warn("Product import {} failed after {} rows: {}", job.id, job.rowsRead, e.getMessage());
+            throw e;
+        }
+        return job.view();
+    }
+
+    /**
+     * Running and recent imports, newest first
+     */
+    public List<ImportView> getImports() {
+        synchronized (imports) {
+            List<ImportView> views = new ArrayList<>(imports.values().stream().map(ImportJob::view).toList());
+            Collections.reverse(views);
+            return views;
+        }
+    }
+
+    public Optional<ImportView> getImport(String id) {
+        synchronized (imports) {
+            return Optional.ofNullable(imports.get(id)).map(ImportJob::view);
+        }
+    }
+
+    private ImportJob register(Format format) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), format);
+        synchronized (imports) {
+            imports.put(job.id, job);
+            var oldest = imports.values().iterator();
+            while (imports.size() > history && oldest.hasNext()) {
+                if (oldest.next().status != Status.RUNNING) {
+                    oldest.remove();
+                }
+            }
+        }
+        return job;
+    }
+
+    private String validate(CreateProductRequest request) {
+        Set<ConstraintViolation<CreateProductRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Insert a batch, then initialize its inventory in one backend call
+     */
+    private void flush(List<Pending> batch, ImportJob job) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Integer> stockCounts = new LinkedHashMap<>();
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> insertBatch(batch, now));
+            for (int i = 0; i < batch.size(); i++) {
+                stockCounts.put(ids.get(i), batch.get(i).request().getStockCount());
+            }
+        } catch (DataAccessException e) {
+            log.debug("Product import {}: batch of {} rejected ({}), inserting one by one",
+                    job.id, batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                try {
+                    stockCounts.put(insertOne(pending.request(), now), pending.request().getStockCount());
+                } catch (DataAccessException rowError) {
+                    job.reject(pending.row(), "rejected by the database: " + rootMessage(rowError));
+                    rejectedRows.increment();
+                }
+            }
+        }
+
+        inventoryService.initializeInventory(stockCounts);
+        catalogCache.invalidate();
+        job.imported += stockCounts.size();
+        importedRows.increment(stockCounts.size());
+        log.debug("Product import {}: {} rows read, {} imported", job.id, job.rowsRead, job.imported);
+    }
+
+    private List<Long> insertBatch(List<Pending> batch, Timestamp now) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            List<Long> ids = new ArrayList<>(batch.size());
+            try (PreparedStatement statement = prepareInsert(connection)) {
+                for (Pending pending : batch) {
+                    bind(statement, pending.request(), now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+            }
+            if (ids.size() != batch.size()) {
+                throw new IllegalStateException("Expected " + batch.size() + " generated product IDs, got " + ids.size());
+            }
+            return ids;
+        });
+    }
+
+    private Long insertOne(CreateProductRequest request, Timestamp now) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = prepareInsert(connection);
+            bind(statement, request, now);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKeyAs(Number.class).longValue();
+    }
+
+    private static PreparedStatement prepareInsert(Connection connection) throws SQLException {
+        return connection.prepareStatement(INSERT, new String[]{"id"});
+    }
+
+    private static void bind(PreparedStatement statement, CreateProductRequest request, Timestamp now)
+            throws SQLException {
+        statement.setString(1, request.getName());
+        statement.setString(2, request.getDescription());
+        statement.setBigDecimal(3, request.getPrice());
+        statement.setInt(4, request.getStockCount());
+        if (request.getMaxPerUser() != null) {
+            statement.setInt(5, request.getMaxPerUser());
+        } else {
+            statement.setNull(5, Types.INTEGER);
+        }
+        statement.setTimestamp(6, now);
+        statement.setTimestamp(7, now);
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    /**
+     * Mutable state of one import; written only by the importing thread
+     */
+    private final class ImportJob {
+
+        private final String id;
+        private final Format format;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile Status status = Status.RUNNING;
+        private volatile long rowsRead;
+        private volatile long imported;
+        private volatile long rejected;
+        private volatile LocalDateTime finishedAt;
+        private volatile String message;
+
+        ImportJob(String id, Format format) {
+            this.id = id;
+            this.format = format;
+        }
+
+        void reject(long row, String error) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(row, error));
+            }
+        }
+
+        void finish(Status outcome, String reason) {
+            finishedAt = LocalDateTime.now();
+            message = reason;
+            status = outcome;
+        }
+
+        ImportView view() {
+            List<RowError> errorsSoFar;
+            synchronized (errors) {
+                errorsSoFar = List.copyOf(errors);
+            }
+            return new ImportView(id, format, status, rowsRead, imported, rejected, errorsSoFar, startedAt,
+                    finishedAt, message);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.flashsale.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.CreateProductRequest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads product rows one at a time from an import stream
+ *
+ * Only the current row is held in memory, and a row longer than maxRowChars is reported as an
+ * error and skipped, so memory stays flat whatever the size of the upload.
+ * - CSV (RFC 4180): a header row naming the columns name, description, price, stock_count and
+ *   max_per_user (camelCase also accepted; other columns are ignored); quoted fields may contain
+ *   commas, doubled quotes and line breaks
+ * - NDJSON: one CreateProductRequest JSON object per line; blank lines are skipped
+ *
+ * Not thread-safe.
+ */
+abstract class ProductRowReader implements Closeable {
+
+    /**
+     * A parsed row, or the reason it could not be parsed
+     *
+     * @param number Data row number, starting at 1 (CSV header and blank lines not counted)
+     */
+    record Row(long number, CreateProductRequest request, String error) {
+    }
+
+    protected final BufferedReader in;
+    protected final int maxRowChars;
+    protected long rowNumber;
+
+    ProductRowReader(Reader in, int maxRowChars) {
+        this.in = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in, 64 * 1024);
+        this.maxRowChars = maxRowChars;
+    }
+
+    static ProductRowReader open(ProductImportService.Format format, Reader in, ObjectMapper objectMapper,
+                                 int maxRowChars) throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(in, maxRowChars);
+            case NDJSON -> new Ndjson(in, objectMapper, maxRowChars);
+        };
+    }
+
+    /**
+     * @return The next row, or null at the end of the stream
+     */
+    abstract Row next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static final class Csv extends ProductRowReader {
+
+        private static final Map<String, String> COLUMNS = Map.of(
+                "name", "name",
+                "description", "description",
+                "price", "price",
+                "stock_count", "stockCount",
+                "stockcount", "stockCount",
+                "max_per_user", "maxPerUser",
+                "maxperuser", "maxPerUser");
+
+        /**
+         * Field index -> property, null for ignored columns
+         */
+        private final String[] properties;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private boolean overflow;
+
+        Csv(Reader in, int maxRowChars) throws IOException {
+            super(in, maxRowChars);
+            if (!readRecord()) {
+                throw new IllegalArgumentException("CSV import has no header row");
+            }
+            if (overflow) {
+                throw new IllegalArgumentException("CSV header row is longer than " + maxRowChars + " characters");
+            }
+            properties = new String[fields.size()];
+            Map<String, Integer> seen = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                String column = fields.get(i).strip().toLowerCase(Locale.ROOT);
+                if (i == 0 && column.startsWith("\uFEFF")) {
+                    column = column.substring(1);
+                }
+                properties[i] = COLUMNS.get(column);
+                if (properties[i] != null && seen.put(properties[i], i) != null) {
+                    throw new IllegalArgumentException("CSV header names column '" + column + "' twice");
+                }
+            }
+            for (String required : List.of("name", "price", "stockCount")) {
+                if (!seen.containsKey(required)) {
+                    throw new IllegalArgumentException("CSV header is missing column '" + required + "'");
+                }
+            }
+        }
+
+        @Override
+        Row next() throws IOException {
+            while (readRecord()) {
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue;
+                }
+                long number = ++rowNumber;
+                if (overflow) {
+                    return new Row(number, null, "row is longer than " + maxRowChars + " characters");
+                }
+                if (fields.size() != properties.length) {
+                    return new Row(number, null, "expected " + properties.length + " fields, found " + fields.size());
+                }
+                CreateProductRequest request = new CreateProductRequest();
+                for (int i = 0; i < properties.length; i++) {
+                    String error = properties[i] != null ? set(request, properties[i], fields.get(i)) : null;
+                    if (error != null) {
+                        return new Row(number, null, error);
+                    }
+                }
+                return new Row(number, request, null);
+            }
+            return null;
+        }
+
+        /**
+         * Read one record into fields
+         *
+         * @return false at the end of the stream
+         */
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            overflow = false;
+            int length = 0;
+            boolean quoted = false;
+            boolean started = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                started = true;
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() != '"') {
+                            in.reset();
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                    continue;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    continue;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        in.mark(1);
+                        if (in.read() != '\n') {
+                            in.reset();
+                        }
+                    }
+                    break;
+                }
+                if (++length > maxRowChars) {
+                    // Keep reading to the end of the record, without keeping the rest
+                    overflow = true;
+                    continue;
+                }
+                field.append((char) c);
+            }
+            if (!started) {
+                return false;
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        private static String set(CreateProductRequest request, String property, String raw) {
+            String value = raw.strip();
+            try {
+                switch (property) {
+                    case "name" -> request.setName(value);
+                    case "description" -> request.setDescription(value.isEmpty() ? null : value);
+                    case "price" -> request.setPrice(value.isEmpty() ? null : new BigDecimal(value));
+                    case "stockCount" -> request.setStockCount(value.isEmpty() ? null : Integer.valueOf(value));
+                    case "maxPerUser" -> request.setMaxPerUser(value.isEmpty() ? null : Integer.valueOf(value));
+                    default -> throw new IllegalStateException("Unmapped property " + property);
+                }
+                return null;
+            } catch (NumberFormatException e) {
+                return property + ": not a number '" + value + "'";
+            }
+        }
+    }
+
+    private static final class Ndjson extends ProductRowReader {
+
+        private final ObjectMapper objectMapper;
+        private final StringBuilder line = new StringBuilder();
+
+        Ndjson(Reader in, ObjectMapper objectMapper, int maxRowChars) {
+            super(in, maxRowChars);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Row next() throws IOException {
+            while (true) {
+                line.setLength(0);
+                boolean overflow = false;
+                int c;
+                while ((c = in.read()) != -1 && c != '\n') {
+                    if (line.length() < maxRowChars) {
+                        line.append((char) c);
+                    } else {
+                        overflow = true;
+                    }
+                }
+                if (c == -1 && line.isEmpty() && !overflow) {
+                    return null;
+                }
+                if (line.toString().isBlank() && !overflow) {
+                    continue;
+                }
+                long number = ++rowNumber;
+                if (overflow) {
+                    return new Row(number, null, "row is longer than " + maxRowChars + " characters");
+                }
+                try {
+                    return new Row(number, objectMapper.readValue(line.toString(), CreateProductRequest.class), null);
+                } catch (JsonProcessingException e) {
+                    return new Row(number, null, "invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        }
+    }
+}
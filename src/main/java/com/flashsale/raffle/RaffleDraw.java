@@ -0,0 +1,256 @@
+package com.flashsale.raffle;
+
+import com.flashsale.entity.Order;
+import com.flashsale.entity.Product;
+import com.flashsale.entity.Raffle;
+import com.flashsale.repository.RaffleRepository;
+import com.flashsale.service.InventoryService;
+import com.flashsale.service.OrderReadModel;
+import com.flashsale.service.ProductService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Winner selection and bulk order creation for closed raffles
+ *
+ * Every entrant gets a ticket: the first 8 bytes of SHA-256("{seed}:{userId}") as an unsigned
+ * number. The entrants with the lowest tickets win, one unit each, up to the stock on hand. This
+ * is a seeded shuffle that does not depend on arrival order or on how the entries are read. Anyone
+ * holding the entry list can check it once the seed is revealed, and the seed can be checked
+ * against the hash published while entries were open. Entries are streamed and only the current
+ * best tickets are kept, so memory grows with stock, not with entrants.
+ *
+ * Draw steps:
+ * 1. Claim the raffle (OPEN to DRAWING with a conditional UPDATE), so only one instance draws;
+ *    the UPDATE waits for entry batches holding the raffle row, and later ones find it closed
+ * 2. Stream the entries and keep the lowest tickets
+ * 3. Take the winners' units from inventory in one decrement
+ * 4. In one transaction: batch-insert the orders, mark winners WON and everyone else LOST, mark
+ *    the raffle DRAWN
+ *
+ * If step 4 fails, the units go back to inventory and the raffle returns to OPEN for the next
+ * check. A process crash between steps 3 and 4 leaves the raffle in DRAWING with its units taken;
+ * that needs manual reconciliation and is logged at claim time.
+ *
+ * Metrics: flashsale.raffle.drawn, flashsale.raffle.winners
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RaffleDraw {
+
+    public record DrawResult(Long productId, long entries, int winners) {
+    }
+
+    private record Ticket(long value, String userId) {
+    }
+
+    private static final Comparator<Ticket> TICKET_ORDER = Comparator
+            .comparing(Ticket::value, Long::compareUnsigned).thenComparing(Ticket::userId);
+    private static final int WRITE_BATCH = 1000;
+
+    private static final String CLAIM_DUE =
+            "UPDATE raffles SET status = 'DRAWING' WHERE product_id = ? AND status = 'OPEN' AND closes_at <= ?";
+
+    private static final String CLAIM_NOW =
+            "UPDATE raffles SET status = 'DRAWING', closes_at = ? WHERE product_id = ? AND status = 'OPEN'";
+
+    private static final String RELEASE =
+            "UPDATE raffles SET status = 'OPEN' WHERE product_id = ? AND status = 'DRAWING'";
+
+    private static final String SELECT_ENTRANTS = "SELECT user_id FROM raffle_entries WHERE product_id = ?";
+
+    private static final String INSERT_ORDER =
+            "INSERT INTO orders (order_id, product_id, user_id, quantity, price, status, created_at) " +
+            "VALUES (?, ?, ?, 1, ?, ?, ?)";
+
+    private static final String MARK_WINNER =
+            "UPDATE raffle_entries SET result = 'WON', order_id = ? WHERE product_id = ? AND user_id = ?";
+
+    private static final String MARK_LOSERS =
+            "UPDATE raffle_entries SET result = 'LOST' WHERE product_id = ? AND result IS NULL";
+
+    private static final String MARK_DRAWN =
+            "UPDATE raffles SET status = 'DRAWN', drawn_at = ?, entry_count = ?, winner_count = ? WHERE product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RaffleRepository raffleRepository;
+    private final RaffleService raffleService;
+    private final InventoryService inventoryService;
+    private final ProductService productService;
+    private final OrderReadModel orderReadModel;
+    private final MeterRegistry meterRegistry;
+
+    private Counter drawnCounter;
+    private Counter winnersCounter;
+
+    @PostConstruct
+    void init() {
+        drawnCounter = Counter.builder("flashsale.raffle.drawn")
+                .description("Raffles drawn by this instance")
+                .register(meterRegistry);
+        winnersCounter = Counter.builder("flashsale.raffle.winners")
+                .description("Raffle winners, one order each")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Draw every raffle whose entries have closed
+     */
+    @Scheduled(fixedDelayString = "${flashsale.raffle.draw-check-interval:PT5S}")
+    public void drawDue() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Raffle raffle : raffleRepository.findByStatusAndClosesAtLessThanEqual(Raffle.RaffleStatus.OPEN, now)) {
+            try {
+                draw(raffle.getProductId(), false);
+            } catch (RuntimeException e) {
+                log.error("Raffle draw for product {} failed; it will be retried", raffle.getProductId(), e);
+            }
+        }
+    }
+
+    /**
+     * Draw one raffle
+     *
+     * @param closeNow Close entries now instead of waiting for closes_at
+     * @return Empty if the raffle is not due, already drawn, or being drawn elsewhere
+     */
+    public Optional<DrawResult> draw(Long productId, boolean closeNow) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int claimed = closeNow
+                ? jdbcTemplate.update(CLAIM_NOW, now, productId)
+                : jdbcTemplate.update(CLAIM_DUE, productId, now);
+        if (claimed == 0) {
+            return Optional.empty();
+        }
+        raffleService.invalidate(productId);
+        log.info("Drawing raffle for product {}; if this instance dies before it completes, the raffle stays "
+                + "DRAWING and its stock must be reconciled", productId);
+
+        Raffle raffle = raffleRepository.findById(productId).orElseThrow();
+        Product product = productService.getProduct(productId);
+        long available = currentStock(productId);
+        long[] entries = new long[1];
+        List<Ticket> winners = selectWinners(productId, raffle.getSeed(), (int) Math.min(available, Integer.MAX_VALUE),
+                entries);
+
+        // Stock may have moved since it was read; the lowest tickets keep their place
+        while (!winners.isEmpty() && inventoryService.decrementInventory(productId, winners.size()) < 0) {
+            long stock = currentStock(productId);
+            winners = winners.subList(0, (int) Math.min(winners.size(), stock));
+        }
+
+        List<Order> orders = winners.stream().map(ticket -> newOrder(product, ticket.userId())).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeResults(productId, orders, entries[0]));
+        } catch (RuntimeException e) {
+            if (!orders.isEmpty()) {
+                inventoryService.incrementInventory(productId, orders.size());
+            }
+            jdbcTemplate.update(RELEASE, productId);
+            raffleService.invalidate(productId);
+            throw e;
+        }
+
+        orders.forEach(orderReadModel::project);
+        raffleService.invalidate(productId);
+        drawnCounter.increment();
+        winnersCounter.increment(orders.size());
+        log.info("Raffle for product {} drawn: {} entries, {} winners", productId, entries[0], orders.size());
+        return Optional.of(new DrawResult(productId, entries[0], orders.size()));
+    }
+
+    /**
+     * Stock from the primary; inside a read-write transaction the read pool is never used
+     */
+    private long currentStock(Long productId) {
+        Long stock = transactionTemplate.execute(status -> inventoryService.getInventory(productId));
+        return Math.max(stock != null ? stock : 0, 0);
+    }
+
+    /**
+     * Lowest tickets first; a max-heap of size limit holds the best tickets seen so far
+     */
+    private List<Ticket> selectWinners(Long productId, long seed, int limit, long[] entries) {
+        PriorityQueue<Ticket> best = new PriorityQueue<>(Math.max(1, Math.min(limit, 100_000)), TICKET_ORDER.reversed());
+        MessageDigest digest = RaffleService.sha256();
+        // Streaming with a fetch size needs a transaction on PostgreSQL
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ENTRANTS);
+            statement.setLong(1, productId);
+            statement.setFetchSize(10_000);
+            return statement;
+        }, rs -> {
+            entries[0]++;
+            if (limit == 0) {
+                return;
+            }
+            Ticket ticket = new Ticket(ticket(digest, seed, rs.getString(1)), rs.getString(1));
+            if (best.size() < limit) {
+                best.add(ticket);
+            } else if (TICKET_ORDER.compare(ticket, best.peek()) < 0) {
+                best.poll();
+                best.add(ticket);
+            }
+        }));
+        List<Ticket> winners = new ArrayList<>(best);
+        winners.sort(TICKET_ORDER);
+        return winners;
+    }
+
+    static long ticket(MessageDigest digest, long seed, String userId) {
+        byte[] hash = digest.digest((seed + ":" + userId).getBytes(StandardCharsets.UTF_8));
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (hash[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private void writeResults(Long productId, List<Order> orders, long entries) {
+        for (int from = 0; from < orders.size(); from += WRITE_BATCH) {
+            List<Order> chunk = orders.subList(from, Math.min(from + WRITE_BATCH, orders.size()));
+            jdbcTemplate.batchUpdate(INSERT_ORDER, chunk.stream()
+                    .map(order -> new Object[]{order.getOrderId(), productId, order.getUserId(), order.getPrice(),
+                            order.getStatus().name(), Timestamp.valueOf(order.getCreatedAt())})
+                    .toList());
+            jdbcTemplate.batchUpdate(MARK_WINNER, chunk.stream()
+                    .map(order -> new Object[]{order.getOrderId(), productId, order.getUserId()})
+                    .toList());
+        }
+        jdbcTemplate.update(MARK_LOSERS, productId);
+        jdbcTemplate.update(MARK_DRAWN, Timestamp.valueOf(LocalDateTime.now()), entries, orders.size(), productId);
+    }
+
+    private static Order newOrder(Product product, String userId) {
+        return Order.builder()
+                .orderId(UUID.randomUUID().toString())
+                .productId(product.getId())
+                .userId(userId)
+                .quantity(1)
+                .price(product.getPrice())
+                .status(Order.OrderStatus.CONFIRMED)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
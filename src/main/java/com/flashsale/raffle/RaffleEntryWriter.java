@@ -0,0 +1,218 @@
+package com.flashsale.raffle;
+
+import com.flashsale.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit of raffle entries
+ *
+ * Request threads only enqueue (product, user) pairs. A single worker thread drains the queue in
+ * batches of up to flashsale.raffle.batch-size, waiting at most linger for a batch to fill, and
+ * appends each batch with one JDBC batch insert in one transaction. Entries never touch stock, so
+ * the only shared resource is the insert, and one round trip carries hundreds of entries.
+ *
+ * The insert transaction first locks each product's raffle row while it is still OPEN and before
+ * closes_at; entries for any other product are not written and report closed. RaffleDraw's claim
+ * updates that row, so it waits for batches already holding the lock, and batches arriving after
+ * it see the raffle closed: every entry that commits is one the draw reads.
+ *
+ * A batch that hits the unique key (the same user entering through another instance) is retried
+ * row by row, skipping the rows that already exist.
+ *
+ * Metrics: flashsale.raffle.entry.batch-size
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class RaffleEntryWriter {
+
+    private static final String INSERT =
+            "INSERT INTO raffle_entries (product_id, user_id, created_at) VALUES (?, ?, ?)";
+
+    private static final String LOCK_OPEN =
+            "SELECT product_id FROM raffles WHERE product_id = ? AND status = 'OPEN' AND closes_at > ? FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.raffle.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${flashsale.raffle.linger:10ms}")
+    private Duration linger = Duration.ofMillis(10);
+
+    @Value("${flashsale.raffle.queue-capacity:100000}")
+    private int queueCapacity = 100_000;
+
+    private record Request(Long productId, String userId, CompletableFuture<Boolean> written) {
+    }
+
+    private record Key(Long productId, String userId) {
+    }
+
+    private BlockingQueue<Request> queue;
+    private Thread worker;
+    private volatile boolean running;
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSizeSummary = DistributionSummary.builder("flashsale.raffle.entry.batch-size")
+                .description("Raffle entries appended per insert batch")
+                .register(meterRegistry);
+
+        running = true;
+        worker = new Thread(this::drainLoop, "raffle-entry-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue one entry
+     *
+     * @return Completes once the batch holding this entry is committed: true if the entry is
+     *         recorded, false if the raffle had closed
+     * @throws ServiceUnavailableException if the queue is full
+     */
+    CompletableFuture<Boolean> submit(Long productId, String userId) {
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        if (!queue.offer(new Request(productId, userId, written))) {
+            throw new ServiceUnavailableException("Too many raffle entries in flight, please retry", 1);
+        }
+        return written;
+    }
+
+    private void drainLoop() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    Request next = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts a waiting worker; loop once more to drain what is left
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            processBatch(batch);
+            batch.clear();
+        }
+    }
+
+    void processBatch(List<Request> batch) {
+        Map<Key, List<CompletableFuture<Boolean>>> waiting = new LinkedHashMap<>();
+        for (Request request : batch) {
+            waiting.computeIfAbsent(new Key(request.productId(), request.userId()), key -> new ArrayList<>())
+                    .add(request.written());
+        }
+        batchSizeSummary.record(waiting.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        try {
+            Set<Long> open = transactionTemplate.execute(status -> {
+                Set<Long> lockedOpen = lockOpen(waiting.keySet().stream().map(Key::productId).toList(), now);
+                List<Object[]> rows = waiting.keySet().stream()
+                        .filter(key -> lockedOpen.contains(key.productId()))
+                        .map(key -> new Object[]{key.productId(), key.userId(), now})
+                        .toList();
+                jdbcTemplate.batchUpdate(INSERT, rows);
+                return lockedOpen;
+            });
+            waiting.forEach((key, futures) -> complete(futures, open.contains(key.productId())));
+            return;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Raffle entry batch of {} hit an existing entry, inserting one by one", waiting.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to write batch of {} raffle entries", waiting.size(), e);
+            waiting.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+            return;
+        }
+
+        waiting.forEach((key, futures) -> {
+            try {
+                Boolean written = transactionTemplate.execute(status -> {
+                    if (lockOpen(List.of(key.productId()), now).isEmpty()) {
+                        return false;
+                    }
+                    jdbcTemplate.update(INSERT, key.productId(), key.userId(), now);
+                    return true;
+                });
+                complete(futures, Boolean.TRUE.equals(written));
+            } catch (DataIntegrityViolationException e) {
+                // Already entered
+                complete(futures, true);
+            } catch (RuntimeException e) {
+                log.error("Failed to write raffle entry of user {} for product {}", key.userId(), key.productId(), e);
+                futures.forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+
+    /**
+     * Lock the raffle rows of the products still taking entries, in product order so concurrent
+     * batches on other instances cannot deadlock
+     *
+     * @return The products whose raffle is open
+     */
+    private Set<Long> lockOpen(Collection<Long> productIds, Timestamp now) {
+        Set<Long> open = new HashSet<>();
+        for (Long productId : new TreeSet<>(productIds)) {
+            open.addAll(jdbcTemplate.queryForList(LOCK_OPEN, Long.class, productId, now));
+        }
+        return open;
+    }
+
+    private static void complete(List<CompletableFuture<Boolean>> futures, boolean written) {
+        futures.forEach(future -> future.complete(written));
+    }
+}
@@ -0,0 +1,248 @@
+package com.flashsale.raffle;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.flashsale.entity.Raffle;
+import com.flashsale.entity.RaffleEntry;
+import com.flashsale.exception.ServiceUnavailableException;
+import com.flashsale.repository.RaffleEntryRepository;
+import com.flashsale.repository.RaffleRepository;
+import com.flashsale.service.ProductService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raffle allocation for products with far more buyers than stock
+ *
+ * While a product's raffle is open, a purchase only records an entry: one per user, appended by
+ * {@link RaffleEntryWriter} without touching stock, so buyers never race on the stock counter.
+ * Repeat entries from the same user are answered from a local cache. When entries close,
+ * {@link RaffleDraw} draws the winners and creates their orders in bulk; every other entrant
+ * is marked as lost. Entrants poll their result.
+ *
+ * Raffle state is cached per product for flashsale.raffle.state-cache-ttl (1s), so a raffle
+ * opened on another instance takes effect here within that time. The cache only turns entrants
+ * away early: whether an entry is accepted is decided against the raffle row when it is written,
+ * so a raffle closed early on another instance, or an entry still queued at closes_at, is answered
+ * CLOSED rather than recorded after the draw.
+ *
+ * Metrics: flashsale.raffle.entries, flashsale.raffle.entries.repeated
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RaffleService {
+
+    /**
+     * How a purchase of a product was handled by the raffle
+     */
+    public enum Admission { NOT_RAFFLE, ENTERED, CLOSED }
+
+    public enum EntryStatus { PENDING, WON, LOST }
+
+    /**
+     * Public state of a raffle; the seed is only shown once it is drawn
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RaffleView(Long productId, Raffle.RaffleStatus status, LocalDateTime closesAt, String seedHash,
+                             Long seed, Long entryCount, Integer winnerCount, LocalDateTime drawnAt) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record EntryView(Long productId, String userId, EntryStatus status, String orderId) {
+    }
+
+    private final RaffleRepository raffleRepository;
+    private final RaffleEntryRepository entryRepository;
+    private final RaffleEntryWriter entryWriter;
+    private final ProductService productService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.raffle.state-cache-ttl:1s}")
+    private Duration stateCacheTtl = Duration.ofSeconds(1);
+
+    @Value("${flashsale.raffle.entered-cache-size:1000000}")
+    private long enteredCacheSize = 1_000_000;
+
+    @Value("${flashsale.raffle.request-timeout:10s}")
+    private Duration requestTimeout = Duration.ofSeconds(10);
+
+    private final SecureRandom seeds = new SecureRandom();
+
+    private Cache<Long, Optional<Raffle>> states;
+    private Cache<String, Boolean> entered;
+    private Counter entriesCounter;
+    private Counter repeatedCounter;
+
+    @PostConstruct
+    void init() {
+        states = Caffeine.newBuilder()
+                .expireAfterWrite(stateCacheTtl)
+                .maximumSize(100_000)
+                .build();
+        entered = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofHours(6))
+                .maximumSize(enteredCacheSize)
+                .build();
+        entriesCounter = Counter.builder("flashsale.raffle.entries")
+                .description("Raffle entries written")
+                .register(meterRegistry);
+        repeatedCounter = Counter.builder("flashsale.raffle.entries.repeated")
+                .description("Repeat raffle entries answered from the local cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Enter users into a product's raffle, if the product has an undrawn one
+     *
+     * @param productId Product ID
+     * @param userIds Users to enter; each is entered once however often it appears
+     * @return NOT_RAFFLE if the purchase should go ahead first come first served
+     *         CLOSED if entries have closed, including while these entries were being written
+     * @throws ServiceUnavailableException if the entries could not be written in time
+     */
+    public Admission enter(Long productId, List<String> userIds) {
+        Raffle raffle = getState(productId).orElse(null);
+        if (raffle == null || raffle.getStatus() == Raffle.RaffleStatus.DRAWN) {
+            return Admission.NOT_RAFFLE;
+        }
+        if (raffle.getStatus() != Raffle.RaffleStatus.OPEN || !LocalDateTime.now().isBefore(raffle.getClosesAt())) {
+            return Admission.CLOSED;
+        }
+
+        List<String> fresh = userIds.stream()
+                .distinct()
+                .filter(userId -> entered.getIfPresent(enteredKey(productId, userId)) == null)
+                .toList();
+        repeatedCounter.increment(userIds.size() - fresh.size());
+        if (fresh.isEmpty()) {
+            return Admission.ENTERED;
+        }
+        List<CompletableFuture<Boolean>> writes = fresh.stream()
+                .map(userId -> entryWriter.submit(productId, userId))
+                .toList();
+        try {
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new))
+                    .get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ServiceUnavailableException("Raffle entry could not be recorded, please retry", 1);
+        }
+
+        // Entries are only written while the raffle row says OPEN, so an instance with a stale state
+        // cache, or an entry queued across closes_at, learns of the close here
+        int written = 0;
+        for (int i = 0; i < fresh.size(); i++) {
+            if (writes.get(i).join()) {
+                entered.put(enteredKey(productId, fresh.get(i)), Boolean.TRUE);
+                written++;
+            }
+        }
+        entriesCounter.increment(written);
+        if (written < fresh.size()) {
+            invalidate(productId);
+            return Admission.CLOSED;
+        }
+        return Admission.ENTERED;
+    }
+
+    /**
+     * When entries close, for responses; null if the product has no raffle
+     */
+    public LocalDateTime getClosesAt(Long productId) {
+        return getState(productId).map(Raffle::getClosesAt).orElse(null);
+    }
+
+    /**
+     * Put a product's stock up for raffle, with entries open from now on
+     *
+     * @param productId Product ID
+     * @param entryWindow How long entries stay open
+     * @throws IllegalStateException if the product already has a raffle
+     */
+    public RaffleView open(Long productId, Duration entryWindow) {
+        productService.getProduct(productId);
+        if (raffleRepository.existsById(productId)) {
+            throw new IllegalStateException("Product " + productId + " already has a raffle");
+        }
+        long seed = seeds.nextLong();
+        Raffle raffle = raffleRepository.save(Raffle.builder()
+                .productId(productId)
+                .status(Raffle.RaffleStatus.OPEN)
+                .closesAt(LocalDateTime.now().plus(entryWindow).truncatedTo(ChronoUnit.SECONDS))
+                .seed(seed)
+                .seedHash(seedHash(seed))
+                .build());
+        invalidate(productId);
+        log.info("Raffle opened for product {}, entries close at {}", productId, raffle.getClosesAt());
+        return view(raffle);
+    }
+
+    public Optional<RaffleView> getRaffle(Long productId) {
+        return raffleRepository.findById(productId).map(RaffleService::view);
+    }
+
+    /**
+     * Result of one user's entry, once drawn
+     */
+    public Optional<EntryView> getEntry(Long productId, String userId) {
+        return entryRepository.findByProductIdAndUserId(productId, userId).map(entry -> new EntryView(productId, userId,
+                entry.getResult() == null ? EntryStatus.PENDING
+                        : entry.getResult() == RaffleEntry.Result.WON ? EntryStatus.WON : EntryStatus.LOST,
+                entry.getOrderId()));
+    }
+
+    void invalidate(Long productId) {
+        states.invalidate(productId);
+    }
+
+    private Optional<Raffle> getState(Long productId) {
+        return states.get(productId, raffleRepository::findById);
+    }
+
+    private static RaffleView view(Raffle raffle) {
+        boolean drawn = raffle.getStatus() == Raffle.RaffleStatus.DRAWN;
+        return new RaffleView(raffle.getProductId(), raffle.getStatus(), raffle.getClosesAt(), raffle.getSeedHash(),
+                drawn ? raffle.getSeed() : null, raffle.getEntryCount(), raffle.getWinnerCount(), raffle.getDrawnAt());
+    }
+
+    private static String enteredKey(Long productId, String userId) {
+        return productId + ":" + userId;
+    }
+
+    /**
+     * SHA-256 of the seed's decimal form, published before the draw
+     */
+    static String seedHash(long seed) {
+        return HexFormat.of().formatHex(sha256().digest(Long.toString(seed).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.flashsale.repository;
+
+import com.flashsale.entity.PurchaseCap;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PurchaseCapRepository extends JpaRepository<PurchaseCap, PurchaseCap.Key> {
+}
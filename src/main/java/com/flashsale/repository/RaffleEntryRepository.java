@@ -0,0 +1,13 @@
+package com.flashsale.repository;
+
+import com.flashsale.entity.RaffleEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RaffleEntryRepository extends JpaRepository<RaffleEntry, Long> {
+
+    Optional<RaffleEntry> findByProductIdAndUserId(Long productId, String userId);
+}
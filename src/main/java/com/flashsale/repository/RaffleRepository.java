@@ -0,0 +1,14 @@
+package com.flashsale.repository;
+
+import com.flashsale.entity.Raffle;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RaffleRepository extends JpaRepository<Raffle, Long> {
+
+    List<Raffle> findByStatusAndClosesAtLessThanEqual(Raffle.RaffleStatus status, LocalDateTime closesAt);
+}
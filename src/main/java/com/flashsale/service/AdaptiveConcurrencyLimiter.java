@@ -0,0 +1,205 @@
+package com.flashsale.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on purchases in flight past the quota check
+ *
+ * Gradient algorithm: every sample-window the average latency of completed purchases (short RTT)
+ * is compared with a slow moving average of it (long RTT).
+ * - latency steady        : gradient 1, the limit grows by sqrt(limit) while it is actually used
+ * - latency rising (queue): gradient long/short < 1 shrinks the limit proportionally
+ * Changes are smoothed and clamped to [min-limit, max-limit]. No latency target has to be tuned;
+ * the limit settles where adding concurrency stops improving throughput and only adds queueing.
+ *
+ * Attempts over the limit get no permit and are rejected before any stock is touched.
+ *
+ * Metrics: flashsale.concurrency.limit, flashsale.concurrency.inflight, flashsale.concurrency.rejected
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.concurrency-limit.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.concurrency-limit.initial-limit:20}")
+    private int initialLimit = 20;
+
+    @Value("${flashsale.concurrency-limit.min-limit:4}")
+    private int minLimit = 4;
+
+    @Value("${flashsale.concurrency-limit.max-limit:200}")
+    private int maxLimit = 200;
+
+    @Value("${flashsale.concurrency-limit.smoothing:0.2}")
+    private double smoothing = 0.2;
+
+    @Value("${flashsale.concurrency-limit.long-window:100}")
+    private int longWindow = 100;
+
+    @Value("${flashsale.concurrency-limit.sample-window:100ms}")
+    private Duration sampleWindow = Duration.ofMillis(100);
+
+    @Value("${flashsale.concurrency-limit.retry-after:1s}")
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    LongSupplier clock = System::nanoTime;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder rttSumNanos = new LongAdder();
+    private final LongAdder rttCount = new LongAdder();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile double limit;
+    private volatile long windowStartNanos;
+    private double longRttNanos;
+    private Counter rejectedCounter;
+
+    private final Permit unlimited = new Permit(0, false);
+
+    /**
+     * One admitted purchase; release exactly once (further calls are ignored)
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final boolean counted;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, boolean counted) {
+            this.startNanos = startNanos;
+            this.counted = counted;
+        }
+
+        /**
+         * Work finished normally; its latency feeds the limit
+         */
+        public void release() {
+            if (counted && released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onSample(clock.getAsLong() - startNanos);
+            }
+        }
+
+        /**
+         * Work ended early (e.g. a dependency failed fast); free the slot without a latency sample
+         */
+        public void ignore() {
+            if (counted && released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+        windowStartNanos = clock.getAsLong();
+        Gauge.builder("flashsale.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on purchases in flight")
+                .register(meterRegistry);
+        Gauge.builder("flashsale.concurrency.inflight", inFlight, AtomicInteger::get)
+                .description("Purchases currently holding a concurrency permit")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("flashsale.concurrency.rejected")
+                .description("Purchases rejected because the concurrency limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return A permit, or null if the limit is reached and the caller must shed the request
+     */
+    public Permit tryAcquire() {
+        if (!enabled) {
+            return unlimited;
+        }
+        int current = inFlight.incrementAndGet();
+        if (current > (int) limit) {
+            inFlight.decrementAndGet();
+            rejectedCounter.increment();
+            return null;
+        }
+        peakInFlight.accumulateAndGet(current, Math::max);
+        return new Permit(clock.getAsLong(), true);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public long getRetryAfterSeconds() {
+        return Math.max(1, retryAfter.toSeconds());
+    }
+
+    private void onSample(long rttNanos) {
+        rttSumNanos.add(rttNanos);
+        rttCount.increment();
+        long now = clock.getAsLong();
+        if (now - windowStartNanos < sampleWindow.toNanos() || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now - windowStartNanos >= sampleWindow.toNanos()) {
+                windowStartNanos = now;
+                updateLimit();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * One gradient step; only ever runs on one thread at a time
+     */
+    private void updateLimit() {
+        long count = rttCount.sumThenReset();
+        long sum = rttSumNanos.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (count == 0) {
+            return;
+        }
+        double shortRtt = Math.max((double) sum / count, 1);
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos += (shortRtt - longRttNanos) * 2 / (longWindow + 1);
+            // Latency fell far below the baseline (e.g. after a burst): catch up instead of over-admitting later
+            if (longRttNanos / shortRtt > 2) {
+                longRttNanos *= 0.95;
+            }
+        }
+
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        if (peak < current / 2) {
+            // Not using the limit we have: no evidence that more concurrency would help
+            target = Math.min(target, current);
+        }
+        double next = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+        if ((int) limit != (int) current) {
+            log.debug("Concurrency limit {} -> {} (short RTT {}us, long RTT {}us)", (int) current, (int) limit,
+                    (long) shortRtt / 1000, (long) longRttNanos / 1000);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.flashsale.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.entity.Product;
+import com.flashsale.exception.ProductNotFoundException;
+import com.flashsale.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized catalog responses for GET /api/products and GET /api/products/{id}
+ *
+ * Each entry holds the JSON bytes (plus a gzip copy for large bodies) and a weak ETag made of an
+ * instance epoch and a build sequence number, so a matching If-None-Match is answered without a
+ * database read or serialization.
+ *
+ * Product writes invalidate everything once their transaction commits. Every entry is also rebuilt
+ * once it is flashsale.catalog.max-stock-staleness old, whatever happened locally: with several
+ * instances, purchases and product edits made elsewhere never reach this one, so age is the only
+ * bound on how out of date displayed stock and product data can be. A purchase never triggers a
+ * rebuild of its own.
+ *
+ * Rebuilds read in a read-only transaction, so with flashsale.datasource.read.enabled the catalog
+ * is served from the read pool (and its stock may additionally be up to the replica's lag behind).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogResponseCache {
+
+    private final ProductRepository productRepository;
+    private final InventoryService inventoryService;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${flashsale.catalog.max-stock-staleness:1s}")
+    private Duration maxStockStaleness = Duration.ofSeconds(1);
+
+    @Value("${flashsale.catalog.gzip-min-bytes:1024}")
+    private int gzipMinBytes = 1024;
+
+    @Value("${flashsale.catalog.max-products:10000}")
+    private long maxProducts = 10_000;
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final Object listLock = new Object();
+    private final Object[] productLocks = newLocks(64);
+
+    private volatile CachedResponse productList;
+    private Cache<Long, CachedResponse> products;
+    private TransactionTemplate readTransaction;
+
+    @PostConstruct
+    void init() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        products = Caffeine.newBuilder().maximumSize(maxProducts).build();
+    }
+
+    /**
+     * Serialized body and validator for one catalog resource
+     * gzip is null when the body is too small to be worth compressing
+     */
+    public record CachedResponse(byte[] json, byte[] gzip, String etag, long catalogVersion, long builtAtNanos) {
+
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag) || ("W/" + tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public CachedResponse getProductList() {
+        CachedResponse current = productList;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (listLock) {
+            current = productList;
+            if (isFresh(current)) {
+                return current;
+            }
+            long version = catalogVersion.get();
+            current = build(readTransaction.execute(status -> productRepository.findAll()), version, current);
+            productList = current;
+            return current;
+        }
+    }
+
+    /**
+     * Concurrent rebuilds of one product wait on its lock stripe, not inside the cache map, so a
+     * slow database read never blocks writes to unrelated entries that share a map bin
+     */
+    public CachedResponse getProduct(Long productId) {
+        CachedResponse current = products.getIfPresent(productId);
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (productLocks[Math.floorMod(productId.hashCode(), productLocks.length)]) {
+            current = products.getIfPresent(productId);
+            if (isFresh(current)) {
+                return current;
+            }
+            long version = catalogVersion.get();
+            CachedResponse built = build(readTransaction.execute(status -> productView(productId)), version, current);
+            // Never replace an entry built from a newer catalog version
+            return products.asMap().merge(productId, built,
+                    (existing, rebuilt) -> existing.catalogVersion() > rebuilt.catalogVersion() ? existing : rebuilt);
+        }
+    }
+
+    /**
+     * Drop every entry after the current transaction (if any) commits
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    catalogVersion.incrementAndGet();
+                }
+            });
+        } else {
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    private boolean isFresh(CachedResponse entry) {
+        return entry != null && entry.catalogVersion() == catalogVersion.get()
+                && System.nanoTime() - entry.builtAtNanos() < maxStockStaleness.toNanos();
+    }
+
+    /**
+     * Same body the endpoint has always returned: the product plus live and database stock
+     */
+    private Map<String, Object> productView(Long productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found: " + productId));
+        Map<String, Object> response = new HashMap<>();
+        response.put("product", product);
+        response.put("redisStock", inventoryService.getInventory(productId));
+        response.put("dbStock", product.getStockCount());
+        response.put("inventoryBackend", inventoryService.getBackendName());
+        return response;
+    }
+
+    /**
+     * A rebuild that produces the same bytes keeps the previous ETag, so clients keep getting 304s
+     */
+    private CachedResponse build(Object body, long version, CachedResponse previous) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            if (previous != null && Arrays.equals(previous.json(), json)) {
+                return new CachedResponse(previous.json(), previous.gzip(), previous.etag(), version, System.nanoTime());
+            }
+            byte[] gzip = json.length >= gzipMinBytes ? gzip(json) : null;
+            String etag = "W/\"" + epoch + "-" + builds.incrementAndGet() + "\"";
+            return new CachedResponse(json, gzip, etag, version, System.nanoTime());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize catalog response", e);
+        }
+    }
+
+    private static Object[] newLocks(int stripes) {
+        Object[] locks = new Object[stripes];
+        Arrays.setAll(locks, i -> new Object());
+        return locks;
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.size() < json.length ? buffer.toByteArray() : null;
+    }
+}
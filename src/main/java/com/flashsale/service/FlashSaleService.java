@@ -1,18 +1,37 @@
 package com.flashsale.service;
 
+import com.flashsale.abuse.AbuseDetector;
+import com.flashsale.analytics.SalesAnalytics;
+import com.flashsale.audit.PurchaseAuditLogger;
+import com.flashsale.diagnostics.PurchaseEvent;
+import com.flashsale.dto.BatchPurchaseRequest;
+import com.flashsale.dto.PurchaseOutcome;
 import com.flashsale.dto.PurchaseRequest;
 import com.flashsale.dto.PurchaseResponse;
 import com.flashsale.entity.Order;
 import com.flashsale.entity.Product;
+import com.flashsale.exception.ServiceUnavailableException;
+import com.flashsale.raffle.RaffleService;
+import com.flashsale.service.inventory.InventoryBackend;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Core Flash Sale Service
  * Orchestrates the purchase flow with rate limiting and inventory management
+ *
+ * Per-request outcomes go to the purchase audit channel and live sales analytics rather than
+ * the application log, which only carries debug-level detail on the hot path.
  */
 @Service
 @RequiredArgsConstructor
@@ -23,65 +42,330 @@ public class FlashSaleService {
     private final RateLimitService rateLimitService;
     private final ProductService productService;
     private final OrderService orderService;
+    private final OrderReadModel orderReadModel;
+    private final PurchaseAuditLogger auditLogger;
+    private final AbuseDetector abuseDetector;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final SalesAnalytics salesAnalytics;
+    private final RaffleService raffleService;
+
+    /**
+     * Process a purchase request from an internal caller (no client address)
+     */
+    public PurchaseResponse purchase(Long productId, PurchaseRequest request) {
+        return purchase(productId, request, null);
+    }
 
     /**
      * Process a purchase request
      * 
      * Flow:
-     * 1. Rate limit check
-     * 2. Atomic inventory decrement in Redis
-     * 3. If successful, create order asynchronously
+     * 1. Local sold-out check (no Redis or database call)
+     * 2. Abuse detection by user, IP and subnet (in-process sketches, see {@link AbuseDetector})
+     * 3. Quota check: per-user, per-product and global limits in one atomic step; products with an
+     *    undrawn raffle stop here and only record an entry (see {@link RaffleService})
+     * 4. Concurrency permit: over the adaptive limit the request fails with 503 and Retry-After
+     *    before any stock is touched (see {@link AdaptiveConcurrencyLimiter})
+     * 5. Atomic inventory decrement (see {@link InventoryService} for backends); for products with
+     *    a per-user cap, the buyer's count is checked and updated in the same atomic step
+     * 6. If successful, project the order to the read model and persist it asynchronously
      * 
      * @param productId Product ID to purchase
      * @param request Purchase request with user info
+     * @param clientIp Client address, or null when unknown
      * @return Purchase response
      */
-    public PurchaseResponse purchase(Long productId, PurchaseRequest request) {
+    public PurchaseResponse purchase(Long productId, PurchaseRequest request, String clientIp) {
+        long startNanos = System.nanoTime();
         String userId = request.getUserId();
+        int quantity = request.getQuantity() != null ? request.getQuantity() : 1;
         
-        log.info("Purchase attempt - Product: {}, User: {}", productId, userId);
+        log.debug("Purchase attempt - Product: {}, User: {}", productId, userId);
+
+        // Step 1: Cheapest rejection first - recently sold out products
+        if (inventoryService.isKnownSoldOut(productId)) {
+            recordOutcome(PurchaseOutcome.OUT_OF_STOCK, productId, userId, null, 0, startNanos, 0);
+            return PurchaseResponse.outOfStock(productId);
+        }
 
-        // Step 1: Rate limiting
-        if (!rateLimitService.isAllowed(userId)) {
-            log.warn("Rate limit exceeded for user: {}", userId);
-            return PurchaseResponse.rateLimited(userId);
+        // Step 2: Heavy hitters are blocked, or squeezed into a small slow lane, before they reach inventory
+        AbuseDetector.Verdict verdict = abuseDetector.inspect(userId, clientIp);
+        if (verdict == AbuseDetector.Verdict.ALLOW) {
+            return purchaseAdmitted(productId, userId, quantity, startNanos);
+        }
+        if (verdict == AbuseDetector.Verdict.DEPRIORITIZE && abuseDetector.tryEnterSlowLane()) {
+            try {
+                return purchaseAdmitted(productId, userId, quantity, startNanos);
+            } finally {
+                abuseDetector.exitSlowLane();
+            }
+        }
+        log.debug("Abuse protection rejected user: {}, client: {}", userId, clientIp);
+        recordOutcome(PurchaseOutcome.ABUSE_BLOCKED, productId, userId, null, -1, startNanos, 0);
+        return PurchaseResponse.blocked(userId);
+    }
+
+    private PurchaseResponse purchaseAdmitted(Long productId, String userId, int quantity, long startNanos) {
+        // Step 3: Rate limiting (user, product and global quotas)
+        Optional<RateLimitService.QuotaLevel> rejectedBy = rateLimitService.checkQuota(userId, productId);
+        if (rejectedBy.isPresent()) {
+            log.debug("Rate limit exceeded for user: {} at {} level", userId, rejectedBy.get());
+            recordOutcome(PurchaseOutcome.RATE_LIMITED, productId, userId, null, -1, startNanos, 0);
+            return PurchaseResponse.rateLimited(userId, rejectedBy.get().name().toLowerCase());
+        }
+        RaffleService.Admission admission = raffleService.enter(productId, List.of(userId));
+        if (admission != RaffleService.Admission.NOT_RAFFLE) {
+            return raffleResponse(admission, productId, userId, startNanos);
+        }
+
+        // Step 4: Shed load early instead of queueing on the inventory and order stages
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            log.debug("Concurrency limit {} reached, shedding purchase for user: {}", concurrencyLimiter.getLimit(), userId);
+            recordOutcome(PurchaseOutcome.OVERLOADED, productId, userId, null, -1, startNanos, 0);
+            throw new ServiceUnavailableException("Too many purchases in progress, please retry",
+                    concurrencyLimiter.getRetryAfterSeconds());
+        }
+        try {
+            PurchaseResponse response = purchaseWithPermit(productId, userId, quantity, startNanos);
+            permit.release();
+            return response;
+        } finally {
+            // No-op after release(); frees the slot without a latency sample if anything threw
+            permit.ignore();
         }
+    }
 
-        // Step 2: Validate product exists
+    private PurchaseResponse purchaseWithPermit(Long productId, String userId, int quantity, long startNanos) {
+        // Validate product exists
         Product product;
         try {
             product = productService.getProduct(productId);
         } catch (Exception e) {
-            log.error("Product not found: {}", productId);
+            log.debug("Product not found: {}", productId);
+            recordOutcome(PurchaseOutcome.PRODUCT_NOT_FOUND, productId, userId, null, -1, startNanos, 0);
             return PurchaseResponse.error("Product not found");
         }
 
-        // Step 3: Atomic inventory decrement (THE CRITICAL PART)
-        Long remainingStock = inventoryService.decrementInventory(productId);
+        // Step 5: Atomic inventory decrement (THE CRITICAL PART)
+        Long remainingStock = inventoryService.decrementInventory(productId, userId, quantity, product.getMaxPerUser());
 
+        if (remainingStock == InventoryBackend.CAP_EXCEEDED) {
+            log.debug("Purchase limit reached - Product: {}, User: {}", productId, userId);
+            recordOutcome(PurchaseOutcome.LIMIT_REACHED, productId, userId, null, -1, startNanos, 0);
+            return PurchaseResponse.limitReached(productId, userId, product.getMaxPerUser());
+        }
         if (remainingStock < 0) {
             // Out of stock
-            log.warn("Out of stock - Product: {}, User: {}", productId, userId);
+            log.debug("Out of stock - Product: {}, User: {}", productId, userId);
+            recordOutcome(PurchaseOutcome.OUT_OF_STOCK, productId, userId, null, 0, startNanos, 0);
             return PurchaseResponse.outOfStock(productId);
         }
 
-        // Step 4: Create order asynchronously
-        String orderId = UUID.randomUUID().toString();
-        Order order = Order.builder()
-                .orderId(orderId)
-                .productId(productId)
-                .userId(userId)
-                .quantity(request.getQuantity())
-                .price(product.getPrice())
-                .status(Order.OrderStatus.CONFIRMED)
-                .build();
+        // Step 6: Create order asynchronously
+        Order order = newOrder(product, userId, quantity);
+        String orderId = order.getOrderId();
 
-        // Save to database asynchronously (non-blocking)
+        // Visible to order-status reads immediately, then saved to database asynchronously (non-blocking)
+        orderReadModel.project(order);
         orderService.saveOrderAsync(order);
 
-        log.info("Purchase successful - Order: {}, Product: {}, User: {}, Remaining: {}", 
+        log.debug("Purchase successful - Order: {}, Product: {}, User: {}, Remaining: {}", 
                 orderId, productId, userId, remainingStock);
+        recordOutcome(PurchaseOutcome.SUCCESS, productId, userId, orderId, remainingStock, startNanos, quantity);
 
         return PurchaseResponse.success(orderId, productId, userId);
     }
+
+    /**
+     * Process a batch of purchases aggregated by a gateway
+     *
+     * Every item gets the same checks as {@link #purchase}, but the expensive steps are shared:
+     * one concurrency permit for the batch, one quota script call for all items, one product
+     * lookup per product, one stock decrement per product when stock covers the whole group
+     * (item by item otherwise, and always for products with a per-user cap), and one bulk order save. An item
+     * flagged for deprioritization proceeds only with a slow-lane permit, as a single purchase does, and
+     * holds it until the batch completes.
+     *
+     * @param items Purchases, possibly for different users and products
+     * @return One response per item, in request order
+     */
+    public List<PurchaseResponse> purchaseBatch(List<BatchPurchaseRequest.Item> items) {
+        long startNanos = System.nanoTime();
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            log.debug("Concurrency limit {} reached, shedding batch of {} purchases", concurrencyLimiter.getLimit(), items.size());
+            items.forEach(item -> recordOutcome(PurchaseOutcome.OVERLOADED, item.getProductId(), item.getUserId(),
+                    null, -1, startNanos, 0));
+            throw new ServiceUnavailableException("Too many purchases in progress, please retry",
+                    concurrencyLimiter.getRetryAfterSeconds());
+        }
+        try {
+            return purchaseBatchWithPermit(items, startNanos);
+        } finally {
+            // Batch latency is not comparable with a single purchase, so it does not feed the limit
+            permit.ignore();
+        }
+    }
+
+    private List<PurchaseResponse> purchaseBatchWithPermit(List<BatchPurchaseRequest.Item> items, long startNanos) {
+        PurchaseResponse[] responses = new PurchaseResponse[items.size()];
+
+        // Steps 1-2: local checks per item
+        List<Integer> candidates = new ArrayList<>();
+        int slowLanePermits = 0;
+        for (int i = 0; i < items.size(); i++) {
+            BatchPurchaseRequest.Item item = items.get(i);
+            if (inventoryService.isKnownSoldOut(item.getProductId())) {
+                recordOutcome(PurchaseOutcome.OUT_OF_STOCK, item.getProductId(), item.getUserId(), null, 0, startNanos, 0);
+                responses[i] = PurchaseResponse.outOfStock(item.getProductId());
+                continue;
+            }
+            AbuseDetector.Verdict verdict = abuseDetector.inspect(item.getUserId(), item.getClientIp());
+            if (verdict == AbuseDetector.Verdict.ALLOW) {
+                candidates.add(i);
+            } else if (verdict == AbuseDetector.Verdict.DEPRIORITIZE && abuseDetector.tryEnterSlowLane()) {
+                slowLanePermits++;
+                candidates.add(i);
+            } else {
+                recordOutcome(PurchaseOutcome.ABUSE_BLOCKED, item.getProductId(), item.getUserId(), null, -1, startNanos, 0);
+                responses[i] = PurchaseResponse.blocked(item.getUserId());
+            }
+        }
+        try {
+            return purchaseCandidates(items, candidates, responses, startNanos);
+        } finally {
+            for (int permit = 0; permit < slowLanePermits; permit++) {
+                abuseDetector.exitSlowLane();
+            }
+        }
+    }
+
+    private List<PurchaseResponse> purchaseCandidates(List<BatchPurchaseRequest.Item> items, List<Integer> candidates,
+                                                      PurchaseResponse[] responses, long startNanos) {
+        // Step 3: every quota in one round trip, then group survivors by product
+        List<Optional<RateLimitService.QuotaLevel>> rejections = rateLimitService.checkQuotas(candidates.stream()
+                .map(i -> new RateLimitService.QuotaRequest(items.get(i).getUserId(), items.get(i).getProductId()))
+                .toList());
+        Map<Long, List<Integer>> byProduct = new LinkedHashMap<>();
+        for (int k = 0; k < candidates.size(); k++) {
+            int i = candidates.get(k);
+            BatchPurchaseRequest.Item item = items.get(i);
+            Optional<RateLimitService.QuotaLevel> rejectedBy = rejections.get(k);
+            if (rejectedBy.isPresent()) {
+                recordOutcome(PurchaseOutcome.RATE_LIMITED, item.getProductId(), item.getUserId(), null, -1, startNanos, 0);
+                responses[i] = PurchaseResponse.rateLimited(item.getUserId(), rejectedBy.get().name().toLowerCase());
+            } else {
+                byProduct.computeIfAbsent(item.getProductId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // Steps 5-6: stock per product (raffle products only take entries), then all orders saved together
+        List<Order> orders = new ArrayList<>();
+        byProduct.forEach((productId, indexes) -> {
+            List<String> userIds = indexes.stream().map(i -> items.get(i).getUserId()).toList();
+            RaffleService.Admission admission = raffleService.enter(productId, userIds);
+            if (admission == RaffleService.Admission.NOT_RAFFLE) {
+                purchaseProductGroup(productId, indexes, items, responses, orders, startNanos);
+            } else {
+                indexes.forEach(i -> responses[i] = raffleResponse(admission, productId, items.get(i).getUserId(),
+                        startNanos));
+            }
+        });
+        if (!orders.isEmpty()) {
+            orderService.saveOrdersAsync(orders);
+        }
+        return Arrays.asList(responses);
+    }
+
+    private void purchaseProductGroup(Long productId, List<Integer> indexes, List<BatchPurchaseRequest.Item> items,
+                                      PurchaseResponse[] responses, List<Order> orders, long startNanos) {
+        Product product;
+        try {
+            product = productService.getProduct(productId);
+        } catch (Exception e) {
+            log.debug("Product not found: {}", productId);
+            for (int i : indexes) {
+                recordOutcome(PurchaseOutcome.PRODUCT_NOT_FOUND, productId, items.get(i).getUserId(), null, -1,
+                        startNanos, 0);
+                responses[i] = PurchaseResponse.error("Product not found");
+            }
+            return;
+        }
+
+        // Take the whole group in one decrement when stock allows; otherwise go item by item until it runs out.
+        // Capped products always go item by item, since each buyer's count is checked with the decrement.
+        Integer maxPerUser = product.getMaxPerUser();
+        long groupRemaining = -1;
+        if (maxPerUser == null) {
+            int total = indexes.stream().mapToInt(i -> quantityOf(items.get(i))).sum();
+            groupRemaining = inventoryService.decrementInventory(productId, total);
+        }
+        boolean groupTaken = groupRemaining >= 0;
+
+        for (int i : indexes) {
+            BatchPurchaseRequest.Item item = items.get(i);
+            String userId = item.getUserId();
+            long remainingStock;
+            if (groupTaken) {
+                remainingStock = groupRemaining;
+            } else if (inventoryService.isKnownSoldOut(productId)) {
+                remainingStock = -1;
+            } else {
+                remainingStock = inventoryService.decrementInventory(productId, userId, quantityOf(item), maxPerUser);
+            }
+
+            if (remainingStock == InventoryBackend.CAP_EXCEEDED) {
+                recordOutcome(PurchaseOutcome.LIMIT_REACHED, productId, userId, null, -1, startNanos, 0);
+                responses[i] = PurchaseResponse.limitReached(productId, userId, maxPerUser);
+                continue;
+            }
+            if (remainingStock < 0) {
+                recordOutcome(PurchaseOutcome.OUT_OF_STOCK, productId, userId, null, 0, startNanos, 0);
+                responses[i] = PurchaseResponse.outOfStock(productId);
+                continue;
+            }
+
+            Order order = newOrder(product, userId, quantityOf(item));
+            orderReadModel.project(order);
+            orders.add(order);
+            recordOutcome(PurchaseOutcome.SUCCESS, productId, userId, order.getOrderId(), remainingStock, startNanos,
+                    quantityOf(item));
+            responses[i] = PurchaseResponse.success(order.getOrderId(), productId, userId);
+        }
+    }
+
+    private PurchaseResponse raffleResponse(RaffleService.Admission admission, Long productId, String userId,
+                                            long startNanos) {
+        LocalDateTime closesAt = raffleService.getClosesAt(productId);
+        if (admission == RaffleService.Admission.ENTERED) {
+            recordOutcome(PurchaseOutcome.RAFFLE_ENTERED, productId, userId, null, -1, startNanos, 0);
+            return PurchaseResponse.raffleEntered(productId, userId, closesAt);
+        }
+        recordOutcome(PurchaseOutcome.RAFFLE_CLOSED, productId, userId, null, -1, startNanos, 0);
+        return PurchaseResponse.raffleClosed(productId, closesAt);
+    }
+
+    private void recordOutcome(PurchaseOutcome outcome, Long productId, String userId, String orderId,
+                               long remainingStock, long startNanos, int unitsSold) {
+        auditLogger.record(outcome, productId, userId, orderId, remainingStock, startNanos);
+        salesAnalytics.record(outcome, productId, unitsSold);
+        PurchaseEvent.emit(outcome.name(), productId, unitsSold, startNanos);
+    }
+
+    private static int quantityOf(BatchPurchaseRequest.Item item) {
+        return item.getQuantity() != null ? item.getQuantity() : 1;
+    }
+
+    private static Order newOrder(Product product, String userId, int quantity) {
+        return Order.builder()
+                .orderId(UUID.randomUUID().toString())
+                .productId(product.getId())
+                .userId(userId)
+                .quantity(quantity)
+                .price(product.getPrice())
+                .status(Order.OrderStatus.CONFIRMED)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
 }
@@ -0,0 +1,16 @@
+package com.flashsale.service;
+
+/**
+ * Callback for stock level changes made through {@link InventoryService}
+ *
+ * Invoked on the request thread that changed the stock, so implementations must only record
+ * the change and do their real work elsewhere.
+ */
+public interface InventoryChangeListener {
+
+    /**
+     * @param productId Product whose stock changed
+     * @param stock Stock level reported by the backend right after the change
+     */
+    void onInventoryChanged(Long productId, long stock);
+}
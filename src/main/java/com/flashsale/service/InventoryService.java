@@ -1,76 +1,189 @@
 package com.flashsale.service;
 
-import com.flashsale.entity.Product;
-import com.flashsale.repository.ProductRepository;
+import com.flashsale.diagnostics.StageEvent;
+import com.flashsale.service.inventory.InventoryBackend;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 /**
- * Database-based inventory management service
- * Uses atomic database operations to prevent overselling
+ * Inventory management service
+ * Delegates the stock counter to the configured {@link InventoryBackend}:
+ * - sql   : single conditional UPDATE on products.stock_count (default)
+ * - redis : Lua check-and-decrement on product:{id}:stock
+ * - jpa   : locked entity load-and-save (baseline for benchmarks)
+ * - crdt  : per-instance share of the stock, replicated between peers (active-active)
+ *
+ * Products that fail a single-unit decrement are remembered as sold out for
+ * flashsale.inventory.sold-out-cache-ttl, so repeat attempts are rejected without a backend
+ * call. While the backend is degraded (Redis circuit open) the marks do not expire.
+ *
+ * Stock changes are reported to registered {@link InventoryChangeListener}s.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
 
-    private final ProductRepository productRepository;
+    private final List<InventoryBackend> backends;
+
+    @Value("${flashsale.inventory.backend:sql}")
+    private String backendName;
+
+    @Value("${flashsale.inventory.sold-out-cache-ttl:1s}")
+    private Duration soldOutCacheTtl = Duration.ofSeconds(1);
+
+    private InventoryBackend backend;
+
+    /**
+     * Product ID -> System.nanoTime() when it was last seen sold out
+     */
+    private final Map<Long, Long> soldOutAt = new ConcurrentHashMap<>();
+
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    void selectBackend() {
+        backend = backends.stream()
+                .filter(candidate -> candidate.name().equalsIgnoreCase(backendName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown inventory backend '" + backendName
+                        + "', expected one of " + backends.stream().map(InventoryBackend::name)
+                        .collect(Collectors.joining(", "))));
+        log.info("Using {} inventory backend", backend.name());
+    }
+
+    /**
+     * @return name of the active inventory backend
+     */
+    public String getBackendName() {
+        return backend.name();
+    }
+
+    /**
+     * Register a listener for stock changes
+     */
+    public void addListener(InventoryChangeListener listener) {
+        listeners.add(listener);
+    }
 
     /**
-     * Initialize inventory for a product (already handled by Product entity)
+     * Initialize inventory for a product
      * @param productId Product ID
      * @param stockCount Initial stock count
      */
     public void initializeInventory(Long productId, Integer stockCount) {
-        productRepository.findById(productId).ifPresent(product -> {
-            product.setStockCount(stockCount);
-            productRepository.save(product);
-            log.info("Initialized inventory for product {} with {} items", productId, stockCount);
+        backend.initialize(productId, stockCount);
+        soldOutAt.remove(productId);
+        notifyListeners(productId, stockCount);
+        log.info("Initialized inventory for product {} with {} items", productId, stockCount);
+    }
+
+    /**
+     * Initialize inventory for many products in one backend call (bulk import)
+     * @param stockCounts Product ID -> initial stock count
+     */
+    public void initializeInventory(Map<Long, Integer> stockCounts) {
+        if (stockCounts.isEmpty()) {
+            return;
+        }
+        backend.initialize(stockCounts);
+        stockCounts.forEach((productId, stockCount) -> {
+            soldOutAt.remove(productId);
+            notifyListeners(productId, stockCount);
         });
+        log.debug("Initialized inventory for {} products", stockCounts.size());
     }
 
     /**
-     * Atomic decrement of inventory using database
-     * Uses optimistic locking to prevent overselling
+     * Atomic decrement of a single unit of inventory
      * 
      * @param productId Product ID
      * @return remaining stock after decrement, or -1 if out of stock
      */
-    @Transactional
     public Long decrementInventory(Long productId) {
-        Product product = productRepository.findById(productId).orElse(null);
-        
-        if (product == null) {
-            log.warn("Product {} not found", productId);
+        return decrementInventory(productId, 1);
+    }
+
+    /**
+     * Atomic decrement of inventory
+     *
+     * @param productId Product ID
+     * @param quantity Units to take
+     * @return remaining stock after decrement, or -1 if there was not enough stock
+     */
+    public Long decrementInventory(Long productId, int quantity) {
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        long remaining = backend.decrement(productId, quantity);
+        stage.commit("inventory.decrement", productId, backend.name());
+        if (remaining < 0) {
+            log.debug("Product {} is out of stock", productId);
+            if (quantity == 1) {
+                soldOutAt.put(productId, System.nanoTime());
+            }
             return -1L;
         }
-        
-        // Check current stock
-        if (product.getStockCount() <= 0) {
-            log.warn("Product {} is out of stock", productId);
+        log.debug("Product {} decremented. Remaining: {}", productId, remaining);
+        notifyListeners(productId, remaining);
+        return remaining;
+    }
+
+    /**
+     * Atomic decrement within the buyer's lifetime cap for the product
+     *
+     * @param productId Product ID
+     * @param userId Buyer
+     * @param quantity Units to take
+     * @param maxPerUser Units one user may buy in total, or null for no cap
+     * @return remaining stock after decrement, -1 if there was not enough stock, or
+     * {@link InventoryBackend#CAP_EXCEEDED} if the buyer would go over the cap
+     */
+    public Long decrementInventory(Long productId, String userId, int quantity, Integer maxPerUser) {
+        if (maxPerUser == null) {
+            return decrementInventory(productId, quantity);
+        }
+        if (quantity > maxPerUser) {
+            return InventoryBackend.CAP_EXCEEDED;
+        }
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        long remaining = backend.decrement(productId, userId, quantity, maxPerUser);
+        stage.commit("inventory.decrement", productId, backend.name());
+        if (remaining == InventoryBackend.CAP_EXCEEDED) {
+            log.debug("User {} reached the cap of {} for product {}", userId, maxPerUser, productId);
+            return remaining;
+        }
+        if (remaining < 0) {
+            log.debug("Product {} is out of stock", productId);
+            if (quantity == 1) {
+                soldOutAt.put(productId, System.nanoTime());
+            }
             return -1L;
         }
-        
-        // Atomic decrement using database
-        product.setStockCount(product.getStockCount() - 1);
-        productRepository.save(product);
-        
-        Long remaining = (long) product.getStockCount();
         log.debug("Product {} decremented. Remaining: {}", productId, remaining);
+        notifyListeners(productId, remaining);
         return remaining;
     }
 
     /**
      * Get current inventory count
+     * On the sql and jpa backends this is a read-only transaction: with a read pool configured it may
+     * be up to flashsale.datasource.read.max-lag behind, unless called inside a read-write transaction
      * @param productId Product ID
      * @return current stock count
      */
     public Long getInventory(Long productId) {
-        return productRepository.findById(productId)
-                .map(product -> (long) product.getStockCount())
-                .orElse(0L);
+        return backend.get(productId);
     }
 
     /**
@@ -78,16 +191,25 @@ public class InventoryService {
      * @param productId Product ID
      * @return new stock count
      */
-    @Transactional
     public Long incrementInventory(Long productId) {
-        Product product = productRepository.findById(productId).orElse(null);
-        if (product != null) {
-            product.setStockCount(product.getStockCount() + 1);
-            productRepository.save(product);
-            log.info("Product {} inventory incremented to {}", productId, product.getStockCount());
-            return (long) product.getStockCount();
-        }
-        return 0L;
+        return incrementInventory(productId, 1);
+    }
+
+    /**
+     * Return units of inventory in one backend call and republish the product as available
+     * @param productId Product ID
+     * @param quantity Units to return
+     * @return new stock count
+     */
+    public Long incrementInventory(Long productId, int quantity) {
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        long stock = backend.increment(productId, quantity);
+        stage.commit("inventory.increment", productId, backend.name());
+        soldOutAt.remove(productId);
+        notifyListeners(productId, stock);
+        log.info("Product {} inventory incremented by {} to {}", productId, quantity, stock);
+        return stock;
     }
 
     /**
@@ -96,16 +218,38 @@ public class InventoryService {
      * @return true if stock > 0
      */
     public boolean hasStock(Long productId) {
-        return productRepository.findById(productId)
-                .map(product -> product.getStockCount() > 0)
-                .orElse(false);
+        return backend.get(productId) > 0;
     }
 
     /**
-     * Delete inventory (for cleanup) - not needed with database approach
+     * Check the local sold-out cache without touching the backend
+     * @param productId Product ID
+     * @return true if the product was recently seen sold out
+     */
+    public boolean isKnownSoldOut(Long productId) {
+        Long markedAt = soldOutAt.get(productId);
+        if (markedAt == null) {
+            return false;
+        }
+        if (backend.isDegraded() || System.nanoTime() - markedAt < soldOutCacheTtl.toNanos()) {
+            return true;
+        }
+        soldOutAt.remove(productId, markedAt);
+        return false;
+    }
+
+    /**
+     * Delete inventory (for cleanup)
      * @param productId Product ID
      */
     public void deleteInventory(Long productId) {
-        log.info("Inventory cleanup for product {} (using database, no action needed)", productId);
+        backend.delete(productId);
+        log.info("Inventory cleanup for product {} ({} backend)", productId, backend.name());
+    }
+
+    private void notifyListeners(Long productId, long stock) {
+        for (InventoryChangeListener listener : listeners) {
+            listener.onInventoryChanged(productId, stock);
+        }
     }
 }
@@ -0,0 +1,278 @@
+package com.flashsale.service;
+
+import com.flashsale.entity.Order;
+import com.flashsale.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Batched order cancellation and restock pipeline
+ *
+ * Callers only enqueue order IDs. A single worker thread drains the queue in batches of up to
+ * flashsale.orders.cancellation.batch-size, waiting at most linger for a batch to fill, and for
+ * each batch:
+ * 1. locks the batch's orders with one SELECT ... FOR UPDATE and moves the cancellable ones to
+ *    CANCELLED with one UPDATE ... WHERE order_id IN (...), in one transaction
+ * 2. adds the cancelled units back with one increment per product, which clears the product's
+ *    sold-out mark and notifies stock listeners (sales analytics)
+ * 3. projects the cancelled orders into the {@link OrderReadModel}
+ *
+ * Restock runs after the status change commits. If it fails, the units stay unsold rather than
+ * being sold twice; the failure is logged with the product and units, and counted, so the
+ * stock can be reconciled.
+ *
+ * Metrics: flashsale.orders.cancelled, flashsale.orders.cancellation.batch-size,
+ * flashsale.orders.restock.failed
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderCancellationService {
+
+    public enum Result { CANCELLED, ALREADY_CANCELLED, NOT_CANCELLABLE, NOT_FOUND }
+
+    private static final Set<Order.OrderStatus> CANCELLABLE =
+            EnumSet.of(Order.OrderStatus.PENDING, Order.OrderStatus.CONFIRMED, Order.OrderStatus.PROCESSING);
+
+    private static final String SELECT_FOR_UPDATE =
+            "SELECT id, order_id, product_id, user_id, quantity, price, status, created_at " +
+            "FROM orders WHERE order_id IN (:orderIds) FOR UPDATE";
+
+    private static final String CANCEL =
+            "UPDATE orders SET status = 'CANCELLED' WHERE order_id IN (:orderIds)";
+
+    private static final RowMapper<Order> ORDER_ROW = (rs, rowNum) -> Order.builder()
+            .id(rs.getLong("id"))
+            .orderId(rs.getString("order_id"))
+            .productId(rs.getLong("product_id"))
+            .userId(rs.getString("user_id"))
+            .quantity(rs.getInt("quantity"))
+            .price(rs.getBigDecimal("price"))
+            .status(Order.OrderStatus.valueOf(rs.getString("status")))
+            .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryService inventoryService;
+    private final OrderReadModel orderReadModel;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.orders.cancellation.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${flashsale.orders.cancellation.linger:20ms}")
+    private Duration linger = Duration.ofMillis(20);
+
+    @Value("${flashsale.orders.cancellation.queue-capacity:100000}")
+    private int queueCapacity = 100_000;
+
+    @Value("${flashsale.orders.cancellation.request-timeout:30s}")
+    private Duration requestTimeout = Duration.ofSeconds(30);
+
+    private record Request(String orderId, CompletableFuture<Result> result) {
+    }
+
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    private BlockingQueue<Request> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    private Counter cancelledCounter;
+    private Counter restockFailedCounter;
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    void start() {
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        cancelledCounter = Counter.builder("flashsale.orders.cancelled")
+                .description("Orders moved to CANCELLED by the cancellation pipeline")
+                .register(meterRegistry);
+        restockFailedCounter = Counter.builder("flashsale.orders.restock.failed")
+                .description("Units of cancelled orders that could not be returned to stock")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("flashsale.orders.cancellation.batch-size")
+                .description("Cancellation requests applied per batch")
+                .register(meterRegistry);
+
+        running = true;
+        worker = new Thread(this::drainLoop, "order-cancellation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue one order for cancellation
+     *
+     * @param orderId Order ID
+     * @return Completes once the batch holding this order has been applied
+     * @throws ServiceUnavailableException if the pipeline is full
+     */
+    public CompletableFuture<Result> submit(String orderId) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        if (!queue.offer(new Request(orderId, result))) {
+            throw new ServiceUnavailableException("Cancellation queue is full, please retry", 1);
+        }
+        return result;
+    }
+
+    /**
+     * Cancel orders and wait for the outcome
+     * Requests from concurrent callers are coalesced into the same batches
+     *
+     * @param orderIds Order IDs; duplicates are reported once
+     * @return Outcome per order ID, in request order
+     */
+    public Map<String, Result> cancel(Collection<String> orderIds) {
+        Map<String, CompletableFuture<Result>> pending = new LinkedHashMap<>();
+        for (String orderId : orderIds) {
+            pending.computeIfAbsent(orderId, this::submit);
+        }
+        try {
+            CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0]))
+                    .get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ServiceUnavailableException("Cancellation did not complete in time, please retry", 1);
+        }
+        Map<String, Result> results = new LinkedHashMap<>();
+        pending.forEach((orderId, result) -> results.put(orderId, result.join()));
+        return results;
+    }
+
+    private void drainLoop() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    Request next = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts a waiting worker; loop once more to drain what is left
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            processBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Apply one batch: status transition, aggregated restock, read model projection
+     */
+    void processBatch(List<Request> batch) {
+        Map<String, List<CompletableFuture<Result>>> waiting = batch.stream()
+                .collect(Collectors.groupingBy(Request::orderId, LinkedHashMap::new,
+                        Collectors.mapping(Request::result, Collectors.toList())));
+        batchSizeSummary.record(waiting.size());
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        List<Order> cancelled;
+        try {
+            cancelled = transactionTemplate.execute(status -> cancelInDatabase(List.copyOf(waiting.keySet()), results));
+        } catch (RuntimeException e) {
+            log.error("Failed to cancel batch of {} orders", waiting.size(), e);
+            waiting.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+            return;
+        }
+
+        restock(cancelled);
+        cancelled.forEach(orderReadModel::project);
+        cancelledCounter.increment(cancelled.size());
+
+        waiting.forEach((orderId, futures) -> {
+            Result result = results.getOrDefault(orderId, Result.NOT_FOUND);
+            futures.forEach(future -> future.complete(result));
+        });
+        log.debug("Cancellation batch: {} requested, {} cancelled", waiting.size(), cancelled.size());
+    }
+
+    /**
+     * Two statements for the whole batch: lock and read, then update the cancellable rows
+     */
+    private List<Order> cancelInDatabase(List<String> orderIds, Map<String, Result> results) {
+        List<Order> cancelled = new ArrayList<>();
+        for (Order order : namedJdbcTemplate.query(SELECT_FOR_UPDATE, Map.of("orderIds", orderIds), ORDER_ROW)) {
+            if (order.getStatus() == Order.OrderStatus.CANCELLED) {
+                results.put(order.getOrderId(), Result.ALREADY_CANCELLED);
+            } else if (!CANCELLABLE.contains(order.getStatus())) {
+                results.put(order.getOrderId(), Result.NOT_CANCELLABLE);
+            } else {
+                results.put(order.getOrderId(), Result.CANCELLED);
+                cancelled.add(order.toBuilder().status(Order.OrderStatus.CANCELLED).build());
+            }
+        }
+        if (!cancelled.isEmpty()) {
+            namedJdbcTemplate.update(CANCEL, Map.of("orderIds", cancelled.stream().map(Order::getOrderId).toList()));
+        }
+        return cancelled;
+    }
+
+    /**
+     * One increment per product for all of its cancelled units
+     */
+    private void restock(List<Order> cancelled) {
+        Map<Long, Integer> units = cancelled.stream()
+                .collect(Collectors.groupingBy(Order::getProductId, LinkedHashMap::new,
+                        Collectors.summingInt(Order::getQuantity)));
+        units.forEach((productId, quantity) -> {
+            try {
+                inventoryService.incrementInventory(productId, quantity);
+            } catch (RuntimeException e) {
+                restockFailedCounter.increment(quantity);
+                log.error("Failed to restock {} units of product {} after cancellation; reconcile stock manually",
+                        quantity, productId, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,214 @@
+package com.flashsale.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the day-partitioned orders table (see db/orders-partitioning.sql)
+ *
+ * Keeps partitions created a few days ahead of the clock so inserts always land in a small,
+ * freshly indexed partition, and moves partitions older than the hot window out of the database:
+ * detach, export to a gzipped CSV under the archive directory, then drop. Each step is
+ * idempotent, so a run interrupted after the detach finishes the job on the next run. Archiving
+ * also releases the partition's order ids from the order_ids uniqueness guard, which would
+ * otherwise keep every order id ever taken.
+ *
+ * PostgreSQL only; does nothing unless enabled and the orders table is actually partitioned.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPartitionManager {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("orders_p(\\d{8})");
+    private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String ARCHIVE_COLUMNS = "id,order_id,product_id,user_id,quantity,price,status,created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${flashsale.orders.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${flashsale.orders.partitioning.premake-days:7}")
+    private int premakeDays = 7;
+
+    @Value("${flashsale.orders.partitioning.hot-days:30}")
+    private int hotDays = 30;
+
+    @Value("${flashsale.orders.partitioning.archive-dir:archive/orders}")
+    private Path archiveDir;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Create upcoming partitions and archive cold ones
+     */
+    @Scheduled(cron = "${flashsale.orders.partitioning.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        if (!isPartitioned()) {
+            log.warn("Order partitioning is enabled but orders is not a partitioned table; " +
+                    "run db/orders-partitioning.sql first");
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        createUpcomingPartitions(today);
+        archiveColdPartitions(today);
+    }
+
+    void createUpcomingPartitions(LocalDate today) {
+        Set<String> attached = Set.copyOf(attachedPartitions());
+        for (int offset = 0; offset <= premakeDays; offset++) {
+            LocalDate day = today.plusDays(offset);
+            String name = partitionName(day);
+            if (attached.contains(name)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF orders " + partitionBounds(day));
+                log.info("Created order partition {}", name);
+            } catch (DataAccessException e) {
+                // Typically rows for this day already sit in orders_default
+                log.warn("Could not create order partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    void archiveColdPartitions(LocalDate today) {
+        LocalDate oldestHotDay = today.minusDays(hotDays);
+        List<String> attached = attachedPartitions();
+        for (String name : dayTables()) {
+            LocalDate day = partitionDay(name);
+            if (day == null || !day.isBefore(oldestHotDay)) {
+                continue;
+            }
+            try {
+                if (attached.contains(name)) {
+                    jdbcTemplate.execute("ALTER TABLE orders DETACH PARTITION " + name);
+                }
+                Path file = export(name);
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("DELETE FROM order_ids WHERE order_id IN (SELECT order_id FROM " + name + ")");
+                    jdbcTemplate.execute("DROP TABLE " + name);
+                });
+                log.info("Archived order partition {} to {}", name, file);
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error("Failed to archive order partition {}", name, e);
+            }
+        }
+    }
+
+    /**
+     * Stream a detached partition to {name}.csv.gz; written to a temp file and moved into place
+     * so a partial export is never mistaken for a complete one
+     */
+    private Path export(String name) {
+        Path target = archiveDir.resolve(name + ".csv.gz");
+        Path temp = archiveDir.resolve(name + ".csv.gz.tmp");
+        try {
+            Files.createDirectories(archiveDir);
+            try (Writer writer = new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8)) {
+                writer.write(ARCHIVE_COLUMNS);
+                writer.write('\n');
+                // A transaction lets the PostgreSQL driver stream with a cursor instead of buffering the table
+                JdbcTemplate exporter = new JdbcTemplate(jdbcTemplate.getDataSource());
+                exporter.setFetchSize(1000);
+                transactionTemplate.executeWithoutResult(status ->
+                        exporter.query("SELECT " + ARCHIVE_COLUMNS + " FROM " + name + " ORDER BY id", rs -> {
+                            try {
+                                writer.write(rs.getLong(1) + "," + csv(rs.getString(2)) + "," + rs.getLong(3) + ","
+                                        + csv(rs.getString(4)) + "," + rs.getInt(5) + "," + rs.getBigDecimal(6).toPlainString()
+                                        + "," + csv(rs.getString(7)) + "," + rs.getTimestamp(8).toLocalDateTime() + "\n");
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        try {
+            Boolean partitioned = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('orders'))",
+                    Boolean.class);
+            return Boolean.TRUE.equals(partitioned);
+        } catch (DataAccessException e) {
+            log.warn("Could not inspect orders partitioning (PostgreSQL required): {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private List<String> attachedPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass('orders')", String.class);
+    }
+
+    /**
+     * Daily partitions whether attached or left detached by an interrupted run
+     */
+    private List<String> dayTables() {
+        return jdbcTemplate.queryForList(
+                "SELECT tablename FROM pg_tables WHERE schemaname = current_schema() " +
+                "AND tablename ~ '^orders_p[0-9]{8}$' ORDER BY tablename", String.class);
+    }
+
+    static String partitionName(LocalDate day) {
+        return "orders_p" + PARTITION_DAY.format(day);
+    }
+
+    /**
+     * Range of a daily partition: the whole day, upper bound exclusive
+     */
+    static String partitionBounds(LocalDate day) {
+        return "FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+    }
+
+    static LocalDate partitionDay(String name) {
+        Matcher matcher = PARTITION_NAME.matcher(name);
+        return matcher.matches() ? LocalDate.parse(matcher.group(1), PARTITION_DAY) : null;
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,186 @@
+package com.flashsale.service;
+
+import com.flashsale.entity.Order;
+import com.flashsale.repository.OrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-side projection of orders (CQRS query model)
+ *
+ * Orders are projected when stock is taken, before the asynchronous insert, so a buyer sees their
+ * order immediately and status reads do not compete with order writes for pool connections.
+ * Two bounded tiers: orders by orderId, and each user's orders. A user's list is only served from
+ * memory once it is complete, i.e. it has been merged with the user's rows from the database
+ * once; after that, projections keep it current. The database is the fallback for everything else.
+ *
+ * Only those database fallbacks run in a read-only transaction (routed to the read pool when it is
+ * enabled). A read served from memory starts no transaction and checks out no connection.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderReadModel {
+
+    private final OrderRepository orderRepository;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${flashsale.orders.read-model.max-orders:200000}")
+    private long maxOrders = 200_000;
+
+    @Value("${flashsale.orders.read-model.max-users:100000}")
+    private long maxUsers = 100_000;
+
+    @Value("${flashsale.orders.read-model.max-orders-per-user:100}")
+    private int maxOrdersPerUser = 100;
+
+    @Value("${flashsale.orders.read-model.expire-after-access:30m}")
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+
+    private Cache<String, Order> byOrderId;
+    private Cache<String, UserOrders> byUser;
+    private TransactionTemplate readTransaction;
+
+    @PostConstruct
+    void init() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        byOrderId = Caffeine.newBuilder()
+                .maximumSize(maxOrders)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        byUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byOrderId, "orders.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUser, "orders.by-user");
+    }
+
+    /**
+     * Apply a new or changed order to the read side
+     */
+    public void project(Order order) {
+        Order snapshot = order.toBuilder().build();
+        byOrderId.put(snapshot.getOrderId(), snapshot);
+        byUser.asMap().merge(snapshot.getUserId(), UserOrders.partial(snapshot),
+                (existing, projected) -> existing.with(snapshot, maxOrdersPerUser));
+    }
+
+    /**
+     * Remove an order that never made it to the database
+     */
+    public void evict(Order order) {
+        byOrderId.invalidate(order.getOrderId());
+        byUser.asMap().computeIfPresent(order.getUserId(), (userId, existing) -> existing.without(order.getOrderId()));
+    }
+
+    /**
+     * Orders for a user, oldest first
+     */
+    public List<Order> getUserOrders(String userId) {
+        UserOrders cached = byUser.getIfPresent(userId);
+        if (cached != null && cached.complete()) {
+            return cached.orders();
+        }
+        List<Order> persisted = readTransaction.execute(status -> orderRepository.findByUserId(userId));
+        if (persisted.size() > maxOrdersPerUser) {
+            return persisted;
+        }
+        UserOrders merged = byUser.asMap().merge(userId, UserOrders.complete(persisted),
+                (existing, loaded) -> existing.mergeWith(loaded, maxOrdersPerUser));
+        return merged.orders();
+    }
+
+    public Optional<Order> getOrder(String orderId) {
+        Order cached = byOrderId.getIfPresent(orderId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Order> persisted = readTransaction.execute(status -> orderRepository.findByOrderId(orderId));
+        persisted.ifPresent(order -> byOrderId.asMap().putIfAbsent(orderId, order));
+        return persisted;
+    }
+
+    /**
+     * Every order, always from the database; not cached
+     */
+    public List<Order> getAllOrders() {
+        return readTransaction.execute(status -> orderRepository.findAll());
+    }
+
+    /**
+     * A user's orders keyed by orderId, sorted by creation time
+     * complete: the database rows for this user have been merged in
+     */
+    record UserOrders(List<Order> orders, boolean complete) {
+
+        private static final Comparator<Order> BY_CREATED_AT = Comparator.comparing(Order::getCreatedAt,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+
+        static UserOrders partial(Order order) {
+            return new UserOrders(List.of(order), false);
+        }
+
+        static UserOrders complete(List<Order> orders) {
+            return of(index(orders), true, Integer.MAX_VALUE);
+        }
+
+        UserOrders with(Order order, int limit) {
+            Map<String, Order> updated = index(orders);
+            updated.put(order.getOrderId(), order);
+            return of(updated, complete, limit);
+        }
+
+        UserOrders without(String orderId) {
+            Map<String, Order> updated = index(orders);
+            updated.remove(orderId);
+            return new UserOrders(List.copyOf(updated.values()), complete);
+        }
+
+        /**
+         * Projected versions win over loaded rows: they may carry a status change not yet written
+         */
+        UserOrders mergeWith(UserOrders loaded, int limit) {
+            Map<String, Order> merged = index(loaded.orders);
+            merged.putAll(index(orders));
+            return of(merged, true, limit);
+        }
+
+        private static UserOrders of(Map<String, Order> orders, boolean complete, int limit) {
+            List<Order> sorted = new ArrayList<>(orders.values());
+            sorted.sort(BY_CREATED_AT);
+            if (sorted.size() > limit) {
+                // Too many to hold in full; keep the newest and let reads go to the database
+                return new UserOrders(List.copyOf(sorted.subList(sorted.size() - limit, sorted.size())), false);
+            }
+            return new UserOrders(List.copyOf(sorted), complete);
+        }
+
+        private static Map<String, Order> index(List<Order> orders) {
+            Map<String, Order> indexed = new LinkedHashMap<>();
+            orders.forEach(order -> indexed.put(order.getOrderId(), order));
+            return indexed;
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.flashsale.service;
 
+import com.flashsale.diagnostics.StageEvent;
 import com.flashsale.entity.Order;
 import com.flashsale.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -17,43 +20,105 @@ import java.util.concurrent.CompletableFuture;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderReadModel orderReadModel;
 
     /**
      * Asynchronously save order to database
      * This prevents database writes from blocking the API response
+     * Idempotent on orderId (see {@link #saveOrder})
      */
     @Async("orderProcessingExecutor")
-    @Transactional
     public CompletableFuture<Order> saveOrderAsync(Order order) {
+        StageEvent stage = new StageEvent();
+        stage.begin();
         try {
-            Order savedOrder = orderRepository.save(order);
-            log.info("Order {} saved to database for user: {}", savedOrder.getOrderId(), savedOrder.getUserId());
+            Order savedOrder = saveOrder(order);
+            stage.commit("order.save", order.getProductId(), null);
             return CompletableFuture.completedFuture(savedOrder);
         } catch (Exception e) {
             log.error("Failed to save order {}", order.getOrderId(), e);
+            orderReadModel.evict(order);
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronously save the orders of one batch purchase
+     * All rows go in with one saveAll (one transaction and connection checkout). If that fails on a
+     * duplicate (a retried batch), each order is saved on its own with the same idempotency as
+     * {@link #saveOrderAsync}.
+     */
+    @Async("orderProcessingExecutor")
+    public CompletableFuture<List<Order>> saveOrdersAsync(List<Order> orders) {
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        try {
+            List<Order> savedOrders = orderRepository.saveAll(orders);
+            stage.commit("order.save-batch", null, String.valueOf(orders.size()));
+            log.debug("Saved batch of {} orders", savedOrders.size());
+            return CompletableFuture.completedFuture(savedOrders);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Batch of {} orders hit an existing order, saving one by one", orders.size());
+        } catch (Exception e) {
+            log.error("Failed to save batch of {} orders", orders.size(), e);
+            orders.forEach(orderReadModel::evict);
             throw e;
         }
+
+        List<Order> savedOrders = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            try {
+                savedOrders.add(saveOrder(order));
+            } catch (Exception e) {
+                log.error("Failed to save order {}", order.getOrderId(), e);
+                orderReadModel.evict(order);
+            }
+        }
+        return CompletableFuture.completedFuture(savedOrders);
+    }
+
+    /**
+     * Idempotent on orderId: a retried submission returns the row that is already stored
+     * instead of inserting a duplicate, including when two submissions race on the unique key.
+     * Each repository call runs in its own transaction so a lost race does not poison the lookup.
+     */
+    private Order saveOrder(Order order) {
+        Optional<Order> existing = orderRepository.findByOrderId(order.getOrderId());
+        if (existing.isPresent()) {
+            log.debug("Order {} already persisted, ignoring duplicate submission", order.getOrderId());
+            return existing.get();
+        }
+        try {
+            Order savedOrder = orderRepository.save(order);
+            log.debug("Order {} saved to database for user: {}", savedOrder.getOrderId(), savedOrder.getUserId());
+            return savedOrder;
+        } catch (DataIntegrityViolationException e) {
+            // Lost the race against a concurrent submission of the same order
+            return orderRepository.findByOrderId(order.getOrderId()).orElseThrow(() -> e);
+        }
     }
 
     /**
      * Get orders for a specific user
+     * Served from the read model; the database (read pool) is only hit the first time a user is seen
      */
     public List<Order> getUserOrders(String userId) {
-        return orderRepository.findByUserId(userId);
+        return orderReadModel.getUserOrders(userId);
     }
 
     /**
-     * Get all orders
+     * Get all orders (read pool)
      */
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return orderReadModel.getAllOrders();
     }
 
     /**
      * Get order by order ID
+     * Served from the read model; the database (read pool) only on a miss
      */
     public Order getOrder(String orderId) {
-        return orderRepository.findByOrderId(orderId)
+        return orderReadModel.getOrder(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
     }
 
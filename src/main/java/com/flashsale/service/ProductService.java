@@ -18,6 +18,7 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final InventoryService inventoryService;
+    private final CatalogResponseCache catalogCache;
 
     /**
      * Create a new product
@@ -29,13 +30,15 @@ public class ProductService {
                 .description(request.getDescription())
                 .price(request.getPrice())
                 .stockCount(request.getStockCount())
+                .maxPerUser(request.getMaxPerUser())
                 .build();
 
         product = productRepository.save(product);
         log.info("Created product: {} with ID: {}", product.getName(), product.getId());
 
-        // Initialize inventory in Redis
+        // Initialize the inventory backend's stock counter
         inventoryService.initializeInventory(product.getId(), product.getStockCount());
+        catalogCache.invalidate();
 
         return product;
     }
@@ -56,13 +59,14 @@ public class ProductService {
     }
 
     /**
-     * Sync product inventory from database to Redis
+     * Sync product inventory from database to the inventory backend
+     * Read-write so the stock is read from the primary: a lagging read replica would restore stale stock
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public void syncInventoryToRedis(Long productId) {
         Product product = getProduct(productId);
         inventoryService.initializeInventory(product.getId(), product.getStockCount());
-        log.info("Synced inventory to Redis for product: {}", productId);
+        log.info("Synced inventory to {} backend for product: {}", inventoryService.getBackendName(), productId);
     }
 
     /**
@@ -71,6 +75,7 @@ public class ProductService {
     @Transactional
     public void updateStockInDatabase(Long productId, Integer newStock) {
         productRepository.updateStockCount(productId, newStock);
+        catalogCache.invalidate();
         log.info("Updated database stock for product {} to {}", productId, newStock);
     }
 }
@@ -1,16 +1,38 @@
 package com.flashsale.service;
 
+import com.flashsale.diagnostics.StageEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Token Bucket Rate Limiter using Redis
  * Prevents users from spamming the purchase endpoint
+ *
+ * Quotas are hierarchical: a per-user limit, a per-product limit (overridable per product at
+ * runtime) and a global cap on attempts reaching the inventory tier. One Lua script checks every
+ * applicable level and only then counts the attempt against all of them, so a rejection never
+ * consumes quota and the caller learns which level rejected it. A limit of 0 disables that level.
+ *
+ * Redis calls go through {@link RedisCircuitBreaker}. While the circuit is open (or a call fails)
+ * limits are enforced per instance with in-process fixed-window counters instead; product
+ * overrides then only reflect changes made through this instance.
  */
 @Service
 @RequiredArgsConstructor
@@ -18,6 +40,13 @@ import java.util.concurrent.TimeUnit;
 public class RateLimitService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Quota level, most specific first; also the order levels are checked in
+     */
+    public enum QuotaLevel { USER, PRODUCT, GLOBAL }
 
     @Value("${flashsale.rate-limit.enabled:true}")
     private boolean rateLimitEnabled;
@@ -28,47 +57,210 @@ public class RateLimitService {
     @Value("${flashsale.rate-limit.window-seconds:1}")
     private int windowSeconds;
 
+    @Value("${flashsale.rate-limit.product-max-requests:0}")
+    private int productMaxRequests;
+
+    @Value("${flashsale.rate-limit.global-max-requests:0}")
+    private int globalMaxRequests;
+
     private static final String RATE_LIMIT_KEY_PREFIX = "rate_limit:";
+    private static final String PRODUCT_KEY_PREFIX = "quota:product:";
+    private static final String GLOBAL_KEY = "quota:global:count";
+
+    /**
+     * KEYS: global counter, then per request its user counter, product counter and product limit override
+     * ARGV: user, default product and global limits, window in millis, then per request 1 if a product applies
+     * Requests are evaluated in order. Returns one entry per request: 0 when admitted, otherwise the
+     * 1-based level (user, product, global) that rejected it
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> QUOTA_SCRIPT = RedisScript.of("""
+            local results = {}
+            for item = 1, (#KEYS - 1) / 3 do
+                local base = 3 * item - 1
+                local counters = {KEYS[base], KEYS[base + 1], KEYS[1]}
+                local limits = {tonumber(ARGV[1]), 0, tonumber(ARGV[3])}
+                if tonumber(ARGV[4 + item]) == 1 then
+                    limits[2] = tonumber(redis.call('GET', KEYS[base + 2]) or ARGV[2])
+                end
+                local rejected = 0
+                for level = 1, 3 do
+                    if limits[level] > 0 and tonumber(redis.call('GET', counters[level]) or '0') >= limits[level] then
+                        rejected = level
+                        break
+                    end
+                end
+                if rejected == 0 then
+                    for level = 1, 3 do
+                        if limits[level] > 0 and redis.call('INCR', counters[level]) == 1 then
+                            redis.call('PEXPIRE', counters[level], ARGV[4])
+                        end
+                    end
+                end
+                results[item] = rejected
+            end
+            return results
+            """, List.class);
+
+    /**
+     * One request to check against the quota hierarchy
+     *
+     * @param userId User ID
+     * @param productId Product ID, or null if no product level applies
+     */
+    public record QuotaRequest(String userId, Long productId) {
+    }
+
+    /**
+     * Product limit overrides set through this instance, for degraded mode
+     */
+    private final Map<Long, Integer> localProductLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Local fallback counters keyed by level, user or product, and window number
+     * Entries outlive any sensible window, so expiry only bounds memory
+     */
+    private final Cache<String, AtomicInteger> localCounters = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .maximumSize(1_000_000)
+            .build();
 
     /**
      * Check if user is allowed to make a request
-     * Uses sliding window counter algorithm
+     * Only the per-user and global levels apply; see {@link #checkQuota} for purchases
      * 
      * @param userId User ID
      * @return true if allowed, false if rate limited
      */
     public boolean isAllowed(String userId) {
+        return checkQuota(userId, null).isEmpty();
+    }
+
+    /**
+     * Check every applicable quota level and, if all admit the request, count it against each
+     *
+     * @param userId User ID
+     * @param productId Product ID, or null if no product level applies
+     * @return The level that rejected the request, empty if it was admitted
+     */
+    public Optional<QuotaLevel> checkQuota(String userId, Long productId) {
+        return checkQuotas(List.of(new QuotaRequest(userId, productId))).get(0);
+    }
+
+    /**
+     * Check a batch of requests in one Redis round trip, in order, each exactly as {@link #checkQuota}
+     *
+     * @return The rejecting level per request, empty where the request was admitted
+     */
+    public List<Optional<QuotaLevel>> checkQuotas(List<QuotaRequest> requests) {
         if (!rateLimitEnabled) {
-            return true;
+            return Collections.nCopies(requests.size(), Optional.empty());
         }
 
-        try {
-            String key = getRateLimitKey(userId);
-            
-            // Get current count
-            Object currentObj = redisTemplate.opsForValue().get(key);
-            long currentCount = currentObj != null ? Long.parseLong(currentObj.toString()) : 0;
-
-            if (currentCount >= maxRequests) {
-                log.warn("Rate limit exceeded for user: {}. Count: {}", userId, currentCount);
-                return false;
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        List<QuotaLevel> rejections = circuitBreaker.execute(() -> checkQuotasInRedis(requests),
+                () -> requests.stream().map(this::checkQuotaLocally).toList());
+        stage.commit("quota", requests.size() == 1 ? requests.get(0).productId() : null,
+                requests.size() == 1 ? null : "batch");
+        List<Optional<QuotaLevel>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            QuotaLevel rejectedBy = rejections.get(i);
+            if (rejectedBy != null) {
+                log.debug("Quota exceeded at {} level for user: {}, product: {}",
+                        rejectedBy, requests.get(i).userId(), requests.get(i).productId());
+                meterRegistry.counter("flashsale.quota.rejected", "level", rejectedBy.name().toLowerCase()).increment();
             }
+            results.add(Optional.ofNullable(rejectedBy));
+        }
+        return results;
+    }
 
-            // Increment counter
-            Long newCount = redisTemplate.opsForValue().increment(key);
-            
-            if (newCount == 1) {
-                // First request in window, set expiration
-                redisTemplate.expire(key, windowSeconds, TimeUnit.SECONDS);
-            }
+    private List<QuotaLevel> checkQuotasInRedis(List<QuotaRequest> requests) {
+        List<String> keys = new ArrayList<>(1 + requests.size() * 3);
+        List<Object> args = new ArrayList<>(4 + requests.size());
+        keys.add(GLOBAL_KEY);
+        args.addAll(List.of(maxRequests, productMaxRequests, globalMaxRequests,
+                (int) TimeUnit.SECONDS.toMillis(windowSeconds)));
+        for (QuotaRequest request : requests) {
+            keys.add(getRateLimitKey(request.userId()));
+            keys.add(PRODUCT_KEY_PREFIX + request.productId() + ":count");
+            keys.add(getProductLimitKey(request.productId()));
+            args.add(request.productId() != null ? 1 : 0);
+        }
 
-            log.debug("User {} rate limit: {}/{} requests", userId, newCount, maxRequests);
-            return true;
-        } catch (Exception e) {
-            log.warn("Redis connection failed for rate limiting, allowing request: {}", e.getMessage());
-            // If Redis is down, allow the request (fail open)
-            return true;
+        List<?> results = redisTemplate.execute(QUOTA_SCRIPT, keys, args.toArray());
+        List<QuotaLevel> rejections = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            long level = results != null && i < results.size() ? ((Number) results.get(i)).longValue() : 0;
+            rejections.add(level == 0 ? null : QuotaLevel.values()[(int) level - 1]);
         }
+        return rejections;
+    }
+
+    /**
+     * Degraded-mode limiter: same limits, enforced per instance
+     * Every level is incremented optimistically and rolled back if any is over its limit
+     */
+    private QuotaLevel checkQuotaLocally(QuotaRequest request) {
+        String userId = request.userId();
+        Long productId = request.productId();
+        long window = System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(windowSeconds);
+        int productLimit = productId != null ? localProductLimits.getOrDefault(productId, productMaxRequests) : 0;
+        int[] limits = {maxRequests, productLimit, globalMaxRequests};
+        String[] keys = {"u:" + userId + ":" + window, "p:" + productId + ":" + window, "g:" + window};
+
+        AtomicInteger[] taken = new AtomicInteger[limits.length];
+        QuotaLevel rejectedBy = null;
+        for (int level = 0; level < limits.length && rejectedBy == null; level++) {
+            if (limits[level] <= 0) {
+                continue;
+            }
+            taken[level] = localCounters.get(keys[level], key -> new AtomicInteger());
+            if (taken[level].incrementAndGet() > limits[level]) {
+                rejectedBy = QuotaLevel.values()[level];
+            }
+        }
+        if (rejectedBy != null) {
+            for (AtomicInteger counter : taken) {
+                if (counter != null) {
+                    counter.decrementAndGet();
+                }
+            }
+        }
+        return rejectedBy;
+    }
+
+    /**
+     * Override the per-product limit at runtime (admin function)
+     *
+     * @param productId Product ID
+     * @param limit Attempts per window; 0 disables the product level for this product
+     */
+    public void setProductLimit(Long productId, int limit) {
+        localProductLimits.put(productId, limit);
+        circuitBreaker.run(() -> redisTemplate.opsForValue().set(getProductLimitKey(productId), limit));
+        log.info("Set quota for product {} to {} requests per {}s", productId, limit, windowSeconds);
+    }
+
+    /**
+     * Remove a per-product override, falling back to flashsale.rate-limit.product-max-requests
+     */
+    public void clearProductLimit(Long productId) {
+        localProductLimits.remove(productId);
+        circuitBreaker.run(() -> redisTemplate.delete(getProductLimitKey(productId)));
+        log.info("Cleared quota override for product {}", productId);
+    }
+
+    /**
+     * Effective per-product limit (override or default)
+     */
+    public int getProductLimit(Long productId) {
+        int fallback = localProductLimits.getOrDefault(productId, productMaxRequests);
+        return circuitBreaker.execute(() -> {
+            Object limit = redisTemplate.opsForValue().get(getProductLimitKey(productId));
+            return limit != null ? Integer.parseInt(limit.toString()) : productMaxRequests;
+        }, () -> fallback);
     }
 
     /**
@@ -76,13 +268,9 @@ public class RateLimitService {
      * @param userId User ID
      */
     public void resetRateLimit(String userId) {
-        try {
-            String key = getRateLimitKey(userId);
-            redisTemplate.delete(key);
-            log.info("Reset rate limit for user: {}", userId);
-        } catch (Exception e) {
-            log.warn("Failed to reset rate limit for user {}: {}", userId, e.getMessage());
-        }
+        circuitBreaker.run(() -> redisTemplate.delete(getRateLimitKey(userId)));
+        localCounters.asMap().keySet().removeIf(key -> key.startsWith("u:" + userId + ":"));
+        log.info("Reset rate limit for user: {}", userId);
     }
 
     /**
@@ -91,18 +279,18 @@ public class RateLimitService {
      * @return remaining requests
      */
     public int getRemainingRequests(String userId) {
-        try {
-            String key = getRateLimitKey(userId);
-            Object currentObj = redisTemplate.opsForValue().get(key);
+        return circuitBreaker.execute(() -> {
+            Object currentObj = redisTemplate.opsForValue().get(getRateLimitKey(userId));
             long currentCount = currentObj != null ? Long.parseLong(currentObj.toString()) : 0;
             return Math.max(0, maxRequests - (int) currentCount);
-        } catch (Exception e) {
-            log.warn("Failed to get remaining requests for user {}: {}", userId, e.getMessage());
-            return maxRequests; // Return max if Redis is down
-        }
+        }, () -> maxRequests); // Return max if Redis is down
     }
 
     private String getRateLimitKey(String userId) {
         return RATE_LIMIT_KEY_PREFIX + userId;
     }
+
+    private String getProductLimitKey(Long productId) {
+        return PRODUCT_KEY_PREFIX + productId + ":limit";
+    }
 }
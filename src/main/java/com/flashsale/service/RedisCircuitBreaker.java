@@ -0,0 +1,233 @@
+package com.flashsale.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker guarding every Redis call
+ *
+ * CLOSED    : calls go to Redis; the last window-size outcomes are tracked lock-free.
+ *             Opens when the failure rate or slow-call rate crosses its threshold.
+ * OPEN      : calls are short-circuited straight to the caller's in-process fallback
+ *             for open-duration, so a Redis brownout costs microseconds, not command timeouts.
+ * HALF_OPEN : a few probe calls are let through; all succeeding closes the circuit,
+ *             any failure or slow probe re-opens it.
+ *
+ * Metrics: flashsale.redis.circuit.state (0 closed, 1 open, 2 half-open),
+ * flashsale.redis.circuit.transitions{from,to}, flashsale.redis.circuit.short-circuited
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int SLOW = 3;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.redis.circuit-breaker.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.redis.circuit-breaker.window-size:50}")
+    private int windowSize = 50;
+
+    @Value("${flashsale.redis.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls = 20;
+
+    @Value("${flashsale.redis.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold = 0.5;
+
+    @Value("${flashsale.redis.circuit-breaker.slow-call-duration:200ms}")
+    private Duration slowCallDuration = Duration.ofMillis(200);
+
+    @Value("${flashsale.redis.circuit-breaker.slow-call-rate-threshold:0.5}")
+    private double slowCallRateThreshold = 0.5;
+
+    @Value("${flashsale.redis.circuit-breaker.open-duration:5s}")
+    private Duration openDuration = Duration.ofSeconds(5);
+
+    @Value("${flashsale.redis.circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes = 3;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+    private volatile long openedAtNanos;
+
+    private AtomicIntegerArray window;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private Counter shortCircuited;
+
+    @PostConstruct
+    void init() {
+        window = new AtomicIntegerArray(windowSize);
+        Gauge.builder("flashsale.redis.circuit.state", state, s -> s.get().ordinal())
+                .description("Redis circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+        shortCircuited = Counter.builder("flashsale.redis.circuit.short-circuited")
+                .description("Redis calls answered by the in-process fallback without touching Redis")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a Redis call through the breaker
+     *
+     * @param call Redis call
+     * @param fallback In-process answer used when the circuit is open or the call fails
+     * @return result of the call, or of the fallback
+     */
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        if (!enabled) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                log.debug("Redis call failed: {}", e.getMessage());
+                return fallback.get();
+            }
+        }
+
+        if (!tryAcquirePermission()) {
+            shortCircuited.increment();
+            return fallback.get();
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            onResult(FAILURE);
+            log.debug("Redis call failed: {}", e.getMessage());
+            return fallback.get();
+        }
+        onResult(System.nanoTime() - start > slowCallDuration.toNanos() ? SLOW : SUCCESS);
+        return result;
+    }
+
+    /**
+     * Run a Redis call that returns nothing; failures and open-circuit calls are ignored
+     */
+    public void run(Runnable call) {
+        execute(() -> {
+            call.run();
+            return null;
+        }, () -> null);
+    }
+
+    /**
+     * @return true while Redis calls are being short-circuited
+     */
+    public boolean isOpen() {
+        return state.get() == State.OPEN;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return seconds until the next half-open probe, for Retry-After hints
+     */
+    public long getRetryAfterSeconds() {
+        long remainingNanos = openDuration.toNanos() - (System.nanoTime() - openedAtNanos);
+        return Math.max(1, Duration.ofNanos(Math.max(0, remainingNanos)).toSeconds());
+    }
+
+    private boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDuration.toNanos()) {
+                return false;
+            }
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(halfOpenProbes);
+            }
+        }
+        return halfOpenPermits.getAndUpdate(permits -> permits > 0 ? permits - 1 : 0) > 0;
+    }
+
+    private void onResult(int outcome) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (outcome != SUCCESS) {
+                openedAtNanos = System.nanoTime();
+                transition(State.HALF_OPEN, State.OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= halfOpenProbes) {
+                resetWindow();
+                transition(State.HALF_OPEN, State.CLOSED);
+            }
+            return;
+        }
+        if (current != State.CLOSED) {
+            return;
+        }
+
+        int index = Math.floorMod(cursor.getAndIncrement(), windowSize);
+        int previous = window.getAndSet(index, outcome);
+        if (previous == EMPTY) {
+            recorded.incrementAndGet();
+        } else {
+            adjust(previous, -1);
+        }
+        adjust(outcome, 1);
+
+        int total = recorded.get();
+        if (total >= minimumCalls
+                && (failures.get() >= failureRateThreshold * total || slowCalls.get() >= slowCallRateThreshold * total)) {
+            openedAtNanos = System.nanoTime();
+            transition(State.CLOSED, State.OPEN);
+        }
+    }
+
+    private void adjust(int outcome, int delta) {
+        if (outcome == FAILURE) {
+            failures.addAndGet(delta);
+        } else if (outcome == SLOW) {
+            slowCalls.addAndGet(delta);
+        }
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < windowSize; i++) {
+            window.set(i, EMPTY);
+        }
+        recorded.set(0);
+        failures.set(0);
+        slowCalls.set(0);
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        log.warn("Redis circuit breaker {} -> {}", from, to);
+        meterRegistry.counter("flashsale.redis.circuit.transitions", "from", from.name(), "to", to.name())
+                .increment();
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.flashsale.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live stock push over Server-Sent Events
+ *
+ * A single broadcaster thread wakes every flashsale.stock-stream.tick and reads the stock of every
+ * product that has viewers, once per product. Stock sold on other instances is therefore seen
+ * within a tick. When the stock differs from the last frame, it encodes one frame and writes those
+ * same bytes to every viewer. Backend reads scale with watched products x ticks, not with viewers.
+ * New viewers get the last frame straight away.
+ *
+ * A stream may watch several products, so a page showing many products needs one connection.
+ *
+ * Events: "stock" while units remain, "sold-out" at zero; data is
+ * {"productId":1,"stock":42,"available":true}. Idle streams get a comment heartbeat.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockBroadcaster {
+
+    private static final Set<DataWithMediaType> HEARTBEAT = frame(":\n\n");
+
+    private final InventoryService inventoryService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.stock-stream.tick:250ms}")
+    private Duration tick = Duration.ofMillis(250);
+
+    @Value("${flashsale.stock-stream.heartbeat:15s}")
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    @Value("${flashsale.stock-stream.emitter-timeout:30m}")
+    private Duration emitterTimeout = Duration.ofMinutes(30);
+
+    /**
+     * One open stream and the products it watches
+     */
+    private record Viewer(SseEmitter emitter, Set<Long> productIds, AtomicBoolean open) {
+    }
+
+    private record LastFrame(long units, Set<DataWithMediaType> frame) {
+    }
+
+    private final Map<Long, Set<Viewer>> viewers = new ConcurrentHashMap<>();
+    private final Set<Viewer> connections = ConcurrentHashMap.newKeySet();
+    private final Map<Long, LastFrame> lastFrames = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService broadcaster;
+    private long lastHeartbeatNanos = System.nanoTime();
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("flashsale.stock.stream.viewers", connections, Set::size)
+                .description("Open stock-stream connections")
+                .register(meterRegistry);
+        broadcaster = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        broadcaster.scheduleAtFixedRate(this::tick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        broadcaster.shutdownNow();
+        connections.forEach(viewer -> viewer.emitter().complete());
+    }
+
+    /**
+     * Open a stream of stock updates for a product
+     */
+    public SseEmitter subscribe(Long productId) {
+        return subscribe(List.of(productId));
+    }
+
+    /**
+     * Open one stream of stock updates for several products; each frame names its product
+     */
+    public SseEmitter subscribe(Collection<Long> productIds) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Viewer viewer = new Viewer(emitter, Set.copyOf(productIds), new AtomicBoolean(true));
+        connections.add(viewer);
+        viewer.productIds().forEach(productId ->
+                viewers.computeIfAbsent(productId, id -> ConcurrentHashMap.newKeySet()).add(viewer));
+
+        emitter.onCompletion(() -> remove(viewer));
+        // Ends the response cleanly; EventSource clients reconnect on their own
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(viewer));
+
+        // Products without a last frame get their first one on the next tick
+        for (Long productId : viewer.productIds()) {
+            LastFrame last = lastFrames.get(productId);
+            if (last != null) {
+                send(viewer, last.frame());
+            }
+        }
+        return emitter;
+    }
+
+    int getViewerCount() {
+        return connections.size();
+    }
+
+    void tick() {
+        viewers.forEach((productId, productViewers) -> {
+            if (productViewers.isEmpty()) {
+                lastFrames.remove(productId);
+                return;
+            }
+            try {
+                long units = Math.max(inventoryService.getInventory(productId), 0);
+                LastFrame last = lastFrames.get(productId);
+                if (last != null && last.units() == units) {
+                    return;
+                }
+                Set<DataWithMediaType> frame = stockFrame(productId, units);
+                lastFrames.put(productId, new LastFrame(units, frame));
+                productViewers.forEach(viewer -> send(viewer, frame));
+            } catch (RuntimeException e) {
+                // Inventory unavailable (e.g. Redis circuit open): read again next tick
+                log.debug("Stock broadcast for product {} skipped: {}", productId, e.getMessage());
+            }
+        });
+
+        long now = System.nanoTime();
+        if (now - lastHeartbeatNanos >= heartbeat.toNanos()) {
+            lastHeartbeatNanos = now;
+            connections.forEach(viewer -> send(viewer, HEARTBEAT));
+        }
+    }
+
+    private void send(Viewer viewer, Set<DataWithMediaType> frame) {
+        try {
+            viewer.emitter().send(frame);
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the container completes the emitter
+            remove(viewer);
+        }
+    }
+
+    private void remove(Viewer viewer) {
+        if (viewer.open().compareAndSet(true, false)) {
+            connections.remove(viewer);
+            for (Long productId : viewer.productIds()) {
+                Set<Viewer> productViewers = viewers.get(productId);
+                if (productViewers != null) {
+                    productViewers.remove(viewer);
+                }
+            }
+        }
+    }
+    static Set<DataWithMediaType> stockFrame(Long productId, long stock) {
+        long units = Math.max(stock, 0);
+        return frame("event:" + (units > 0 ? "stock" : "sold-out") + "\n"
+                + "data:{\"productId\":" + productId + ",\"stock\":" + units + ",\"available\":" + (units > 0) + "}\n\n");
+    }
+
+    /**
+     * A complete, pre-encoded SSE frame written as raw bytes to every viewer
+     */
+    private static Set<DataWithMediaType> frame(String text) {
+        return Set.of(new DataWithMediaType(text.getBytes(StandardCharsets.UTF_8), MediaType.APPLICATION_OCTET_STREAM));
+    }
+}
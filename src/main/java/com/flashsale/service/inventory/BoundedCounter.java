@@ -0,0 +1,166 @@
+package com.flashsale.service.inventory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-negative replicated counter (bounded counter CRDT) for one product's stock
+ *
+ * State is grow-only per node: P[n] units added by node n, N[n] units sold by node n, and
+ * R[a][b] selling rights node a handed to node b. The stock is sum(P) - sum(N). Node n may only
+ * sell or hand over its own rights, P[n] - N[n] + sum(R[*][n]) - sum(R[n][*]). Since no node
+ * ever spends more than its own rights, the stock can never drop below zero, whatever order
+ * replicas exchange state in. Merge is the entry-wise maximum, which is commutative, associative
+ * and idempotent, so state can be gossiped freely.
+ *
+ * Re-initializing a product starts a new epoch that replaces the old state everywhere; the
+ * higher (epoch, node) wins a merge.
+ *
+ * Not thread-safe; callers synchronize on the instance.
+ */
+public final class BoundedCounter {
+
+    /**
+     * Wire form of the state
+     */
+    public record Snapshot(long epoch, String epochNode, Map<String, Long> added, Map<String, Long> sold,
+                           Map<String, Map<String, Long>> transferred) {
+    }
+
+    private long epoch;
+    private String epochNode = "";
+    private final Map<String, Long> added = new HashMap<>();
+    private final Map<String, Long> sold = new HashMap<>();
+    private final Map<String, Map<String, Long>> transferred = new HashMap<>();
+
+    /**
+     * Start a new epoch with all stock held by one node
+     */
+    void reset(String node, long stock) {
+        epoch++;
+        epochNode = node;
+        added.clear();
+        sold.clear();
+        transferred.clear();
+        if (stock > 0) {
+            added.put(node, stock);
+        }
+    }
+
+    long value() {
+        return sum(added) - sum(sold);
+    }
+
+    long rights(String node) {
+        long rights = added.getOrDefault(node, 0L) - sold.getOrDefault(node, 0L);
+        for (Map.Entry<String, Map<String, Long>> from : transferred.entrySet()) {
+            if (from.getKey().equals(node)) {
+                rights -= sum(from.getValue());
+            } else {
+                rights += from.getValue().getOrDefault(node, 0L);
+            }
+        }
+        return rights;
+    }
+
+    /**
+     * Every node the state knows about, with its current rights
+     */
+    Map<String, Long> allRights() {
+        Map<String, Long> rights = new HashMap<>();
+        added.keySet().forEach(node -> rights.put(node, rights(node)));
+        transferred.forEach((from, to) -> {
+            rights.put(from, rights(from));
+            to.keySet().forEach(node -> rights.put(node, rights(node)));
+        });
+        return rights;
+    }
+
+    void increment(String node, long quantity) {
+        added.merge(node, quantity, Long::sum);
+    }
+
+    /**
+     * Sell from the node's own rights
+     *
+     * @return false, with no change, if the node holds fewer than quantity rights
+     */
+    boolean tryDecrement(String node, long quantity) {
+        if (rights(node) < quantity) {
+            return false;
+        }
+        sold.merge(node, quantity, Long::sum);
+        return true;
+    }
+
+    /**
+     * Hand over up to quantity of the giver's rights
+     *
+     * @return Rights actually handed over
+     */
+    long transfer(String from, String to, long quantity) {
+        long granted = Math.min(quantity, Math.max(rights(from), 0));
+        if (granted > 0 && !from.equals(to)) {
+            transferred.computeIfAbsent(from, node -> new HashMap<>()).merge(to, granted, Long::sum);
+            return granted;
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the other state changed this one
+     */
+    boolean merge(Snapshot other) {
+        int order = Long.compare(other.epoch(), epoch);
+        if (order == 0) {
+            order = other.epochNode().compareTo(epochNode);
+        }
+        if (order < 0) {
+            return false;
+        }
+        boolean changed = order > 0;
+        if (changed) {
+            epoch = other.epoch();
+            epochNode = other.epochNode();
+            added.clear();
+            sold.clear();
+            transferred.clear();
+        }
+        for (Map.Entry<String, Long> entry : other.added().entrySet()) {
+            changed |= raise(added, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : other.sold().entrySet()) {
+            changed |= raise(sold, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Map<String, Long>> from : other.transferred().entrySet()) {
+            Map<String, Long> mine = transferred.computeIfAbsent(from.getKey(), node -> new HashMap<>());
+            for (Map.Entry<String, Long> entry : from.getValue().entrySet()) {
+                changed |= raise(mine, entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    Snapshot snapshot() {
+        Map<String, Map<String, Long>> transfers = new HashMap<>();
+        transferred.forEach((from, to) -> transfers.put(from, Map.copyOf(to)));
+        return new Snapshot(epoch, epochNode, Map.copyOf(added), Map.copyOf(sold), transfers);
+    }
+
+    private static boolean raise(Map<String, Long> counts, String node, long units) {
+        Long current = counts.get(node);
+        if (current != null && current >= units) {
+            return false;
+        }
+        counts.put(node, units);
+        return true;
+    }
+
+    private static long sum(Map<String, Long> counts) {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
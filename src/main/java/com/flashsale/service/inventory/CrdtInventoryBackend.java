@@ -0,0 +1,503 @@
+package com.flashsale.service.inventory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Active-active inventory backend: every instance sells from its own share of the stock
+ *
+ * Each product's stock is a {@link BoundedCounter} replicated on every instance. A purchase only
+ * takes a local lock and spends this instance's own selling rights, with no network call, so it
+ * costs the same wherever the instance runs. Total units sold can never exceed the stock,
+ * whatever the network does.
+ *
+ * In the background, every flashsale.inventory.crdt.sync-interval, each instance pushes its
+ * counters to every peer in flashsale.inventory.crdt.peers and merges what they send back. Only
+ * products changed since the last successful exchange with that peer are sent, either way; state
+ * merged in from one peer counts as a change and is passed on to the others.
+ * Rights are moved between instances by asking a peer to hand some over:
+ * - in the background, when this instance holds less than rebalance-below of its fair share
+ *   (stock / instances)
+ * - on the purchase path, when this instance's rights do not cover a purchase but the stock is
+ *   not exhausted; the purchase waits for at most one round of requests
+ * A peer hands over at most half of its rights, so the last units keep moving to whoever is selling.
+ *
+ * The node ID is node-id plus a random suffix per process start. A restarted instance never
+ * reuses the rights of its previous run; sales it made but had not yet gossiped cannot be lost.
+ * On shutdown an instance stops selling, hands all its rights to the first reachable peer and
+ * pushes that to every peer. Rights held by an instance that died without shutting down are
+ * stranded until the product is re-initialized (POST /api/products/{id}/sync-redis), which starts
+ * a new epoch everywhere.
+ *
+ * Per-user caps are counted in memory by each instance and are not replicated, so a buyer
+ * whose requests land on several instances can buy up to the cap on each; route buyers to one
+ * instance (sticky sessions) for an exact cap. Counts are dropped when a product has seen no
+ * capped sale here for flashsale.purchase-cap.retention (7d).
+ *
+ * Metrics: flashsale.inventory.crdt.transferred, flashsale.inventory.crdt.sync.failures,
+ * flashsale.inventory.crdt.sync.products
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CrdtInventoryBackend implements InventoryBackend {
+
+    /**
+     * Gossip message: the sender's counters changed since the last exchange
+     *
+     * @param version Sender's change sequence when the counters were taken
+     * @param sinceNode Node the receiver was when the sender last heard from it; a reply to a
+     *                  different (restarted) node carries every counter
+     * @param since Receiver's version as of that exchange; the reply carries counters changed after it
+     */
+    public record SyncMessage(String nodeId, long version, String sinceNode, long since,
+                              Map<Long, BoundedCounter.Snapshot> products) {
+    }
+
+    public record TransferRequest(Long productId, String requester, long quantity) {
+    }
+
+    public record TransferResponse(String nodeId, long granted, BoundedCounter.Snapshot state) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flashsale.inventory.backend:sql}")
+    private String backendName = "sql";
+
+    @Value("${flashsale.inventory.crdt.node-id:${HOSTNAME:node}}")
+    private String nodeIdPrefix = "node";
+
+    @Value("${flashsale.inventory.crdt.peers:}")
+    private List<String> peers = List.of();
+
+    @Value("${flashsale.inventory.crdt.sync-interval:100ms}")
+    private Duration syncInterval = Duration.ofMillis(100);
+
+    @Value("${flashsale.inventory.crdt.request-timeout:500ms}")
+    private Duration requestTimeout = Duration.ofMillis(500);
+
+    @Value("${flashsale.inventory.crdt.rebalance-below:0.25}")
+    private double rebalanceBelow = 0.25;
+
+    @Value("${flashsale.purchase-cap.retention:7d}")
+    private Duration capRetention = Duration.ofDays(7);
+
+    private final Map<Long, BoundedCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Peer base URL -> node ID, learned from its replies
+     */
+    private final Map<String, String> peerNodeIds = new ConcurrentHashMap<>();
+
+    /**
+     * Last successful exchange with a peer: its node ID, our version we sent, its version we received
+     */
+    private record PeerSync(String nodeId, long sent, long received) {
+    }
+
+    /**
+     * Peer base URL -> last successful exchange; only touched by the sync thread and shutdown
+     */
+    private final Map<String, PeerSync> peerSyncs = new ConcurrentHashMap<>();
+
+    /**
+     * Product ID -> change sequence number of its last change
+     */
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+    private final AtomicLong changeSequence = new AtomicLong();
+
+    /**
+     * Product ID -> user -> units bought through this instance
+     */
+    private Cache<Long, Map<String, Integer>> buyers;
+
+    private String nodeId;
+    private HttpClient httpClient;
+    private ScheduledExecutorService syncExecutor;
+    private Counter transferredCounter;
+    private Counter syncFailureCounter;
+    private DistributionSummary syncProductsSummary;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    void start() {
+        nodeId = nodeIdPrefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+        buyers = Caffeine.newBuilder().expireAfterAccess(capRetention).build();
+        peers = peers.stream().map(String::trim).filter(peer -> !peer.isEmpty()).toList();
+        if (!isActive()) {
+            return;
+        }
+        transferredCounter = Counter.builder("flashsale.inventory.crdt.transferred")
+                .description("Selling rights received from peers")
+                .register(meterRegistry);
+        syncFailureCounter = Counter.builder("flashsale.inventory.crdt.sync.failures")
+                .description("Failed state exchanges with peers")
+                .register(meterRegistry);
+        syncProductsSummary = DistributionSummary.builder("flashsale.inventory.crdt.sync.products")
+                .description("Product counters sent per state exchange")
+                .register(meterRegistry);
+        httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "crdt-inventory-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncExecutor.scheduleWithFixedDelay(this::syncAndRebalance, syncInterval.toMillis(), syncInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("CRDT inventory node {} with peers {}", nodeId, peers);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (syncExecutor == null) {
+            return;
+        }
+        stopping = true;
+        syncExecutor.shutdownNow();
+        try {
+            syncExecutor.awaitTermination(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handOver();
+    }
+
+    /**
+     * @return true if this is the configured inventory backend
+     */
+    public boolean isActive() {
+        return name().equalsIgnoreCase(backendName);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String name() {
+        return "crdt";
+    }
+
+    @Override
+    public void initialize(Long productId, int stockCount) {
+        BoundedCounter counter = counter(productId);
+        synchronized (counter) {
+            counter.reset(nodeId, stockCount);
+        }
+        markChanged(productId);
+    }
+
+    @Override
+    public long decrement(Long productId, int quantity) {
+        BoundedCounter counter = counter(productId);
+        long remaining;
+        synchronized (counter) {
+            if (!counter.tryDecrement(nodeId, quantity)) {
+                if (counter.value() < quantity || stopping) {
+                    return -1L;
+                }
+                remaining = -1L;
+            } else {
+                remaining = counter.value();
+            }
+        }
+        if (remaining < 0) {
+            // Stock is left on other instances: borrow rights, then try once more
+            borrow(productId, quantity);
+            synchronized (counter) {
+                remaining = counter.tryDecrement(nodeId, quantity) ? counter.value() : -1L;
+            }
+        }
+        if (remaining >= 0) {
+            markChanged(productId);
+        }
+        return remaining;
+    }
+
+    @Override
+    public long decrement(Long productId, String userId, int quantity, int maxPerUser) {
+        Map<String, Integer> bought = buyers.get(productId, id -> new ConcurrentHashMap<>());
+        // Reserve the units against the cap first; a concurrent purchase by the same user sees them
+        boolean[] reserved = new boolean[1];
+        bought.compute(userId, (user, units) -> {
+            int current = units != null ? units : 0;
+            reserved[0] = current + quantity <= maxPerUser;
+            return reserved[0] ? current + quantity : units;
+        });
+        if (!reserved[0]) {
+            return CAP_EXCEEDED;
+        }
+        long remaining = decrement(productId, quantity);
+        if (remaining < 0) {
+            bought.computeIfPresent(userId, (user, units) -> units - quantity > 0 ? units - quantity : null);
+        }
+        return remaining;
+    }
+
+    @Override
+    public long increment(Long productId, int quantity) {
+        BoundedCounter counter = counter(productId);
+        long stock;
+        synchronized (counter) {
+            counter.increment(nodeId, quantity);
+            stock = counter.value();
+        }
+        markChanged(productId);
+        return stock;
+    }
+
+    @Override
+    public long get(Long productId) {
+        BoundedCounter counter = counters.get(productId);
+        if (counter == null) {
+            return 0L;
+        }
+        synchronized (counter) {
+            return counter.value();
+        }
+    }
+
+    @Override
+    public void delete(Long productId) {
+        initialize(productId, 0);
+    }
+
+    /**
+     * Selling rights this instance holds for a product
+     */
+    public long getLocalRights(Long productId) {
+        BoundedCounter counter = counters.get(productId);
+        if (counter == null) {
+            return 0L;
+        }
+        synchronized (counter) {
+            return counter.rights(nodeId);
+        }
+    }
+
+    /**
+     * Merge a peer's counters and answer with ours changed since the version it last received
+     */
+    public SyncMessage onSync(SyncMessage message) {
+        merge(message.products());
+        long since = nodeId.equals(message.sinceNode()) ? message.since() : 0L;
+        long version = changeSequence.get();
+        return new SyncMessage(nodeId, version, null, 0L, changedSince(since));
+    }
+
+    /**
+     * Hand a requesting peer up to half of this instance's rights
+     */
+    public TransferResponse onTransfer(TransferRequest request) {
+        BoundedCounter counter = counter(request.productId());
+        TransferResponse response;
+        synchronized (counter) {
+            long rights = counter.rights(nodeId);
+            long granted = counter.transfer(nodeId, request.requester(), Math.min(request.quantity(), (rights + 1) / 2));
+            if (granted > 0) {
+                log.debug("Handed {} units of product {} to {}", granted, request.productId(), request.requester());
+            }
+            response = new TransferResponse(nodeId, granted, counter.snapshot());
+        }
+        if (response.granted() > 0) {
+            markChanged(request.productId());
+        }
+        return response;
+    }
+
+    private BoundedCounter counter(Long productId) {
+        return counters.computeIfAbsent(productId, id -> new BoundedCounter());
+    }
+
+    /**
+     * Record a change after it is applied, so an exchange that read an older version resends it
+     */
+    private void markChanged(Long productId) {
+        changedAt.put(productId, changeSequence.incrementAndGet());
+    }
+
+    /**
+     * Counters changed after the given version of this node's change sequence
+     */
+    private Map<Long, BoundedCounter.Snapshot> changedSince(long version) {
+        Map<Long, BoundedCounter.Snapshot> snapshots = new HashMap<>();
+        changedAt.forEach((productId, changed) -> {
+            if (changed > version) {
+                BoundedCounter counter = counters.get(productId);
+                synchronized (counter) {
+                    snapshots.put(productId, counter.snapshot());
+                }
+            }
+        });
+        return snapshots;
+    }
+
+    private void merge(Map<Long, BoundedCounter.Snapshot> snapshots) {
+        snapshots.forEach((productId, snapshot) -> {
+            BoundedCounter counter = counter(productId);
+            boolean changed;
+            synchronized (counter) {
+                changed = counter.merge(snapshot);
+            }
+            if (changed) {
+                markChanged(productId);
+            }
+        });
+    }
+
+    void syncAndRebalance() {
+        peers.forEach(this::exchange);
+        for (Long productId : counters.keySet()) {
+            long value = get(productId);
+            long threshold = (long) (fairShare(value) * rebalanceBelow);
+            if (value > 0 && getLocalRights(productId) < threshold) {
+                borrow(productId, threshold);
+            }
+        }
+    }
+
+    /**
+     * Swap counters changed since the last successful exchange with a peer
+     *
+     * @return true if the peer answered
+     */
+    private boolean exchange(String peer) {
+        PeerSync last = peerSyncs.get(peer);
+        long version = changeSequence.get();
+        Map<Long, BoundedCounter.Snapshot> products = changedSince(last != null ? last.sent() : 0L);
+        try {
+            SyncMessage reply = post(peer, "/sync", new SyncMessage(nodeId, version,
+                    last != null ? last.nodeId() : null, last != null ? last.received() : 0L, products), SyncMessage.class);
+            syncProductsSummary.record(products.size());
+            peerNodeIds.put(peer, reply.nodeId());
+            merge(reply.products());
+            // A peer that restarted under a new node ID missed what it was sent before: resend everything
+            boolean sameNode = last == null || last.nodeId().equals(reply.nodeId());
+            peerSyncs.put(peer, new PeerSync(reply.nodeId(), sameNode ? version : 0L, reply.version()));
+            return true;
+        } catch (Exception e) {
+            syncFailureCounter.increment();
+            log.debug("State exchange with {} failed: {}", peer, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Give every selling right this instance holds to the first reachable peer, then tell all peers
+     */
+    private void handOver() {
+        for (String peer : peers) {
+            if (!exchange(peer)) {
+                continue;
+            }
+            String heir = peerSyncs.get(peer).nodeId();
+            long handed = 0;
+            for (Map.Entry<Long, BoundedCounter> entry : counters.entrySet()) {
+                BoundedCounter counter = entry.getValue();
+                long granted;
+                synchronized (counter) {
+                    granted = counter.transfer(nodeId, heir, counter.rights(nodeId));
+                }
+                if (granted > 0) {
+                    markChanged(entry.getKey());
+                    handed += granted;
+                }
+            }
+            peers.forEach(this::exchange);
+            log.info("Handed {} units of selling rights to {} on shutdown", handed, heir);
+            return;
+        }
+        if (!peers.isEmpty()) {
+            log.warn("No peer reachable on shutdown; selling rights of {} stay stranded until products are re-initialized",
+                    nodeId);
+        }
+    }
+
+    /**
+     * Ask peers, richest first as far as this instance knows, until rights cover needed
+     */
+    private void borrow(Long productId, long needed) {
+        if (stopping) {
+            return;
+        }
+        Map<String, Long> rights;
+        long wanted;
+        BoundedCounter counter = counter(productId);
+        synchronized (counter) {
+            rights = counter.allRights();
+            wanted = Math.max(needed, fairShare(counter.value())) - counter.rights(nodeId);
+        }
+        List<String> donors = new ArrayList<>(peers);
+        donors.sort(Comparator.comparingLong(peer -> -rights.getOrDefault(peerNodeIds.get(peer), 0L)));
+        for (String peer : donors) {
+            if (wanted <= 0) {
+                return;
+            }
+            try {
+                TransferResponse response = post(peer, "/transfer",
+                        new TransferRequest(productId, nodeId, wanted), TransferResponse.class);
+                peerNodeIds.put(peer, response.nodeId());
+                merge(Map.of(productId, response.state()));
+                if (response.granted() > 0) {
+                    transferredCounter.increment(response.granted());
+                    wanted -= response.granted();
+                }
+            } catch (Exception e) {
+                syncFailureCounter.increment();
+                log.debug("Rights request to {} failed: {}", peer, e.getMessage());
+            }
+            if (getLocalRights(productId) >= needed) {
+                return;
+            }
+        }
+    }
+
+    private long fairShare(long value) {
+        int nodes = peers.size() + 1;
+        return (value + nodes - 1) / nodes;
+    }
+
+    private <T> T post(String peer, String path, Object body, Class<T> responseType)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(peer + "/internal/inventory/crdt" + path))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), responseType);
+    }
+}
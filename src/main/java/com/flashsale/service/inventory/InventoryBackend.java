@@ -0,0 +1,89 @@
+package com.flashsale.service.inventory;
+
+import java.util.Map;
+
+/**
+ * Storage strategy for the authoritative stock counter of a product
+ *
+ * Implementations must make {@link #decrement(Long, int)} atomic: concurrent callers can never
+ * drive the counter below zero, so a successful decrement is a guaranteed unit of stock.
+ * The active backend is selected with flashsale.inventory.backend.
+ */
+public interface InventoryBackend {
+
+    /**
+     * Returned by {@link #decrement(Long, String, int, int)} when the buyer's cap would be exceeded
+     */
+    long CAP_EXCEEDED = -2L;
+
+    /**
+     * @return backend name used in flashsale.inventory.backend
+     */
+    String name();
+
+    /**
+     * Set the stock counter for a product
+     * @param productId Product ID
+     * @param stockCount Stock count
+     */
+    void initialize(Long productId, int stockCount);
+
+    /**
+     * Set the stock counters of many products at once (bulk import)
+     * Backends with a remote store override this to write them in as few round trips as possible.
+     * @param stockCounts Product ID -> stock count
+     */
+    default void initialize(Map<Long, Integer> stockCounts) {
+        stockCounts.forEach(this::initialize);
+    }
+
+    /**
+     * Atomically take units of stock
+     * @param productId Product ID
+     * @param quantity Units to take
+     * @return remaining stock after decrement, or -1 if there was not enough stock
+     */
+    long decrement(Long productId, int quantity);
+
+    /**
+     * Atomically take units of stock for one buyer, within the buyer's lifetime cap for the product
+     *
+     * The cap check, the buyer's count and the stock decrement succeed or fail together. Units
+     * returned later with {@link #increment(Long, int)} do not give the buyer's allowance back.
+     * @param productId Product ID
+     * @param userId Buyer
+     * @param quantity Units to take
+     * @param maxPerUser Units one buyer may take from this product in total
+     * @return remaining stock after decrement, -1 if there was not enough stock, or
+     * {@link #CAP_EXCEEDED} if the buyer would go over the cap
+     */
+    long decrement(Long productId, String userId, int quantity, int maxPerUser);
+
+    /**
+     * Return units of stock (cancellations, rollbacks)
+     * @param productId Product ID
+     * @param quantity Units to return
+     * @return new stock count, or 0 if the product is unknown
+     */
+    long increment(Long productId, int quantity);
+
+    /**
+     * @param productId Product ID
+     * @return current stock count, or 0 if the product is unknown
+     */
+    long get(Long productId);
+
+    /**
+     * Remove any backend-held state for a product
+     * @param productId Product ID
+     */
+    void delete(Long productId);
+
+    /**
+     * @return true while the backend is running in a degraded mode (e.g. its store is unreachable)
+     * and locally known sold-out state should be trusted without expiry
+     */
+    default boolean isDegraded() {
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.flashsale.service.inventory;
+
+import com.flashsale.entity.Product;
+import com.flashsale.entity.PurchaseCap;
+import com.flashsale.repository.ProductRepository;
+import com.flashsale.repository.PurchaseCapRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JPA load-and-save inventory backend
+ * Loads the product under a pessimistic row lock so concurrent decrements cannot oversell
+ *
+ * Kept as a baseline for benchmarking; the sql backend does the same work in one statement.
+ * Per-user caps are checked and counted in {@link PurchaseCap} rows under the same product lock.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JpaInventoryBackend implements InventoryBackend {
+
+    private final ProductRepository productRepository;
+    private final PurchaseCapRepository purchaseCapRepository;
+
+    @Override
+    public String name() {
+        return "jpa";
+    }
+
+    @Override
+    @Transactional
+    public void initialize(Long productId, int stockCount) {
+        productRepository.findById(productId).ifPresent(product -> {
+            product.setStockCount(stockCount);
+            productRepository.save(product);
+        });
+    }
+
+    @Override
+    @Transactional
+    public long decrement(Long productId, int quantity) {
+        Product product = productRepository.findByIdForUpdate(productId).orElse(null);
+
+        if (product == null) {
+            log.warn("Product {} not found", productId);
+            return -1L;
+        }
+
+        if (product.getStockCount() < quantity) {
+            return -1L;
+        }
+
+        product.setStockCount(product.getStockCount() - quantity);
+        productRepository.save(product);
+        return product.getStockCount();
+    }
+
+    @Override
+    @Transactional
+    public long decrement(Long productId, String userId, int quantity, int maxPerUser) {
+        Product product = productRepository.findByIdForUpdate(productId).orElse(null);
+        if (product == null) {
+            log.warn("Product {} not found", productId);
+            return -1L;
+        }
+
+        PurchaseCap cap = purchaseCapRepository.findById(new PurchaseCap.Key(productId, userId))
+                .orElseGet(() -> PurchaseCap.builder().productId(productId).userId(userId).units(0).build());
+        if (cap.getUnits() + quantity > maxPerUser) {
+            return CAP_EXCEEDED;
+        }
+        if (product.getStockCount() < quantity) {
+            return -1L;
+        }
+
+        cap.setUnits(cap.getUnits() + quantity);
+        purchaseCapRepository.save(cap);
+        product.setStockCount(product.getStockCount() - quantity);
+        productRepository.save(product);
+        return product.getStockCount();
+    }
+
+    @Override
+    @Transactional
+    public long increment(Long productId, int quantity) {
+        Product product = productRepository.findByIdForUpdate(productId).orElse(null);
+        if (product == null) {
+            return 0L;
+        }
+        product.setStockCount(product.getStockCount() + quantity);
+        productRepository.save(product);
+        return product.getStockCount();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long get(Long productId) {
+        return productRepository.findById(productId)
+                .map(product -> (long) product.getStockCount())
+                .orElse(0L);
+    }
+
+    @Override
+    public void delete(Long productId) {
+        // Stock lives in the products row; nothing to clean up
+    }
+}
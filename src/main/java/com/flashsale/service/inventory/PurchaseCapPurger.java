@@ -0,0 +1,41 @@
+package com.flashsale.service.inventory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Drops per-user purchase counts once a product's sale is over
+ *
+ * The sql and jpa backends count units per buyer in purchase_caps. A product counts as off sale
+ * when its stock has not moved for flashsale.purchase-cap.retention (7d); every sale and restock
+ * moves products.updated_at, so the check needs no extra column.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseCapPurger {
+
+    private static final String PURGE =
+            "DELETE FROM purchase_caps WHERE product_id IN (SELECT id FROM products WHERE updated_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${flashsale.purchase-cap.retention:7d}")
+    private Duration retention = Duration.ofDays(7);
+
+    @Scheduled(fixedDelayString = "${flashsale.purchase-cap.purge-interval:PT1H}")
+    public void purge() {
+        int purged = jdbcTemplate.update(PURGE, Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        if (purged > 0) {
+            log.info("Purged {} per-user purchase counts of products no longer on sale", purged);
+        }
+    }
+}
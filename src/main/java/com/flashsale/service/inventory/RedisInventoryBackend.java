@@ -0,0 +1,171 @@
+package com.flashsale.service.inventory;
+
+import com.flashsale.exception.ServiceUnavailableException;
+import com.flashsale.service.RedisCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Redis inventory backend
+ *
+ * Stock is held in product:{id}:stock and taken with a Lua script that checks and decrements
+ * in one server-side step, so the counter never goes negative. (Decrement-then-compensate lets a
+ * multi-unit overdraw briefly hide the last units from a concurrent single-unit buyer, which would
+ * then be told the product is sold out while stock remains.)
+ * The counter is seeded from the database with POST /api/products/{id}/sync-redis. Bulk imports
+ * seed a whole batch of counters in one pipeline.
+ *
+ * Units bought per user of a capped product are a hash, product:{id}:buyers (user -> units),
+ * checked and updated by the same script that takes the stock. The hash expires
+ * flashsale.purchase-cap.retention (7d) after the product's last capped sale.
+ *
+ * All calls go through {@link RedisCircuitBreaker}. Stock cannot be taken safely without Redis,
+ * so while the circuit is open calls fail fast with 503 instead of waiting on command timeouts;
+ * known sold-out products keep being answered locally by InventoryService.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisInventoryBackend implements InventoryBackend {
+
+    private static final String STOCK_KEY_PREFIX = "product:";
+    private static final String STOCK_KEY_SUFFIX = ":stock";
+    private static final String BUYERS_KEY_SUFFIX = ":buyers";
+
+    private static final RedisScript<Long> DECREMENT_SCRIPT = RedisScript.of("""
+            local stock = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local quantity = tonumber(ARGV[1])
+            if stock < quantity then
+                return -1
+            end
+            return redis.call('DECRBY', KEYS[1], quantity)
+            """, Long.class);
+
+    // KEYS: stock, buyers hash; ARGV: quantity, user, cap, retention in ms
+    private static final RedisScript<Long> CAPPED_DECREMENT_SCRIPT = RedisScript.of("""
+            local quantity = tonumber(ARGV[1])
+            local bought = tonumber(redis.call('HGET', KEYS[2], ARGV[2]) or '0')
+            if bought + quantity > tonumber(ARGV[3]) then
+                return -2
+            end
+            local stock = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if stock < quantity then
+                return -1
+            end
+            redis.call('HINCRBY', KEYS[2], ARGV[2], quantity)
+            redis.call('PEXPIRE', KEYS[2], ARGV[4])
+            return redis.call('DECRBY', KEYS[1], quantity)
+            """, Long.class);
+
+    private static final RedisSerializer<String> ARGS_SERIALIZER = new StringRedisSerializer();
+    private static final RedisSerializer<Long> RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    @Value("${flashsale.purchase-cap.retention:7d}")
+    private Duration capRetention = Duration.ofDays(7);
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public void initialize(Long productId, int stockCount) {
+        guarded(() -> {
+            redisTemplate.opsForValue().set(stockKey(productId), stockCount);
+            return null;
+        });
+    }
+
+    @Override
+    public void initialize(Map<Long, Integer> stockCounts) {
+        guarded(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ValueOperations<String, Object> values = (ValueOperations<String, Object>) operations.opsForValue();
+                stockCounts.forEach((productId, stockCount) -> values.set(stockKey(productId), stockCount));
+                return null;
+            }
+        }));
+    }
+
+    @Override
+    public long decrement(Long productId, int quantity) {
+        return guarded(() -> decrementInRedis(productId, quantity));
+    }
+
+    @Override
+    public long decrement(Long productId, String userId, int quantity, int maxPerUser) {
+        return guarded(() -> {
+            // Plain string arguments, so the hash fields are readable user IDs
+            Long remaining = redisTemplate.execute(CAPPED_DECREMENT_SCRIPT, ARGS_SERIALIZER, RESULT_SERIALIZER,
+                    List.of(stockKey(productId), buyersKey(productId)), Integer.toString(quantity), userId,
+                    Integer.toString(maxPerUser), Long.toString(capRetention.toMillis()));
+            return remaining != null ? remaining : -1L;
+        });
+    }
+
+    @Override
+    public long increment(Long productId, int quantity) {
+        return guarded(() -> {
+            Long stock = redisTemplate.opsForValue().increment(stockKey(productId), quantity);
+            return stock != null ? stock : 0L;
+        });
+    }
+
+    @Override
+    public long get(Long productId) {
+        return guarded(() -> {
+            Object value = redisTemplate.opsForValue().get(stockKey(productId));
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        });
+    }
+
+    @Override
+    public void delete(Long productId) {
+        guarded(() -> redisTemplate.delete(List.of(stockKey(productId), buyersKey(productId))));
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return circuitBreaker.isOpen();
+    }
+
+    private long decrementInRedis(Long productId, int quantity) {
+        Long remaining = redisTemplate.execute(DECREMENT_SCRIPT, List.of(stockKey(productId)), quantity);
+        return remaining != null ? remaining : -1L;
+    }
+
+    private <T> T guarded(Supplier<T> call) {
+        return circuitBreaker.execute(call, () -> {
+            throw new ServiceUnavailableException("Inventory temporarily unavailable, please retry",
+                    circuitBreaker.getRetryAfterSeconds());
+        });
+    }
+
+    static String stockKey(Long productId) {
+        return STOCK_KEY_PREFIX + productId + STOCK_KEY_SUFFIX;
+    }
+
+    static String buyersKey(Long productId) {
+        return STOCK_KEY_PREFIX + productId + BUYERS_KEY_SUFFIX;
+    }
+}
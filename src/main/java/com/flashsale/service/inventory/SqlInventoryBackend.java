@@ -0,0 +1,247 @@
+package com.flashsale.service.inventory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Pure-SQL inventory backend
+ *
+ * Each decrement is a single conditional UPDATE against products.stock_count: the row lock taken
+ * by the UPDATE serializes concurrent buyers inside the database, and the WHERE clause rejects
+ * the decrement when stock is insufficient. No entity load, no optimistic retry loop.
+ *
+ * PostgreSQL uses UPDATE ... RETURNING; H2 uses the equivalent FINAL TABLE delta query.
+ * Other databases fall back to UPDATE + SELECT in one transaction. The dialect is detected from
+ * the JDBC metadata at startup unless flashsale.inventory.sql-dialect names it, which lets the
+ * app start without opening a database connection.
+ *
+ * For capped products the buyer's row in purchase_caps is claimed first with a conditional
+ * upsert, then the stock is taken, in one transaction: the upsert's row lock serializes one
+ * user's concurrent purchases, and a failed decrement rolls the claim back.
+ *
+ * Stock reads ({@link #get}) are read-only transactions, served by the read pool when
+ * flashsale.datasource.read.enabled; decrements always use the primary.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SqlInventoryBackend implements InventoryBackend {
+
+    private static final String POSTGRES_DECREMENT =
+            "UPDATE products SET stock_count = stock_count - ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND stock_count >= ? RETURNING stock_count";
+
+    private static final String POSTGRES_INCREMENT =
+            "UPDATE products SET stock_count = stock_count + ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? RETURNING stock_count";
+
+    private static final String H2_DECREMENT =
+            "SELECT stock_count FROM FINAL TABLE (UPDATE products SET stock_count = stock_count - ?, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE id = ? AND stock_count >= ?)";
+
+    private static final String H2_INCREMENT =
+            "SELECT stock_count FROM FINAL TABLE (UPDATE products SET stock_count = stock_count + ?, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE id = ?)";
+
+    private static final String GENERIC_DECREMENT =
+            "UPDATE products SET stock_count = stock_count - ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND stock_count >= ?";
+
+    private static final String GENERIC_INCREMENT =
+            "UPDATE products SET stock_count = stock_count + ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String INITIALIZE =
+            "UPDATE products SET stock_count = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String SELECT_STOCK = "SELECT stock_count FROM products WHERE id = ?";
+
+    private static final String POSTGRES_CLAIM_CAP =
+            "INSERT INTO purchase_caps (product_id, user_id, units) VALUES (?, ?, ?) " +
+            "ON CONFLICT (product_id, user_id) DO UPDATE SET units = purchase_caps.units + EXCLUDED.units " +
+            "WHERE purchase_caps.units + EXCLUDED.units <= ?";
+
+    private static final String H2_CLAIM_CAP =
+            "MERGE INTO purchase_caps c USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), " +
+            "CAST(? AS INTEGER))) AS b(product_id, user_id, units) " +
+            "ON c.product_id = b.product_id AND c.user_id = b.user_id " +
+            "WHEN MATCHED AND c.units + b.units <= ? THEN UPDATE SET units = c.units + b.units " +
+            "WHEN NOT MATCHED THEN INSERT (product_id, user_id, units) VALUES (b.product_id, b.user_id, b.units)";
+
+    private static final String GENERIC_CLAIM_CAP =
+            "UPDATE purchase_caps SET units = units + ? WHERE product_id = ? AND user_id = ? AND units + ? <= ?";
+
+    private static final String GENERIC_INSERT_CAP =
+            "INSERT INTO purchase_caps (product_id, user_id, units) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${flashsale.inventory.sql-dialect:auto}")
+    private String configuredDialect = "auto";
+
+    private Dialect dialect;
+
+    enum Dialect { POSTGRES, H2, GENERIC }
+
+    @PostConstruct
+    void detectDialect() {
+        if (!"auto".equalsIgnoreCase(configuredDialect)) {
+            dialect = Dialect.valueOf(configuredDialect.toUpperCase());
+            log.debug("SQL inventory backend using configured {} dialect", dialect);
+            return;
+        }
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    metaData -> metaData.getDatabaseProductName());
+        } catch (Exception e) {
+            log.warn("Could not detect database product, using generic inventory SQL: {}", e.getMessage());
+            product = "";
+        }
+        if ("PostgreSQL".equalsIgnoreCase(product)) {
+            dialect = Dialect.POSTGRES;
+        } else if ("H2".equalsIgnoreCase(product)) {
+            dialect = Dialect.H2;
+        } else {
+            dialect = Dialect.GENERIC;
+        }
+        log.debug("SQL inventory backend using {} dialect", dialect);
+    }
+
+    @Override
+    public String name() {
+        return "sql";
+    }
+
+    @Override
+    public void initialize(Long productId, int stockCount) {
+        jdbcTemplate.update(INITIALIZE, stockCount, productId);
+    }
+
+    @Override
+    public void initialize(Map<Long, Integer> stockCounts) {
+        List<Object[]> rows = stockCounts.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate(INITIALIZE, rows);
+    }
+
+    @Override
+    public long decrement(Long productId, int quantity) {
+        List<Long> remaining = switch (dialect) {
+            case POSTGRES -> jdbcTemplate.queryForList(POSTGRES_DECREMENT, Long.class, quantity, productId, quantity);
+            case H2 -> jdbcTemplate.queryForList(H2_DECREMENT, Long.class, quantity, productId, quantity);
+            case GENERIC -> updateAndSelect(GENERIC_DECREMENT, productId, quantity, productId, quantity);
+        };
+        return remaining.isEmpty() ? -1L : remaining.get(0);
+    }
+
+    @Override
+    public long decrement(Long productId, String userId, int quantity, int maxPerUser) {
+        if (quantity > maxPerUser) {
+            return CAP_EXCEEDED;
+        }
+        return transactionTemplate.execute(status -> {
+            if (!claimCap(productId, userId, quantity, maxPerUser)) {
+                return CAP_EXCEEDED;
+            }
+            long remaining = decrement(productId, quantity);
+            if (remaining < 0) {
+                status.setRollbackOnly();
+            }
+            return remaining;
+        });
+    }
+
+    @Override
+    public long increment(Long productId, int quantity) {
+        List<Long> stock = switch (dialect) {
+            case POSTGRES -> jdbcTemplate.queryForList(POSTGRES_INCREMENT, Long.class, quantity, productId);
+            case H2 -> jdbcTemplate.queryForList(H2_INCREMENT, Long.class, quantity, productId);
+            case GENERIC -> updateAndSelect(GENERIC_INCREMENT, productId, quantity, productId);
+        };
+        return stock.isEmpty() ? 0L : stock.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long get(Long productId) {
+        List<Long> stock = jdbcTemplate.queryForList(SELECT_STOCK, Long.class, productId);
+        return stock.isEmpty() ? 0L : stock.get(0);
+    }
+
+    @Override
+    public void delete(Long productId) {
+        // Stock lives in the products row; nothing to clean up
+    }
+
+    /**
+     * Add units to the buyer's count unless that would pass the cap
+     * @return false if the cap would be exceeded
+     */
+    private boolean claimCap(Long productId, String userId, int quantity, int maxPerUser) {
+        return switch (dialect) {
+            case POSTGRES -> jdbcTemplate.update(POSTGRES_CLAIM_CAP, productId, userId, quantity, maxPerUser) > 0;
+            case H2 -> insertOrClaim(() -> jdbcTemplate.update(H2_CLAIM_CAP, productId, userId, quantity, maxPerUser),
+                    productId, userId, quantity, maxPerUser);
+            case GENERIC -> jdbcTemplate.update(GENERIC_CLAIM_CAP, quantity, productId, userId, quantity, maxPerUser) > 0
+                    || insertOrClaim(() -> jdbcTemplate.update(GENERIC_INSERT_CAP, productId, userId, quantity),
+                    productId, userId, quantity, maxPerUser);
+        };
+    }
+
+    /**
+     * Run a statement that can lose the race to create the buyer's row under a savepoint; on a
+     * duplicate key the row exists now, so roll back to the savepoint and claim with an update.
+     * Without the savepoint the retry would fail on databases that abort the whole transaction
+     * after an error, as PostgreSQL does.
+     *
+     * A JDBC savepoint on the transaction's connection: JpaTransactionManager cannot create nested
+     * transactions with Hibernate, and no entity state is touched here.
+     */
+    private boolean insertOrClaim(IntSupplier insert, Long productId, String userId, int quantity, int maxPerUser) {
+        Savepoint savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+        try {
+            boolean claimed = insert.getAsInt() > 0;
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.releaseSavepoint(savepoint);
+                return null;
+            });
+            return claimed;
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.rollback(savepoint);
+                return null;
+            });
+            return jdbcTemplate.update(GENERIC_CLAIM_CAP, quantity, productId, userId, quantity, maxPerUser) > 0;
+        }
+    }
+
+    /**
+     * UPDATE followed by SELECT of the updated row in a single transaction
+     * Used for databases without RETURNING or delta-table support
+     */
+    private List<Long> updateAndSelect(String updateSql, Long productId, Object... args) {
+        return transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(updateSql, args) == 0) {
+                return List.<Long>of();
+            }
+            return jdbcTemplate.queryForList(SELECT_STOCK, Long.class, productId);
+        });
+    }
+}
@@ -1,6 +1,9 @@
--- Database initialization script
+-- Products and orders
+--
+-- Every migration is idempotent (IF NOT EXISTS): a database created before migrations existed, by
+-- ddl-auto or the old schema.sql, is baselined at version 0 and brought up to date by the same
+-- scripts as an empty one.
 
--- Create products table
 CREATE TABLE IF NOT EXISTS products (
     id BIGSERIAL PRIMARY KEY,
     name VARCHAR(255) NOT NULL,
@@ -11,7 +14,6 @@ CREATE TABLE IF NOT EXISTS products (
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
--- Create orders table
 CREATE TABLE IF NOT EXISTS orders (
     id BIGSERIAL PRIMARY KEY,
     order_id VARCHAR(36) UNIQUE NOT NULL,
@@ -24,18 +26,8 @@ CREATE TABLE IF NOT EXISTS orders (
     FOREIGN KEY (product_id) REFERENCES products(id)
 );
 
--- Create indexes for performance
-CREATE INDEX idx_orders_user_id ON orders(user_id);
-CREATE INDEX idx_orders_product_id ON orders(product_id);
-CREATE INDEX idx_orders_status ON orders(status);
-CREATE INDEX idx_orders_created_at ON orders(created_at);
-
--- Insert sample data
-INSERT INTO products (name, description, price, stock_count) VALUES
-('iPhone 15 Pro', 'Latest iPhone with A17 Pro chip', 999.99, 100),
-('Samsung Galaxy S24', 'Flagship Samsung phone', 899.99, 150),
-('MacBook Pro M3', '14-inch MacBook Pro', 1999.99, 50),
-('AirPods Pro 2', 'Wireless earbuds with ANC', 249.99, 200);
-
--- Display sample data
-SELECT * FROM products;
+CREATE INDEX IF NOT EXISTS idx_product_name ON products(name);
+CREATE INDEX IF NOT EXISTS idx_orders_user_id ON orders(user_id);
+CREATE INDEX IF NOT EXISTS idx_orders_product_id ON orders(product_id);
+CREATE INDEX IF NOT EXISTS idx_orders_status ON orders(status);
+CREATE INDEX IF NOT EXISTS idx_orders_created_at ON orders(created_at);
@@ -0,0 +1,23 @@
+-- Raffle allocation mode
+
+CREATE TABLE IF NOT EXISTS raffles (
+    product_id BIGINT PRIMARY KEY REFERENCES products(id),
+    status VARCHAR(20) NOT NULL,
+    closes_at TIMESTAMP NOT NULL,
+    seed BIGINT NOT NULL,
+    seed_hash VARCHAR(64) NOT NULL,
+    entry_count BIGINT,
+    winner_count INTEGER,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    drawn_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS raffle_entries (
+    id BIGSERIAL PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    user_id VARCHAR(255) NOT NULL,
+    result VARCHAR(10),
+    order_id VARCHAR(36),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_raffle_entries_product_user UNIQUE (product_id, user_id)
+);
@@ -0,0 +1,10 @@
+-- Per-user purchase caps: the cap on the product, and units bought per user of capped products
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS max_per_user INTEGER;
+
+CREATE TABLE IF NOT EXISTS purchase_caps (
+    product_id BIGINT NOT NULL,
+    user_id VARCHAR(255) NOT NULL,
+    units INTEGER NOT NULL,
+    PRIMARY KEY (product_id, user_id)
+);
@@ -0,0 +1,6 @@
+-- Read replica lag check
+
+CREATE TABLE IF NOT EXISTS replication_heartbeat (
+    id INTEGER PRIMARY KEY,
+    beat_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,104 @@
+-- Convert orders into a table range-partitioned by day on created_at (PostgreSQL 12+)
+--
+-- Run once, during a quiet window, before enabling flashsale.orders.partitioning.enabled:
+--   psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f src/main/resources/db/orders-partitioning.sql
+--
+-- Partitions are named orders_pYYYYMMDD and cover [day, day + 1). OrderPartitionManager keeps
+-- creating upcoming days and archives/drops cold ones. orders_default catches rows that fall
+-- outside every daily partition so an insert never fails if maintenance falls behind.
+--
+-- Partitioned tables require the partition key in every unique constraint, so the primary key
+-- becomes (id, created_at) and no index on orders can keep order_id unique across days any more.
+-- order_ids takes over that job: a trigger claims every inserted order_id there, so a duplicate
+-- fails with a unique violation exactly as the old orders.order_id constraint did, and
+-- OrderService's idempotency handling keeps working for a retry that lands on another day.
+--
+-- orders.id may be a serial column (the migrations) or an identity column (a schema Hibernate
+-- created); neither sequence can move to the new table, so it gets its own sequence that
+-- continues after the highest existing id.
+
+BEGIN;
+
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER INDEX IF EXISTS orders_pkey RENAME TO orders_unpartitioned_pkey;
+ALTER INDEX IF EXISTS idx_orders_user_id RENAME TO idx_orders_unpartitioned_user_id;
+ALTER INDEX IF EXISTS idx_orders_product_id RENAME TO idx_orders_unpartitioned_product_id;
+ALTER INDEX IF EXISTS idx_orders_status RENAME TO idx_orders_unpartitioned_status;
+ALTER INDEX IF EXISTS idx_orders_created_at RENAME TO idx_orders_unpartitioned_created_at;
+
+CREATE SEQUENCE orders_partitioned_id_seq;
+
+CREATE TABLE orders (
+    id          BIGINT NOT NULL DEFAULT nextval('orders_partitioned_id_seq'),
+    order_id    VARCHAR(36) NOT NULL,
+    product_id  BIGINT NOT NULL REFERENCES products(id),
+    user_id     VARCHAR(255) NOT NULL,
+    quantity    INTEGER NOT NULL DEFAULT 1,
+    price       DECIMAL(10, 2) NOT NULL,
+    status      VARCHAR(50) NOT NULL DEFAULT 'PENDING',
+    created_at  TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT orders_pkey PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Indexes on the parent are created on every partition, present and future
+CREATE INDEX idx_orders_order_id ON orders (order_id);
+CREATE INDEX idx_orders_user_id ON orders (user_id);
+CREATE INDEX idx_orders_product_id ON orders (product_id);
+CREATE INDEX idx_orders_status ON orders (status);
+CREATE INDEX idx_orders_created_at ON orders (created_at);
+
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+
+-- One partition per day from the oldest existing order through a week ahead
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN
+        SELECT generate_series(
+                   COALESCE((SELECT min(created_at) FROM orders_unpartitioned), now())::date,
+                   now()::date + 7,
+                   INTERVAL '1 day')::date
+    LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                       'orders_p' || to_char(day, 'YYYYMMDD'), day, day + 1);
+    END LOOP;
+END $$;
+
+-- Global order_id uniqueness; OrderPartitionManager releases the ids of partitions it archives
+CREATE TABLE order_ids (
+    order_id VARCHAR(36) PRIMARY KEY
+);
+
+INSERT INTO order_ids (order_id)
+SELECT order_id FROM orders_unpartitioned;
+
+INSERT INTO orders (id, order_id, product_id, user_id, quantity, price, status, created_at)
+SELECT id, order_id, product_id, user_id, quantity, price, status, created_at
+FROM orders_unpartitioned;
+
+CREATE FUNCTION orders_claim_order_id() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO order_ids (order_id) VALUES (NEW.order_id);
+    RETURN NULL;
+END $$;
+
+CREATE FUNCTION orders_release_order_id() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    DELETE FROM order_ids WHERE order_id = OLD.order_id;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER orders_claim_order_id AFTER INSERT ON orders
+    FOR EACH ROW EXECUTE FUNCTION orders_claim_order_id();
+CREATE TRIGGER orders_release_order_id AFTER DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION orders_release_order_id();
+
+SELECT setval('orders_partitioned_id_seq', COALESCE((SELECT max(id) FROM orders_unpartitioned), 0) + 1, false);
+
+-- Takes the old serial or identity sequence with it; the new default refers to its sequence by oid
+DROP TABLE orders_unpartitioned;
+ALTER SEQUENCE orders_partitioned_id_seq RENAME TO orders_id_seq;
+ALTER SEQUENCE orders_id_seq OWNED BY orders.id;
+
+COMMIT;
@@ -0,0 +1,103 @@
+package com.flashsale;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.entity.Product;
+import com.flashsale.service.FlashSaleService;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationTest {
+
+    @Test
+    void testMigrationsApplyOnceToAnEmptyDatabase() {
+        // Arrange
+        String url = database();
+
+        // Act
+        MigrateResult first = flyway(url).migrate();
+        MigrateResult second = flyway(url).migrate();
+
+        // Assert
+        assertEquals(4, first.migrationsExecuted);
+        assertEquals("4", first.targetSchemaVersion);
+        assertEquals(0, second.migrationsExecuted);
+    }
+
+    @Test
+    void testSchemaFromBeforeMigrationsIsBaselinedAndUpgraded() {
+        // Arrange - products and orders as the old schema.sql created them, with data
+        String url = database();
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        jdbc.execute("CREATE TABLE products (id BIGSERIAL PRIMARY KEY, name VARCHAR(255) NOT NULL, description TEXT, " +
+                "price DECIMAL(10, 2) NOT NULL, stock_count INTEGER NOT NULL DEFAULT 0, " +
+                "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        jdbc.execute("CREATE TABLE orders (id BIGSERIAL PRIMARY KEY, order_id VARCHAR(36) UNIQUE NOT NULL, " +
+                "product_id BIGINT NOT NULL, user_id VARCHAR(255) NOT NULL, quantity INTEGER NOT NULL DEFAULT 1, " +
+                "price DECIMAL(10, 2) NOT NULL, status VARCHAR(50) NOT NULL DEFAULT 'PENDING', " +
+                "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (product_id) REFERENCES products(id))");
+        jdbc.execute("CREATE INDEX idx_orders_user_id ON orders(user_id)");
+        jdbc.update("INSERT INTO products (name, price, stock_count) VALUES ('Existing', 9.99, 7)");
+
+        // Act
+        MigrateResult result = flyway(url).migrate();
+
+        // Assert - the missing column and tables are added, existing rows untouched
+        assertEquals(4, result.migrationsExecuted);
+        assertEquals(7, jdbc.queryForObject("SELECT stock_count FROM products WHERE name = 'Existing'", Integer.class));
+        assertNull(jdbc.queryForObject("SELECT max_per_user FROM products WHERE name = 'Existing'", Integer.class));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM purchase_caps", Integer.class));
+    }
+
+    @Test
+    void testApplicationRunsOnTheMigratedSchema() throws Exception {
+        // Hibernate only validates: every table and column the entities use must come from the migrations
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "spring.datasource.url", database(),
+                "spring.flyway.enabled", true,
+                "spring.jpa.hibernate.ddl-auto", "validate"))) {
+            // Arrange
+            Product product = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Migrated product")
+                    .price(new BigDecimal("5.00"))
+                    .stockCount(3)
+                    .maxPerUser(1)
+                    .build());
+
+            // Act
+            PurchaseRequest request = PurchaseRequest.builder().userId("migrated-user").quantity(1).build();
+            boolean first = app.getBean(FlashSaleService.class).purchase(product.getId(), request).isSuccess();
+            boolean second = app.getBean(FlashSaleService.class).purchase(product.getId(), request).isSuccess();
+
+            // Assert - the cap is read from products.max_per_user and enforced through purchase_caps
+            assertTrue(first);
+            assertFalse(second);
+        }
+    }
+
+    private static String database() {
+        return "jdbc:h2:mem:migration-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Same settings as spring.flyway in application.yml
+     */
+    private static Flyway flyway(String url) {
+        return Flyway.configure()
+                .dataSource(url, "sa", "")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load();
+    }
+}
@@ -0,0 +1,126 @@
+package com.flashsale.abuse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbuseDetectorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SimpleMeterRegistry meterRegistry;
+    private AbuseDetector abuseDetector;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        abuseDetector = new AbuseDetector(meterRegistry);
+        ReflectionTestUtils.setField(abuseDetector, "window", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(abuseDetector, "userThreshold", 10L);
+        ReflectionTestUtils.setField(abuseDetector, "ipThreshold", 20L);
+        ReflectionTestUtils.setField(abuseDetector, "subnetThreshold", 30L);
+        ReflectionTestUtils.setField(abuseDetector, "topK", 5);
+        abuseDetector.clock = now::get;
+        abuseDetector.init();
+    }
+
+    @Test
+    void testHeavyUserBlockedWhileOthersAllowed() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            assertEquals(AbuseDetector.Verdict.ALLOW, abuseDetector.inspect("bot", null));
+        }
+
+        // Act
+        AbuseDetector.Verdict bot = abuseDetector.inspect("bot", null);
+        AbuseDetector.Verdict human = abuseDetector.inspect("human", null);
+
+        // Assert
+        assertEquals(AbuseDetector.Verdict.BLOCK, bot);
+        assertEquals(AbuseDetector.Verdict.ALLOW, human);
+        assertEquals(1.0, meterRegistry.get("flashsale.abuse.flagged").tag("dimension", "user").counter().count());
+    }
+
+    @Test
+    void testRotatingUserIdsCaughtBySubnet() {
+        // Arrange
+        for (int i = 0; i < 30; i++) {
+            abuseDetector.inspect("user-" + i, "203.0.113." + (i % 15));
+        }
+
+        // Act
+        AbuseDetector.Verdict sameSubnet = abuseDetector.inspect("user-new", "203.0.113.200");
+        AbuseDetector.Verdict otherSubnet = abuseDetector.inspect("user-new", "198.51.100.7");
+
+        // Assert
+        assertEquals(AbuseDetector.Verdict.BLOCK, sameSubnet);
+        assertEquals(AbuseDetector.Verdict.ALLOW, otherSubnet);
+        assertEquals("203.0.113.0/24", abuseDetector.subnetOf("203.0.113.200"));
+        assertEquals("2001:db8:1:0:0:0:0:0/48", abuseDetector.subnetOf("2001:db8:1:2::5"));
+        assertNull(abuseDetector.subnetOf("proxy.internal"));
+    }
+
+    @Test
+    void testFlagExpiresAsWindowSlides() {
+        // Arrange
+        for (int i = 0; i < 11; i++) {
+            abuseDetector.inspect("bot", null);
+        }
+        assertEquals(AbuseDetector.Verdict.BLOCK, abuseDetector.inspect("bot", null));
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(61).toMillis());
+        AbuseDetector.Verdict verdict = abuseDetector.inspect("bot", null);
+
+        // Assert
+        assertEquals(AbuseDetector.Verdict.ALLOW, verdict);
+    }
+
+    @Test
+    void testDeprioritizedAttemptsShareSlowLane() {
+        // Arrange
+        ReflectionTestUtils.setField(abuseDetector, "action", AbuseDetector.Action.DEPRIORITIZE);
+        ReflectionTestUtils.setField(abuseDetector, "deprioritizedConcurrency", 1);
+        abuseDetector.init();
+        for (int i = 0; i < 10; i++) {
+            abuseDetector.inspect("bot", null);
+        }
+
+        // Act
+        AbuseDetector.Verdict verdict = abuseDetector.inspect("bot", null);
+        boolean first = abuseDetector.tryEnterSlowLane();
+        boolean second = abuseDetector.tryEnterSlowLane();
+        abuseDetector.exitSlowLane();
+
+        // Assert
+        assertEquals(AbuseDetector.Verdict.DEPRIORITIZE, verdict);
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(abuseDetector.tryEnterSlowLane());
+    }
+
+    @Test
+    void testTopOffendersReportsHeaviestFirst() {
+        // Arrange
+        for (int user = 0; user < 200; user++) {
+            int attempts = user < 3 ? 50 - user * 10 : 1;
+            for (int i = 0; i < attempts; i++) {
+                abuseDetector.inspect("user-" + user, null);
+            }
+        }
+
+        // Act
+        List<AbuseDetector.Offender> top = abuseDetector.getTopOffenders(3).get(AbuseDetector.Dimension.USER);
+
+        // Assert
+        assertEquals(List.of("user-0", "user-1", "user-2"), top.stream().map(AbuseDetector.Offender::key).toList());
+        assertEquals(50, top.get(0).count());
+        assertTrue(top.get(0).flagged());
+    }
+}
@@ -0,0 +1,99 @@
+package com.flashsale.analytics;
+
+import com.flashsale.dto.PurchaseOutcome;
+import com.flashsale.service.InventoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class SalesAnalyticsTest {
+
+    @Mock
+    private InventoryService inventoryService;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private SalesAnalytics salesAnalytics;
+
+    @BeforeEach
+    void setUp() {
+        salesAnalytics = new SalesAnalytics(inventoryService, new SimpleMeterRegistry());
+        salesAnalytics.clock = now::get;
+        salesAnalytics.init();
+    }
+
+    @Test
+    void testCountsOutcomesAndUnitsOverRollingWindows() {
+        // Arrange
+        salesAnalytics.onInventoryChanged(1L, 10);
+        salesAnalytics.record(PurchaseOutcome.SUCCESS, 1L, 2);
+        salesAnalytics.record(PurchaseOutcome.SUCCESS, 1L, 1);
+        salesAnalytics.record(PurchaseOutcome.RATE_LIMITED, 1L, 0);
+        salesAnalytics.onInventoryChanged(1L, 7);
+        now.addAndGet(1_000);
+        salesAnalytics.record(PurchaseOutcome.OUT_OF_STOCK, 1L, 0);
+
+        // Act
+        SalesAnalytics.ProductSales lastSecond = salesAnalytics.getAll(Duration.ofSeconds(1)).get(0);
+        SalesAnalytics.ProductSales lastMinute = salesAnalytics.getAll(Duration.ofSeconds(60)).get(0);
+        now.addAndGet(Duration.ofMinutes(2).toMillis());
+        SalesAnalytics.ProductSales laterMinute = salesAnalytics.getAll(Duration.ofSeconds(60)).get(0);
+        SalesAnalytics.ProductSales laterHour = salesAnalytics.getAll(Duration.ofHours(1)).get(0);
+
+        // Assert
+        verify(inventoryService).addListener(salesAnalytics);
+        assertEquals(1, lastSecond.attempts());
+        assertEquals(0, lastSecond.unitsSold());
+        assertEquals(4, lastMinute.attempts());
+        assertEquals(2L, lastMinute.outcomes().get(PurchaseOutcome.SUCCESS));
+        assertEquals(1L, lastMinute.outcomes().get(PurchaseOutcome.RATE_LIMITED));
+        assertEquals(1L, lastMinute.outcomes().get(PurchaseOutcome.OUT_OF_STOCK));
+        assertEquals(3, lastMinute.unitsSold());
+        assertEquals(0.05, lastMinute.unitsPerSecond(), 1e-9);
+        assertEquals(7L, lastMinute.remainingStock());
+        assertEquals(0, laterMinute.attempts());
+        assertEquals(4, laterHour.attempts());
+        assertEquals(3600, laterHour.windowSeconds());
+        assertEquals(3, laterHour.totalUnitsSold());
+    }
+
+    @Test
+    void testSeriesHasOneBucketPerSecond() {
+        // Arrange
+        salesAnalytics.record(PurchaseOutcome.SUCCESS, 5L, 1);
+        now.addAndGet(2_000);
+        salesAnalytics.record(PurchaseOutcome.SUCCESS, 5L, 3);
+
+        // Act
+        List<SalesAnalytics.Bucket> series = salesAnalytics.getProduct(5L, SalesAnalytics.Resolution.SECOND)
+                .orElseThrow().series();
+
+        // Assert
+        assertEquals(60, series.size());
+        assertEquals(3, series.get(59).unitsSold());
+        assertEquals(0, series.get(58).unitsSold());
+        assertEquals(1, series.get(57).unitsSold());
+        assertEquals(now.get() / 1000 * 1000, series.get(59).startMillis());
+    }
+
+    @Test
+    void testAttemptsOnUnknownProductsAreNotTracked() {
+        // Act
+        salesAnalytics.record(PurchaseOutcome.RATE_LIMITED, 42L, 0);
+        salesAnalytics.record(PurchaseOutcome.PRODUCT_NOT_FOUND, 43L, 0);
+
+        // Assert
+        assertTrue(salesAnalytics.getAll(Duration.ofSeconds(60)).isEmpty());
+        assertTrue(salesAnalytics.getProduct(42L, SalesAnalytics.Resolution.MINUTE).isEmpty());
+    }
+}
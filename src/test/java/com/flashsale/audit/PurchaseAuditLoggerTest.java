@@ -0,0 +1,87 @@
+package com.flashsale.audit;
+
+import com.flashsale.dto.PurchaseOutcome;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseAuditLoggerTest {
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PurchaseAuditLogger auditLogger;
+    private Path auditFile;
+
+    @BeforeEach
+    void setUp() {
+        auditFile = directory.resolve("purchase-audit.log");
+        auditLogger = new PurchaseAuditLogger(meterRegistry);
+        ReflectionTestUtils.setField(auditLogger, "enabled", true);
+        ReflectionTestUtils.setField(auditLogger, "auditFile", auditFile.toString());
+        ReflectionTestUtils.setField(auditLogger, "maxFileSizeMb", 100L);
+        ReflectionTestUtils.setField(auditLogger, "maxHistory", 2);
+        ReflectionTestUtils.setField(auditLogger, "queueCapacity", 65536);
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditLogger.stop();
+    }
+
+    @Test
+    void testSuccessesAlwaysRecordedAndRejectionsSampled() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(auditLogger, "rejectionSampleRate", 0.25);
+        auditLogger.start();
+
+        // Act
+        for (int i = 0; i < 500; i++) {
+            auditLogger.record(PurchaseOutcome.SUCCESS, 1L, "buyer-" + i, "order-" + i, 500 - i, System.nanoTime());
+        }
+        for (int i = 0; i < 4000; i++) {
+            auditLogger.record(PurchaseOutcome.OUT_OF_STOCK, 1L, "late-" + i, null, 0, System.nanoTime());
+        }
+        auditLogger.stop();
+
+        // Assert - every success, and about a quarter of the rejections
+        List<String> lines = Files.readAllLines(auditFile);
+        long successes = lines.stream().filter(line -> line.contains("\"outcome\":\"SUCCESS\"")).count();
+        long rejections = lines.stream().filter(line -> line.contains("\"outcome\":\"OUT_OF_STOCK\"")).count();
+        assertEquals(500, successes);
+        assertTrue(rejections > 800 && rejections < 1200, "sampled rejections: " + rejections);
+        assertEquals(lines.size(), meterRegistry.get("flashsale.audit.written").counter().count());
+        assertEquals(0, meterRegistry.get("flashsale.audit.dropped").counter().count());
+        assertTrue(lines.get(0).startsWith("{\"ts\":"));
+        assertTrue(lines.get(0).contains("\"userId\":\"buyer-0\",\"orderId\":\"order-0\",\"remaining\":500"));
+    }
+
+    @Test
+    void testFullQueueDropsAndCountsEvents() {
+        // Arrange - metrics registered but no writer thread, so nothing drains the queue
+        ReflectionTestUtils.setField(auditLogger, "enabled", false);
+        auditLogger.start();
+        ReflectionTestUtils.setField(auditLogger, "enabled", true);
+        ReflectionTestUtils.setField(auditLogger, "queueCapacity", 10);
+
+        // Act
+        for (int i = 0; i < 15; i++) {
+            auditLogger.record(PurchaseOutcome.SUCCESS, 1L, "buyer-" + i, "order-" + i, 0, System.nanoTime());
+        }
+
+        // Assert
+        assertEquals(5, meterRegistry.get("flashsale.audit.dropped").counter().count());
+        assertEquals(10, meterRegistry.get("flashsale.audit.queue.depth").gauge().value());
+    }
+}
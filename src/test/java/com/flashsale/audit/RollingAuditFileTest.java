@@ -0,0 +1,57 @@
+package com.flashsale.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingAuditFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRollsBySizeAndKeepsOnlyMaxHistory() throws Exception {
+        // Arrange - room for two 40-byte chunks per file, two rolled files kept
+        Path file = directory.resolve("audit.log");
+
+        // Act
+        try (RollingAuditFile auditFile = new RollingAuditFile(file, 100, 2)) {
+            for (int i = 0; i < 10; i++) {
+                auditFile.write(chunk(i));
+            }
+        }
+
+        // Assert - newest chunks in the active file, older ones shifted down, the rest deleted
+        assertEquals(chunk(8) + chunk(9), Files.readString(file));
+        assertEquals(chunk(6) + chunk(7), Files.readString(directory.resolve("audit.log.1")));
+        assertEquals(chunk(4) + chunk(5), Files.readString(directory.resolve("audit.log.2")));
+        assertFalse(Files.exists(directory.resolve("audit.log.3")));
+    }
+
+    @Test
+    void testReopenedFileKeepsItsSizeTowardsTheLimit() throws Exception {
+        // Arrange - a previous run left one chunk in the active file
+        Path file = directory.resolve("audit.log");
+        try (RollingAuditFile auditFile = new RollingAuditFile(file, 100, 1)) {
+            auditFile.write(chunk(0));
+        }
+
+        // Act
+        try (RollingAuditFile auditFile = new RollingAuditFile(file, 100, 1)) {
+            auditFile.write(chunk(1));
+            auditFile.write(chunk(2));
+        }
+
+        // Assert - appended after the existing chunk, then rolled once the limit was reached
+        assertEquals(chunk(0) + chunk(1), Files.readString(directory.resolve("audit.log.1")));
+        assertEquals(chunk(2), Files.readString(file));
+    }
+
+    private static String chunk(int index) {
+        return String.format("%-39s", "event-" + index) + "\n";
+    }
+}
@@ -0,0 +1,166 @@
+package com.flashsale.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * CPU time and allocation per request for {@link PurchaseCodec} against the path it replaces
+ *
+ * The "jackson" column is what Spring MVC did for POST /api/buy before the codec: ObjectMapper
+ * databinding of the body stream into PurchaseRequest, Bean Validation, and ObjectMapper
+ * serialization of the PurchaseResponse into a stream. Handler lookup, content negotiation and the
+ * servlet container are the same for both and left out, so the difference is the codec's alone.
+ *
+ * JMH is not on the build, so this is a plain harness: each case runs single-threaded for
+ * warmup rounds, then measured rounds of a fixed duration; the median round is reported, and
+ * allocation comes from the thread's allocated-bytes counter.
+ *
+ * Settings: -Dcodec-benchmark.rounds=5 -Dcodec-benchmark.warmup-rounds=3 -Dcodec-benchmark.round-millis=1000
+ *
+ * Run with: mvn -Ploadtest test-compile exec:java -Dexec.mainClass=com.flashsale.codec.PurchaseCodecBenchmark
+ * Writes target/codec-benchmark/summary.txt
+ */
+public final class PurchaseCodecBenchmark {
+
+    private static final int ROUNDS = Integer.getInteger("codec-benchmark.rounds", 5);
+    private static final int WARMUP_ROUNDS = Integer.getInteger("codec-benchmark.warmup-rounds", 3);
+    private static final long ROUND_NANOS = Long.getLong("codec-benchmark.round-millis", 1000) * 1_000_000;
+    private static final int BATCH = 1000;
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run() throws IOException;
+    }
+
+    private record Measurement(double nanosPerOp, double bytesPerOp) {
+    }
+
+    /**
+     * Keeps results alive so the JIT cannot drop the work
+     */
+    private static volatile int sink;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final PurchaseCodec codec = new PurchaseCodec(objectMapper);
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private PurchaseCodecBenchmark() {
+        codec.init();
+    }
+
+    public static void main(String[] args) throws IOException {
+        new PurchaseCodecBenchmark().run();
+    }
+
+    private void run() throws IOException {
+        byte[] body = "{\"userId\":\"user-48213\",\"quantity\":1}".getBytes(StandardCharsets.UTF_8);
+        PurchaseResponse success = PurchaseResponse.success(UUID.randomUUID().toString(), 42L, "user-48213");
+        PurchaseResponse outOfStock = PurchaseResponse.outOfStock(42L);
+        PurchaseResponse rateLimited = PurchaseResponse.rateLimited("user-48213", "user");
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("PurchaseCodec vs Jackson databinding + Bean Validation, %d x %d ms rounds (median)%n",
+                ROUNDS, ROUND_NANOS / 1_000_000));
+        summary.append(String.format("%-32s %13s %11s %8s %12s %10s%n", "operation", "jackson ns/op", "codec ns/op",
+                "speedup", "jackson B/op", "codec B/op"));
+        compare(summary, "decode + validate request",
+                () -> jacksonDecode(body),
+                () -> codecDecode(body));
+        compare(summary, "encode success",
+                () -> jacksonEncode(success),
+                () -> codec.encode(success).length);
+        compare(summary, "encode out of stock",
+                () -> jacksonEncode(outOfStock),
+                () -> codec.encode(outOfStock).length);
+        compare(summary, "encode rate limited",
+                () -> jacksonEncode(rateLimited),
+                () -> codec.encode(rateLimited).length);
+        compare(summary, "request + out-of-stock response",
+                () -> {
+                    jacksonDecode(body);
+                    return jacksonEncode(outOfStock);
+                },
+                () -> {
+                    codecDecode(body);
+                    return codec.encode(outOfStock).length;
+                });
+
+        Path reportDir = Path.of("target/codec-benchmark");
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve("summary.txt"), summary);
+        System.out.println();
+        System.out.print(summary);
+        System.out.println("Report written to " + reportDir.resolve("summary.txt").toAbsolutePath());
+    }
+
+    private Object jacksonDecode(byte[] body) throws IOException {
+        PurchaseRequest request = objectMapper.readValue(new ByteArrayInputStream(body), PurchaseRequest.class);
+        return validator.validate(request).isEmpty() ? request : null;
+    }
+
+    private Object codecDecode(byte[] body) throws IOException {
+        PurchaseRequest request = codec.decode(new ByteArrayInputStream(body));
+        return codec.validate(request) == null ? request : null;
+    }
+
+    private int jacksonEncode(PurchaseResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        objectMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    private void compare(StringBuilder summary, String name, Operation jackson, Operation codec) throws IOException {
+        System.out.println("Measuring " + name);
+        Measurement before = measure(jackson);
+        Measurement after = measure(codec);
+        summary.append(String.format("%-32s %13.1f %11.1f %7.1fx %12.0f %10.0f%n", name, before.nanosPerOp(),
+                after.nanosPerOp(), before.nanosPerOp() / after.nanosPerOp(), before.bytesPerOp(), after.bytesPerOp()));
+    }
+
+    private Measurement measure(Operation operation) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            round(operation, threadId);
+        }
+        Measurement[] rounds = new Measurement[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            rounds[round] = round(operation, threadId);
+        }
+        Arrays.sort(rounds, (a, b) -> Double.compare(a.nanosPerOp(), b.nanosPerOp()));
+        return rounds[ROUNDS / 2];
+    }
+
+    private Measurement round(Operation operation, long threadId) throws IOException {
+        long operations = 0;
+        int hash = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                hash += System.identityHashCode(operation.run());
+            }
+            operations += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ROUND_NANOS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        sink = hash;
+        return new Measurement((double) elapsed / operations, (double) allocated / operations);
+    }
+}
@@ -0,0 +1,193 @@
+package com.flashsale.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseCodecTest {
+
+    private static final List<String> BODIES = List.of(
+            "{\"userId\":\"user-1\"}",
+            "{\"userId\":\"user-1\",\"quantity\":3}",
+            " {\n\t\"quantity\" : 2 ,\r\n \"userId\" : \"a b\" } ",
+            "{\"userId\":\"user-1\",\"quantity\":null}",
+            "{\"userId\":null}",
+            "{}",
+            "{\"userId\":\"   \",\"quantity\":0}",
+            "{\"userId\":\"x\",\"quantity\":-7}",
+            "{\"userId\":\"x\",\"quantity\":123456789}",
+            "{\"userId\":\"x\",\"userId\":\"y\"}",
+            // Left to the ObjectMapper
+            "{\"userId\":\"esc\\\"aped\\u0041\"}",
+            "{\"userId\":\"ünïcode\"}",
+            "{\"userId\":\"x\",\"quantity\":2.0}",
+            "{\"userId\":\"x\",\"quantity\":\"4\"}",
+            "{\"userId\":\"x\",\"quantity\":1234567890}",
+            "{\"userId\":\"x\",\"clientIp\":\"10.0.0.1\"}",
+            "{\"userId\":\"x\"} trailing",
+            "{\"userId\":\"x\",\"quantity\":012}",
+            "{\"userId\":\"x\",\"quantity\":99999999999}",
+            "{\"userId\":\"x\",}",
+            "{\"userId\":",
+            "[\"x\"]",
+            "null",
+            "");
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private PurchaseCodec codec() {
+        PurchaseCodec codec = new PurchaseCodec(objectMapper);
+        codec.init();
+        return codec;
+    }
+
+    @Test
+    void testDecodeAndValidateMatchDatabinding() throws Exception {
+        // Arrange
+        PurchaseCodec codec = codec();
+
+        for (String body : BODIES) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            PurchaseRequest expected;
+            try {
+                expected = objectMapper.readValue(bytes, PurchaseRequest.class);
+            } catch (Exception e) {
+                expected = null;
+            }
+
+            // Act + Assert - same fields, or rejected as malformed when databinding fails
+            if (expected == null) {
+                assertThrows(PurchaseCodec.MalformedRequestException.class,
+                        () -> codec.decode(new ByteArrayInputStream(bytes)), body);
+                continue;
+            }
+            PurchaseRequest actual = codec.decode(new ByteArrayInputStream(bytes));
+            assertEquals(expected, actual, body);
+
+            Map<String, String> violations = new HashMap<>();
+            for (ConstraintViolation<PurchaseRequest> violation : validator.validate(expected)) {
+                violations.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            byte[] invalid = codec.validate(actual);
+            if (violations.isEmpty()) {
+                assertNull(invalid, body);
+            } else {
+                // Bean Validation reports violations in no fixed order, so only the content is compared
+                assertEquals(violations, objectMapper.readValue(invalid, Map.class), body);
+            }
+        }
+    }
+
+    @Test
+    void testLargeBodiesAreReadPastTheBuffer() throws Exception {
+        // Arrange
+        String userId = "u".repeat(5000);
+        byte[] body = ("{\"userId\":\"" + userId + "\",\"quantity\":2}").getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        PurchaseRequest request = codec().decode(new ByteArrayInputStream(body));
+
+        // Assert
+        assertEquals(userId, request.getUserId());
+        assertEquals(2, request.getQuantity());
+    }
+
+    @Test
+    void testEncodeIsByteForByteJackson() throws Exception {
+        // Arrange
+        PurchaseCodec codec = codec();
+        List<PurchaseResponse> responses = List.of(
+                PurchaseResponse.success("0f8fad5b-d9cb-469f-a165-70867728950e", 42L, "user-1"),
+                PurchaseResponse.outOfStock(42L),
+                PurchaseResponse.outOfStock(-1L),
+                PurchaseResponse.outOfStock(Long.MAX_VALUE),
+                PurchaseResponse.rateLimited("user-1"),
+                PurchaseResponse.rateLimited("user-1", "user"),
+                PurchaseResponse.rateLimited("user-1", "global"),
+                PurchaseResponse.blocked("user-1"),
+                PurchaseResponse.limitReached(42L, "user-1", 2),
+                PurchaseResponse.error("Product not found"),
+                PurchaseResponse.error("Some \"other\" failure\\"),
+                PurchaseResponse.error(null),
+                PurchaseResponse.success("id", 1L, "ctrl\b\t\n\f\r\u0001\u001f\"\\/"),
+                PurchaseResponse.success("id", 1L, "ünïcode"),
+                PurchaseResponse.raffleEntered(42L, "user-1", LocalDateTime.of(2026, 10, 19, 12, 30, 0, 120_000_000)),
+                PurchaseResponse.raffleClosed(42L, LocalDateTime.of(2026, 10, 19, 12, 30)));
+
+        for (PurchaseResponse response : responses) {
+            // Act
+            String actual = new String(codec.encode(response), StandardCharsets.UTF_8);
+
+            // Assert
+            assertEquals(objectMapper.writeValueAsString(response), actual);
+        }
+    }
+
+    @Test
+    void testBuyEndpointSpeaksTheSameJson() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of())) {
+            // Arrange
+            ObjectMapper appMapper = app.getBean(ObjectMapper.class);
+            Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Codec product")
+                    .price(new BigDecimal("5.00"))
+                    .stockCount(1)
+                    .build()).getId();
+            String url = app.baseUrl() + "/api/buy/" + productId;
+
+            // Act
+            HttpResponse<String> bought = post(url, "application/json", "{\"userId\":\"codec-1\"}");
+            HttpResponse<String> soldOut = post(url, "application/json", "{\"userId\":\"codec-2\",\"quantity\":1}");
+            HttpResponse<String> invalid = post(url, "application/json", "{\"userId\":\" \",\"quantity\":0}");
+            HttpResponse<String> malformed = post(url, "application/json", "{\"userId\":");
+
+            // Assert
+            assertEquals(200, bought.statusCode());
+            assertTrue(bought.headers().firstValue("Content-Type").orElseThrow().startsWith("application/json"));
+            PurchaseResponse success = appMapper.readValue(bought.body(), PurchaseResponse.class);
+            assertTrue(success.isSuccess());
+            assertEquals("codec-1", success.getUserId());
+            assertEquals(appMapper.writeValueAsString(success), bought.body());
+
+            assertEquals(400, soldOut.statusCode());
+            assertEquals(appMapper.writeValueAsString(PurchaseResponse.outOfStock(productId)), soldOut.body());
+
+            assertEquals(400, invalid.statusCode());
+            assertEquals(Map.of("userId", "User ID is required", "quantity", "Quantity must be at least 1"),
+                    appMapper.readValue(invalid.body(), Map.class));
+
+            assertEquals(400, malformed.statusCode());
+            assertTrue(malformed.body().contains("Malformed purchase request"), malformed.body());
+        }
+    }
+
+    private static HttpResponse<String> post(String url, String contentType, String body) throws Exception {
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
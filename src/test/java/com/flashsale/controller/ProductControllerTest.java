@@ -0,0 +1,21 @@
+package com.flashsale.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductControllerTest {
+
+    @Test
+    void testGzipOnlyWhenAcceptedWithNonZeroQuality() {
+        assertTrue(ProductController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ProductController.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(ProductController.acceptsGzip("*"));
+        assertFalse(ProductController.acceptsGzip(null));
+        assertFalse(ProductController.acceptsGzip("identity"));
+        assertFalse(ProductController.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductController.acceptsGzip("br, gzip; q=0.000"));
+        assertFalse(ProductController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(ProductController.acceptsGzip("*;q=0"));
+    }
+}
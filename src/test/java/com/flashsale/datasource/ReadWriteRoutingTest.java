@@ -0,0 +1,106 @@
+package com.flashsale.datasource;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.service.CatalogResponseCache;
+import com.flashsale.service.FlashSaleService;
+import com.flashsale.service.InventoryService;
+import com.flashsale.service.OrderService;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingTest {
+
+    @Test
+    void testReadsUseTheirOwnPoolAndFallBackWhenTheReplicaLags() throws Exception {
+        // Two pools on one H2 database: a replica that never lags unless the test makes it
+        String database = "jdbc:h2:mem:routing-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "spring.datasource.url", database,
+                "flashsale.datasource.read.enabled", true,
+                "flashsale.datasource.read.url", database,
+                "flashsale.datasource.read.hikari.maximum-pool-size", 2,
+                "flashsale.datasource.read.hikari.connection-timeout", 250,
+                // Heartbeats are driven by the test
+                "flashsale.datasource.read.heartbeat-interval", "PT1H"))) {
+            // Arrange
+            DataSource readPool = app.getBean("readDataSource", DataSource.class);
+            JdbcTemplate primary = new JdbcTemplate(app.getBean("primaryDataSource", DataSource.class));
+            ReplicaLagMonitor lagMonitor = app.getBean(ReplicaLagMonitor.class);
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            OrderService orderService = app.getBean(OrderService.class);
+            MeterRegistry meterRegistry = app.getBean(MeterRegistry.class);
+            lagMonitor.heartbeat();
+            lagMonitor.heartbeat();
+            assertTrue(lagMonitor.isReplicaUsable());
+            Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Routed product")
+                    .price(new BigDecimal("10.00"))
+                    .stockCount(10)
+                    .build()).getId();
+
+            // Act - every read connection is taken, as by a burst of history queries
+            List<Connection> held = hold(readPool, 2);
+            int bought = 0;
+            for (int i = 0; i < 5; i++) {
+                PurchaseRequest request = PurchaseRequest.builder().userId("buyer-" + i).quantity(1).build();
+                bought += flashSaleService.purchase(productId, request).isSuccess() ? 1 : 0;
+            }
+
+            // Assert - purchases never wait on the read pool; reads do
+            assertEquals(5, bought);
+            assertThrows(RuntimeException.class, orderService::getAllOrders);
+            release(held);
+            assertEquals(5, orderService.getAllOrders().size());
+            assertEquals(5L, app.getBean(InventoryService.class).getInventory(productId));
+            double replicaReads = meterRegistry.get("flashsale.datasource.reads").tag("target", "replica").counter().count();
+            assertTrue(replicaReads >= 2);
+            app.getBean(CatalogResponseCache.class).getProductList();
+            assertTrue(meterRegistry.get("flashsale.datasource.reads").tag("target", "replica").counter().count() > replicaReads);
+
+            // Act - the replica falls a minute behind
+            primary.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                    Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+            lagMonitor.heartbeat();
+            held = hold(readPool, 2);
+
+            // Assert - reads are served by the primary until the replica catches up
+            assertFalse(lagMonitor.isReplicaUsable());
+            assertTrue(lagMonitor.getLag().toSeconds() >= 59);
+            assertEquals(5, orderService.getAllOrders().size());
+            assertTrue(meterRegistry.get("flashsale.datasource.reads").tag("target", "primary").counter().count() >= 1);
+            release(held);
+            lagMonitor.heartbeat();
+            assertTrue(lagMonitor.isReplicaUsable());
+        }
+    }
+
+    private static List<Connection> hold(DataSource pool, int count) throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            connections.add(pool.getConnection());
+        }
+        return connections;
+    }
+
+    private static void release(List<Connection> connections) throws Exception {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+}
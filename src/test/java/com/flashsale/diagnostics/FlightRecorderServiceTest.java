@@ -0,0 +1,82 @@
+package com.flashsale.diagnostics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private FlightRecorderService flightRecorderService;
+
+    @BeforeEach
+    void setUp() {
+        flightRecorderService = new FlightRecorderService();
+        ReflectionTestUtils.setField(flightRecorderService, "directory", directory.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        flightRecorderService.close();
+    }
+
+    @Test
+    void stop_SummarizesStagesAndPurchasesByTotalTime() throws Exception {
+        // Arrange
+        flightRecorderService.start(Duration.ofMinutes(1), false);
+        for (int i = 0; i < 5; i++) {
+            StageEvent stage = new StageEvent();
+            stage.begin();
+            Thread.sleep(2);
+            stage.commit("inventory.decrement", 1L, "redis");
+            PurchaseEvent.emit("SUCCESS", 1L, 1, System.nanoTime() - 1_000_000);
+        }
+        StageEvent quota = new StageEvent();
+        quota.begin();
+        quota.commit("quota", 1L, null);
+
+        // Act
+        FlightRecorderService.RecordingSummary summary = flightRecorderService.stop(10);
+
+        // Assert
+        assertEquals("CLOSED", summary.state());
+        List<FlightRecorderService.StageStats> stages = summary.stages();
+        assertEquals(List.of("inventory.decrement[redis]", "purchase[SUCCESS]", "quota"),
+                stages.stream().map(FlightRecorderService.StageStats::stage).toList());
+        FlightRecorderService.StageStats decrement = stages.get(0);
+        assertEquals(5, decrement.count());
+        assertTrue(decrement.p50Micros() >= 2000);
+        assertTrue(decrement.maxMicros() >= decrement.p99Micros());
+        assertEquals(5, stages.get(1).count());
+        assertTrue(Files.exists(flightRecorderService.lastRecordingFile().orElseThrow()));
+    }
+
+    @Test
+    void summary_WhileRunning_ReadsSnapshotAndRejectsSecondStart() {
+        // Arrange
+        flightRecorderService.start(Duration.ofMinutes(1), false);
+        StageEvent stage = new StageEvent();
+        stage.begin();
+        stage.commit("order.save", 1L, null);
+
+        // Act
+        FlightRecorderService.RecordingSummary summary = flightRecorderService.summary(10);
+
+        // Assert
+        assertEquals("RUNNING", summary.state());
+        assertEquals(1, summary.stages().get(0).count());
+        assertTrue(flightRecorderService.lastRecordingFile().isEmpty());
+        assertThrows(IllegalStateException.class, () -> flightRecorderService.start(Duration.ofMinutes(1), false));
+    }
+}
@@ -0,0 +1,159 @@
+package com.flashsale.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.entity.Product;
+import com.flashsale.importer.ProductImportService.ImportView;
+import com.flashsale.importer.ProductImportService.RowError;
+import com.flashsale.importer.ProductImportService.Status;
+import com.flashsale.repository.ProductRepository;
+import com.flashsale.service.InventoryService;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductImportTest {
+
+    private static final int ROWS = 2_500;
+
+    @ParameterizedTest(name = "{0} backend")
+    @ValueSource(strings = {"sql", "redis"})
+    void testCsvImportStreamsBatchesAndReportsRowErrors(String backend) throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.inventory.backend", backend,
+                "flashsale.product-import.batch-size", 1000))) {
+            // Arrange - generated row by row, so the upload is never held in memory on either side
+            InputStream csv = new SequenceInputStream(Collections.enumeration(List.of(
+                    stream("name,price,stock_count,description,max_per_user,ignored\n"),
+                    new GeneratedRows(ROWS, this::csvRow))));
+
+            // Act
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create(app.baseUrl() + "/api/products/imports"))
+                    .header("Content-Type", "text/csv")
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> csv))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            ImportView report = app.getBean(ObjectMapper.class).readValue(response.body(), ImportView.class);
+
+            // Assert - bad rows are skipped and reported, the batches around them still land
+            assertEquals(200, response.statusCode());
+            assertEquals(Status.COMPLETED, report.status());
+            assertEquals(ROWS, report.rowsRead());
+            assertEquals(ROWS - 3, report.imported());
+            assertEquals(3, report.rejected());
+            assertEquals(List.of(7L, 1500L, 2001L), report.errors().stream().map(RowError::row).toList());
+            assertEquals("price: not a number 'abc'", report.errors().get(0).message());
+            assertEquals("Stock count must be non-negative", report.errors().get(1).message());
+            assertTrue(report.errors().get(2).message().startsWith("rejected by the database"));
+
+            Map<String, Product> products = app.getBean(ProductRepository.class).findAll().stream()
+                    .collect(Collectors.toMap(Product::getName, Function.identity()));
+            assertEquals(ROWS - 3, products.size());
+            Product quoted = products.get("SKU 42, \"deluxe\"");
+            assertEquals("line one\nline two", quoted.getDescription());
+            assertEquals(2, quoted.getMaxPerUser());
+            assertEquals(new BigDecimal("42.99"), quoted.getPrice());
+            InventoryService inventoryService = app.getBean(InventoryService.class);
+            assertEquals(42L, inventoryService.getInventory(quoted.getId()));
+            assertEquals(2_499L % 100, inventoryService.getInventory(products.get("SKU 2499").getId()));
+            assertEquals(List.of(report), app.getBean(ProductImportService.class).getImports());
+        }
+    }
+
+    @Test
+    void testNdjsonImportAndUnreadableUpload() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of())) {
+            // Arrange
+            ProductImportService importService = app.getBean(ProductImportService.class);
+            String ndjson = """
+                    {"name":"Headphones","price":59.90,"stockCount":30,"maxPerUser":1}
+
+                    {"name":"Speaker","price":"oops","stockCount":5}
+                    {"name":"","price":10,"stockCount":5}
+                    {"name":"Cable","description":"USB-C","price":4.50,"stockCount":500}
+                    """;
+
+            // Act
+            ImportView report = importService.importProducts(ProductImportService.Format.NDJSON, stream(ndjson));
+
+            // Assert
+            assertEquals(4, report.rowsRead());
+            assertEquals(2, report.imported());
+            assertEquals(List.of(2L, 3L), report.errors().stream().map(RowError::row).toList());
+            assertTrue(report.errors().get(0).message().startsWith("invalid JSON"));
+            assertEquals("Product name is required", report.errors().get(1).message());
+
+            // Assert - a CSV upload without the required columns is refused outright
+            HttpResponse<String> refused = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create(app.baseUrl() + "/api/products/imports"))
+                    .header("Content-Type", "text/csv")
+                    .POST(HttpRequest.BodyPublishers.ofString("name,price\nLamp,20.00\n"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, refused.statusCode());
+            assertTrue(refused.body().contains("CSV header is missing column 'stockCount'"));
+            assertEquals(Status.FAILED, importService.getImports().get(0).status());
+        }
+    }
+
+    private String csvRow(int i) {
+        return switch (i) {
+            case 7 -> "SKU 7,abc,10,,,x\n";
+            case 42 -> "\"SKU 42, \"\"deluxe\"\"\",42.99,42,\"line one\nline two\",2,x\r\n";
+            case 1500 -> "SKU 1500,15.00,-1,,,x\n";
+            // Longer than the name column: only the database rejects it
+            case 2001 -> "SKU " + "9".repeat(300) + ",20.01,1,,,x\n";
+            default -> "SKU " + i + "," + (i % 100 + 1) + ".00," + (i % 100) + ",,,x\n";
+        };
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Produces rows 1..count on demand
+     */
+    private static final class GeneratedRows extends InputStream {
+
+        private final int count;
+        private final Function<Integer, String> row;
+        private int next = 1;
+        private byte[] current = new byte[0];
+        private int position;
+
+        GeneratedRows(int count, Function<Integer, String> row) {
+            this.count = count;
+            this.row = row;
+        }
+
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (next > count) {
+                    return -1;
+                }
+                current = row.apply(next++).getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return current[position++] & 0xff;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.flashsale.loadgen;
+
+/**
+ * Open-model arrival rate over time
+ * Requests are scheduled from the rate alone, never from response completion
+ */
+interface ArrivalProfile {
+
+    /**
+     * @param elapsedSeconds Seconds since the start of the run
+     * @return target arrivals per second at that moment
+     */
+    double rateAt(double elapsedSeconds);
+
+    static ArrivalProfile constant(double rate) {
+        return elapsedSeconds -> rate;
+    }
+
+    /**
+     * Linear ramp from startRate to endRate over rampSeconds, then hold endRate
+     */
+    static ArrivalProfile ramp(double startRate, double endRate, double rampSeconds) {
+        return elapsedSeconds -> elapsedSeconds >= rampSeconds
+                ? endRate
+                : startRate + (endRate - startRate) * (elapsedSeconds / rampSeconds);
+    }
+}
@@ -0,0 +1,915 @@
+package com.flashsale.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.support.RedisFaults;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Discrete-event model of POST /api/buy for sizing a deployment before a sale
+ *
+ * Replays an arrival curve (Poisson arrivals at a constant or ramp rate, Zipf-skewed products)
+ * against queues and servers standing in for the purchase pipeline, in simulated time, and reports
+ * throughput, latency percentiles, rejections, sell-out times and where requests waited. One
+ * simulated minute at a few thousand requests per second takes a second or two.
+ *
+ * Per request, on a replica picked round robin (stations shared by all replicas are marked *):
+ * 1. A Tomcat thread, held until the response, plus time.http
+ * 2. The sold-out cache: products seen sold out within sold-out-ttl are rejected at once
+ * 3. The per-user quota script: round trip time.redis-rtt around time.redis-script on the
+ *    single-threaded Redis server*, fixed windows of rate-limit-max per rate-limit-window
+ * 4. The concurrency limit, as a static cap on purchases in flight per replica (UNAVAILABLE)
+ * 5. Product lookup: a pool connection (ERROR after pool-timeout), then time.product-lookup on
+ *    the database cores*
+ * 6. Decrement: sql takes a pool connection, the product's row lock* and time.decrement on the
+ *    database cores*; redis runs a script on the Redis server*
+ * 7. The order insert is handed to the order executor (core, then queue, then max threads, then
+ *    run by the request thread) and takes a pool connection and time.order-insert on the cores*
+ *
+ * Not modeled: the adaptive concurrency limit's gradient (use the limit it settles at, from the
+ * flashsale.concurrency.limit gauge), product and global quotas, abuse detection, per-user caps,
+ * Redis failures, and client timeouts and retries.
+ *
+ * Service times are 5ms (fixed), 1ms-20ms (uniform), 400us/2ms (lognormal through p50 and p99),
+ * lognormal:2ms:1.0 (median, sigma) or exp:2ms (exponential). Measure them on a lightly loaded
+ * instance, so they hold no queueing: the p50/p99 of a JFR stage summary
+ * (GET /api/admin/jfr/summary) or JMH averages. --calibration takes a .properties file of the
+ * options below, or a saved JFR summary (.json), from which inventory.decrement[sql] sets
+ * time.decrement, order.save sets time.order-insert, and quota sets time.redis-rtt. Options on the
+ * command line win over the file.
+ *
+ * Usage (all options --key=value, defaults in {@link #DEFAULTS}):
+ *   --profile=constant|ramp --rate=1000 --start-rate=100 --ramp=30s --duration=60s
+ *   --products=10 --zipf=1.1 --stock=1000 --users=100000 --seed=1
+ *   --replicas=1 --backend=sql|redis --tomcat-threads=200 --pool-size=5 --pool-timeout=20s
+ *   --executor-core=10 --executor-max=20 --executor-queue=500 --db-cores=4
+ *   --rate-limit=true --rate-limit-max=5 --rate-limit-window=1s --concurrency-limit=0 --sold-out-ttl=1s
+ *   --time.http --time.redis-rtt --time.redis-script --time.product-lookup --time.decrement --time.order-insert
+ *   --calibration=stages.properties|summary.json
+ *   --sweep=pool-size:5,10,20        one run per value, compared in a table at the end
+ *   --report-dir=target/capacity-sim  where summary.txt and latency.hgrm are written
+ *
+ * Run with: mvn -Ploadtest test-compile exec:java -Dexec.mainClass=com.flashsale.loadgen.CapacitySimulator -Dexec.args="--rate=5000 --pool-size=10"
+ */
+public final class CapacitySimulator {
+
+    static final Map<String, String> DEFAULTS = defaults();
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * JFR stage, and the service time it calibrates; the first stage present wins
+     */
+    private static final String[][] JFR_STAGES = {
+            {"inventory.decrement[sql]", "time.decrement"},
+            {"order.save", "time.order-insert"},
+            {"quota", "time.redis-rtt"},
+            {"inventory.decrement[redis]", "time.redis-rtt"},
+    };
+
+    private CapacitySimulator() {
+    }
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("profile", "constant");
+        defaults.put("rate", "1000");
+        defaults.put("start-rate", "100");
+        defaults.put("ramp", "30s");
+        defaults.put("duration", "60s");
+        defaults.put("products", "10");
+        defaults.put("zipf", "1.1");
+        defaults.put("stock", "1000");
+        defaults.put("users", "100000");
+        defaults.put("seed", "1");
+        // As in application.yml and AsyncConfig
+        defaults.put("replicas", "1");
+        defaults.put("backend", "sql");
+        defaults.put("tomcat-threads", "200");
+        defaults.put("pool-size", "5");
+        defaults.put("pool-timeout", "20s");
+        defaults.put("executor-core", "10");
+        defaults.put("executor-max", "20");
+        defaults.put("executor-queue", "500");
+        defaults.put("db-cores", "4");
+        defaults.put("rate-limit", "true");
+        defaults.put("rate-limit-max", "5");
+        defaults.put("rate-limit-window", "1s");
+        defaults.put("concurrency-limit", "0");
+        defaults.put("sold-out-ttl", "1s");
+        // Single-request service times with no queueing
+        defaults.put("time.http", "150us");
+        defaults.put("time.redis-rtt", "300us");
+        defaults.put("time.redis-script", "20us");
+        defaults.put("time.product-lookup", "300us/1ms");
+        defaults.put("time.decrement", "500us/2ms");
+        defaults.put("time.order-insert", "1ms/4ms");
+        return Collections.unmodifiableMap(defaults);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = LoadGenerator.parse(args);
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        String calibration = arguments.remove("calibration");
+        String sweep = arguments.remove("sweep");
+        Path reportDir = Path.of(arguments.getOrDefault("report-dir", "target/capacity-sim"))
+                .resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        arguments.remove("report-dir");
+        if (calibration != null) {
+            options.putAll(loadCalibration(Path.of(calibration),
+                    arguments.getOrDefault("backend", options.get("backend"))));
+        }
+        options.putAll(arguments);
+
+        if (sweep == null) {
+            Result result = simulate(options);
+            result.print(System.out);
+            result.write(reportDir);
+        } else {
+            int colon = sweep.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("--sweep needs option:value1,value2, got " + sweep);
+            }
+            String option = sweep.substring(0, colon);
+            List<Result> results = new ArrayList<>();
+            for (String value : sweep.substring(colon + 1).split(",")) {
+                Map<String, String> run = new LinkedHashMap<>(options);
+                run.put(option, value.trim());
+                Result result = simulate(run);
+                result.print(System.out);
+                result.write(reportDir.resolve(option + "=" + value.trim()));
+                results.add(result);
+                System.out.println();
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    Files.createDirectories(reportDir).resolve("sweep.txt")))) {
+                printSweep(System.out, option, results);
+                printSweep(out, option, results);
+            }
+        }
+        System.out.println("Report written to " + reportDir.toAbsolutePath());
+    }
+
+    /**
+     * Run one simulation to completion: arrivals stop after the duration, then in-flight work drains
+     */
+    static Result simulate(Map<String, String> options) {
+        for (String name : options.keySet()) {
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        Map<String, String> effective = new LinkedHashMap<>(DEFAULTS);
+        effective.putAll(options);
+        return new Simulation(effective).run();
+    }
+
+    static Map<String, String> loadCalibration(Path file, String backend) throws IOException {
+        Map<String, String> calibrated = new LinkedHashMap<>();
+        if (file.getFileName().toString().endsWith(".json")) {
+            JsonNode stages = new ObjectMapper().readTree(file.toFile()).path("stages");
+            for (String[] mapping : JFR_STAGES) {
+                if (calibrated.containsKey(mapping[1]) || ("time.decrement".equals(mapping[1]) && !"sql".equals(backend))) {
+                    continue;
+                }
+                for (JsonNode stage : stages) {
+                    if (mapping[0].equals(stage.path("stage").asText())) {
+                        calibrated.put(mapping[1], String.format("%.1fus/%.1fus",
+                                stage.path("p50Micros").asDouble(), stage.path("p99Micros").asDouble()));
+                    }
+                }
+            }
+        } else {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            }
+            properties.stringPropertyNames().forEach(name -> calibrated.put(name, properties.getProperty(name).trim()));
+        }
+        calibrated.forEach((name, value) -> System.out.printf("Calibrated %s = %s%n", name, value));
+        return calibrated;
+    }
+
+    private static void printSweep(PrintStream out, String option, List<Result> results) {
+        out.println("=== Sweep over " + option + " ===");
+        out.printf("%-14s %10s %9s %9s %9s %11s %11s  %s%n", option, "orders/s", "rejected", "errors",
+                "p99 ms", "p99.9 ms", "sold out s", "bottleneck");
+        for (Result result : results) {
+            out.printf("%-14s %10.1f %8.1f%% %8.1f%% %9.2f %11.2f %11s  %s%n", result.options.get(option),
+                    result.throughput(), result.percent(LatencyReport.Outcome.RATE_LIMITED)
+                            + result.percent(LatencyReport.Outcome.UNAVAILABLE),
+                    result.percent(LatencyReport.Outcome.ERROR),
+                    result.latency.getValueAtPercentile(99) / 1e6, result.latency.getValueAtPercentile(99.9) / 1e6,
+                    result.lastSellOutSeconds() >= 0 ? String.format("%.2f", result.lastSellOutSeconds()) : "-",
+                    result.bottleneck());
+        }
+    }
+
+    /**
+     * One step of a request's path; calls next when done, at a later simulated time
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(Runnable next);
+    }
+
+    private record Event(long at, long sequence, Runnable action) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(at, other.at);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Usage of one kind of resource, summed over the replicas that each have one
+     */
+    record ResourceStats(String name, double utilization, double peakUtilization, double meanWaitMillis,
+                         double p99WaitMillis, long maxQueue, long timeouts) {
+    }
+
+    /**
+     * Busy server time, in total and per simulated second
+     */
+    private static final class BusyTime {
+        private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+        private double total;
+        private double[] seconds = new double[64];
+        private long accountedAt;
+
+        void advance(int busy, long now) {
+            total += (double) busy * (now - accountedAt);
+            for (long from = accountedAt; busy > 0 && from < now; ) {
+                int second = (int) (from / SECOND);
+                if (second >= seconds.length) {
+                    seconds = Arrays.copyOf(seconds, Math.max(seconds.length * 2, second + 1));
+                }
+                long to = Math.min(now, (second + 1) * SECOND);
+                seconds[second] += (double) busy * (to - from);
+                from = to;
+            }
+            accountedAt = now;
+        }
+
+        double utilization(int servers, long end) {
+            return total / ((double) servers * end);
+        }
+
+        double peakUtilization(int servers) {
+            return Arrays.stream(seconds).max().orElse(0) / ((double) servers * SECOND);
+        }
+    }
+
+    private static final class Simulation {
+
+        private final Map<String, String> options;
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final Random random;
+        private long now;
+        private long sequence;
+
+        private final ArrivalProfile profile;
+        private final ZipfSampler products;
+        private final long durationNanos;
+        private final int users;
+        private final boolean redisBackend;
+        private final boolean rateLimit;
+        private final int rateLimitMax;
+        private final long rateLimitWindow;
+        private final int concurrencyLimit;
+        private final long soldOutTtl;
+        private final long poolTimeout;
+        private final RedisFaults.Latency httpTime;
+        private final RedisFaults.Latency redisRtt;
+        private final RedisFaults.Latency redisScript;
+        private final RedisFaults.Latency productLookup;
+        private final RedisFaults.Latency decrement;
+        private final RedisFaults.Latency orderInsert;
+
+        private final Replica[] replicas;
+        private final Station redis;
+        private final Station databaseCores;
+        private final Station[] rowLocks;
+        private final long[] stock;
+        private final long[] sellOutAt;
+        private final long[] windowEndsAt;
+        private final int[] windowCounts;
+        private int nextReplica;
+
+        private final Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private final Map<LatencyReport.Outcome, Long> outcomes = new EnumMap<>(LatencyReport.Outcome.class);
+        private long arrivals;
+        private long ordersSaved;
+        private long ordersFailed;
+
+        Simulation(Map<String, String> options) {
+            this.options = options;
+            random = new Random(Long.parseLong(options.get("seed")));
+            profile = "ramp".equals(options.get("profile"))
+                    ? ArrivalProfile.ramp(number("start-rate"), number("rate"), nanos("ramp") / 1e9)
+                    : ArrivalProfile.constant(number("rate"));
+            int productCount = integer("products");
+            products = new ZipfSampler(productCount, number("zipf"));
+            durationNanos = nanos("duration");
+            users = integer("users");
+            redisBackend = "redis".equals(options.get("backend"));
+            if (!redisBackend && !"sql".equals(options.get("backend"))) {
+                throw new IllegalArgumentException("--backend must be sql or redis");
+            }
+            rateLimit = Boolean.parseBoolean(options.get("rate-limit"));
+            rateLimitMax = integer("rate-limit-max");
+            rateLimitWindow = nanos("rate-limit-window");
+            concurrencyLimit = integer("concurrency-limit");
+            soldOutTtl = nanos("sold-out-ttl");
+            poolTimeout = nanos("pool-timeout");
+            httpTime = latency("time.http");
+            redisRtt = latency("time.redis-rtt");
+            redisScript = latency("time.redis-script");
+            productLookup = latency("time.product-lookup");
+            decrement = latency("time.decrement");
+            orderInsert = latency("time.order-insert");
+
+            replicas = new Replica[integer("replicas")];
+            for (int i = 0; i < replicas.length; i++) {
+                replicas[i] = new Replica(productCount);
+            }
+            redis = new Station(1);
+            databaseCores = new Station(integer("db-cores"));
+            rowLocks = new Station[productCount];
+            for (int i = 0; i < productCount; i++) {
+                rowLocks[i] = new Station(1);
+            }
+            stock = new long[productCount];
+            Arrays.fill(stock, Long.parseLong(options.get("stock")));
+            sellOutAt = new long[productCount];
+            Arrays.fill(sellOutAt, -1);
+            windowEndsAt = new long[users];
+            windowCounts = new int[users];
+            for (LatencyReport.Outcome outcome : LatencyReport.Outcome.values()) {
+                outcomes.put(outcome, 0L);
+            }
+        }
+
+        Result run() {
+            scheduleArrival(interarrival(0));
+            Event event;
+            while ((event = events.poll()) != null) {
+                now = event.at();
+                event.action().run();
+            }
+            return new Result(this);
+        }
+
+        private void at(long time, Runnable action) {
+            events.add(new Event(time, sequence++, action));
+        }
+
+        private void after(long delay, Runnable action) {
+            at(now + Math.max(0, delay), action);
+        }
+
+        private long interarrival(long elapsedNanos) {
+            double rate = Math.max(0.001, profile.rateAt(elapsedNanos / 1e9));
+            return (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+        }
+
+        private void scheduleArrival(long time) {
+            if (time >= durationNanos) {
+                return;
+            }
+            at(time, () -> {
+                arrive(products.next(random), random.nextInt(users));
+                scheduleArrival(now + interarrival(now));
+            });
+        }
+
+        private void arrive(int product, int user) {
+            arrivals++;
+            long arrivedAt = now;
+            Replica replica = replicas[nextReplica++ % replicas.length];
+            replica.tomcat.acquire(() -> after(httpTime.sampleNanos(random),
+                    () -> purchase(replica, product, user, arrivedAt)));
+        }
+
+        private void purchase(Replica replica, int product, int user, long arrivedAt) {
+            long markedAt = replica.soldOutAt[product];
+            if (markedAt >= 0 && now - markedAt < soldOutTtl) {
+                respond(replica, LatencyReport.Outcome.OUT_OF_STOCK, arrivedAt);
+                return;
+            }
+            if (!rateLimit) {
+                admitted(replica, product, arrivedAt);
+                return;
+            }
+            redisCall(() -> takeQuota(user), admitted -> {
+                if (admitted == 0) {
+                    respond(replica, LatencyReport.Outcome.RATE_LIMITED, arrivedAt);
+                } else {
+                    admitted(replica, product, arrivedAt);
+                }
+            });
+        }
+
+        private void admitted(Replica replica, int product, long arrivedAt) {
+            if (concurrencyLimit > 0 && replica.inFlight >= concurrencyLimit) {
+                respond(replica, LatencyReport.Outcome.UNAVAILABLE, arrivedAt);
+                return;
+            }
+            replica.inFlight++;
+            Runnable poolTimedOut = () -> {
+                replica.inFlight--;
+                respond(replica, LatencyReport.Outcome.ERROR, arrivedAt);
+            };
+            replica.pool.acquire(() -> databaseCores.use(productLookup.sampleNanos(random), () -> {
+                replica.pool.release();
+                if (redisBackend) {
+                    redisCall(() -> takeStock(product), remaining -> decided(replica, product, remaining, arrivedAt));
+                    return;
+                }
+                replica.pool.acquire(() -> rowLocks[product].acquire(
+                        () -> databaseCores.use(decrement.sampleNanos(random), () -> {
+                            long remaining = takeStock(product);
+                            rowLocks[product].release();
+                            replica.pool.release();
+                            decided(replica, product, remaining, arrivedAt);
+                        })), poolTimeout, poolTimedOut);
+            }), poolTimeout, poolTimedOut);
+        }
+
+        private void decided(Replica replica, int product, long remaining, long arrivedAt) {
+            if (remaining < 0) {
+                replica.soldOutAt[product] = now;
+                replica.inFlight--;
+                respond(replica, LatencyReport.Outcome.OUT_OF_STOCK, arrivedAt);
+                return;
+            }
+            replica.executor.execute(next -> saveOrder(replica, next), () -> {
+                replica.inFlight--;
+                respond(replica, LatencyReport.Outcome.SUCCESS, arrivedAt);
+            });
+        }
+
+        private void saveOrder(Replica replica, Runnable next) {
+            replica.pool.acquire(() -> databaseCores.use(orderInsert.sampleNanos(random), () -> {
+                replica.pool.release();
+                ordersSaved++;
+                next.run();
+            }), poolTimeout, () -> {
+                ordersFailed++;
+                next.run();
+            });
+        }
+
+        private void respond(Replica replica, LatencyReport.Outcome outcome, long arrivedAt) {
+            replica.tomcat.release();
+            outcomes.merge(outcome, 1L, Long::sum);
+            latency.recordValue(Math.min(HIGHEST_TRACKABLE_NANOS, now - arrivedAt));
+        }
+
+        /**
+         * Half the round trip each way around a script on the single Redis thread
+         */
+        private void redisCall(LongSupplier script, LongConsumer then) {
+            long roundTrip = redisRtt.sampleNanos(random);
+            after(roundTrip / 2, () -> redis.use(redisScript.sampleNanos(random), () -> {
+                long result = script.getAsLong();
+                after(roundTrip - roundTrip / 2, () -> then.accept(result));
+            }));
+        }
+
+        /**
+         * The quota script's user level: a fixed window that starts with the user's first request
+         */
+        private long takeQuota(int user) {
+            if (now >= windowEndsAt[user]) {
+                windowCounts[user] = 0;
+            }
+            if (windowCounts[user] >= rateLimitMax) {
+                return 0;
+            }
+            if (++windowCounts[user] == 1) {
+                windowEndsAt[user] = now + rateLimitWindow;
+            }
+            return 1;
+        }
+
+        private long takeStock(int product) {
+            if (stock[product] <= 0) {
+                return -1;
+            }
+            if (--stock[product] == 0) {
+                sellOutAt[product] = now;
+            }
+            return stock[product];
+        }
+
+        private RedisFaults.Latency latency(String name) {
+            return LoadGenerator.parseLatency(options.get(name));
+        }
+
+        private long nanos(String name) {
+            return LoadGenerator.parseDuration(options.get(name)).toNanos();
+        }
+
+        private int integer(String name) {
+            return Integer.parseInt(options.get(name));
+        }
+
+        private double number(String name) {
+            return Double.parseDouble(options.get(name));
+        }
+
+        private final class Replica {
+            final Station tomcat = new Station(integer("tomcat-threads"));
+            final Station pool = new Station(integer("pool-size"));
+            final OrderExecutor executor = new OrderExecutor(integer("executor-core"), integer("executor-max"),
+                    integer("executor-queue"));
+            final long[] soldOutAt;
+            int inFlight;
+
+            Replica(int productCount) {
+                soldOutAt = new long[productCount];
+                Arrays.fill(soldOutAt, -1);
+            }
+        }
+
+        /**
+         * Identical servers behind one FIFO queue; waiters may give up after a timeout
+         */
+        private final class Station {
+            final int servers;
+            final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+            final Histogram waits = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            int busy;
+            int waiting;
+            long maxWaiting;
+            long timeouts;
+            final BusyTime busyTime = new BusyTime();
+
+            Station(int servers) {
+                this.servers = servers;
+            }
+
+            void acquire(Runnable granted) {
+                acquire(granted, 0, null);
+            }
+
+            void acquire(Runnable granted, long timeout, Runnable timedOut) {
+                if (busy < servers && waiting == 0) {
+                    account();
+                    busy++;
+                    waits.recordValue(0);
+                    granted.run();
+                    return;
+                }
+                Waiter waiter = new Waiter(now, granted);
+                queue.add(waiter);
+                maxWaiting = Math.max(maxWaiting, ++waiting);
+                if (timeout > 0) {
+                    after(timeout, () -> {
+                        if (!waiter.done) {
+                            waiter.done = true;
+                            waiting--;
+                            timeouts++;
+                            timedOut.run();
+                        }
+                    });
+                }
+            }
+
+            /**
+             * Hand the server to the next live waiter, or free it
+             */
+            void release() {
+                Waiter next = queue.poll();
+                while (next != null && next.done) {
+                    next = queue.poll();
+                }
+                if (next == null) {
+                    account();
+                    busy--;
+                    return;
+                }
+                next.done = true;
+                waiting--;
+                waits.recordValue(Math.min(HIGHEST_TRACKABLE_NANOS, now - next.since));
+                next.granted.run();
+            }
+
+            void use(long serviceNanos, Runnable then) {
+                acquire(() -> after(serviceNanos, () -> {
+                    release();
+                    then.run();
+                }));
+            }
+
+            void account() {
+                busyTime.advance(busy, now);
+            }
+        }
+
+        private static final class Waiter {
+            final long since;
+            final Runnable granted;
+            boolean done;
+
+            Waiter(long since, Runnable granted) {
+                this.since = since;
+                this.granted = granted;
+            }
+        }
+
+        /**
+         * ThreadPoolExecutor rules: core threads, then the queue, then up to max threads, then the
+         * caller runs the task (CallerRunsPolicy, as in AsyncConfig). Threads never time out.
+         */
+        private final class OrderExecutor {
+            final int core;
+            final int max;
+            final int queueCapacity;
+            final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+            final Histogram waits = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            int threads;
+            int busy;
+            long maxQueued;
+            long callerRuns;
+            final BusyTime busyTime = new BusyTime();
+
+            OrderExecutor(int core, int max, int queueCapacity) {
+                this.core = core;
+                this.max = Math.max(core, max);
+                this.queueCapacity = queueCapacity;
+            }
+
+            /**
+             * @param submitted Continues the submitting request, after the task when the caller runs it
+             */
+            void execute(Step task, Runnable submitted) {
+                if (threads < core || (busy == threads && queue.size() >= queueCapacity && threads < max)) {
+                    threads++;
+                    start(task);
+                } else if (busy < threads) {
+                    start(task);
+                } else if (queue.size() < queueCapacity) {
+                    queue.add(new Waiter(now, () -> start(task)));
+                    maxQueued = Math.max(maxQueued, queue.size());
+                } else {
+                    callerRuns++;
+                    task.run(submitted);
+                    return;
+                }
+                submitted.run();
+            }
+
+            private void start(Step task) {
+                account();
+                busy++;
+                task.run(() -> {
+                    account();
+                    busy--;
+                    Waiter next = queue.poll();
+                    if (next != null) {
+                        waits.recordValue(Math.min(HIGHEST_TRACKABLE_NANOS, now - next.since));
+                        next.granted.run();
+                    }
+                });
+            }
+
+            void account() {
+                busyTime.advance(busy, now);
+            }
+        }
+    }
+
+    /**
+     * Outcome of one simulation
+     */
+    static final class Result {
+
+        final Map<String, String> options;
+        final Histogram latency;
+        final Map<LatencyReport.Outcome, Long> outcomes;
+        final long arrivals;
+        final long ordersSaved;
+        final long ordersFailed;
+        final long callerRuns;
+        final long[] sellOutAt;
+        final long unitsSold;
+        final long unitsTotal;
+        final double durationSeconds;
+        final double drainedSeconds;
+        final List<ResourceStats> resources = new ArrayList<>();
+
+        private Result(Simulation simulation) {
+            options = simulation.options;
+            latency = simulation.latency;
+            outcomes = simulation.outcomes;
+            arrivals = simulation.arrivals;
+            ordersSaved = simulation.ordersSaved;
+            ordersFailed = simulation.ordersFailed;
+            sellOutAt = simulation.sellOutAt.clone();
+            long perProduct = Long.parseLong(options.get("stock"));
+            unitsTotal = perProduct * sellOutAt.length;
+            unitsSold = unitsTotal - Arrays.stream(simulation.stock).sum();
+            durationSeconds = simulation.durationNanos / 1e9;
+            long end = Math.max(simulation.now, 1);
+            drainedSeconds = end / 1e9;
+
+            Simulation.Replica[] replicas = simulation.replicas;
+            int count = replicas.length;
+            callerRuns = Arrays.stream(replicas).mapToLong(replica -> replica.executor.callerRuns).sum();
+            // Outermost first: each holds its server while it waits for the ones below it
+            resources.add(stationStats(String.format("tomcat threads (%s x %d)", options.get("tomcat-threads"), count),
+                    end, Arrays.stream(replicas).map(replica -> replica.tomcat).toList()));
+            resources.add(executorStats(String.format("order executor (%s-%s, queue %s, x %d)",
+                    options.get("executor-core"), options.get("executor-max"), options.get("executor-queue"), count),
+                    end, Arrays.stream(replicas).map(replica -> replica.executor).toList()));
+            resources.add(stationStats(String.format("db pool (%s x %d)", options.get("pool-size"), count),
+                    end, Arrays.stream(replicas).map(replica -> replica.pool).toList()));
+            if (!simulation.redisBackend) {
+                resources.add(stationStats(String.format("row locks (%d products)", sellOutAt.length),
+                        end, Arrays.asList(simulation.rowLocks)));
+            }
+            if (simulation.redisBackend || simulation.rateLimit) {
+                resources.add(stationStats("redis (1 thread)", end, List.of(simulation.redis)));
+            }
+            resources.add(stationStats(String.format("db cores (%s)", options.get("db-cores")),
+                    end, List.of(simulation.databaseCores)));
+        }
+
+        /**
+         * Busy is the average over stations (the hottest one for row locks), peak the busiest second
+         * of any one station
+         */
+        private static ResourceStats stationStats(String name, long end, List<Simulation.Station> stations) {
+            Histogram waits = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            double utilization = 0;
+            double hottest = 0;
+            double peak = 0;
+            long maxQueue = 0;
+            long timeouts = 0;
+            for (Simulation.Station station : stations) {
+                station.account();
+                double busy = station.busyTime.utilization(station.servers, end);
+                utilization += busy / stations.size();
+                hottest = Math.max(hottest, busy);
+                peak = Math.max(peak, station.busyTime.peakUtilization(station.servers));
+                waits.add(station.waits);
+                maxQueue = Math.max(maxQueue, station.maxWaiting);
+                timeouts += station.timeouts;
+            }
+            return new ResourceStats(name, name.startsWith("row locks") ? hottest : utilization, peak,
+                    waits.getMean() / 1e6, waits.getValueAtPercentile(99) / 1e6, maxQueue, timeouts);
+        }
+
+        /**
+         * Busy against max threads
+         */
+        private static ResourceStats executorStats(String name, long end, List<Simulation.OrderExecutor> executors) {
+            Histogram waits = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            double utilization = 0;
+            double peak = 0;
+            long maxQueue = 0;
+            for (Simulation.OrderExecutor executor : executors) {
+                executor.account();
+                utilization += executor.busyTime.utilization(executor.max, end) / executors.size();
+                peak = Math.max(peak, executor.busyTime.peakUtilization(executor.max));
+                waits.add(executor.waits);
+                maxQueue = Math.max(maxQueue, executor.maxQueued);
+            }
+            return new ResourceStats(name, utilization, peak, waits.getMean() / 1e6,
+                    waits.getValueAtPercentile(99) / 1e6, maxQueue, 0);
+        }
+
+        long count(LatencyReport.Outcome outcome) {
+            return outcomes.get(outcome);
+        }
+
+        double percent(LatencyReport.Outcome outcome) {
+            return arrivals > 0 ? 100.0 * count(outcome) / arrivals : 0;
+        }
+
+        /**
+         * Seconds from the start until the last product sold out, or -1 if stock was left
+         */
+        double lastSellOutSeconds() {
+            long last = -1;
+            for (long at : sellOutAt) {
+                if (at < 0) {
+                    return -1;
+                }
+                last = Math.max(last, at);
+            }
+            return last / 1e9;
+        }
+
+        /**
+         * Orders per second while stock lasted
+         */
+        double throughput() {
+            double window = lastSellOutSeconds() >= 0 ? lastSellOutSeconds() : durationSeconds;
+            return window > 0 ? count(LatencyReport.Outcome.SUCCESS) / window : 0;
+        }
+
+        /**
+         * The innermost resource that was saturated for a second or more; the ones above it
+         * queue because they hold their servers while waiting for it
+         */
+        String bottleneck() {
+            for (int i = resources.size() - 1; i >= 0; i--) {
+                ResourceStats resource = resources.get(i);
+                if (resource.peakUtilization() >= 0.9) {
+                    return String.format("%s, peak %.0f%% busy, mean wait %.2f ms", resource.name(),
+                            resource.peakUtilization() * 100, resource.meanWaitMillis());
+                }
+            }
+            return "none above 90% busy in any second";
+        }
+
+        void print(PrintStream out) {
+            out.printf("=== Simulated POST /api/buy: %s, %s replica(s), %s backend ===%n", describeProfile(),
+                    options.get("replicas"), options.get("backend"));
+            out.printf("Offered:      %d requests in %.1fs (%.1f req/s), drained at %.2fs%n", arrivals,
+                    durationSeconds, arrivals / durationSeconds, drainedSeconds);
+            for (LatencyReport.Outcome outcome : LatencyReport.Outcome.values()) {
+                out.printf("  %-13s %9d %6.2f%%%n", outcome, count(outcome), percent(outcome));
+            }
+            out.printf("Sold:         %d of %d units, %.1f orders/s while stock lasted%n", unitsSold, unitsTotal,
+                    throughput());
+            long[] soldOut = Arrays.stream(sellOutAt).filter(at -> at >= 0).sorted().toArray();
+            if (soldOut.length > 0) {
+                out.printf("Sell-out:     first %.2fs, median %.2fs, last %.2fs (%d of %d products)%n",
+                        soldOut[0] / 1e9, soldOut[soldOut.length / 2] / 1e9, soldOut[soldOut.length - 1] / 1e9,
+                        soldOut.length, sellOutAt.length);
+            } else {
+                out.println("Sell-out:     no product sold out");
+            }
+            out.printf("Orders saved: %d (%d failed on pool timeout, %d run by the request thread)%n",
+                    ordersSaved, ordersFailed, callerRuns);
+            out.println();
+            out.printf("%-10s %12s%n", "percentile", "latency ms");
+            for (double percentile : PERCENTILES) {
+                out.printf("p%-9s %12.3f%n", percentile == Math.rint(percentile) ? Long.toString((long) percentile)
+                        : Double.toString(percentile), latency.getValueAtPercentile(percentile) / 1e6);
+            }
+            out.printf("%-10s %12.3f%n", "max", latency.getMaxValue() / 1e6);
+            out.printf("%-10s %12.3f%n", "mean", latency.getMean() / 1e6);
+            out.println();
+            out.printf("%-40s %6s %6s %13s %12s %10s %9s%n", "resource", "busy", "peak", "mean wait ms",
+                    "p99 wait ms", "max queue", "timeouts");
+            for (ResourceStats resource : resources) {
+                out.printf("%-40s %5.1f%% %5.1f%% %13.3f %12.3f %10d %9d%n", resource.name(),
+                        resource.utilization() * 100, resource.peakUtilization() * 100, resource.meanWaitMillis(),
+                        resource.p99WaitMillis(), resource.maxQueue(), resource.timeouts());
+            }
+            out.println("Bottleneck:   " + bottleneck());
+        }
+
+        /**
+         * The summary, the options it ran with, and the latency distribution (values in milliseconds)
+         */
+        void write(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("summary.txt")))) {
+                print(out);
+                out.println();
+                options.forEach((name, value) -> out.printf("--%s=%s%n", name, value));
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("latency.hgrm")))) {
+                latency.outputPercentileDistribution(out, 1e6);
+            }
+        }
+
+        private String describeProfile() {
+            if ("ramp".equals(options.get("profile"))) {
+                return String.format("ramp %s -> %s req/s over %s for %s", options.get("start-rate"),
+                        options.get("rate"), options.get("ramp"), options.get("duration"));
+            }
+            return String.format("constant %s req/s for %s", options.get("rate"), options.get("duration"));
+        }
+    }
+}
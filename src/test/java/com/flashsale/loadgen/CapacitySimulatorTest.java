@@ -0,0 +1,61 @@
+package com.flashsale.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapacitySimulatorTest {
+
+    @Test
+    void testSingleRedisThreadMatchesMM1() {
+        // Arrange - only the Redis script takes time: Poisson arrivals at 500/s, exponential service at 1000/s
+        Map<String, String> options = Map.of(
+                "rate", "500", "duration", "120s", "stock", "1000000",
+                "backend", "redis", "rate-limit", "false",
+                "time.http", "0", "time.redis-rtt", "0", "time.redis-script", "exp:1ms",
+                "time.product-lookup", "0", "time.order-insert", "0");
+
+        // Act
+        CapacitySimulator.Result result = CapacitySimulator.simulate(options);
+
+        // Assert - M/M/1 mean time in system is 1 / (mu - lambda) = 2ms at 50% utilization
+        assertEquals(2.0, result.latency.getMean() / 1e6, 0.2);
+        CapacitySimulator.ResourceStats redis = result.resources.stream()
+                .filter(resource -> resource.name().startsWith("redis")).findFirst().orElseThrow();
+        assertEquals(0.5, redis.utilization(), 0.03);
+        assertEquals(result.arrivals, result.count(LatencyReport.Outcome.SUCCESS));
+    }
+
+    @Test
+    void testStockSellsOutAtTheArrivalRate() {
+        // Arrange - 1000 units, 100 buyers a second, nothing near capacity
+        Map<String, String> options = Map.of("rate", "100", "duration", "20s", "products", "1", "stock", "1000");
+
+        // Act
+        CapacitySimulator.Result result = CapacitySimulator.simulate(options);
+
+        // Assert
+        assertEquals(1000, result.count(LatencyReport.Outcome.SUCCESS));
+        assertEquals(1000, result.ordersSaved);
+        assertEquals(10.0, result.lastSellOutSeconds(), 1.0);
+        assertEquals(result.arrivals - 1000, result.count(LatencyReport.Outcome.OUT_OF_STOCK));
+        assertEquals("none above 90% busy in any second", result.bottleneck());
+    }
+
+    @Test
+    void testUndersizedPoolTimesOutAndIsReportedAsTheBottleneck() {
+        // Arrange - one connection, 5ms per decrement, 500 buyers a second
+        Map<String, String> options = Map.of("rate", "500", "duration", "10s", "stock", "100000",
+                "pool-size", "1", "pool-timeout", "100ms", "time.decrement", "5ms");
+
+        // Act
+        CapacitySimulator.Result result = CapacitySimulator.simulate(options);
+
+        // Assert
+        assertTrue(result.count(LatencyReport.Outcome.ERROR) > 0);
+        assertTrue(result.bottleneck().startsWith("db pool"), result.bottleneck());
+        assertTrue(result.latency.getValueAtPercentile(99) / 1e6 >= 100);
+    }
+}
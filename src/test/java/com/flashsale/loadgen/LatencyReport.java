@@ -0,0 +1,105 @@
+package com.flashsale.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts for one load run
+ *
+ * "corrected" latency is measured from the request's intended start time on the arrival
+ * schedule, so time a request spent waiting behind a stalled server or generator is counted
+ * (coordinated omission correction). "uncorrected" is measured from the actual send time,
+ * which is what closed-model tools report.
+ */
+final class LatencyReport {
+
+    enum Outcome { SUCCESS, OUT_OF_STOCK, RATE_LIMITED, REJECTED, UNAVAILABLE, ERROR }
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram uncorrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    private final LongAdder scheduleLagged = new LongAdder();
+
+    LatencyReport() {
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    void record(Outcome outcome, long intendedStartNanos, long actualStartNanos, long endNanos) {
+        corrected.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, toMicros(endNanos - intendedStartNanos)));
+        uncorrected.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, toMicros(endNanos - actualStartNanos)));
+        outcomes.get(outcome).increment();
+    }
+
+    /**
+     * Count a request the generator itself sent late (its own scheduling fell behind)
+     */
+    void recordScheduleLag() {
+        scheduleLagged.increment();
+    }
+
+    long total() {
+        return corrected.getTotalCount();
+    }
+
+    void print(PrintStream out, String title, double measuredSeconds) {
+        long total = total();
+        out.println("=== " + title + " ===");
+        out.printf("Requests: %d in %.1fs (%.1f req/s achieved)%n", total, measuredSeconds,
+                measuredSeconds > 0 ? total / measuredSeconds : 0);
+        for (Outcome outcome : Outcome.values()) {
+            out.printf("  %-13s %d%n", outcome, outcomes.get(outcome).sum());
+        }
+        out.printf("  sent >1ms late by generator: %d%n", scheduleLagged.sum());
+        out.println();
+        out.printf("%-10s %14s %14s%n", "percentile", "corrected ms", "uncorrected ms");
+        for (double percentile : PERCENTILES) {
+            out.printf("p%-9s %14.3f %14.3f%n", format(percentile),
+                    corrected.getValueAtPercentile(percentile) / 1000.0,
+                    uncorrected.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf("%-10s %14.3f %14.3f%n", "max", corrected.getMaxValue() / 1000.0, uncorrected.getMaxValue() / 1000.0);
+        out.printf("%-10s %14.3f %14.3f%n", "mean", corrected.getMean() / 1000.0, uncorrected.getMean() / 1000.0);
+    }
+
+    /**
+     * Write the text summary plus full .hgrm percentile distributions (values in milliseconds)
+     */
+    void write(Path directory, String title, double measuredSeconds) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("summary.txt")))) {
+            print(out, title, measuredSeconds);
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("corrected.hgrm")))) {
+            corrected.outputPercentileDistribution(out, 1000.0);
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("uncorrected.hgrm")))) {
+            uncorrected.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    Histogram corrected() {
+        return corrected;
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
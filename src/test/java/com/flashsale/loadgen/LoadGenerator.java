@@ -0,0 +1,356 @@
+package com.flashsale.loadgen;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.entity.Product;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import com.flashsale.support.RedisFaults;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Open-model load generator for POST /api/buy/{productId}
+ *
+ * Arrivals follow a constant or ramp rate profile regardless of how fast the server answers,
+ * products are drawn from a Zipf distribution and users from a large pool. Latencies are
+ * recorded in HdrHistograms corrected for coordinated omission (see {@link LatencyReport}).
+ *
+ * Usage (all options --key=value):
+ *   --target=http://localhost:8080   drive a running instance (default when --local is absent)
+ *   --local                          boot the app in-process with H2 and the embedded Redis stand-in
+ *   --profile=constant|ramp          arrival profile (default constant)
+ *   --rate=1000                      constant rate, or ramp end rate (req/s)
+ *   --start-rate=100                 ramp start rate (req/s)
+ *   --ramp=30s                       ramp duration
+ *   --duration=60s --warmup=10s      measured duration and unmeasured warmup
+ *   --products=10 --zipf=1.1         product count and skew (ids 1..N on a remote target)
+ *   --product-ids=4,5,6              explicit product ids on a remote target
+ *   --stock=1000                     stock per product created in --local mode
+ *   --users=100000                   distinct user ids
+ *   --backend=sql                    inventory backend in --local mode
+ *   --rate-limit=false               enable rate limiting in --local mode
+ *   --redis-timeout=1s               spring.data.redis.timeout in --local mode
+ *
+ * Redis faults in --local mode (see {@link RedisFaults}); latency is 5ms (fixed), 1ms-20ms
+ * (uniform) or lognormal:2ms:1.0 (median, sigma):
+ *   --redis-latency=...              added to every command
+ *   --redis-script-latency=...       added to EVAL/EVALSHA while they block the server
+ *   --redis-drop=0.01                fraction of commands whose connection is dropped
+ *   --redis-timeouts=0.01            fraction of commands left unanswered for --redis-stall (5s)
+ *   --redis-flap=400ms/200ms         alternate reachable / unreachable
+ *   --report-dir=target/loadgen      where summary.txt and .hgrm files are written
+ *
+ * Run with: mvn -Ploadtest test-compile exec:java -Dexec.args="--local --rate=2000 --duration=30s"
+ */
+public final class LoadGenerator {
+
+    private final Map<String, String> options;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(parse(args)).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        LocalFlashSaleApp localApp = null;
+        try {
+            String target;
+            List<Long> productIds;
+            if (options.containsKey("local")) {
+                localApp = startLocalApp();
+                target = localApp.baseUrl();
+                productIds = createProducts(localApp.getBean(ProductService.class),
+                        intOption("products", 10), intOption("stock", 1000));
+                // After setup, so the products are created against a healthy Redis
+                applyRedisFaults(localApp.redis().faults());
+            } else {
+                target = options.getOrDefault("target", "http://localhost:8080");
+                productIds = remoteProductIds();
+            }
+            System.out.printf("Driving %s across %d products%n", target, productIds.size());
+            drive(target, productIds);
+        } finally {
+            if (localApp != null) {
+                localApp.close();
+            }
+        }
+    }
+
+    private void drive(String target, List<Long> productIds) throws IOException, InterruptedException {
+        ArrivalProfile profile = "ramp".equals(options.getOrDefault("profile", "constant"))
+                ? ArrivalProfile.ramp(doubleOption("start-rate", 100), doubleOption("rate", 1000),
+                        durationOption("ramp", "30s").toMillis() / 1000.0)
+                : ArrivalProfile.constant(doubleOption("rate", 1000));
+        ZipfSampler products = new ZipfSampler(productIds.size(), doubleOption("zipf", 1.1));
+        int users = intOption("users", 100_000);
+        long warmupNanos = durationOption("warmup", "10s").toNanos();
+        long measuredNanos = durationOption("duration", "60s").toNanos();
+
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(httpExecutor)
+                .build();
+
+        LatencyReport warmup = new LatencyReport();
+        LatencyReport measured = new LatencyReport();
+        AtomicLong inFlight = new AtomicLong();
+
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + measuredNanos;
+        long intended = start;
+
+        while (intended < end) {
+            waitUntil(intended);
+            long intendedStart = intended;
+            long actualStart = System.nanoTime();
+            LatencyReport report = intendedStart < measureStart ? warmup : measured;
+            if (actualStart - intendedStart > TimeUnit.MILLISECONDS.toNanos(1)) {
+                report.recordScheduleLag();
+            }
+
+            long productId = productIds.get(products.next());
+            String userId = "user-" + ThreadLocalRandom.current().nextInt(users);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/buy/" + productId))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"" + userId + "\"}"))
+                    .build();
+
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        report.record(classify(response, error), intendedStart, actualStart, System.nanoTime());
+                        inFlight.decrementAndGet();
+                    });
+
+            double elapsedSeconds = (intended - start) / 1e9;
+            intended += (long) (1e9 / Math.max(0.001, profile.rateAt(elapsedSeconds)));
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        if (inFlight.get() > 0) {
+            System.out.printf("%d requests still in flight after 30s drain%n", inFlight.get());
+        }
+        httpExecutor.shutdownNow();
+
+        double measuredSeconds = measuredNanos / 1e9;
+        String title = "POST /api/buy, " + describeProfile() + describeRedisFaults();
+        measured.print(System.out, title, measuredSeconds);
+
+        Path reportDir = Path.of(options.getOrDefault("report-dir", "target/loadgen"))
+                .resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        measured.write(reportDir, title, measuredSeconds);
+        System.out.println("Report written to " + reportDir.toAbsolutePath());
+    }
+
+    private static LatencyReport.Outcome classify(HttpResponse<String> response, Throwable error) {
+        if (error != null) {
+            return LatencyReport.Outcome.ERROR;
+        }
+        int status = response.statusCode();
+        if (status == 200) {
+            return LatencyReport.Outcome.SUCCESS;
+        }
+        if (status == 503) {
+            return LatencyReport.Outcome.UNAVAILABLE;
+        }
+        if (status == 429) {
+            return LatencyReport.Outcome.RATE_LIMITED;
+        }
+        if (status == 400) {
+            String body = response.body();
+            if (body.contains("out of stock")) {
+                return LatencyReport.Outcome.OUT_OF_STOCK;
+            }
+            if (body.contains("Rate limit")) {
+                return LatencyReport.Outcome.RATE_LIMITED;
+            }
+            return LatencyReport.Outcome.REJECTED;
+        }
+        return LatencyReport.Outcome.ERROR;
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(200)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MICROSECONDS.toNanos(100));
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private LocalFlashSaleApp startLocalApp() throws IOException {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("flashsale.inventory.backend", options.getOrDefault("backend", "sql"));
+        overrides.put("flashsale.rate-limit.enabled", options.getOrDefault("rate-limit", "false"));
+        overrides.put("flashsale.audit.rejection-sample-rate", "0.01");
+        overrides.put("logging.level.com.flashsale", "WARN");
+        if (options.containsKey("redis-timeout")) {
+            overrides.put("spring.data.redis.timeout", options.get("redis-timeout"));
+        }
+        return LocalFlashSaleApp.start(overrides);
+    }
+
+    private void applyRedisFaults(RedisFaults faults) {
+        if (options.containsKey("redis-latency")) {
+            faults.latency(parseLatency(options.get("redis-latency")));
+        }
+        if (options.containsKey("redis-script-latency")) {
+            faults.scriptLatency(parseLatency(options.get("redis-script-latency")));
+        }
+        faults.dropConnections(doubleOption("redis-drop", 0));
+        faults.timeouts(doubleOption("redis-timeouts", 0), durationOption("redis-stall", "5s"));
+        if (options.containsKey("redis-flap")) {
+            String[] upDown = options.get("redis-flap").split("/");
+            faults.flap(parseDuration(upDown[0]), parseDuration(upDown[1]));
+        }
+    }
+
+    /**
+     * 5ms (fixed), 1ms-20ms (uniform), lognormal:2ms:1.0 (median, sigma), 400us/2ms (lognormal through
+     * p50 and p99) or exp:2ms (exponential with that mean)
+     */
+    static RedisFaults.Latency parseLatency(String value) {
+        if (value.startsWith("lognormal:")) {
+            String[] parts = value.split(":");
+            return RedisFaults.Latency.logNormal(parseDuration(parts[1]), Double.parseDouble(parts[2]));
+        }
+        if (value.startsWith("exp:")) {
+            return RedisFaults.Latency.exponential(parseDuration(value.substring(4)));
+        }
+        int slash = value.indexOf('/');
+        if (slash > 0) {
+            return RedisFaults.Latency.logNormal(parseDuration(value.substring(0, slash)),
+                    parseDuration(value.substring(slash + 1)));
+        }
+        int dash = value.indexOf('-');
+        if (dash > 0) {
+            return RedisFaults.Latency.uniform(parseDuration(value.substring(0, dash)),
+                    parseDuration(value.substring(dash + 1)));
+        }
+        return RedisFaults.Latency.fixed(parseDuration(value));
+    }
+
+    static List<Long> createProducts(ProductService productService, int count, int stock) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = productService.createProduct(CreateProductRequest.builder()
+                    .name("Load Test Product " + i)
+                    .price(new BigDecimal("9.99"))
+                    .stockCount(stock)
+                    .build());
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    private List<Long> remoteProductIds() {
+        String explicit = options.get("product-ids");
+        if (explicit != null) {
+            return Arrays.stream(explicit.split(",")).map(String::trim).map(Long::valueOf).toList();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= intOption("products", 10); id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private String describeProfile() {
+        if ("ramp".equals(options.get("profile"))) {
+            return String.format("ramp %s -> %s req/s over %s", options.getOrDefault("start-rate", "100"),
+                    options.getOrDefault("rate", "1000"), options.getOrDefault("ramp", "30s"));
+        }
+        return "constant " + options.getOrDefault("rate", "1000") + " req/s";
+    }
+
+    private String describeRedisFaults() {
+        String faults = options.entrySet().stream()
+                .filter(option -> option.getKey().startsWith("redis-"))
+                .map(option -> option.getKey() + "=" + option.getValue())
+                .sorted()
+                .collect(Collectors.joining(" "));
+        return faults.isEmpty() ? "" : ", " + faults;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private Duration durationOption(String name, String defaultValue) {
+        return parseDuration(options.getOrDefault(name, defaultValue));
+    }
+
+    /**
+     * 1.5s, 250ms, 400us, 2m or plain seconds
+     */
+    static Duration parseDuration(String value) {
+        if (value.endsWith("us")) {
+            return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 2)) * 1e3));
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 2)) * 1e6));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofSeconds(Math.round(Double.parseDouble(value.substring(0, value.length() - 1)) * 60));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofNanos(Math.round(Double.parseDouble(value.substring(0, value.length() - 1)) * 1e9));
+        }
+        return Duration.ofNanos(Math.round(Double.parseDouble(value) * 1e9));
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,205 @@
+package com.flashsale.loadgen;
+
+import com.flashsale.support.EmbeddedRedisServer;
+import org.flywaydb.core.Flyway;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first purchase of a freshly started JVM, with and without the fast-start build
+ *
+ * Each run forks the thin jar built by the fast-start Maven profile, then polls
+ * POST /api/buy/{productId} until one purchase succeeds. Measured from process start, so JVM
+ * boot, Spring refresh, Tomcat start and the first Redis and database round trips are included.
+ * The children share a file-based H2 database created by the migrations and the embedded Redis
+ * stand-in, so no external services are needed.
+ *
+ * Configurations:
+ *   baseline          default profile, reflection-based bean setup, schema update at boot
+ *   aot               fast-start profile with -Dspring.aot.enabled=true
+ *   aot+cds           the same, plus an AppCDS archive from a training run (-Dspring.context.exit=onRefresh)
+ *
+ * Usage (all options --key=value):
+ *   --jar=target/flash-sale-engine-1.0.0.jar   thin jar with lib/ next to it (mvn -Pfast-start package)
+ *   --runs=5                                   runs per configuration
+ *   --timeout=120s                             give up on a run after this long
+ *   --report-dir=target/startup-benchmark      summary.txt, per-run logs and the CDS archive
+ *
+ * Runs as part of mvn -Pfast-start package; skip it with -Dstartup-benchmark.skip
+ */
+public final class StartupBenchmark {
+
+    private static final long PRODUCT_ID = 1;
+
+    private final Path jar;
+    private final Path reportDir;
+    private final int runs;
+    private final Duration timeout;
+    private final String javaCommand = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private EmbeddedRedisServer redis;
+    private String classPath;
+    private String jdbcUrl;
+
+    private StartupBenchmark(Map<String, String> options) {
+        this.jar = Path.of(options.getOrDefault("jar", "target/flash-sale-engine-1.0.0.jar")).toAbsolutePath();
+        this.reportDir = Path.of(options.getOrDefault("report-dir", "target/startup-benchmark")).toAbsolutePath();
+        this.runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        this.timeout = LoadGenerator.parseDuration(options.getOrDefault("timeout", "120s"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark(LoadGenerator.parse(args)).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException(jar + " not found; build it with mvn -Pfast-start package");
+        }
+        Files.createDirectories(reportDir);
+        // CDS only maps the archive when the class path matches the training run, so it is fixed here
+        Path h2Jar = Path.of(org.h2.Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        classPath = jar + File.pathSeparator + h2Jar;
+        jdbcUrl = createDatabase();
+
+        try (EmbeddedRedisServer server = EmbeddedRedisServer.start()) {
+            redis = server;
+            Path archive = reportDir.resolve("flash-sale-engine.jsa");
+            train(archive);
+
+            Map<String, List<String>> configurations = Map.of(
+                    "baseline", List.of(),
+                    "aot", List.of("-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-start"),
+                    "aot+cds", List.of("-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-start",
+                            "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off"));
+            List<String> order = List.of("baseline", "aot", "aot+cds");
+
+            StringBuilder summary = new StringBuilder();
+            summary.append(String.format("Time to first purchase (ms), %d runs each, %d CPUs%n",
+                    runs, Runtime.getRuntime().availableProcessors()));
+            summary.append(String.format("%-10s %8s %8s %8s%n", "config", "min", "median", "max"));
+            for (String name : order) {
+                long[] millis = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    millis[i] = timeToFirstPurchase(name + "-" + (i + 1), configurations.get(name));
+                }
+                Arrays.sort(millis);
+                summary.append(String.format("%-10s %8d %8d %8d%n", name, millis[0], millis[runs / 2], millis[runs - 1]));
+            }
+            Files.writeString(reportDir.resolve("summary.txt"), summary);
+            System.out.println();
+            System.out.print(summary);
+            System.out.println("Report written to " + reportDir.resolve("summary.txt"));
+        }
+    }
+
+    /**
+     * File-based H2 in PostgreSQL mode with the production schema (db/migration) and one product
+     */
+    private String createDatabase() throws Exception {
+        Path database = reportDir.resolve("db");
+        Files.deleteIfExists(reportDir.resolve("db.mv.db"));
+        String url = "jdbc:h2:file:" + database + ";MODE=PostgreSQL";
+        Flyway.configure().dataSource(url, "sa", "").load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            connection.createStatement().executeUpdate(
+                    "INSERT INTO products (id, name, price, stock_count) VALUES (" + PRODUCT_ID + ", 'Benchmark product', 9.99, 1000)");
+        }
+        return url;
+    }
+
+    /**
+     * AppCDS training: start the fast-start app, exit once the context is refreshed, dump loaded classes
+     */
+    private void train(Path archive) throws IOException, InterruptedException {
+        Files.deleteIfExists(archive);
+        List<String> command = new ArrayList<>(List.of(javaCommand, "-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=off",
+                "-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-start", "-Dspring.context.exit=onRefresh"));
+        Process process = start(command, freePort(), "training");
+        if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS) || !Files.exists(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("CDS training run failed, see " + reportDir.resolve("training.log"));
+        }
+    }
+
+    private long timeToFirstPurchase(String runName, List<String> jvmOptions) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(javaCommand);
+        command.addAll(jvmOptions);
+        long startNanos = System.nanoTime();
+        Process process = start(command, port, runName);
+        try {
+            HttpRequest purchase = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/buy/" + PRODUCT_ID))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"" + runName + "\",\"quantity\":1}"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            long deadline = startNanos + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(runName + " exited early, see " + reportDir.resolve(runName + ".log"));
+                }
+                try {
+                    if (httpClient.send(purchase, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                        System.out.printf("%-12s first purchase after %d ms%n", runName, millis);
+                        return millis;
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(runName + " made no purchase within " + timeout);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private Process start(List<String> command, int port, String logName) throws IOException {
+        command.addAll(List.of("-cp", classPath, "com.flashsale.FlashSaleApplication",
+                "--server.port=" + port,
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--flashsale.inventory.sql-dialect=h2",
+                "--spring.data.redis.host=localhost",
+                "--spring.data.redis.port=" + redis.getPort(),
+                "--spring.data.redis.ssl.enabled=false"));
+        return new ProcessBuilder(command)
+                .directory(reportDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(reportDir.resolve(logName + ".log").toFile())
+                .start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
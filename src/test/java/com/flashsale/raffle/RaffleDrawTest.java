@@ -0,0 +1,147 @@
+package com.flashsale.raffle;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.entity.Order;
+import com.flashsale.entity.Raffle;
+import com.flashsale.repository.OrderRepository;
+import com.flashsale.service.FlashSaleService;
+import com.flashsale.service.InventoryService;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaffleDrawTest {
+
+    @Test
+    void testRaffleTakesEntriesWithoutStockThenDrawsLowestTicketsIntoOrders() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of())) {
+            // Arrange
+            Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Raffled sneaker")
+                    .price(new BigDecimal("180.00"))
+                    .stockCount(3)
+                    .build()).getId();
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            InventoryService inventoryService = app.getBean(InventoryService.class);
+            RaffleService raffleService = app.getBean(RaffleService.class);
+            RaffleService.RaffleView opened = raffleService.open(productId, Duration.ofMinutes(5));
+            List<String> users = IntStream.range(0, 20).mapToObj(i -> "entrant-" + i).toList();
+            for (String user : users) {
+                PurchaseResponse response = flashSaleService.purchase(productId,
+                        PurchaseRequest.builder().userId(user).quantity(1).build());
+                assertTrue(response.isSuccess());
+                assertNull(response.getOrderId());
+                assertEquals(opened.closesAt(), response.getRaffleClosesAt());
+            }
+            flashSaleService.purchase(productId, PurchaseRequest.builder().userId("entrant-0").quantity(1).build());
+            assertEquals(3L, inventoryService.getInventory(productId));
+
+            // Act
+            RaffleDraw.DrawResult result = app.getBean(RaffleDraw.class).draw(productId, true).orElseThrow();
+
+            // Assert
+            assertEquals(20, result.entries());
+            assertEquals(3, result.winners());
+            assertTrue(app.getBean(RaffleDraw.class).draw(productId, true).isEmpty());
+            assertEquals(0L, inventoryService.getInventory(productId));
+
+            RaffleService.RaffleView drawn = raffleService.getRaffle(productId).orElseThrow();
+            assertEquals(Raffle.RaffleStatus.DRAWN, drawn.status());
+            assertEquals(opened.seedHash(), RaffleService.seedHash(drawn.seed()));
+            List<String> expectedWinners = users.stream()
+                    .sorted(Comparator.comparing((String user) -> RaffleDraw.ticket(RaffleService.sha256(), drawn.seed(), user),
+                            Long::compareUnsigned))
+                    .limit(3)
+                    .sorted()
+                    .toList();
+            List<Order> orders = app.getBean(OrderRepository.class).findByProductId(productId);
+            assertEquals(expectedWinners, orders.stream().map(Order::getUserId).sorted().toList());
+            for (String user : users) {
+                RaffleService.EntryView entry = raffleService.getEntry(productId, user).orElseThrow();
+                if (expectedWinners.contains(user)) {
+                    assertEquals(RaffleService.EntryStatus.WON, entry.status());
+                    assertNotNull(entry.orderId());
+                } else {
+                    assertEquals(RaffleService.EntryStatus.LOST, entry.status());
+                }
+            }
+            PurchaseResponse afterDraw = flashSaleService.purchase(productId,
+                    PurchaseRequest.builder().userId("late").quantity(1).build());
+            assertFalse(afterDraw.isSuccess());
+            assertNull(afterDraw.getRaffleClosesAt());
+        }
+    }
+
+    @Test
+    void testEntriesInFlightWhenTheRaffleClosesAreTurnedAway() throws Exception {
+        // Entries linger in the writer for a second, and raffle state stays cached for the whole test
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.raffle.linger", "1s",
+                "flashsale.raffle.state-cache-ttl", "1h"))) {
+            // Arrange
+            ProductService productService = app.getBean(ProductService.class);
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            RaffleService raffleService = app.getBean(RaffleService.class);
+            Long queued = createProduct(productService, "Closed while queued");
+            Long closedElsewhere = createProduct(productService, "Closed by another instance");
+            raffleService.open(queued, Duration.ofMinutes(5));
+            raffleService.open(closedElsewhere, Duration.ofMinutes(5));
+            assertTrue(purchase(flashSaleService, queued, "early").isSuccess());
+            assertTrue(purchase(flashSaleService, closedElsewhere, "early").isSuccess());
+            ExecutorService entrants = Executors.newFixedThreadPool(5);
+            List<Future<PurchaseResponse>> inFlight = IntStream.range(0, 5)
+                    .mapToObj(i -> entrants.submit(() -> purchase(flashSaleService, queued, "queued-" + i)))
+                    .toList();
+            Thread.sleep(300);
+
+            // Act - the draw runs while the entries wait for their batch; another instance closes the
+            // second raffle, which this instance still has cached as open
+            RaffleDraw.DrawResult result = app.getBean(RaffleDraw.class).draw(queued, true).orElseThrow();
+            app.getBean(JdbcTemplate.class).update(
+                    "UPDATE raffles SET status = 'DRAWING' WHERE product_id = ?", closedElsewhere);
+            PurchaseResponse afterClose = purchase(flashSaleService, closedElsewhere, "late");
+
+            // Assert - nothing was recorded after the close, so no entry is left undrawn
+            assertEquals(1, result.entries());
+            for (int i = 0; i < inFlight.size(); i++) {
+                PurchaseResponse response = inFlight.get(i).get(10, TimeUnit.SECONDS);
+                assertFalse(response.isSuccess());
+                assertEquals("Raffle entries are closed. Winners are being drawn.", response.getMessage());
+                assertTrue(raffleService.getEntry(queued, "queued-" + i).isEmpty());
+            }
+            assertNotEquals(RaffleService.EntryStatus.PENDING, raffleService.getEntry(queued, "early").orElseThrow().status());
+            assertFalse(afterClose.isSuccess());
+            assertEquals("Raffle entries are closed. Winners are being drawn.", afterClose.getMessage());
+            assertTrue(raffleService.getEntry(closedElsewhere, "late").isEmpty());
+            entrants.shutdown();
+        }
+    }
+
+    private static Long createProduct(ProductService productService, String name) {
+        return productService.createProduct(CreateProductRequest.builder()
+                .name(name)
+                .price(new BigDecimal("180.00"))
+                .stockCount(3)
+                .build()).getId();
+    }
+
+    private static PurchaseResponse purchase(FlashSaleService flashSaleService, Long productId, String userId) {
+        return flashSaleService.purchase(productId, PurchaseRequest.builder().userId(userId).quantity(1).build());
+    }
+}
@@ -0,0 +1,107 @@
+package com.flashsale.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(meterRegistry);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 10);
+        ReflectionTestUtils.setField(limiter, "longWindow", 10);
+        ReflectionTestUtils.setField(limiter, "sampleWindow", Duration.ofMillis(1));
+        limiter.clock = now::get;
+        limiter.init();
+    }
+
+    @Test
+    void testRejectsBeyondLimitAndFreesSlotsOnRelease() {
+        // Arrange
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            permits.add(limiter.tryAcquire());
+        }
+
+        // Act
+        AdaptiveConcurrencyLimiter.Permit overLimit = limiter.tryAcquire();
+        permits.get(0).ignore();
+        permits.get(0).release();
+        AdaptiveConcurrencyLimiter.Permit afterRelease = limiter.tryAcquire();
+
+        // Assert
+        assertNull(overLimit);
+        assertNotNull(afterRelease);
+        assertEquals(1.0, meterRegistry.get("flashsale.concurrency.rejected").counter().count());
+        assertEquals(10.0, meterRegistry.get("flashsale.concurrency.inflight").gauge().value());
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyIsSteadyAndFullyUsed() {
+        // Act
+        for (int window = 0; window < 20; window++) {
+            runWindow(limiter.getLimit(), 5);
+        }
+
+        // Assert
+        assertTrue(limiter.getLimit() > 10, "limit was " + limiter.getLimit());
+        assertEquals(limiter.getLimit(), meterRegistry.get("flashsale.concurrency.limit").gauge().value());
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        // Arrange
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter.getLimit(), 5);
+        }
+        int before = limiter.getLimit();
+
+        // Act
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter.getLimit(), 50);
+        }
+
+        // Assert
+        assertTrue(limiter.getLimit() < before, before + " -> " + limiter.getLimit());
+    }
+
+    @Test
+    void testIdleCapacityDoesNotGrowLimit() {
+        // Act
+        for (int window = 0; window < 20; window++) {
+            runWindow(2, 5);
+        }
+
+        // Assert
+        assertEquals(10, limiter.getLimit());
+    }
+
+    /**
+     * Hold `concurrency` permits for latencyMillis, then release them; each call spans a sample window
+     */
+    private void runWindow(int concurrency, long latencyMillis) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+            assertNotNull(permit);
+            permits.add(permit);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::release);
+    }
+}
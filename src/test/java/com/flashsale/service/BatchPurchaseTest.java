@@ -0,0 +1,139 @@
+package com.flashsale.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.abuse.AbuseDetector;
+import com.flashsale.dto.BatchPurchaseRequest;
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.repository.OrderRepository;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchPurchaseTest {
+
+    @Test
+    void testBatchReportsPerItemOutcomesInRequestOrder() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.rate-limit.enabled", true,
+                "flashsale.rate-limit.max-requests", 2))) {
+            // Arrange
+            ProductService productService = app.getBean(ProductService.class);
+            Long scarce = createProduct(productService, 3);
+            Long plenty = createProduct(productService, 100);
+            List<BatchPurchaseRequest.Item> items = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                items.add(item(scarce, "scarce-" + i));
+            }
+            items.add(item(plenty, "greedy"));
+            items.add(item(plenty, "greedy"));
+            items.add(item(plenty, "greedy"));
+            items.add(item(999_999L, "lost"));
+            ObjectMapper objectMapper = app.getBean(ObjectMapper.class);
+
+            // Act
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create(app.baseUrl() + "/api/buy/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                            BatchPurchaseRequest.builder().items(items).build())))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            List<PurchaseResponse> results = objectMapper.readValue(response.body(), new TypeReference<>() {});
+
+            // Assert
+            assertEquals(200, response.statusCode());
+            assertEquals(items.size(), results.size());
+            assertEquals(List.of(true, true, true, false, false, true, true, false, false),
+                    results.stream().map(PurchaseResponse::isSuccess).toList());
+            assertEquals("Sorry, this product is out of stock.", results.get(3).getMessage());
+            assertEquals("user", results.get(7).getQuotaLevel());
+            assertEquals("Product not found", results.get(8).getMessage());
+            assertEquals(0L, app.getBean(InventoryService.class).getInventory(scarce));
+            assertEquals(98L, app.getBean(InventoryService.class).getInventory(plenty));
+            assertEquals(5, awaitOrders(app.getBean(OrderRepository.class), 5));
+        }
+    }
+
+    @Test
+    void testDeprioritizedItemsUseTheSlowLaneLikeSinglePurchases() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.abuse.enabled", true,
+                "flashsale.abuse.action", "DEPRIORITIZE",
+                "flashsale.abuse.user-threshold", 1,
+                "flashsale.abuse.deprioritized-concurrency", 2))) {
+            // Arrange - the bot is flagged from its second item on
+            Long productId = createProduct(app.getBean(ProductService.class), 100);
+            List<BatchPurchaseRequest.Item> items = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                items.add(item(productId, "bot"));
+            }
+            AbuseDetector abuseDetector = app.getBean(AbuseDetector.class);
+
+            // Act
+            List<PurchaseResponse> results = app.getBean(FlashSaleService.class).purchaseBatch(items);
+
+            // Assert - two flagged items got the two slow-lane permits, and gave them back afterwards
+            assertEquals(List.of(true, true, true, false, false),
+                    results.stream().map(PurchaseResponse::isSuccess).toList());
+            assertEquals(97L, app.getBean(InventoryService.class).getInventory(productId));
+            assertTrue(abuseDetector.tryEnterSlowLane());
+            assertTrue(abuseDetector.tryEnterSlowLane());
+            assertFalse(abuseDetector.tryEnterSlowLane());
+        }
+    }
+
+    @Test
+    void testRejectsOversizedBatch() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of())) {
+            // Arrange
+            List<BatchPurchaseRequest.Item> items = new ArrayList<>();
+            for (int i = 0; i < 1001; i++) {
+                items.add(item(1L, "user-" + i));
+            }
+
+            // Act
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create(app.baseUrl() + "/api/buy/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(app.getBean(ObjectMapper.class).writeValueAsString(
+                            BatchPurchaseRequest.builder().items(items).build())))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            // Assert
+            assertEquals(400, response.statusCode());
+            assertTrue(response.body().contains("At most 1000 items per batch"));
+        }
+    }
+
+    private static BatchPurchaseRequest.Item item(Long productId, String userId) {
+        return BatchPurchaseRequest.Item.builder().productId(productId).userId(userId).build();
+    }
+
+    private static Long createProduct(ProductService productService, int stock) {
+        return productService.createProduct(CreateProductRequest.builder()
+                .name("Batch product")
+                .price(new BigDecimal("5.00"))
+                .stockCount(stock)
+                .build()).getId();
+    }
+
+    private static long awaitOrders(OrderRepository orderRepository, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (orderRepository.count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return orderRepository.count();
+    }
+}
@@ -0,0 +1,182 @@
+package com.flashsale.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.flashsale.entity.Product;
+import com.flashsale.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogResponseCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogResponseCache catalogCache;
+
+    @BeforeEach
+    void setUp() {
+        catalogCache = new CatalogResponseCache(productRepository, inventoryService,
+                new ObjectMapper().registerModule(new JavaTimeModule()), transactionManager);
+        catalogCache.init();
+    }
+
+    @Test
+    void testProductListServedFromCacheWithEtag() {
+        // Arrange
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, 100)));
+        CatalogResponseCache.CachedResponse first = catalogCache.getProductList();
+
+        // Act
+        CatalogResponseCache.CachedResponse second = catalogCache.getProductList();
+
+        // Assert
+        assertSame(first, second);
+        assertTrue(second.matches(first.etag()));
+        assertTrue(second.matches("\"other\", " + first.etag()));
+        assertFalse(second.matches("W/\"other\""));
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testEveryEntryIsRebuiltOnceOlderThanStalenessBound() {
+        // Arrange - stock and product data change on another instance; nothing happens locally
+        ReflectionTestUtils.setField(catalogCache, "maxStockStaleness", Duration.ofMillis(50));
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, 100)), List.of(product(1L, 99)));
+        Product renamed = product(1L, 99);
+        renamed.setName("Renamed elsewhere");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 100)), Optional.of(renamed));
+        when(inventoryService.getInventory(1L)).thenReturn(100L, 99L);
+        CatalogResponseCache.CachedResponse firstList = catalogCache.getProductList();
+        CatalogResponseCache.CachedResponse firstProduct = catalogCache.getProduct(1L);
+
+        // Act
+        CatalogResponseCache.CachedResponse listWithinBound = catalogCache.getProductList();
+        CatalogResponseCache.CachedResponse productWithinBound = catalogCache.getProduct(1L);
+        sleep(60);
+        CatalogResponseCache.CachedResponse listAfterBound = catalogCache.getProductList();
+        CatalogResponseCache.CachedResponse productAfterBound = catalogCache.getProduct(1L);
+
+        // Assert
+        assertSame(firstList, listWithinBound);
+        assertSame(firstProduct, productWithinBound);
+        assertNotEquals(firstList.etag(), listAfterBound.etag());
+        assertTrue(new String(listAfterBound.json()).contains("\"stockCount\":99"));
+        assertTrue(new String(productAfterBound.json()).contains("\"name\":\"Renamed elsewhere\""));
+        assertTrue(new String(productAfterBound.json()).contains("\"redisStock\":99"));
+    }
+
+    @Test
+    void testUnchangedRebuildKeepsEtag() {
+        // Arrange
+        ReflectionTestUtils.setField(catalogCache, "maxStockStaleness", Duration.ZERO);
+        when(productRepository.findAll()).thenReturn(List.of(product(1L, 100)));
+        CatalogResponseCache.CachedResponse first = catalogCache.getProductList();
+
+        // Act
+        CatalogResponseCache.CachedResponse rebuilt = catalogCache.getProductList();
+
+        // Assert
+        assertEquals(first.etag(), rebuilt.etag());
+        verify(productRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testInvalidateRebuildsProduct() {
+        // Arrange
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 100)));
+        when(inventoryService.getInventory(1L)).thenReturn(100L);
+        when(inventoryService.getBackendName()).thenReturn("sql");
+        CatalogResponseCache.CachedResponse first = catalogCache.getProduct(1L);
+
+        // Act
+        catalogCache.invalidate();
+        catalogCache.getProduct(1L);
+
+        // Assert
+        assertTrue(new String(first.json()).contains("\"inventoryBackend\":\"sql\""));
+        verify(productRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testSlowProductRebuildDoesNotBlockOtherProducts() throws Exception {
+        // Arrange - 1 and 33 share a bin of the cache's backing map; product 1's read hangs
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+        when(productRepository.findById(1L)).thenAnswer(invocation -> {
+            readStarted.countDown();
+            releaseRead.await();
+            return Optional.of(product(1L, 100));
+        });
+        when(productRepository.findById(33L)).thenReturn(Optional.of(product(33L, 100)));
+        when(inventoryService.getBackendName()).thenReturn("sql");
+        CompletableFuture<CatalogResponseCache.CachedResponse> slow =
+                CompletableFuture.supplyAsync(() -> catalogCache.getProduct(1L));
+        assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CatalogResponseCache.CachedResponse other = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> catalogCache.getProduct(33L));
+        releaseRead.countDown();
+
+        // Assert
+        assertTrue(new String(other.json()).contains("\"id\":33"));
+        assertSame(slow.get(5, TimeUnit.SECONDS), catalogCache.getProduct(1L));
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testLargeBodyIsGzipped() {
+        // Arrange
+        when(productRepository.findAll()).thenReturn(java.util.stream.LongStream.rangeClosed(1, 50)
+                .mapToObj(id -> product(id, 10)).toList());
+
+        // Act
+        CatalogResponseCache.CachedResponse response = catalogCache.getProductList();
+
+        // Assert
+        assertNotNull(response.gzip());
+        assertTrue(response.gzip().length < response.json().length);
+    }
+
+    private static Product product(Long id, int stock) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .description("Flash sale item")
+                .price(new BigDecimal("99.99"))
+                .stockCount(stock)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
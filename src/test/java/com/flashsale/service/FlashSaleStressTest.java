@@ -0,0 +1,183 @@
+package com.flashsale.service;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.entity.Order;
+import com.flashsale.repository.OrderRepository;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the real service graph against H2 and the embedded Redis stand-in and fires
+ * concurrent purchases at products with small stock, once per inventory backend.
+ *
+ * Scale with -Dstress.attempts / -Dstress.threads. Throughput per backend is appended
+ * to target/stress/throughput.txt.
+ */
+class FlashSaleStressTest {
+
+    private static final int ATTEMPTS = Integer.getInteger("stress.attempts", 20_000);
+    private static final int THREADS = Integer.getInteger("stress.threads", 64);
+    private static final int PRODUCTS = 4;
+    private static final int STOCK = 50;
+
+    @ParameterizedTest(name = "{0} backend")
+    @ValueSource(strings = {"sql", "jpa", "redis"})
+    void testNoOversellUnderConcurrentPurchases(String backend) throws Exception {
+        // Arrange
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.inventory.backend", backend,
+                "flashsale.redis.circuit-breaker.enabled", false,
+                "flashsale.audit.enabled", false))) {
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            InventoryService inventoryService = app.getBean(InventoryService.class);
+            OrderRepository orderRepository = app.getBean(OrderRepository.class);
+            List<Long> productIds = createProducts(app.getBean(ProductService.class));
+
+            Map<String, Integer> successQuantities = new ConcurrentHashMap<>();
+            AtomicLongArray soldPerProduct = new AtomicLongArray(PRODUCTS);
+            AtomicInteger failures = new AtomicInteger();
+            AtomicInteger next = new AtomicInteger();
+            CountDownLatch startGate = new CountDownLatch(1);
+            ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> runs = new ArrayList<>();
+
+            for (int t = 0; t < THREADS; t++) {
+                runs.add(workers.submit(() -> {
+                    startGate.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (next.getAndIncrement() < ATTEMPTS) {
+                        int product = random.nextInt(PRODUCTS);
+                        int quantity = random.nextInt(5) == 0 ? 2 : 1;
+                        PurchaseRequest request = PurchaseRequest.builder()
+                                .userId("user-" + random.nextInt(5_000))
+                                .quantity(quantity)
+                                .build();
+                        try {
+                            PurchaseResponse response = flashSaleService.purchase(productIds.get(product), request);
+                            if (response.isSuccess()) {
+                                assertNull(successQuantities.put(response.getOrderId(), quantity), "duplicate orderId");
+                                soldPerProduct.addAndGet(product, quantity);
+                            }
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            // Act
+            long start = System.nanoTime();
+            startGate.countDown();
+            workers.shutdown();
+            assertTrue(workers.awaitTermination(2, TimeUnit.MINUTES), "purchases did not finish");
+            for (Future<?> run : runs) {
+                // Rethrows an assertion that failed on a worker thread
+                run.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            List<Order> orders = awaitOrders(orderRepository, successQuantities.size());
+
+            // Assert - every unit sold exactly once, nothing left behind
+            assertEquals(0, failures.get(), "purchase attempts threw");
+            for (int i = 0; i < PRODUCTS; i++) {
+                assertEquals(STOCK, soldPerProduct.get(i), "units sold for product " + productIds.get(i));
+                assertEquals(0L, inventoryService.getInventory(productIds.get(i)), "remaining stock");
+            }
+
+            // Assert - every successful purchase has exactly one order row with the sold quantity
+            assertEquals(successQuantities.size(), orders.size(), "order rows");
+            Map<String, Integer> persisted = orders.stream()
+                    .collect(Collectors.toMap(Order::getOrderId, Order::getQuantity));
+            assertEquals(successQuantities, persisted);
+            Map<Long, Integer> persistedUnits = orders.stream()
+                    .collect(Collectors.groupingBy(Order::getProductId, Collectors.summingInt(Order::getQuantity)));
+            productIds.forEach(id -> assertEquals(STOCK, persistedUnits.get(id), "persisted units for product " + id));
+
+            // Assert - resubmitting every order concurrently does not create duplicates
+            assertIdempotentResubmission(app.getBean(OrderService.class), orderRepository, orders);
+
+            recordThroughput(backend, seconds, successQuantities.size());
+        }
+    }
+
+    private List<Long> createProducts(ProductService productService) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            ids.add(productService.createProduct(CreateProductRequest.builder()
+                    .name("Stress product " + i)
+                    .price(new BigDecimal("9.99"))
+                    .stockCount(STOCK)
+                    .build()).getId());
+        }
+        return ids;
+    }
+
+    private List<Order> awaitOrders(OrderRepository orderRepository, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (orderRepository.count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return orderRepository.findAll();
+    }
+
+    private void assertIdempotentResubmission(OrderService orderService, OrderRepository orderRepository,
+                                              List<Order> orders) {
+        List<CompletableFuture<Order>> resubmissions = new ArrayList<>();
+        for (Order order : orders) {
+            for (int copy = 0; copy < 2; copy++) {
+                resubmissions.add(orderService.saveOrderAsync(Order.builder()
+                        .orderId(order.getOrderId())
+                        .productId(order.getProductId())
+                        .userId(order.getUserId())
+                        .quantity(order.getQuantity())
+                        .price(order.getPrice())
+                        .status(order.getStatus())
+                        .build()));
+            }
+        }
+        CompletableFuture.allOf(resubmissions.toArray(new CompletableFuture[0])).join();
+
+        Map<Long, Long> idsByOrder = new HashMap<>();
+        resubmissions.forEach(future -> idsByOrder.merge(future.join().getId(), 1L, Long::sum));
+        Set<Long> originalIds = orders.stream().map(Order::getId).collect(Collectors.toSet());
+        assertEquals(originalIds, idsByOrder.keySet());
+        assertEquals(orders.size(), orderRepository.count());
+    }
+
+    private void recordThroughput(String backend, double seconds, int successes) throws IOException {
+        String line = String.format("%s backend: %d attempts in %.2fs (%.0f purchases/s), %d orders, %d threads%n",
+                backend, ATTEMPTS, seconds, ATTEMPTS / seconds, successes, THREADS);
+        System.out.print(line);
+        Path report = Path.of("target", "stress", "throughput.txt");
+        Files.createDirectories(report.getParent());
+        Files.writeString(report, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
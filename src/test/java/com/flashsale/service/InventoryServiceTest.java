@@ -1,19 +1,21 @@
 package com.flashsale.service;
 
-// import com.flashsale.entity.Product;
-// import com.flashsale.repository.ProductRepository;
+import com.flashsale.service.inventory.RedisInventoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
 
-// import java.math.BigDecimal;
-// import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-// import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,12 +27,16 @@ class InventoryServiceTest {
     @Mock
     private org.springframework.data.redis.core.ValueOperations<String, Object> valueOperations;
 
-    @InjectMocks
     private InventoryService inventoryService;
 
     @BeforeEach
     void setUp() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(new SimpleMeterRegistry());
+        circuitBreaker.init();
+        inventoryService = new InventoryService(List.of(new RedisInventoryBackend(redisTemplate, circuitBreaker)));
+        ReflectionTestUtils.setField(inventoryService, "backendName", "redis");
+        inventoryService.selectBackend();
     }
 
     @Test
@@ -50,28 +56,29 @@ class InventoryServiceTest {
     void testDecrementInventory_Success() {
         // Arrange
         Long productId = 1L;
-        when(valueOperations.decrement(anyString())).thenReturn(99L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("product:1:stock")), eq(1))).thenReturn(99L);
 
         // Act
         Long remaining = inventoryService.decrementInventory(productId);
 
         // Assert
         assertEquals(99L, remaining);
-        verify(valueOperations).decrement("product:1:stock");
+        assertFalse(inventoryService.isKnownSoldOut(productId));
     }
 
     @Test
     void testDecrementInventory_OutOfStock() {
         // Arrange
         Long productId = 1L;
-        when(valueOperations.decrement(anyString())).thenReturn(-1L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("product:1:stock")), eq(1))).thenReturn(-1L);
 
         // Act
         Long remaining = inventoryService.decrementInventory(productId);
 
         // Assert
         assertEquals(-1L, remaining);
-        verify(valueOperations).increment("product:1:stock"); // Rollback
+        assertTrue(inventoryService.isKnownSoldOut(productId));
+        verifyNoInteractions(valueOperations); // Script never overdraws, so nothing to roll back
     }
 
     @Test
@@ -0,0 +1,86 @@
+package com.flashsale.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.dto.CancelOrdersRequest;
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.entity.Order;
+import com.flashsale.repository.OrderRepository;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderCancellationServiceTest {
+
+    @Test
+    void testBatchCancelRestocksOncePerProductAndReportsEachOrder() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of())) {
+            // Arrange
+            Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Cancellable product")
+                    .price(new BigDecimal("5.00"))
+                    .stockCount(3)
+                    .build()).getId();
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            InventoryService inventoryService = app.getBean(InventoryService.class);
+            OrderRepository orderRepository = app.getBean(OrderRepository.class);
+            List<String> orderIds = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                orderIds.add(flashSaleService.purchase(productId,
+                        PurchaseRequest.builder().userId("canceller-" + i).quantity(1).build()).getOrderId());
+            }
+            assertNull(flashSaleService.purchase(productId,
+                    PurchaseRequest.builder().userId("late").quantity(1).build()).getOrderId());
+            awaitOrders(orderRepository, 3);
+            assertTrue(inventoryService.isKnownSoldOut(productId));
+            List<String> toCancel = List.of(orderIds.get(0), orderIds.get(1), "no-such-order", orderIds.get(0));
+            ObjectMapper objectMapper = app.getBean(ObjectMapper.class);
+
+            // Act
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create(app.baseUrl() + "/api/orders/cancel"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                            CancelOrdersRequest.builder().orderIds(toCancel).build())))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Map<String, OrderCancellationService.Result> results =
+                    objectMapper.readValue(response.body(), new TypeReference<>() {});
+            Map<String, OrderCancellationService.Result> repeated = app.getBean(OrderCancellationService.class)
+                    .cancel(List.of(orderIds.get(1), orderIds.get(2)));
+
+            // Assert
+            assertEquals(200, response.statusCode());
+            assertEquals(List.of(orderIds.get(0), orderIds.get(1), "no-such-order"), List.copyOf(results.keySet()));
+            assertEquals(OrderCancellationService.Result.CANCELLED, results.get(orderIds.get(0)));
+            assertEquals(OrderCancellationService.Result.CANCELLED, results.get(orderIds.get(1)));
+            assertEquals(OrderCancellationService.Result.NOT_FOUND, results.get("no-such-order"));
+            assertEquals(OrderCancellationService.Result.ALREADY_CANCELLED, repeated.get(orderIds.get(1)));
+            assertEquals(OrderCancellationService.Result.CANCELLED, repeated.get(orderIds.get(2)));
+            assertEquals(3L, inventoryService.getInventory(productId));
+            assertFalse(inventoryService.isKnownSoldOut(productId));
+            assertEquals(Order.OrderStatus.CANCELLED,
+                    orderRepository.findByOrderId(orderIds.get(0)).orElseThrow().getStatus());
+            assertEquals(Order.OrderStatus.CANCELLED,
+                    app.getBean(OrderReadModel.class).getOrder(orderIds.get(0)).orElseThrow().getStatus());
+        }
+    }
+
+    private static void awaitOrders(OrderRepository orderRepository, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (orderRepository.count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
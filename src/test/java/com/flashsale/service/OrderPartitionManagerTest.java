@@ -0,0 +1,88 @@
+package com.flashsale.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderPartitionManagerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OrderPartitionManager partitionManager;
+
+    @BeforeEach
+    void setUp() {
+        partitionManager = new OrderPartitionManager(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(partitionManager, "premakeDays", 2);
+    }
+
+    @Test
+    void testPartitionNameRoundTripsToItsDay() {
+        // Arrange
+        LocalDate day = LocalDate.of(2026, 1, 5);
+
+        // Act
+        String name = OrderPartitionManager.partitionName(day);
+
+        // Assert
+        assertEquals("orders_p20260105", name);
+        assertEquals(day, OrderPartitionManager.partitionDay(name));
+    }
+
+    @Test
+    void testTablesThatAreNotDailyPartitionsHaveNoDay() {
+        assertNull(OrderPartitionManager.partitionDay("orders"));
+        assertNull(OrderPartitionManager.partitionDay("orders_default"));
+        assertNull(OrderPartitionManager.partitionDay("orders_p2026010"));
+        assertNull(OrderPartitionManager.partitionDay("orders_p20260105_old"));
+    }
+
+    @Test
+    void testPartitionBoundsCoverExactlyOneDay() {
+        assertEquals("FOR VALUES FROM ('2026-10-19') TO ('2026-10-20')",
+                OrderPartitionManager.partitionBounds(LocalDate.of(2026, 10, 19)));
+        assertEquals("FOR VALUES FROM ('2026-12-31') TO ('2027-01-01')",
+                OrderPartitionManager.partitionBounds(LocalDate.of(2026, 12, 31)));
+        assertEquals("FOR VALUES FROM ('2028-02-28') TO ('2028-02-29')",
+                OrderPartitionManager.partitionBounds(LocalDate.of(2028, 2, 28)));
+        assertEquals("FOR VALUES FROM ('2028-02-29') TO ('2028-03-01')",
+                OrderPartitionManager.partitionBounds(LocalDate.of(2028, 2, 29)));
+    }
+
+    @Test
+    void testOnlyMissingUpcomingPartitionsAreCreated() {
+        // Arrange - today's partition already exists
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("orders_default", "orders_p20261230"));
+
+        // Act
+        partitionManager.createUpcomingPartitions(LocalDate.of(2026, 12, 30));
+
+        // Assert - the next two days, across the year end
+        ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(2)).execute(statements.capture());
+        assertEquals(List.of(
+                "CREATE TABLE IF NOT EXISTS orders_p20261231 PARTITION OF orders FOR VALUES FROM ('2026-12-31') TO ('2027-01-01')",
+                "CREATE TABLE IF NOT EXISTS orders_p20270101 PARTITION OF orders FOR VALUES FROM ('2027-01-01') TO ('2027-01-02')"),
+                statements.getAllValues());
+    }
+}
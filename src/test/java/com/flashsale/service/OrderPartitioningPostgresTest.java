@@ -0,0 +1,162 @@
+package com.flashsale.service;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * db/orders-partitioning.sql and OrderPartitionManager against a real PostgreSQL
+ *
+ * Each test works in a schema of its own, dropped afterwards. Skipped unless a database is given:
+ *   mvn test -Dtest=OrderPartitioningPostgresTest -Dorders-partitioning.postgres-url=jdbc:postgresql://localhost:5432/flashsale
+ * Settings: -Dorders-partitioning.postgres-user=postgres -Dorders-partitioning.postgres-password=
+ */
+@EnabledIfSystemProperty(named = "orders-partitioning.postgres-url", matches = ".+")
+class OrderPartitioningPostgresTest {
+
+    private static final String URL = System.getProperty("orders-partitioning.postgres-url");
+    private static final String USER = System.getProperty("orders-partitioning.postgres-user", "postgres");
+    private static final String PASSWORD = System.getProperty("orders-partitioning.postgres-password", "");
+
+    @TempDir
+    Path archiveDir;
+
+    private final String schema = "partitioning_" + UUID.randomUUID().toString().replace("-", "");
+    private final LocalDate today = LocalDate.now();
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        new JdbcTemplate(new DriverManagerDataSource(URL, USER, PASSWORD)).execute("CREATE SCHEMA " + schema);
+        dataSource = new DriverManagerDataSource(URL, USER, PASSWORD);
+        dataSource.setSchema(schema);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(new DriverManagerDataSource(URL, USER, PASSWORD)).execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    @Test
+    void testSerialOrdersTableFromMigrationsIsPartitioned() throws Exception {
+        // Arrange
+        Flyway.configure().dataSource(dataSource).schemas(schema).load().migrate();
+        long product = seedOrders();
+
+        // Act
+        partition();
+
+        // Assert
+        assertPartitionedWithGlobalOrderIds(product);
+    }
+
+    @Test
+    void testIdentityOrdersTableFromHibernateIsPartitioned() throws Exception {
+        // Arrange - the shape ddl-auto gives GenerationType.IDENTITY on PostgreSQL 10+
+        jdbc.execute("CREATE TABLE products (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name VARCHAR(255) NOT NULL, price DECIMAL(10, 2) NOT NULL, stock_count INTEGER NOT NULL)");
+        jdbc.execute("CREATE TABLE orders (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "order_id VARCHAR(36) NOT NULL UNIQUE, product_id BIGINT NOT NULL REFERENCES products(id), " +
+                "user_id VARCHAR(255) NOT NULL, quantity INTEGER NOT NULL, price DECIMAL(10, 2) NOT NULL, " +
+                "status VARCHAR(50) NOT NULL, created_at TIMESTAMP NOT NULL)");
+        long product = seedOrders();
+
+        // Act
+        partition();
+
+        // Assert
+        assertPartitionedWithGlobalOrderIds(product);
+    }
+
+    @Test
+    void testManagerCreatesUpcomingDaysAndArchivesColdOnes() throws Exception {
+        // Arrange
+        Flyway.configure().dataSource(dataSource).schemas(schema).load().migrate();
+        seedOrders();
+        partition();
+        OrderPartitionManager manager = new OrderPartitionManager(jdbc, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "premakeDays", 10);
+        ReflectionTestUtils.setField(manager, "hotDays", 30);
+        ReflectionTestUtils.setField(manager, "archiveDir", archiveDir);
+
+        // Act
+        manager.maintain();
+
+        // Assert - the 40-day-old partition is exported and gone, its order id released
+        String cold = OrderPartitionManager.partitionName(today.minusDays(40));
+        assertNull(jdbc.queryForObject("SELECT to_regclass(?)::text", String.class, cold));
+        assertEquals(2, jdbc.queryForObject("SELECT count(*) FROM orders", Integer.class));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM order_ids WHERE order_id = 'cold-order'", Integer.class));
+        String archive = new String(new GZIPInputStream(
+                Files.newInputStream(archiveDir.resolve(cold + ".csv.gz"))).readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(archive.contains(",cold-order,"), archive);
+        assertNotNull(jdbc.queryForObject("SELECT to_regclass(?)::text", String.class,
+                OrderPartitionManager.partitionName(today.plusDays(10))));
+    }
+
+    /**
+     * Three orders: 40 days old, yesterday and today; returns the product id
+     */
+    private long seedOrders() {
+        jdbc.update("INSERT INTO products (name, price, stock_count) VALUES ('Partitioned', 5.00, 10)");
+        long product = jdbc.queryForObject("SELECT id FROM products", Long.class);
+        insertOrder(product, "cold-order", today.minusDays(40).atTime(12, 0));
+        insertOrder(product, "yesterday-order", today.minusDays(1).atTime(12, 0));
+        insertOrder(product, "today-order", today.atStartOfDay());
+        return product;
+    }
+
+    private void partition() throws Exception {
+        jdbc.execute(new ClassPathResource("db/orders-partitioning.sql").getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private void assertPartitionedWithGlobalOrderIds(long product) {
+        long highestId = jdbc.queryForObject("SELECT max(id) FROM orders", Long.class);
+        assertEquals(3, jdbc.queryForObject("SELECT count(*) FROM orders", Integer.class));
+        assertEquals(1, jdbc.queryForObject("SELECT count(*) FROM pg_partitioned_table " +
+                "WHERE partrelid = to_regclass('orders')", Integer.class));
+        assertEquals(1, jdbc.queryForObject("SELECT count(*) FROM " +
+                OrderPartitionManager.partitionName(today.minusDays(1)), Integer.class));
+
+        // New ids continue after the copied rows
+        long id = insertOrder(product, "new-order", LocalDateTime.now());
+        assertTrue(id > highestId, id + " <= " + highestId);
+
+        // An order id already taken on another day is still a duplicate
+        assertThrows(DuplicateKeyException.class,
+                () -> insertOrder(product, "yesterday-order", LocalDateTime.now()));
+        assertThrows(DuplicateKeyException.class,
+                () -> insertOrder(product, "new-order", today.plusDays(3).atStartOfDay()));
+        assertEquals(4, jdbc.queryForObject("SELECT count(*) FROM orders", Integer.class));
+    }
+
+    private long insertOrder(long product, String orderId, LocalDateTime createdAt) {
+        return jdbc.queryForObject("INSERT INTO orders (order_id, product_id, user_id, quantity, price, status, created_at) " +
+                        "VALUES (?, ?, 'user-1', 1, 5.00, 'PENDING', ?) RETURNING id",
+                Long.class, orderId, product, Timestamp.valueOf(createdAt));
+    }
+}
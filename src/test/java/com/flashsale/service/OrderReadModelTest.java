@@ -0,0 +1,122 @@
+package com.flashsale.service;
+
+import com.flashsale.entity.Order;
+import com.flashsale.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderReadModelTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderReadModel orderReadModel;
+
+    @BeforeEach
+    void setUp() {
+        orderReadModel = new OrderReadModel(orderRepository, new SimpleMeterRegistry(), transactionManager);
+        orderReadModel.init();
+    }
+
+    @Test
+    void testUserOrdersLoadedOnceThenServedFromProjection() {
+        // Arrange
+        Order persisted = order("order-1", "user123", 1);
+        when(orderRepository.findByUserId("user123")).thenReturn(List.of(persisted));
+        orderReadModel.getUserOrders("user123");
+
+        // Act
+        orderReadModel.project(order("order-2", "user123", 2));
+        List<Order> orders = orderReadModel.getUserOrders("user123");
+
+        // Assert - only the first read opened a transaction
+        assertEquals(List.of("order-1", "order-2"), orders.stream().map(Order::getOrderId).toList());
+        verify(orderRepository, times(1)).findByUserId("user123");
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void testProjectionBeforeFirstReadIsMergedWithDatabase() {
+        // Arrange - the new order is not yet inserted when the database is read
+        orderReadModel.project(order("order-2", "user123", 2));
+        when(orderRepository.findByUserId("user123")).thenReturn(List.of(order("order-1", "user123", 1)));
+
+        // Act
+        List<Order> orders = orderReadModel.getUserOrders("user123");
+
+        // Assert
+        assertEquals(List.of("order-1", "order-2"), orders.stream().map(Order::getOrderId).toList());
+    }
+
+    @Test
+    void testProjectedVersionWinsOverLoadedRow() {
+        // Arrange
+        Order cancelled = order("order-1", "user123", 1);
+        cancelled.setStatus(Order.OrderStatus.CANCELLED);
+        orderReadModel.project(cancelled);
+        when(orderRepository.findByUserId("user123")).thenReturn(List.of(order("order-1", "user123", 1)));
+
+        // Act
+        List<Order> orders = orderReadModel.getUserOrders("user123");
+
+        // Assert
+        assertEquals(1, orders.size());
+        assertEquals(Order.OrderStatus.CANCELLED, orders.get(0).getStatus());
+    }
+
+    @Test
+    void testGetOrderServedFromProjection() {
+        // Arrange
+        orderReadModel.project(order("order-1", "user123", 1));
+
+        // Act
+        Optional<Order> order = orderReadModel.getOrder("order-1");
+
+        // Assert - no transaction, so no pool checkout either
+        assertTrue(order.isPresent());
+        verifyNoInteractions(orderRepository, transactionManager);
+    }
+
+    @Test
+    void testEvictedOrderFallsBackToDatabase() {
+        // Arrange
+        Order failed = order("order-1", "user123", 1);
+        orderReadModel.project(failed);
+        when(orderRepository.findByOrderId("order-1")).thenReturn(Optional.empty());
+
+        // Act
+        orderReadModel.evict(failed);
+
+        // Assert
+        assertTrue(orderReadModel.getOrder("order-1").isEmpty());
+    }
+
+    private static Order order(String orderId, String userId, int minute) {
+        return Order.builder()
+                .orderId(orderId)
+                .productId(1L)
+                .userId(userId)
+                .quantity(1)
+                .price(new BigDecimal("9.99"))
+                .status(Order.OrderStatus.CONFIRMED)
+                .createdAt(LocalDateTime.of(2026, 1, 1, 12, minute))
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.flashsale.service;
+
+import com.flashsale.dto.BatchPurchaseRequest;
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.dto.PurchaseResponse;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseCapTest {
+
+    @ParameterizedTest(name = "{0} backend")
+    @ValueSource(strings = {"sql", "jpa", "redis", "crdt"})
+    void testCapIsEnforcedWithTheDecrement(String backend) throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.inventory.backend", backend,
+                "flashsale.inventory.sold-out-cache-ttl", "0s"))) {
+            // Arrange
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            InventoryService inventoryService = app.getBean(InventoryService.class);
+            ProductService productService = app.getBean(ProductService.class);
+            Long productId = productService.createProduct(CreateProductRequest.builder()
+                    .name("Limited drop")
+                    .price(new BigDecimal("120.00"))
+                    .stockCount(20)
+                    .maxPerUser(2)
+                    .build()).getId();
+            ExecutorService buyers = Executors.newFixedThreadPool(8);
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<PurchaseResponse>> attempts = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                attempts.add(buyers.submit(() -> {
+                    startGate.await();
+                    return flashSaleService.purchase(productId, purchase("looper", 1));
+                }));
+            }
+
+            // Act
+            startGate.countDown();
+            int bought = 0;
+            for (Future<PurchaseResponse> attempt : attempts) {
+                bought += attempt.get(30, TimeUnit.SECONDS).isSuccess() ? 1 : 0;
+            }
+            buyers.shutdown();
+
+            // Assert - one user looping gets exactly the cap, whatever the interleaving
+            assertEquals(2, bought);
+            assertEquals(18L, inventoryService.getInventory(productId));
+            PurchaseResponse capped = flashSaleService.purchase(productId, purchase("looper", 1));
+            assertFalse(capped.isSuccess());
+            assertTrue(capped.getMessage().startsWith("Purchase limit reached"));
+            assertFalse(flashSaleService.purchase(productId, purchase("greedy", 3)).isSuccess());
+            assertTrue(flashSaleService.purchase(productId, purchase("greedy", 2)).isSuccess());
+
+            // Assert - batches check each buyer with the decrement
+            List<PurchaseResponse> batch = flashSaleService.purchaseBatch(List.of(
+                    item(productId, "batcher"), item(productId, "batcher"), item(productId, "batcher")));
+            assertEquals(List.of(true, true, false), batch.stream().map(PurchaseResponse::isSuccess).toList());
+            assertEquals(14L, inventoryService.getInventory(productId));
+
+            // Assert - a purchase that finds no stock does not use up the buyer's allowance
+            Long lastUnit = productService.createProduct(CreateProductRequest.builder()
+                    .name("Last unit")
+                    .price(new BigDecimal("80.00"))
+                    .stockCount(1)
+                    .maxPerUser(1)
+                    .build()).getId();
+            assertTrue(flashSaleService.purchase(lastUnit, purchase("early", 1)).isSuccess());
+            assertFalse(flashSaleService.purchase(lastUnit, purchase("late", 1)).isSuccess());
+            inventoryService.incrementInventory(lastUnit, 1);
+            assertTrue(flashSaleService.purchase(lastUnit, purchase("late", 1)).isSuccess());
+        }
+    }
+
+    private static PurchaseRequest purchase(String userId, int quantity) {
+        return PurchaseRequest.builder().userId(userId).quantity(quantity).build();
+    }
+
+    private static BatchPurchaseRequest.Item item(Long productId, String userId) {
+        return BatchPurchaseRequest.Item.builder().productId(productId).userId(userId).build();
+    }
+}
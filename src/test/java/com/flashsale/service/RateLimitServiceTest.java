@@ -1,16 +1,30 @@
 package com.flashsale.service;
 
+import com.flashsale.support.EmbeddedRedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -23,12 +37,19 @@ class RateLimitServiceTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Spy
+    private RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(new SimpleMeterRegistry());
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private RateLimitService rateLimitService;
 
     @BeforeEach
     void setUp() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        circuitBreaker.init();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         ReflectionTestUtils.setField(rateLimitService, "rateLimitEnabled", true);
         ReflectionTestUtils.setField(rateLimitService, "maxRequests", 5);
         ReflectionTestUtils.setField(rateLimitService, "windowSeconds", 1);
@@ -38,23 +59,21 @@ class RateLimitServiceTest {
     void testIsAllowed_FirstRequest() {
         // Arrange
         String userId = "user123";
-        when(valueOperations.get(anyString())).thenReturn(null);
-        when(valueOperations.increment(anyString())).thenReturn(1L);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(0L));
 
         // Act
         boolean allowed = rateLimitService.isAllowed(userId);
 
         // Assert
         assertTrue(allowed);
-        verify(valueOperations).increment(anyString());
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), any(Object[].class));
     }
 
     @Test
     void testIsAllowed_WithinLimit() {
         // Arrange
         String userId = "user123";
-        when(valueOperations.get(anyString())).thenReturn(3);
-        when(valueOperations.increment(anyString())).thenReturn(4L);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(0L));
 
         // Act
         boolean allowed = rateLimitService.isAllowed(userId);
@@ -67,14 +86,14 @@ class RateLimitServiceTest {
     void testIsAllowed_ExceedsLimit() {
         // Arrange
         String userId = "user123";
-        when(valueOperations.get(anyString())).thenReturn(5);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(1L));
 
         // Act
         boolean allowed = rateLimitService.isAllowed(userId);
 
         // Assert
         assertFalse(allowed);
-        verify(valueOperations, never()).increment(anyString());
+        assertEquals(1.0, meterRegistry.get("flashsale.quota.rejected").tag("level", "user").counter().count());
     }
 
     @Test
@@ -89,6 +108,7 @@ class RateLimitServiceTest {
         // Assert
         assertTrue(allowed);
         verify(valueOperations, never()).get(anyString());
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
     }
 
     @Test
@@ -115,4 +135,69 @@ class RateLimitServiceTest {
         // Assert
         verify(redisTemplate).delete(anyString());
     }
+
+    @Test
+    void testLocalQuotaReportsProductLevelWithoutConsumingUserQuota() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+        ReflectionTestUtils.setField(rateLimitService, "maxRequests", 2);
+        rateLimitService.setProductLimit(7L, 1);
+        rateLimitService.checkQuota("user-a", 7L);
+
+        // Act
+        Optional<RateLimitService.QuotaLevel> rejected = rateLimitService.checkQuota("user-b", 7L);
+        Optional<RateLimitService.QuotaLevel> otherProduct1 = rateLimitService.checkQuota("user-b", 8L);
+        Optional<RateLimitService.QuotaLevel> otherProduct2 = rateLimitService.checkQuota("user-b", 8L);
+
+        // Assert
+        assertEquals(Optional.of(RateLimitService.QuotaLevel.PRODUCT), rejected);
+        assertTrue(otherProduct1.isEmpty());
+        assertTrue(otherProduct2.isEmpty());
+    }
+
+    @Test
+    void testQuotaScriptEnforcesEveryLevelAtomically() throws Exception {
+        try (EmbeddedRedisServer redis = EmbeddedRedisServer.start()) {
+            // Arrange
+            LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                    new RedisStandaloneConfiguration("localhost", redis.getPort()));
+            connectionFactory.afterPropertiesSet();
+            RedisTemplate<String, Object> template = new RedisTemplate<>();
+            template.setConnectionFactory(connectionFactory);
+            template.setKeySerializer(new StringRedisSerializer());
+            template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+            template.afterPropertiesSet();
+            RateLimitService service = new RateLimitService(template, circuitBreaker, meterRegistry);
+            ReflectionTestUtils.setField(service, "rateLimitEnabled", true);
+            ReflectionTestUtils.setField(service, "maxRequests", 2);
+            ReflectionTestUtils.setField(service, "windowSeconds", 60);
+            ReflectionTestUtils.setField(service, "productMaxRequests", 3);
+            ReflectionTestUtils.setField(service, "globalMaxRequests", 5);
+            service.setProductLimit(2L, 10);
+
+            try {
+                // Act
+                List<Optional<RateLimitService.QuotaLevel>> batch = service.checkQuotas(List.of(
+                        new RateLimitService.QuotaRequest("u1", 1L),
+                        new RateLimitService.QuotaRequest("u1", 1L),
+                        new RateLimitService.QuotaRequest("u1", 1L)));
+                service.checkQuota("u2", 1L);
+                Optional<RateLimitService.QuotaLevel> productLimited = service.checkQuota("u3", 1L);
+                service.checkQuota("u3", 2L);
+                Optional<RateLimitService.QuotaLevel> overrideAdmits = service.checkQuota("u4", 2L);
+                Optional<RateLimitService.QuotaLevel> globalLimited = service.checkQuota("u5", 2L);
+
+                // Assert
+                assertEquals(List.of(Optional.empty(), Optional.empty(), Optional.of(RateLimitService.QuotaLevel.USER)), batch);
+                assertEquals(Optional.of(RateLimitService.QuotaLevel.PRODUCT), productLimited);
+                assertTrue(overrideAdmits.isEmpty());
+                assertEquals(Optional.of(RateLimitService.QuotaLevel.GLOBAL), globalLimited);
+                assertEquals(10, service.getProductLimit(2L));
+                assertEquals(3, service.getProductLimit(1L));
+            } finally {
+                connectionFactory.destroy();
+            }
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package com.flashsale.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RedisCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreaker = new RedisCircuitBreaker(meterRegistry);
+        ReflectionTestUtils.setField(circuitBreaker, "windowSize", 10);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumCalls", 4);
+        ReflectionTestUtils.setField(circuitBreaker, "openDuration", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(circuitBreaker, "halfOpenProbes", 2);
+        circuitBreaker.init();
+    }
+
+    @Test
+    void testOpensOnFailuresAndShortCircuits() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(this::fail, () -> "fallback");
+        }
+        AtomicInteger redisCalls = new AtomicInteger();
+
+        // Act
+        String result = circuitBreaker.execute(() -> {
+            redisCalls.incrementAndGet();
+            return "redis";
+        }, () -> "fallback");
+
+        // Assert
+        assertEquals(RedisCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals("fallback", result);
+        assertEquals(0, redisCalls.get());
+        assertEquals(1.0, meterRegistry.get("flashsale.redis.circuit.short-circuited").counter().count());
+        assertEquals(1.0, meterRegistry.get("flashsale.redis.circuit.state").gauge().value());
+    }
+
+    @Test
+    void testOpensOnSlowCalls() {
+        // Arrange
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallDuration", Duration.ofMillis(1));
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(() -> {
+                sleep(3);
+                return "redis";
+            }, () -> "fallback");
+        }
+
+        // Assert
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    @Test
+    void testHalfOpenProbesCloseCircuit() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(this::fail, () -> "fallback");
+        }
+        sleep(60);
+
+        // Act
+        assertEquals("redis", circuitBreaker.execute(() -> "redis", () -> "fallback"));
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertEquals("redis", circuitBreaker.execute(() -> "redis", () -> "fallback"));
+
+        // Assert
+        assertEquals(RedisCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(1.0, meterRegistry.get("flashsale.redis.circuit.transitions")
+                .tag("from", "HALF_OPEN").tag("to", "CLOSED").counter().count());
+    }
+
+    @Test
+    void testFailedProbeReopensCircuit() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(this::fail, () -> "fallback");
+        }
+        sleep(60);
+
+        // Act
+        circuitBreaker.execute(this::fail, () -> "fallback");
+
+        // Assert
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    private String fail() {
+        throw new IllegalStateException("Redis down");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
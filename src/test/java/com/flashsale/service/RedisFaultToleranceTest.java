@@ -0,0 +1,210 @@
+package com.flashsale.service;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.exception.ServiceUnavailableException;
+import com.flashsale.support.LocalFlashSaleApp;
+import com.flashsale.support.RedisFaults;
+import com.flashsale.support.RedisFaults.Latency;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs concurrent purchases on the redis backend (quota check and stock decrement both in Redis)
+ * while the embedded Redis stand-in injects faults, one scenario at a time, and reports purchase
+ * latency percentiles per scenario, so Redis timeout and circuit breaker settings can be chosen
+ * from measurements.
+ *
+ * The report is written to target/redis-faults/tail-latency.txt. Scale with
+ * -Dredis-faults.attempts / -Dredis-faults.threads; tune the settings under test with
+ * -Dredis-faults.timeout (spring.data.redis.timeout).
+ */
+class RedisFaultToleranceTest {
+
+    private static final int ATTEMPTS = Integer.getInteger("redis-faults.attempts", 400);
+    private static final int THREADS = Integer.getInteger("redis-faults.threads", 16);
+    private static final String REDIS_TIMEOUT = System.getProperty("redis-faults.timeout", "250ms");
+    // Enough for every attempt, so each one reaches Redis instead of the local sold-out check
+    private static final int STOCK = ATTEMPTS;
+    private static final Duration STALL = Duration.ofSeconds(2);
+
+    private record Scenario(String name, Consumer<RedisFaults> faults) {
+    }
+
+    private record Result(Scenario scenario, Histogram latency, long success, long rejected, long unavailable,
+                          long errors, long leaked, long delayed, long dropped, long stalled) {
+    }
+
+    @Test
+    void testPurchaseTailLatencyUnderRedisFaults() throws Exception {
+        List<Scenario> scenarios = List.of(
+                new Scenario("healthy", faults -> { }),
+                new Scenario("slow network (lognormal, median 2ms)",
+                        faults -> faults.latency(Latency.logNormal(Duration.ofMillis(2), 1.0))),
+                new Scenario("latency spikes (1% +100ms)",
+                        faults -> faults.latency(Latency.fixed(Duration.ofMillis(1)).withSpikes(0.01, Duration.ofMillis(100)))),
+                new Scenario("slow scripts (2ms under the lock)",
+                        faults -> faults.scriptLatency(Latency.fixed(Duration.ofMillis(2)))),
+                new Scenario("dropped connections (5%)", faults -> faults.dropConnections(0.05)),
+                new Scenario("timeouts (2%, 2s stall)", faults -> faults.timeouts(0.02, STALL)),
+                new Scenario("flapping (400ms up / 200ms down)",
+                        faults -> faults.flap(Duration.ofMillis(400), Duration.ofMillis(200))));
+
+        // Arrange
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of(
+                "flashsale.inventory.backend", "redis",
+                "flashsale.rate-limit.enabled", true,
+                "spring.data.redis.timeout", REDIS_TIMEOUT,
+                "flashsale.redis.circuit-breaker.open-duration", "500ms",
+                "flashsale.audit.enabled", false,
+                "logging.level.com.flashsale", "WARN"))) {
+            RedisFaults faults = app.redis().faults().seed(42);
+            List<Result> results = new ArrayList<>();
+            // Unmeasured: a cold JVM is slow enough to trip the slow-call breaker
+            run(app, faults, new Scenario("warm-up", f -> { }));
+
+            // Act
+            for (Scenario scenario : scenarios) {
+                results.add(run(app, faults, scenario));
+            }
+            writeReport(results);
+
+            // Assert - faults never sell more than was taken from stock, whatever they cost in latency
+            for (Result result : results) {
+                assertTrue(result.leaked() >= 0, result.scenario().name() + ": more sold than taken from stock");
+                assertEquals(ATTEMPTS, result.success() + result.rejected() + result.unavailable() + result.errors());
+            }
+            Result healthy = results.get(0);
+            assertEquals(STOCK, healthy.success());
+            assertEquals(0, healthy.leaked());
+            assertTrue(results.get(4).dropped() > 0, "no connections dropped");
+            // The client timeout, not the stalled server, bounds how long a purchase waits
+            Result timeouts = results.get(5);
+            assertTrue(timeouts.stalled() > 0, "no commands stalled");
+            assertTrue(timeouts.latency().getMaxValue() < TimeUnit.NANOSECONDS.toMicros(STALL.toNanos()),
+                    "a purchase waited out a stalled command");
+        }
+    }
+
+    private Result run(LocalFlashSaleApp app, RedisFaults faults, Scenario scenario) throws Exception {
+        faults.clear();
+        awaitCircuitClosed(app.getBean(RedisCircuitBreaker.class), app.getBean(InventoryService.class));
+        FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+        InventoryService inventoryService = app.getBean(InventoryService.class);
+        Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                .name("Fault scenario: " + scenario.name())
+                .price(new BigDecimal("5.00"))
+                .stockCount(STOCK)
+                .build()).getId();
+        long delayedBefore = faults.delayed();
+        long droppedBefore = faults.dropped();
+        long stalledBefore = faults.stalled();
+
+        Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        LongAdder success = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder unavailable = new LongAdder();
+        LongAdder errors = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            workers.submit(() -> {
+                startGate.await();
+                int attempt;
+                while ((attempt = next.getAndIncrement()) < ATTEMPTS) {
+                    PurchaseRequest request = PurchaseRequest.builder().userId("buyer-" + attempt).quantity(1).build();
+                    long start = System.nanoTime();
+                    try {
+                        if (flashSaleService.purchase(productId, request).isSuccess()) {
+                            success.increment();
+                        } else {
+                            rejected.increment();
+                        }
+                    } catch (ServiceUnavailableException e) {
+                        unavailable.increment();
+                    } catch (RuntimeException e) {
+                        errors.increment();
+                    }
+                    latency.recordValue(Math.min(latency.getHighestTrackableValue(),
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+                }
+                return null;
+            });
+        }
+        faults.clear();
+        scenario.faults().accept(faults);
+        startGate.countDown();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(2, TimeUnit.MINUTES), scenario.name() + ": purchases did not finish");
+        faults.clear();
+
+        awaitCircuitClosed(app.getBean(RedisCircuitBreaker.class), inventoryService);
+        long remaining = inventoryService.getInventory(productId);
+        return new Result(scenario, latency, success.sum(), rejected.sum(), unavailable.sum(), errors.sum(),
+                STOCK - remaining - success.sum(), faults.delayed() - delayedBefore,
+                faults.dropped() - droppedBefore, faults.stalled() - stalledBefore);
+    }
+
+    /**
+     * Redis calls let an open circuit probe its way back to closed once the faults are gone
+     */
+    private void awaitCircuitClosed(RedisCircuitBreaker circuitBreaker, InventoryService inventoryService)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            assertTrue(System.nanoTime() < deadline, "circuit breaker did not close");
+            try {
+                inventoryService.getInventory(-1L);
+            } catch (RuntimeException e) {
+                // still open
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private void writeReport(List<Result> results) throws IOException {
+        StringBuilder report = new StringBuilder(String.format(
+                "Purchase latency under Redis faults: %d attempts, %d threads, stock %d, spring.data.redis.timeout=%s%n%n",
+                ATTEMPTS, THREADS, STOCK, REDIS_TIMEOUT));
+        report.append(String.format("%-38s %8s %8s %8s %9s %8s %8s %6s %6s %6s %8s %8s %8s%n",
+                "scenario", "p50 ms", "p99 ms", "p999 ms", "max ms", "success", "rejected", "unavl", "error",
+                "leaked", "delayed", "dropped", "stalled"));
+        for (Result result : results) {
+            Histogram latency = result.latency();
+            report.append(String.format("%-38s %8.2f %8.2f %8.2f %9.2f %8d %8d %6d %6d %6d %8d %8d %8d%n",
+                    result.scenario().name(),
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0,
+                    result.success(), result.rejected(), result.unavailable(), result.errors(), result.leaked(),
+                    result.delayed(), result.dropped(), result.stalled()));
+        }
+        report.append(String.format("%nleaked: units taken from stock without a successful purchase "
+                + "(a command that ran after the client had given up on it)%n"));
+        System.out.print(report);
+        Path file = Path.of("target", "redis-faults", "tail-latency.txt");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, report);
+    }
+}
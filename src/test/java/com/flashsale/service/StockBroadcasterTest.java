@@ -0,0 +1,110 @@
+package com.flashsale.service;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.support.LocalFlashSaleApp;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockBroadcasterTest {
+
+    @Test
+    void testStreamsCoalescedStockAndSoldOut() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of("flashsale.stock-stream.tick", "100ms"))) {
+            // Arrange
+            Long productId = app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Streamed product")
+                    .price(new BigDecimal("19.99"))
+                    .stockCount(3)
+                    .build()).getId();
+            FlashSaleService flashSaleService = app.getBean(FlashSaleService.class);
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(
+                    URI.create(app.baseUrl() + "/api/products/" + productId + "/stock-stream")).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            BufferedReader stream = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+
+            // Act
+            List<String> initial = readEvent(stream);
+            for (int i = 0; i < 3; i++) {
+                flashSaleService.purchase(productId, PurchaseRequest.builder().userId("viewer-" + i).build());
+            }
+            List<String> events = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!events.contains("event:sold-out") && System.nanoTime() < deadline) {
+                events.addAll(readEvent(stream));
+            }
+
+            // Assert
+            assertEquals("text/event-stream", response.headers().firstValue("Content-Type").orElse("").split(";")[0]);
+            assertEquals(List.of("event:stock", "data:{\"productId\":" + productId + ",\"stock\":3,\"available\":true}"), initial);
+            assertTrue(events.contains("data:{\"productId\":" + productId + ",\"stock\":0,\"available\":false}"));
+            // Three purchases within a tick or two are coalesced, not one frame per purchase
+            assertTrue(events.stream().filter(line -> line.startsWith("event:")).count() <= 3);
+            assertEquals(1, app.getBean(StockBroadcaster.class).getViewerCount());
+        }
+    }
+
+    @Test
+    void testOneStreamCarriesSeveralProductsAndStockChangedElsewhere() throws Exception {
+        try (LocalFlashSaleApp app = LocalFlashSaleApp.start(Map.of("flashsale.stock-stream.tick", "100ms"))) {
+            // Arrange
+            ProductService productService = app.getBean(ProductService.class);
+            Long first = productService.createProduct(CreateProductRequest.builder()
+                    .name("First streamed").price(new BigDecimal("5.00")).stockCount(4).build()).getId();
+            Long second = productService.createProduct(CreateProductRequest.builder()
+                    .name("Second streamed").price(new BigDecimal("5.00")).stockCount(7).build()).getId();
+            HttpResponse<InputStream> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                    URI.create(app.baseUrl() + "/api/products/stock-stream?ids=" + first + "," + second)).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            BufferedReader stream = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+            List<String> events = new ArrayList<>();
+            events.addAll(readEvent(stream));
+            events.addAll(readEvent(stream));
+
+            // Act: another instance sells the second product; this instance sees no stock event
+            new JdbcTemplate(app.getBean(DataSource.class))
+                    .update("UPDATE products SET stock_count = 0 WHERE id = ?", second);
+            String soldOut = "data:{\"productId\":" + second + ",\"stock\":0,\"available\":false}";
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!events.contains(soldOut) && System.nanoTime() < deadline) {
+                events.addAll(readEvent(stream));
+            }
+
+            // Assert
+            assertTrue(events.contains("data:{\"productId\":" + first + ",\"stock\":4,\"available\":true}"));
+            assertTrue(events.contains("data:{\"productId\":" + second + ",\"stock\":7,\"available\":true}"));
+            assertTrue(events.contains(soldOut));
+            // Unchanged stock is not pushed again on every tick
+            assertEquals(3, events.stream().filter(line -> line.startsWith("event:")).count());
+            assertEquals(1, app.getBean(StockBroadcaster.class).getViewerCount());
+        }
+    }
+
+    private static List<String> readEvent(BufferedReader stream) throws Exception {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = stream.readLine()) != null && !line.isEmpty()) {
+            lines.add(line);
+        }
+        return lines;
+    }
+}
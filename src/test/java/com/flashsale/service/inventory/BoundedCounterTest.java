@@ -0,0 +1,86 @@
+package com.flashsale.service.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCounterTest {
+
+    @Test
+    void merge_IsOrderIndependentAndNeverOversells() {
+        // Arrange
+        BoundedCounter a = new BoundedCounter();
+        a.reset("a", 10);
+        BoundedCounter b = new BoundedCounter();
+        b.merge(a.snapshot());
+        BoundedCounter c = new BoundedCounter();
+        c.merge(a.snapshot());
+        assertEquals(4, a.transfer("a", "b", 4));
+        assertEquals(3, a.transfer("a", "c", 3));
+        b.merge(a.snapshot());
+        c.merge(a.snapshot());
+
+        // Act: every replica sells as much as it can without talking to the others
+        int soldByA = drain(a, "a");
+        int soldByB = drain(b, "b");
+        int soldByC = drain(c, "c");
+        b.merge(c.snapshot());
+        b.merge(a.snapshot());
+        a.merge(c.snapshot());
+        a.merge(b.snapshot());
+        c.merge(b.snapshot());
+
+        // Assert
+        assertEquals(10, soldByA + soldByB + soldByC);
+        assertEquals(0, a.value());
+        assertEquals(a.snapshot(), b.snapshot());
+        assertEquals(a.snapshot(), c.snapshot());
+        assertFalse(c.tryDecrement("c", 1));
+    }
+
+    @Test
+    void merge_ReportsWhetherStateChanged() {
+        // Arrange
+        BoundedCounter a = new BoundedCounter();
+        a.reset("a", 5);
+        BoundedCounter b = new BoundedCounter();
+
+        // Act / Assert
+        assertTrue(b.merge(a.snapshot()));
+        assertFalse(b.merge(a.snapshot()));
+        a.transfer("a", "b", 2);
+        assertTrue(b.merge(a.snapshot()));
+        b.tryDecrement("b", 1);
+        assertTrue(a.merge(b.snapshot()));
+        assertFalse(b.merge(a.snapshot()));
+    }
+
+    @Test
+    void merge_NewerEpochReplacesOlderState() {
+        // Arrange
+        BoundedCounter a = new BoundedCounter();
+        a.reset("a", 5);
+        a.tryDecrement("a", 2);
+        BoundedCounter b = new BoundedCounter();
+        b.merge(a.snapshot());
+
+        // Act
+        b.reset("b", 20);
+        a.merge(b.snapshot());
+        b.merge(a.snapshot());
+
+        // Assert
+        assertEquals(20, a.value());
+        assertEquals(0, a.rights("a"));
+        assertEquals(20, b.rights("b"));
+        assertEquals(0, a.transfer("a", "b", 1));
+    }
+
+    private static int drain(BoundedCounter counter, String node) {
+        int sold = 0;
+        while (counter.tryDecrement(node, 1)) {
+            sold++;
+        }
+        return sold;
+    }
+}
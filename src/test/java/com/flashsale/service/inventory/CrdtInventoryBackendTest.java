@@ -0,0 +1,193 @@
+package com.flashsale.service.inventory;
+
+import com.flashsale.dto.CreateProductRequest;
+import com.flashsale.dto.PurchaseRequest;
+import com.flashsale.service.FlashSaleService;
+import com.flashsale.service.ProductService;
+import com.flashsale.support.LocalFlashSaleApp;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrdtInventoryBackendTest {
+
+    private static final int NODES = 3;
+    private static final int STOCK = 60;
+
+    @Test
+    void testThreeActiveInstancesSellExactlyTheStock() throws Exception {
+        List<LocalFlashSaleApp> apps = new ArrayList<>();
+        ExecutorService buyers = Executors.newFixedThreadPool(NODES * 3);
+        try {
+            // Arrange
+            startCluster(apps);
+            List<Long> productIds = createEverywhere(apps);
+            Long productId = productIds.get(0);
+            assertEquals(List.of(productId, productId, productId), productIds);
+            List<CrdtInventoryBackend> backends = apps.stream().map(app -> app.getBean(CrdtInventoryBackend.class)).toList();
+            // Every instance initialized its own epoch; once the newest has won everywhere, rights add up to the stock
+            awaitTrue(() -> backends.stream().mapToLong(backend -> backend.getLocalRights(productId)).sum() == STOCK
+                    && backends.stream().allMatch(backend -> backend.get(productId) == STOCK));
+
+            // Act
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < NODES * 3; i++) {
+                FlashSaleService flashSaleService = apps.get(i % NODES).getBean(FlashSaleService.class);
+                int buyer = i;
+                results.add(buyers.submit(() -> {
+                    int bought = 0;
+                    for (int attempt = 0; attempt < 40; attempt++) {
+                        if (flashSaleService.purchase(productId, PurchaseRequest.builder()
+                                .userId("buyer-" + buyer + "-" + attempt).quantity(1).build()).isSuccess()) {
+                            bought++;
+                        }
+                    }
+                    return bought;
+                }));
+            }
+            int sold = 0;
+            for (Future<Integer> result : results) {
+                sold += result.get(60, TimeUnit.SECONDS);
+            }
+            // Units stranded on an instance whose buyers stopped first are pulled over by the others
+            boolean anySold = true;
+            for (int round = 0; anySold; round++) {
+                anySold = false;
+                for (LocalFlashSaleApp app : apps) {
+                    if (app.getBean(FlashSaleService.class).purchase(productId, PurchaseRequest.builder()
+                            .userId("drain-" + round).quantity(1).build()).isSuccess()) {
+                        sold++;
+                        anySold = true;
+                    }
+                }
+            }
+
+            // Assert
+            assertEquals(STOCK, sold);
+            awaitTrue(() -> backends.stream().allMatch(backend -> backend.get(productId) == 0));
+            assertTrue(backends.stream().allMatch(backend -> backend.getLocalRights(productId) == 0));
+            // Once converged, exchanges go on but carry no counters
+            DistributionSummary sent = apps.get(0).getBean(MeterRegistry.class)
+                    .get("flashsale.inventory.crdt.sync.products").summary();
+            Thread.sleep(200);
+            long exchanges = sent.count();
+            double products = sent.totalAmount();
+            Thread.sleep(200);
+            assertTrue(sent.count() > exchanges);
+            assertEquals(products, sent.totalAmount());
+        } finally {
+            buyers.shutdownNow();
+            for (LocalFlashSaleApp app : apps) {
+                app.close();
+            }
+        }
+    }
+
+    @Test
+    void testStoppedInstanceHandsItsRightsToTheSurvivors() throws Exception {
+        List<LocalFlashSaleApp> apps = new ArrayList<>();
+        try {
+            // Arrange
+            startCluster(apps);
+            Long productId = createEverywhere(apps).get(0);
+            List<CrdtInventoryBackend> backends = apps.stream().map(app -> app.getBean(CrdtInventoryBackend.class)).toList();
+            // Background rebalancing gives every instance a share, including the one about to stop
+            awaitTrue(() -> backends.stream().allMatch(backend -> backend.getLocalRights(productId) > 0)
+                    && backends.stream().mapToLong(backend -> backend.getLocalRights(productId)).sum() == STOCK);
+
+            // Act
+            apps.remove(NODES - 1).close();
+            List<CrdtInventoryBackend> survivors = backends.subList(0, NODES - 1);
+            awaitTrue(() -> survivors.stream().mapToLong(backend -> backend.getLocalRights(productId)).sum() == STOCK);
+            int sold = 0;
+            boolean anySold = true;
+            for (int round = 0; anySold; round++) {
+                anySold = false;
+                for (LocalFlashSaleApp app : apps) {
+                    if (app.getBean(FlashSaleService.class).purchase(productId, PurchaseRequest.builder()
+                            .userId("survivor-" + round).quantity(1).build()).isSuccess()) {
+                        sold++;
+                        anySold = true;
+                    }
+                }
+            }
+
+            // Assert
+            assertEquals(STOCK, sold);
+            assertTrue(survivors.stream().allMatch(backend -> backend.get(productId) == 0));
+        } finally {
+            for (LocalFlashSaleApp app : apps) {
+                app.close();
+            }
+        }
+    }
+
+    /**
+     * NODES instances, each listing the others as peers
+     */
+    private static void startCluster(List<LocalFlashSaleApp> apps) throws IOException {
+        int[] ports = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = freePort();
+        }
+        for (int i = 0; i < NODES; i++) {
+            int self = i;
+            String peers = IntStream.range(0, NODES)
+                    .filter(j -> j != self)
+                    .mapToObj(j -> "http://localhost:" + ports[j])
+                    .collect(Collectors.joining(","));
+            apps.add(LocalFlashSaleApp.start(Map.of(
+                    "server.port", ports[i],
+                    "flashsale.inventory.backend", "crdt",
+                    "flashsale.inventory.crdt.peers", peers,
+                    "flashsale.inventory.crdt.node-id", "node" + i,
+                    "flashsale.inventory.crdt.sync-interval", "20ms",
+                    "flashsale.inventory.sold-out-cache-ttl", "0s")));
+        }
+    }
+
+    /**
+     * Create the same product on every instance (each has its own in-memory database)
+     */
+    private static List<Long> createEverywhere(List<LocalFlashSaleApp> apps) {
+        List<Long> productIds = new ArrayList<>();
+        for (LocalFlashSaleApp app : apps) {
+            productIds.add(app.getBean(ProductService.class).createProduct(CreateProductRequest.builder()
+                    .name("Replicated drop")
+                    .price(new BigDecimal("20.00"))
+                    .stockCount(STOCK)
+                    .build()).getId());
+        }
+        return productIds;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            Thread.sleep(20);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
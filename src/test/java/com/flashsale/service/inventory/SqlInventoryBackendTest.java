@@ -0,0 +1,95 @@
+package com.flashsale.service.inventory;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-user cap claims, on H2 or on PostgreSQL with -Dsql-inventory.postgres-url
+ * (-Dsql-inventory.postgres-user, -Dsql-inventory.postgres-password), in a schema of its own
+ */
+class SqlInventoryBackendTest {
+
+    private static final String POSTGRES_URL = System.getProperty("sql-inventory.postgres-url");
+    private static final String USER = System.getProperty("sql-inventory.postgres-user", "postgres");
+    private static final String PASSWORD = System.getProperty("sql-inventory.postgres-password", "");
+
+    private final String schema = "inventory_" + UUID.randomUUID().toString().replace("-", "");
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private long productId;
+
+    @BeforeEach
+    void setUp() {
+        if (POSTGRES_URL == null) {
+            dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + schema + ";DB_CLOSE_DELAY=-1", "sa", "");
+        } else {
+            new JdbcTemplate(new DriverManagerDataSource(POSTGRES_URL, USER, PASSWORD)).execute("CREATE SCHEMA " + schema);
+            dataSource = schemaDataSource(POSTGRES_URL);
+        }
+        Flyway.configure().dataSource(dataSource).schemas(POSTGRES_URL == null ? "PUBLIC" : schema).load().migrate();
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("INSERT INTO products (name, price, stock_count) VALUES ('Capped', 10.00, 10)");
+        productId = jdbc.queryForObject("SELECT max(id) FROM products", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (POSTGRES_URL != null) {
+            new JdbcTemplate(new DriverManagerDataSource(POSTGRES_URL, USER, PASSWORD)).execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void testCapClaimedAfterLosingTheRaceToCreateTheBuyersRow() {
+        // Arrange - another purchase by the same buyer commits their row just before this one inserts it
+        JdbcTemplate otherConnection = new JdbcTemplate(POSTGRES_URL == null ? new DriverManagerDataSource(
+                dataSource.getUrl(), "sa", "") : schemaDataSource(POSTGRES_URL));
+        SqlInventoryBackend backend = backend("generic", new JdbcTemplate(dataSource) {
+            private boolean raced;
+
+            @Override
+            public int update(String sql, Object... args) {
+                if (!raced && sql.startsWith("INSERT INTO purchase_caps")) {
+                    raced = true;
+                    otherConnection.update("INSERT INTO purchase_caps (product_id, user_id, units) VALUES (?, 'racer', 1)", productId);
+                }
+                return super.update(sql, args);
+            }
+        });
+
+        // Act
+        long remaining = backend.decrement(productId, "racer", 1, 2);
+        long overCap = backend.decrement(productId, "racer", 1, 2);
+
+        // Assert - the claim fell back to the update and the transaction carried on to the decrement
+        assertEquals(9L, remaining);
+        assertEquals(InventoryBackend.CAP_EXCEEDED, overCap);
+        assertEquals(2, jdbc.queryForObject("SELECT units FROM purchase_caps WHERE user_id = 'racer'", Integer.class));
+        assertEquals(9, jdbc.queryForObject("SELECT stock_count FROM products WHERE id = ?", Integer.class, productId));
+    }
+
+    private DriverManagerDataSource schemaDataSource(String url) {
+        DriverManagerDataSource schemaDataSource = new DriverManagerDataSource(url, USER, PASSWORD);
+        schemaDataSource.setSchema(schema);
+        return schemaDataSource;
+    }
+
+    private SqlInventoryBackend backend(String dialect, JdbcTemplate jdbcTemplate) {
+        SqlInventoryBackend backend = new SqlInventoryBackend(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(backend, "configuredDialect", dialect);
+        backend.detectDialect();
+        return backend;
+    }
+}
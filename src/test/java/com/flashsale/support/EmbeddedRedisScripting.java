@@ -0,0 +1,283 @@
+package com.flashsale.support;
+
+import com.flashsale.support.EmbeddedRedisServer.RedisError;
+import com.flashsale.support.EmbeddedRedisServer.Resp;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * EVAL, EVALSHA and SCRIPT for {@link EmbeddedRedisServer}, backed by LuaJ
+ *
+ * Scripts run under the server's command lock, so like real Redis they are atomic with respect
+ * to every other command. redis.call/redis.pcall dispatch back into the server and convert
+ * replies with the standard Redis Lua conversion rules (integers to numbers, nil to false,
+ * status and error replies to {ok=...}/{err=...} tables).
+ */
+class EmbeddedRedisScripting {
+
+    private final EmbeddedRedisServer server;
+    private final Globals globals = JsePlatform.standardGlobals();
+    private final Map<String, String> scripts = new HashMap<>();
+    private final Map<String, LuaValue> compiled = new HashMap<>();
+
+    EmbeddedRedisScripting(EmbeddedRedisServer server) {
+        this.server = server;
+        LuaTable redis = new LuaTable();
+        redis.set("call", new RedisCall(false));
+        redis.set("pcall", new RedisCall(true));
+        redis.set("status_reply", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("ok"), args.arg1()});
+            }
+        });
+        redis.set("error_reply", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"), args.arg1()});
+            }
+        });
+        globals.set("redis", redis);
+    }
+
+    void eval(List<byte[]> args, OutputStream out) throws IOException {
+        String script = EmbeddedRedisServer.key(args, 1);
+        run(load(script), args, out);
+    }
+
+    void evalsha(List<byte[]> args, OutputStream out) throws IOException {
+        String sha = EmbeddedRedisServer.key(args, 1).toLowerCase(Locale.ROOT);
+        LuaValue chunk = compiled.get(sha);
+        if (chunk == null) {
+            throw new RedisError("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        run(chunk, args, out);
+    }
+
+    void script(List<byte[]> args, OutputStream out) throws IOException {
+        String subcommand = EmbeddedRedisServer.key(args, 1).toUpperCase(Locale.ROOT);
+        switch (subcommand) {
+            case "LOAD" -> {
+                String script = EmbeddedRedisServer.key(args, 2);
+                load(script);
+                Resp.bulk(out, sha1(script).getBytes(StandardCharsets.US_ASCII));
+            }
+            case "EXISTS" -> {
+                Resp.arrayHeader(out, args.size() - 2);
+                for (int i = 2; i < args.size(); i++) {
+                    Resp.integer(out, scripts.containsKey(EmbeddedRedisServer.key(args, i).toLowerCase(Locale.ROOT)) ? 1 : 0);
+                }
+            }
+            case "FLUSH" -> {
+                scripts.clear();
+                compiled.clear();
+                Resp.simple(out, "OK");
+            }
+            default -> throw new RedisError("ERR unknown SCRIPT subcommand '" + subcommand + "'");
+        }
+    }
+
+    private LuaValue load(String script) {
+        String sha = sha1(script);
+        LuaValue chunk = compiled.get(sha);
+        if (chunk == null) {
+            try {
+                chunk = globals.load(script, "@user_script");
+            } catch (LuaError e) {
+                throw new RedisError("ERR Error compiling script: " + e.getMessage());
+            }
+            scripts.put(sha, script);
+            compiled.put(sha, chunk);
+        }
+        return chunk;
+    }
+
+    private void run(LuaValue chunk, List<byte[]> args, OutputStream out) throws IOException {
+        int numKeys = (int) EmbeddedRedisServer.longArg(args, 2);
+        if (numKeys < 0 || 3 + numKeys > args.size()) {
+            throw new RedisError("ERR Number of keys can't be greater than number of args");
+        }
+        globals.set("KEYS", stringTable(args, 3, 3 + numKeys));
+        globals.set("ARGV", stringTable(args, 3 + numKeys, args.size()));
+        LuaValue result;
+        try {
+            result = chunk.call();
+        } catch (LuaError e) {
+            throw new RedisError("ERR Error running script: " + e.getMessage());
+        }
+        writeReply(result, out);
+    }
+
+    private static LuaTable stringTable(List<byte[]> args, int from, int to) {
+        LuaTable table = new LuaTable();
+        for (int i = from; i < to; i++) {
+            table.set(i - from + 1, LuaValue.valueOf(args.get(i)));
+        }
+        return table;
+    }
+
+    private static void writeReply(LuaValue value, OutputStream out) throws IOException {
+        if (value.isnil() || value == LuaValue.FALSE) {
+            Resp.bulk(out, null);
+        } else if (value == LuaValue.TRUE) {
+            Resp.integer(out, 1);
+        } else if (value.type() == LuaValue.TNUMBER) {
+            Resp.integer(out, value.tolong());
+        } else if (value.type() == LuaValue.TSTRING) {
+            LuaString string = value.checkstring();
+            byte[] bytes = new byte[string.length()];
+            string.copyInto(0, bytes, 0, bytes.length);
+            Resp.bulk(out, bytes);
+        } else if (value.istable()) {
+            LuaValue ok = value.get("ok");
+            LuaValue err = value.get("err");
+            if (!err.isnil()) {
+                Resp.error(out, err.tojstring());
+            } else if (!ok.isnil()) {
+                Resp.simple(out, ok.tojstring());
+            } else {
+                // Arrays stop at the first nil, as in Redis
+                int length = 0;
+                while (!value.get(length + 1).isnil()) {
+                    length++;
+                }
+                Resp.arrayHeader(out, length);
+                for (int i = 1; i <= length; i++) {
+                    writeReply(value.get(i), out);
+                }
+            }
+        } else {
+            Resp.bulk(out, null);
+        }
+    }
+
+    private static String sha1(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * redis.call / redis.pcall: run a command against the store and convert its RESP reply to Lua
+     */
+    private final class RedisCall extends VarArgFunction {
+
+        private final boolean protectedCall;
+
+        private RedisCall(boolean protectedCall) {
+            this.protectedCall = protectedCall;
+        }
+
+        @Override
+        public Varargs invoke(Varargs varargs) {
+            List<byte[]> command = new ArrayList<>(varargs.narg());
+            for (int i = 1; i <= varargs.narg(); i++) {
+                LuaValue arg = varargs.arg(i);
+                if (!arg.isstring()) {
+                    throw new LuaError("Lua redis() command arguments must be strings or integers");
+                }
+                command.add(arg.tojstring().getBytes(StandardCharsets.UTF_8));
+            }
+            if (command.isEmpty()) {
+                throw new LuaError("Please specify at least one argument for redis.call()");
+            }
+            String name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+            if (name.startsWith("EVAL") || "SCRIPT".equals(name)) {
+                return errorReply("ERR This Redis command is not allowed from scripts");
+            }
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            try {
+                server.execute(name, command, reply);
+            } catch (RedisError e) {
+                return errorReply(e.getMessage());
+            } catch (IOException e) {
+                throw new LuaError(e);
+            }
+            return new ReplyReader(reply.toByteArray()).read();
+        }
+
+        private LuaValue errorReply(String message) {
+            if (protectedCall) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"), LuaValue.valueOf(message)});
+            }
+            throw new LuaError(message);
+        }
+    }
+
+    /**
+     * Parses one RESP2 reply into its Lua representation
+     */
+    private static final class ReplyReader {
+
+        private final byte[] bytes;
+        private int position;
+
+        private ReplyReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        LuaValue read() {
+            byte type = bytes[position++];
+            String line = readLine();
+            return switch (type) {
+                case '+' -> LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("ok"), LuaValue.valueOf(line)});
+                case '-' -> LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"), LuaValue.valueOf(line)});
+                case ':' -> LuaValue.valueOf(Long.parseLong(line));
+                case '$' -> {
+                    int length = Integer.parseInt(line);
+                    if (length < 0) {
+                        yield LuaValue.FALSE;
+                    }
+                    byte[] value = new byte[length];
+                    System.arraycopy(bytes, position, value, 0, length);
+                    position += length + 2;
+                    yield LuaValue.valueOf(value);
+                }
+                case '*' -> {
+                    int size = Integer.parseInt(line);
+                    if (size < 0) {
+                        yield LuaValue.FALSE;
+                    }
+                    LuaTable table = new LuaTable();
+                    for (int i = 1; i <= size; i++) {
+                        table.set(i, read());
+                    }
+                    yield table;
+                }
+                default -> throw new LuaError("Unexpected reply type " + (char) type);
+            };
+        }
+
+        private String readLine() {
+            int start = position;
+            while (bytes[position] != '\r') {
+                position++;
+            }
+            String line = new String(bytes, start, position - start, StandardCharsets.UTF_8);
+            position += 2;
+            return line;
+        }
+    }
+}
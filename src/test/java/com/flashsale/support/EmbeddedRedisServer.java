@@ -0,0 +1,512 @@
+package com.flashsale.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process Redis stand-in speaking RESP2 over a real socket
+ *
+ * Supports the commands the application (and Lettuce's handshake) uses:
+ * PING, HELLO (rejected, so Lettuce falls back to RESP2), CLIENT, SELECT, GET, SET, DEL, EXISTS,
+ * INCR, INCRBY, DECR, DECRBY, HGET, HINCRBY, HDEL, HLEN, EXPIRE, PEXPIRE, TTL, PTTL, FLUSHALL,
+ * FLUSHDB, DBSIZE, QUIT,
+ * plus EVAL, EVALSHA and SCRIPT through {@link EmbeddedRedisScripting}.
+ *
+ * Commands execute one at a time under a single lock, like Redis' single command thread,
+ * so atomicity guarantees match a real server. Latency, dropped connections, timeouts and
+ * outages can be scripted through {@link #faults()}.
+ */
+@Slf4j
+public class EmbeddedRedisServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "embedded-redis-conn");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Map<String, Entry> store = new HashMap<>();
+    private final Object commandLock = new Object();
+    private final EmbeddedRedisScripting scripting = new EmbeddedRedisScripting(this);
+    private final RedisFaults faults = new RedisFaults();
+    private volatile boolean running = true;
+
+    private EmbeddedRedisServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 512, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "embedded-redis-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Embedded Redis listening on port {}", getPort());
+    }
+
+    /**
+     * Start a server on an ephemeral port
+     */
+    public static EmbeddedRedisServer start() throws IOException {
+        return start(0);
+    }
+
+    public static EmbeddedRedisServer start(int port) throws IOException {
+        return new EmbeddedRedisServer(port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Faults applied to every connection; none until set
+     */
+    public RedisFaults faults() {
+        return faults;
+    }
+
+    /**
+     * Remove all keys
+     */
+    public void flushAll() {
+        synchronized (commandLock) {
+            store.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+        connectionThreads.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (faults.isDown()) {
+                    closeQuietly(socket);
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                clients.add(socket);
+                connectionThreads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Embedded Redis accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (running) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                if (faults.next() != RedisFaults.Action.PROCEED) {
+                    return;
+                }
+                boolean keepOpen = handle(command, out);
+                // Flush once the client has no more pipelined commands waiting
+                if (in.available() == 0) {
+                    out.flush();
+                }
+                if (!keepOpen) {
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (SocketException | EOFException e) {
+            // client went away
+        } catch (IOException e) {
+            log.debug("Embedded Redis connection error: {}", e.getMessage());
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * Execute one command and write its reply
+     * @return false if the connection should be closed
+     */
+    protected boolean handle(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+        if ("QUIT".equals(name)) {
+            Resp.simple(out, "OK");
+            return false;
+        }
+        try {
+            synchronized (commandLock) {
+                if (name.startsWith("EVAL")) {
+                    faults.beforeScript();
+                }
+                execute(name, command, out);
+            }
+        } catch (RedisError e) {
+            Resp.error(out, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Dispatch a command; callers must hold the command lock
+     */
+    void execute(String name, List<byte[]> args, OutputStream out) throws IOException {
+        switch (name) {
+            case "PING" -> {
+                if (args.size() > 1) {
+                    Resp.bulk(out, args.get(1));
+                } else {
+                    Resp.simple(out, "PONG");
+                }
+            }
+            case "HELLO" -> Resp.error(out, "ERR unknown command 'HELLO'");
+            case "CLIENT", "SELECT" -> Resp.simple(out, "OK");
+            case "GET" -> {
+                Entry entry = live(key(args, 1));
+                if (entry != null && entry.hash != null) {
+                    throw wrongType();
+                }
+                Resp.bulk(out, entry != null ? entry.value : null);
+            }
+            case "SET" -> set(args, out);
+            case "DEL" -> {
+                long removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (live(key(args, i)) != null) {
+                        store.remove(key(args, i));
+                        removed++;
+                    }
+                }
+                Resp.integer(out, removed);
+            }
+            case "EXISTS" -> {
+                long found = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (live(key(args, i)) != null) {
+                        found++;
+                    }
+                }
+                Resp.integer(out, found);
+            }
+            case "INCR" -> Resp.integer(out, incrementBy(key(args, 1), 1));
+            case "INCRBY" -> Resp.integer(out, incrementBy(key(args, 1), longArg(args, 2)));
+            case "DECR" -> Resp.integer(out, incrementBy(key(args, 1), -1));
+            case "DECRBY" -> Resp.integer(out, incrementBy(key(args, 1), -longArg(args, 2)));
+            case "HGET" -> {
+                Map<String, byte[]> hash = hash(key(args, 1), false);
+                Resp.bulk(out, hash != null ? hash.get(key(args, 2)) : null);
+            }
+            case "HINCRBY" -> Resp.integer(out, hashIncrementBy(key(args, 1), key(args, 2), longArg(args, 3)));
+            case "HDEL" -> {
+                Map<String, byte[]> hash = hash(key(args, 1), false);
+                long removed = 0;
+                for (int i = 2; hash != null && i < args.size(); i++) {
+                    if (hash.remove(key(args, i)) != null) {
+                        removed++;
+                    }
+                }
+                if (hash != null && hash.isEmpty()) {
+                    store.remove(key(args, 1));
+                }
+                Resp.integer(out, removed);
+            }
+            case "HLEN" -> {
+                Map<String, byte[]> hash = hash(key(args, 1), false);
+                Resp.integer(out, hash != null ? hash.size() : 0);
+            }
+            case "EXPIRE" -> Resp.integer(out, expire(key(args, 1), longArg(args, 2) * 1000));
+            case "PEXPIRE" -> Resp.integer(out, expire(key(args, 1), longArg(args, 2)));
+            case "TTL" -> Resp.integer(out, ttlMillis(key(args, 1), 1000));
+            case "PTTL" -> Resp.integer(out, ttlMillis(key(args, 1), 1));
+            case "FLUSHALL", "FLUSHDB" -> {
+                store.clear();
+                Resp.simple(out, "OK");
+            }
+            case "DBSIZE" -> Resp.integer(out, store.size());
+            case "EVAL" -> scripting.eval(args, out);
+            case "EVALSHA" -> scripting.evalsha(args, out);
+            case "SCRIPT" -> scripting.script(args, out);
+            default -> executeExtension(name, args, out);
+        }
+    }
+
+    /**
+     * Hook for commands beyond the core set
+     */
+    protected void executeExtension(String name, List<byte[]> args, OutputStream out) throws IOException {
+        throw new RedisError("ERR unknown command '" + name + "'");
+    }
+
+    private void set(List<byte[]> args, OutputStream out) throws IOException {
+        String key = key(args, 1);
+        long expireAtMillis = 0;
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 3; i < args.size(); i++) {
+            String option = new String(args.get(i), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "EX" -> expireAtMillis = System.currentTimeMillis() + longArg(args, ++i) * 1000;
+                case "PX" -> expireAtMillis = System.currentTimeMillis() + longArg(args, ++i);
+                case "NX" -> nx = true;
+                case "XX" -> xx = true;
+                default -> throw new RedisError("ERR syntax error");
+            }
+        }
+        boolean exists = live(key) != null;
+        if ((nx && exists) || (xx && !exists)) {
+            Resp.bulk(out, null);
+            return;
+        }
+        store.put(key, new Entry(args.get(2), expireAtMillis));
+        Resp.simple(out, "OK");
+    }
+
+    protected long incrementBy(String key, long delta) {
+        Entry entry = live(key);
+        long current = 0;
+        if (entry != null && entry.hash != null) {
+            throw wrongType();
+        }
+        if (entry != null) {
+            try {
+                current = Long.parseLong(new String(entry.value, StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                throw new RedisError("ERR value is not an integer or out of range");
+            }
+        }
+        long updated = current + delta;
+        store.put(key, new Entry(Long.toString(updated).getBytes(StandardCharsets.UTF_8),
+                entry != null ? entry.expireAtMillis : 0));
+        return updated;
+    }
+
+    protected long expire(String key, long millis) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return 0;
+        }
+        store.put(key, new Entry(entry.value, entry.hash, System.currentTimeMillis() + millis));
+        return 1;
+    }
+
+    private long hashIncrementBy(String key, String field, long delta) {
+        Map<String, byte[]> hash = hash(key, true);
+        long current = 0;
+        byte[] value = hash.get(field);
+        if (value != null) {
+            try {
+                current = Long.parseLong(new String(value, StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                throw new RedisError("ERR hash value is not an integer");
+            }
+        }
+        long updated = current + delta;
+        hash.put(field, Long.toString(updated).getBytes(StandardCharsets.UTF_8));
+        return updated;
+    }
+
+    /**
+     * @return the hash stored at key, created empty if asked to; callers must hold the command lock
+     */
+    private Map<String, byte[]> hash(String key, boolean create) {
+        Entry entry = live(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            entry = new Entry(null, new HashMap<>(), 0);
+            store.put(key, entry);
+        }
+        if (entry.hash == null) {
+            throw wrongType();
+        }
+        return entry.hash;
+    }
+
+    private static RedisError wrongType() {
+        return new RedisError("WRONGTYPE Operation against a key holding the wrong kind of value");
+    }
+
+    private long ttlMillis(String key, long unitMillis) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return -2;
+        }
+        if (entry.expireAtMillis == 0) {
+            return -1;
+        }
+        return Math.max(0, entry.expireAtMillis - System.currentTimeMillis()) / unitMillis;
+    }
+
+    /**
+     * @return the entry for a key, evicting it if expired; callers must hold the command lock
+     */
+    protected Entry live(String key) {
+        Entry entry = store.get(key);
+        if (entry != null && entry.expireAtMillis != 0 && entry.expireAtMillis <= System.currentTimeMillis()) {
+            store.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    protected Map<String, Entry> store() {
+        return store;
+    }
+
+    protected static String key(List<byte[]> args, int index) {
+        if (args.size() <= index) {
+            throw new RedisError("ERR wrong number of arguments");
+        }
+        return new String(args.get(index), StandardCharsets.UTF_8);
+    }
+
+    protected static long longArg(List<byte[]> args, int index) {
+        try {
+            return Long.parseLong(key(args, index));
+        } catch (NumberFormatException e) {
+            throw new RedisError("ERR value is not an integer or out of range");
+        }
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Unsupported RESP request type: " + (char) type);
+        }
+        int count = (int) readLong(in);
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = (int) readLong(in);
+            byte[] arg = in.readNBytes(length);
+            if (arg.length != length) {
+                throw new EOFException();
+            }
+            in.skipNBytes(2);
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            if (c == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (c - '0');
+            }
+        }
+        in.read(); // \n
+        return negative ? -value : value;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * A string value, or a hash (value null)
+     */
+    protected record Entry(byte[] value, Map<String, byte[]> hash, long expireAtMillis) {
+
+        Entry(byte[] value, long expireAtMillis) {
+            this(value, null, expireAtMillis);
+        }
+    }
+
+    protected static class RedisError extends RuntimeException {
+        public RedisError(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * RESP2 reply encoders
+     */
+    protected static final class Resp {
+
+        private static final byte[] CRLF = {'\r', '\n'};
+
+        private Resp() {
+        }
+
+        static void simple(OutputStream out, String value) throws IOException {
+            out.write('+');
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        }
+
+        static void error(OutputStream out, String message) throws IOException {
+            out.write('-');
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        }
+
+        static void integer(OutputStream out, long value) throws IOException {
+            out.write(':');
+            out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+        }
+
+        static void bulk(OutputStream out, byte[] value) throws IOException {
+            if (value == null) {
+                out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            out.write('$');
+            out.write(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(value);
+            out.write(CRLF);
+        }
+
+        static void arrayHeader(OutputStream out, int size) throws IOException {
+            out.write('*');
+            out.write(Integer.toString(size).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+        }
+    }
+}
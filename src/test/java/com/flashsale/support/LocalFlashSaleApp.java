@@ -0,0 +1,77 @@
+package com.flashsale.support;
+
+import com.flashsale.FlashSaleApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Boots the full application on a random port against a private in-memory H2 database
+ * and an {@link EmbeddedRedisServer}, using the test profile
+ */
+public final class LocalFlashSaleApp implements AutoCloseable {
+
+    private final EmbeddedRedisServer redis;
+    private final ConfigurableApplicationContext context;
+
+    private LocalFlashSaleApp(EmbeddedRedisServer redis, ConfigurableApplicationContext context) {
+        this.redis = redis;
+        this.context = context;
+    }
+
+    /**
+     * @param overrides Spring properties applied on top of the test profile
+     */
+    public static LocalFlashSaleApp start(Map<String, Object> overrides) throws IOException {
+        return start(EmbeddedRedisServer.start(), overrides);
+    }
+
+    public static LocalFlashSaleApp start(EmbeddedRedisServer redis, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:flashsale-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.data.redis.host", "localhost");
+        properties.put("spring.data.redis.port", redis.getPort());
+        properties.put("logging.level.com.flashsale", "INFO");
+        properties.putAll(overrides);
+
+        // Passed as command line arguments so they win over application.yml and the test profile
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FlashSaleApplication.class)
+                .profiles("test")
+                .run(args);
+        return new LocalFlashSaleApp(redis, context);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    public EmbeddedRedisServer redis() {
+        return redis;
+    }
+
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        redis.close();
+    }
+}
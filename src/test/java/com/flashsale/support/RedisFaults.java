@@ -0,0 +1,246 @@
+package com.flashsale.support;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scripted faults for an {@link EmbeddedRedisServer}
+ *
+ * Faults apply to every connection from the moment they are set until {@link #clear()}:
+ * - latency: added before each command runs, per connection, like a slow network
+ * - script latency: added while EVAL/EVALSHA hold the command lock, so every other client waits
+ *   behind the script, as on the real single-threaded server
+ * - dropped connections: the connection is closed before the command runs, with no reply
+ * - timeouts: the command gets no reply for the stall time, then the connection is closed
+ * - partition / flapping: the server is unreachable; new connections are closed at once and
+ *   commands on open ones are dropped
+ *
+ * A faulted command is never executed, so a client retry cannot apply it twice. Random choices
+ * come from one seeded generator, so a scenario can be repeated.
+ */
+public final class RedisFaults {
+
+    /**
+     * What happens to the next command
+     */
+    enum Action { PROCEED, DROP, STALL }
+
+    /**
+     * Added latency, sampled once per command
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        long sampleNanos(Random random);
+
+        static Latency none() {
+            return random -> 0L;
+        }
+
+        static Latency fixed(Duration latency) {
+            long nanos = latency.toNanos();
+            return random -> nanos;
+        }
+
+        static Latency uniform(Duration min, Duration max) {
+            long from = min.toNanos();
+            long spread = max.toNanos() - from;
+            return random -> from + (spread > 0 ? (long) (random.nextDouble() * spread) : 0);
+        }
+
+        /**
+         * Long-tailed latency: the median, with sigma setting the tail (p99 is median * e^(2.33 * sigma))
+         */
+        static Latency logNormal(Duration median, double sigma) {
+            long nanos = median.toNanos();
+            return random -> (long) (nanos * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        /**
+         * Memoryless latency with the given mean, as in textbook M/M/c queues
+         */
+        static Latency exponential(Duration mean) {
+            double nanos = mean.toNanos();
+            return random -> (long) (-nanos * Math.log(1 - random.nextDouble()));
+        }
+
+        /**
+         * Lognormal latency through a measured median and p99, e.g. from a JFR stage summary
+         */
+        static Latency logNormal(Duration p50, Duration p99) {
+            double sigma = p99.compareTo(p50) > 0 ? Math.log((double) p99.toNanos() / p50.toNanos()) / 2.326 : 0;
+            return logNormal(p50, sigma);
+        }
+
+        /**
+         * This latency, plus a spike on a fraction of commands
+         */
+        default Latency withSpikes(double probability, Duration spike) {
+            long spikeNanos = spike.toNanos();
+            return random -> sampleNanos(random) + (random.nextDouble() < probability ? spikeNanos : 0);
+        }
+    }
+
+    private volatile Random random = new Random();
+    private volatile Latency latency = Latency.none();
+    private volatile Latency scriptLatency = Latency.none();
+    private volatile double dropProbability;
+    private volatile double timeoutProbability;
+    private volatile long stallNanos = TimeUnit.SECONDS.toNanos(5);
+    private volatile long downUntilNanos = System.nanoTime();
+    private volatile long flapStartNanos;
+    private volatile long flapUpNanos;
+    private volatile long flapDownNanos;
+
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+
+    RedisFaults() {
+    }
+
+    public RedisFaults seed(long seed) {
+        random = new Random(seed);
+        return this;
+    }
+
+    public RedisFaults latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public RedisFaults scriptLatency(Latency scriptLatency) {
+        this.scriptLatency = scriptLatency;
+        return this;
+    }
+
+    /**
+     * Close the connection instead of running a fraction of commands
+     */
+    public RedisFaults dropConnections(double probability) {
+        dropProbability = probability;
+        return this;
+    }
+
+    /**
+     * Leave a fraction of commands unanswered for stall, then close the connection
+     */
+    public RedisFaults timeouts(double probability, Duration stall) {
+        timeoutProbability = probability;
+        stallNanos = stall.toNanos();
+        return this;
+    }
+
+    /**
+     * Be unreachable for the given time, starting now
+     */
+    public RedisFaults partition(Duration duration) {
+        downUntilNanos = System.nanoTime() + duration.toNanos();
+        return this;
+    }
+
+    /**
+     * Alternate between reachable for up and unreachable for down, starting now
+     */
+    public RedisFaults flap(Duration up, Duration down) {
+        flapStartNanos = System.nanoTime();
+        flapUpNanos = up.toNanos();
+        flapDownNanos = down.toNanos();
+        return this;
+    }
+
+    /**
+     * Remove every fault; the injected counts are kept
+     */
+    public RedisFaults clear() {
+        latency = Latency.none();
+        scriptLatency = Latency.none();
+        dropProbability = 0;
+        timeoutProbability = 0;
+        downUntilNanos = System.nanoTime();
+        flapDownNanos = 0;
+        return this;
+    }
+
+    /**
+     * Commands that were delayed by latency or script latency
+     */
+    public long delayed() {
+        return delayed.get();
+    }
+
+    /**
+     * Commands dropped, including those dropped while unreachable
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Commands left unanswered until the connection was closed
+     */
+    public long stalled() {
+        return stalled.get();
+    }
+
+    boolean isDown() {
+        long now = System.nanoTime();
+        if (now - downUntilNanos < 0) {
+            return true;
+        }
+        long period = flapUpNanos + flapDownNanos;
+        return flapDownNanos > 0 && (now - flapStartNanos) % period >= flapUpNanos;
+    }
+
+    /**
+     * Decide the fate of the next command; a PROCEED has already waited out its latency
+     */
+    Action next() {
+        if (isDown()) {
+            dropped.incrementAndGet();
+            return Action.DROP;
+        }
+        double roll = dropProbability + timeoutProbability > 0 ? random.nextDouble() : 1;
+        if (roll < dropProbability) {
+            dropped.incrementAndGet();
+            return Action.DROP;
+        }
+        if (roll < dropProbability + timeoutProbability) {
+            stalled.incrementAndGet();
+            sleep(stallNanos);
+            return Action.STALL;
+        }
+        delay(latency);
+        return Action.PROCEED;
+    }
+
+    /**
+     * Wait out script latency; called with the command lock held
+     */
+    void beforeScript() {
+        delay(scriptLatency);
+    }
+
+    private void delay(Latency distribution) {
+        long nanos = distribution.sampleNanos(random);
+        if (nanos > 0) {
+            delayed.incrementAndGet();
+            sleep(nanos);
+        }
+    }
+
+    /**
+     * Sleep, ending early only when the server shuts down
+     */
+    private static void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}